@@ -7,6 +7,7 @@ import io.vertx.codegen.annotations.VertxGen;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.json.JsonObject;
 import iudx.aaa.server.apiserver.CreateRsRequest;
 import iudx.aaa.server.apiserver.ProviderUpdateRequest;
@@ -43,6 +44,19 @@ public interface AdminService {
     return new AdminServiceVertxEBProxy(vertx, address);
   }
 
+  /**
+   * The createProxy with delivery options, used for all calls made through the proxy.
+   *
+   * @param vertx which is the vertx instance
+   * @param address which is the proxy address
+   * @param options which are the delivery options of the calls
+   * @return AdminServiceVertxEBProxy which is a service proxy
+   */
+  @GenIgnore
+  static AdminService createProxy(Vertx vertx, String address, DeliveryOptions options) {
+    return new AdminServiceVertxEBProxy(vertx, address, options);
+  }
+
   /**
    * The getProviderRegistrations implements the operation to view Provider registrations.
    *
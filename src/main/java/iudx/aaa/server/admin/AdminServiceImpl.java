@@ -1,5 +1,6 @@
 package iudx.aaa.server.admin;
 
+import static iudx.aaa.server.admin.Constants.CONSUMER_ROLE_BATCH_SIZE;
 import static iudx.aaa.server.admin.Constants.ERR_DETAIL_DOMAIN_EXISTS;
 import static iudx.aaa.server.admin.Constants.ERR_DETAIL_INVALID_DOMAIN;
 import static iudx.aaa.server.admin.Constants.ERR_DETAIL_NOT_ADMIN;
@@ -11,14 +12,20 @@ import static iudx.aaa.server.admin.Constants.ERR_TITLE_INVALID_PROV_REG_ID;
 import static iudx.aaa.server.admin.Constants.ERR_TITLE_NOT_ADMIN;
 import static iudx.aaa.server.admin.Constants.ERR_TITLE_NO_COS_ADMIN_ROLE;
 import static iudx.aaa.server.admin.Constants.RESP_STATUS;
-import static iudx.aaa.server.admin.Constants.SQL_ADD_NEW_RES_SERVER_ROLE_FOR_ANY_CONSUMER;
+import static iudx.aaa.server.admin.Constants.SQL_ADD_NEW_RES_SERVER_ROLE_FOR_CONSUMER_BATCH;
+import static iudx.aaa.server.admin.Constants.SQL_CREATE_CONSUMER_ROLE_BACKFILL;
 import static iudx.aaa.server.admin.Constants.SQL_CREATE_RS_IF_NOT_EXIST;
+import static iudx.aaa.server.admin.Constants.SQL_DELETE_CONSUMER_ROLE_BACKFILL;
+import static iudx.aaa.server.admin.Constants.SQL_GET_PENDING_CONSUMER_ROLE_BACKFILLS;
 import static iudx.aaa.server.admin.Constants.SQL_GET_PENDING_PROVIDERS_BY_ID_AND_RS;
 import static iudx.aaa.server.admin.Constants.SQL_GET_PROVIDERS_FOR_RS_BY_STATUS;
+import static iudx.aaa.server.admin.Constants.SQL_LOCK_CONSUMER_ROLE_BACKFILL;
+import static iudx.aaa.server.admin.Constants.SQL_UPDATE_CONSUMER_ROLE_BACKFILL;
 import static iudx.aaa.server.admin.Constants.SQL_UPDATE_ROLE_STATUS;
 import static iudx.aaa.server.admin.Constants.SUCC_TITLE_CREATED_RS;
 import static iudx.aaa.server.admin.Constants.SUCC_TITLE_PROVIDER_REGS;
 import static iudx.aaa.server.admin.Constants.SUCC_TITLE_PROV_STATUS_UPDATE;
+import static iudx.aaa.server.apiserver.util.Constants.NIL_UUID;
 import static iudx.aaa.server.apiserver.util.Urn.URN_ALREADY_EXISTS;
 import static iudx.aaa.server.apiserver.util.Urn.URN_INVALID_INPUT;
 import static iudx.aaa.server.apiserver.util.Urn.URN_INVALID_ROLE;
@@ -33,6 +40,7 @@ import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.SqlConnection;
 import io.vertx.sqlclient.Tuple;
 import iudx.aaa.server.apiserver.CreateRsRequest;
 import iudx.aaa.server.apiserver.ProviderUpdateRequest;
@@ -42,6 +50,7 @@ import iudx.aaa.server.apiserver.RoleStatus;
 import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.QueryMetrics;
 import iudx.aaa.server.registration.KcAdmin;
 import iudx.aaa.server.registration.RegistrationService;
 import java.util.HashSet;
@@ -49,6 +58,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
@@ -66,8 +76,11 @@ public class AdminServiceImpl implements AdminService {
 
   private static final Logger LOGGER = LogManager.getLogger(AdminServiceImpl.class);
   private PgPool pool;
+  private PgPool readPool;
   private KcAdmin kc;
   private RegistrationService registrationService;
+  /* Resource servers whose consumer roles are being added by this instance */
+  private final Set<UUID> backfillsRunning = ConcurrentHashMap.newKeySet();
 
   /**
    * Constructor to instantiate {@link AdminServiceImpl}.
@@ -77,7 +90,21 @@ public class AdminServiceImpl implements AdminService {
    * @param registrationService instance of {@link RegistrationService}
    */
   public AdminServiceImpl(PgPool pool, KcAdmin kc, RegistrationService registrationService) {
+    this(pool, pool, kc, registrationService);
+  }
+
+  /**
+   * Constructor to instantiate {@link AdminServiceImpl} with a separate pool for read-only queries.
+   *
+   * @param pool instance of {@link PgPool}
+   * @param readPool instance of {@link PgPool} for read-only queries, may be a read replica
+   * @param kc instance of {@link KcAdmin}
+   * @param registrationService instance of {@link RegistrationService}
+   */
+  public AdminServiceImpl(
+      PgPool pool, PgPool readPool, KcAdmin kc, RegistrationService registrationService) {
     this.pool = pool;
+    this.readPool = readPool;
     this.kc = kc;
     this.registrationService = registrationService;
   }
@@ -99,19 +126,22 @@ public class AdminServiceImpl implements AdminService {
       return this;
     }
 
-    List<String> resServersAdmin = user.getResServersForRole(Roles.ADMIN);
+    Set<String> resServersAdmin = user.getResServersForRole(Roles.ADMIN);
 
     Collector<Row, ?, List<JsonObject>> jsonCollector =
         Collectors.mapping(row -> row.toJson(), Collectors.toList());
 
     Future<List<JsonObject>> providerRegInfo =
-        pool.withConnection(
+        readPool
+            .withConnection(
                 conn ->
-                    conn.preparedQuery(SQL_GET_PROVIDERS_FOR_RS_BY_STATUS)
-                        .collecting(jsonCollector)
-                        .execute(
+                    QueryMetrics.query(
+                            conn,
+                            "SQL_GET_PROVIDERS_FOR_RS_BY_STATUS",
+                            SQL_GET_PROVIDERS_FOR_RS_BY_STATUS,
                             Tuple.of(filter.name())
-                                .addArrayOfString(resServersAdmin.toArray(String[]::new)))
+                                .addArrayOfString(resServersAdmin.toArray(String[]::new)),
+                            jsonCollector)
                         .map(x -> x.value()))
             .compose(
                 res -> {
@@ -225,7 +255,7 @@ public class AdminServiceImpl implements AdminService {
       return this;
     }
 
-    List<String> resServersAdmin = user.getResServersForRole(Roles.ADMIN);
+    Set<String> resServersAdmin = user.getResServersForRole(Roles.ADMIN);
 
     Collector<Row, ?, Map<UUID, JsonObject>> collect =
         Collectors.toMap(row -> row.getUUID("id"), row -> row.toJson());
@@ -236,9 +266,12 @@ public class AdminServiceImpl implements AdminService {
     Future<Map<UUID, JsonObject>> pendingProvDetails =
         pool.withConnection(
             conn ->
-                conn.preparedQuery(SQL_GET_PENDING_PROVIDERS_BY_ID_AND_RS)
-                    .collecting(collect)
-                    .execute(tup)
+                QueryMetrics.query(
+                        conn,
+                        "SQL_GET_PENDING_PROVIDERS_BY_ID_AND_RS",
+                        SQL_GET_PENDING_PROVIDERS_BY_ID_AND_RS,
+                        tup,
+                        collect)
                     .map(row -> row.value()));
 
     Future<List<String>> checkProvRegIds =
@@ -274,8 +307,8 @@ public class AdminServiceImpl implements AdminService {
             providerUserIds ->
                 pool.withTransaction(
                     conn ->
-                        conn.preparedQuery(SQL_UPDATE_ROLE_STATUS)
-                            .executeBatch(tuple)
+                        QueryMetrics.batch(
+                                conn, "SQL_UPDATE_ROLE_STATUS", SQL_UPDATE_ROLE_STATUS, tuple)
                             .compose(res -> kc.getDetails(providerUserIds))));
 
     updateStatusAndGetUserDetails
@@ -369,10 +402,18 @@ public class AdminServiceImpl implements AdminService {
               UUID ownerId =
                   UUID.fromString(adminDetails.getJsonObject(ownerEmail).getString("keycloakId"));
 
+              /*
+               * Only the server and a record of the consumer roles still to be added are written in
+               * the transaction. The roles are added in batches after it commits, see
+               * addConsumerRolesForRs
+               */
               return pool.withTransaction(
                   conn ->
-                      conn.preparedQuery(SQL_CREATE_RS_IF_NOT_EXIST)
-                          .execute(Tuple.of(name, domain, ownerId))
+                      QueryMetrics.query(
+                              conn,
+                              "SQL_CREATE_RS_IF_NOT_EXIST",
+                              SQL_CREATE_RS_IF_NOT_EXIST,
+                              Tuple.of(name, domain, ownerId))
                           .compose(
                               rows -> {
                                 if (rows.rowCount() == 0) {
@@ -384,13 +425,13 @@ public class AdminServiceImpl implements AdminService {
                                           ERR_DETAIL_DOMAIN_EXISTS));
                                 }
                                 UUID id = rows.iterator().next().getUUID("id");
-                                return Future.succeededFuture(id);
-                              })
-                          .compose(
-                              id ->
-                                  conn.preparedQuery(SQL_ADD_NEW_RES_SERVER_ROLE_FOR_ANY_CONSUMER)
-                                      .execute(Tuple.of(id))
-                                      .map(res -> id)));
+                                return QueryMetrics.query(
+                                        conn,
+                                        "SQL_CREATE_CONSUMER_ROLE_BACKFILL",
+                                        SQL_CREATE_CONSUMER_ROLE_BACKFILL,
+                                        Tuple.of(id, UUID.fromString(NIL_UUID)))
+                                    .map(res -> id);
+                              }));
             });
 
     fut.onSuccess(
@@ -412,11 +453,12 @@ public class AdminServiceImpl implements AdminService {
 
               LOGGER.info(
                   "Admin added new resource server {}. All existing users with a consumer"
-                      + " role have been given a consumer role for this server"
+                      + " role are being given a consumer role for this server"
                       + " (resource server ID {})",
                   url,
                   id);
               handler.handle(Future.succeededFuture(r.toJson()));
+              addConsumerRolesForRs(id);
             })
         .onFailure(
             e -> {
@@ -432,4 +474,115 @@ public class AdminServiceImpl implements AdminService {
 
     return this;
   }
+
+  /**
+   * Add consumer roles for a resource server to all users having an approved consumer role, in
+   * batches of {@link Constants#CONSUMER_ROLE_BATCH_SIZE} users. Each batch is a short transaction
+   * that adds the roles and records the last user ID done, so that the resource server is usable
+   * while the roles are added, and a fan-out that failed or was interrupted is resumed from where
+   * it stopped by {@link #resumeConsumerRoleBackfills()}. A batch locked by another node is
+   * skipped, and roles that already exist are skipped, so a batch may be safely run again.
+   *
+   * @param rsId the resource server ID
+   * @return a void Future, which completes when all batches are added or the fan-out is left to
+   *     another node
+   */
+  Future<Void> addConsumerRolesForRs(UUID rsId) {
+    if (!backfillsRunning.add(rsId)) {
+      return Future.succeededFuture();
+    }
+    return addConsumerRoleBatches(rsId)
+        .onSuccess(res -> LOGGER.info("Added consumer roles for resource server {}", rsId))
+        .onFailure(
+            err ->
+                LOGGER.error(
+                    "Fail: Could not add consumer roles for resource server {}, will be retried : {}",
+                    rsId,
+                    err.getMessage()))
+        .onComplete(res -> backfillsRunning.remove(rsId));
+  }
+
+  private Future<Void> addConsumerRoleBatches(UUID rsId) {
+    Future<Boolean> batch =
+        pool.withTransaction(
+            conn ->
+                QueryMetrics.query(
+                        conn,
+                        "SQL_LOCK_CONSUMER_ROLE_BACKFILL",
+                        SQL_LOCK_CONSUMER_ROLE_BACKFILL,
+                        Tuple.of(rsId))
+                    .compose(
+                        backfill -> {
+                          if (backfill.rowCount() == 0) {
+                            return Future.succeededFuture(false);
+                          }
+                          UUID lastUserId = backfill.iterator().next().getUUID("last_user_id");
+                          return addConsumerRoleBatch(conn, rsId, lastUserId);
+                        }));
+
+    return batch.compose(more -> more ? addConsumerRoleBatches(rsId) : Future.succeededFuture());
+  }
+
+  /*
+   * Add one batch of consumer roles after the given user ID and record the progress. Returns true
+   * if there may be more users.
+   */
+  private Future<Boolean> addConsumerRoleBatch(SqlConnection conn, UUID rsId, UUID lastUserId) {
+    return QueryMetrics.query(
+            conn,
+            "SQL_ADD_NEW_RES_SERVER_ROLE_FOR_CONSUMER_BATCH",
+            SQL_ADD_NEW_RES_SERVER_ROLE_FOR_CONSUMER_BATCH,
+            Tuple.of(rsId, lastUserId, CONSUMER_ROLE_BATCH_SIZE))
+        .compose(
+            rows -> {
+              Row row = rows.rowCount() == 0 ? null : rows.iterator().next();
+              if (row == null || row.getLong("batch_count") < CONSUMER_ROLE_BATCH_SIZE) {
+                return QueryMetrics.query(
+                        conn,
+                        "SQL_DELETE_CONSUMER_ROLE_BACKFILL",
+                        SQL_DELETE_CONSUMER_ROLE_BACKFILL,
+                        Tuple.of(rsId))
+                    .map(res -> false);
+              }
+              return QueryMetrics.query(
+                      conn,
+                      "SQL_UPDATE_CONSUMER_ROLE_BACKFILL",
+                      SQL_UPDATE_CONSUMER_ROLE_BACKFILL,
+                      Tuple.of(rsId, row.getUUID("last_user_id")))
+                  .map(res -> true);
+            });
+  }
+
+  /**
+   * Resume adding consumer roles for resource servers whose fan-out failed or was interrupted, e.g.
+   * by a restart. Called when the admin verticle starts and then periodically.
+   *
+   * @return a void Future
+   */
+  public Future<Void> resumeConsumerRoleBackfills() {
+    Collector<Row, ?, List<UUID>> rsIdCollector =
+        Collectors.mapping(row -> row.getUUID("resource_server_id"), Collectors.toList());
+
+    return pool.withConnection(
+            conn ->
+                QueryMetrics.query(
+                        conn,
+                        "SQL_GET_PENDING_CONSUMER_ROLE_BACKFILLS",
+                        SQL_GET_PENDING_CONSUMER_ROLE_BACKFILLS,
+                        rsIdCollector)
+                    .map(res -> res.value()))
+        .compose(
+            rsIds -> {
+              Future<Void> resumed = Future.succeededFuture();
+              for (UUID rsId : rsIds) {
+                resumed = resumed.eventually(() -> addConsumerRolesForRs(rsId));
+              }
+              return resumed;
+            })
+        .onFailure(
+            err ->
+                LOGGER.error(
+                    "Fail: Could not resume consumer role fan-outs : {}", err.getMessage()))
+        .mapEmpty();
+  }
 }
@@ -1,5 +1,6 @@
 package iudx.aaa.server.admin;
 
+import static iudx.aaa.server.admin.Constants.CONSUMER_ROLE_BACKFILL_INTERVAL_MS;
 import static iudx.aaa.server.admin.Constants.DATABASE_IP;
 import static iudx.aaa.server.admin.Constants.DATABASE_NAME;
 import static iudx.aaa.server.admin.Constants.DATABASE_PASSWORD;
@@ -10,6 +11,7 @@ import static iudx.aaa.server.admin.Constants.DATABASE_USERNAME;
 import static iudx.aaa.server.admin.Constants.DB_CONNECT_TIMEOUT;
 import static iudx.aaa.server.admin.Constants.DB_RECONNECT_ATTEMPTS;
 import static iudx.aaa.server.admin.Constants.DB_RECONNECT_INTERVAL_MS;
+import static iudx.aaa.server.admin.Constants.DEFAULT_CONSUMER_ROLE_BACKFILL_INTERVAL_MS;
 import static iudx.aaa.server.admin.Constants.KC_ADMIN_CLIENT_ID;
 import static iudx.aaa.server.admin.Constants.KC_ADMIN_CLIENT_SEC;
 import static iudx.aaa.server.admin.Constants.KC_ADMIN_POOLSIZE;
@@ -24,6 +26,10 @@ import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgPool;
 import io.vertx.serviceproxy.ServiceBinder;
 import io.vertx.sqlclient.PoolOptions;
+import iudx.aaa.server.apiserver.util.LocalServiceRegistry;
+import iudx.aaa.server.apiserver.util.ReadReplicaPool;
+import iudx.aaa.server.apiserver.util.ServiceMessageCodec;
+import iudx.aaa.server.apiserver.util.SharedPgPool;
 import iudx.aaa.server.registration.KcAdmin;
 import iudx.aaa.server.registration.RegistrationService;
 import java.util.Map;
@@ -62,7 +68,8 @@ public class AdminVerticle extends AbstractVerticle {
   private PoolOptions poolOptions;
   private PgConnectOptions connectOptions;
   private static final String ADMIN_SERVICE_ADDRESS = "iudx.aaa.admin.service";
-  private AdminService adminService;
+  private AdminServiceImpl adminService;
+  private long backfillTimerId;
   private ServiceBinder binder;
   private MessageConsumer<JsonObject> consumer;
   private static final Logger LOGGER = LogManager.getLogger(AdminVerticle.class);
@@ -117,7 +124,9 @@ public class AdminVerticle extends AbstractVerticle {
     }
 
     /* Create the client pool */
-    pool = PgPool.pool(vertx, connectOptions, poolOptions);
+    pool = SharedPgPool.pool(vertx, connectOptions, poolOptions, config(), "admin");
+    PgPool readPool =
+        ReadReplicaPool.pool(vertx, pool, connectOptions, poolOptions, config(), "admin");
 
     KcAdmin kcadmin =
         new KcAdmin(
@@ -127,16 +136,33 @@ public class AdminVerticle extends AbstractVerticle {
             keycloakAdminClientSecret,
             keycloakAdminPoolSize);
 
-    registrationService = RegistrationService.createProxy(vertx, REGISTRATION_SERVICE_ADDRESS);
-    adminService = new AdminServiceImpl(pool, kcadmin, registrationService);
-    binder = new ServiceBinder(vertx);
+    registrationService =
+        LocalServiceRegistry.lookup(
+            vertx,
+            RegistrationService.class,
+            REGISTRATION_SERVICE_ADDRESS,
+            RegistrationService::createProxy);
+    adminService = new AdminServiceImpl(pool, readPool, kcadmin, registrationService);
+    binder = ServiceMessageCodec.binder(vertx);
     consumer = binder.setAddress(ADMIN_SERVICE_ADDRESS).register(AdminService.class, adminService);
+    LocalServiceRegistry.register(vertx, ADMIN_SERVICE_ADDRESS, adminService);
+
+    /* Retry consumer role fan-outs of new resource servers left by failures or restarts */
+    long backfillIntervalMs =
+        config()
+            .getLong(
+                CONSUMER_ROLE_BACKFILL_INTERVAL_MS, DEFAULT_CONSUMER_ROLE_BACKFILL_INTERVAL_MS);
+    adminService.resumeConsumerRoleBackfills();
+    backfillTimerId =
+        vertx.setPeriodic(backfillIntervalMs, id -> adminService.resumeConsumerRoleBackfills());
 
     LOGGER.debug("Info : {} : Started", LOGGER.getName());
   }
 
   @Override
   public void stop() {
+    vertx.cancelTimer(backfillTimerId);
     binder.unregister(consumer);
+    LocalServiceRegistry.unregister(vertx, ADMIN_SERVICE_ADDRESS, adminService);
   }
 }
@@ -22,6 +22,8 @@ public class Constants {
   public static final String KC_ADMIN_CLIENT_ID = "keycloakAdminClientId";
   public static final String KC_ADMIN_CLIENT_SEC = "keycloakAdminClientSecret";
   public static final String KC_ADMIN_POOLSIZE = "keycloakAdminPoolSize";
+  public static final String CONSUMER_ROLE_BACKFILL_INTERVAL_MS = "consumerRoleBackfillIntervalMs";
+  public static final long DEFAULT_CONSUMER_ROLE_BACKFILL_INTERVAL_MS = 60000;
 
   /* Response fields */
   public static final String RESP_STATUS = "status";
@@ -76,9 +78,44 @@ public class Constants {
       "INSERT INTO resource_server (name, url, owner_id, created_at, updated_at) "
           + "VALUES ($1::text, $2::text, $3::UUID, NOW(), NOW()) ON CONFLICT (url) DO NOTHING RETURNING id";
 
-  public static final String SQL_ADD_NEW_RES_SERVER_ROLE_FOR_ANY_CONSUMER =
-      " WITH new_roles AS (SELECT DISTINCT(user_id), $1::UUID, 'CONSUMER'::role_enum, 'APPROVED'::role_status_enum"
-          + ", NOW(), NOW() FROM roles WHERE role = 'CONSUMER' AND status = 'APPROVED')"
-          + " INSERT INTO roles (user_id, resource_server_id, role, status, created_at, updated_at)"
-          + " SELECT * FROM new_roles";
+  /*
+   * Adds consumer roles for a new resource server to a batch of users having an approved consumer
+   * role. Users are taken in order of user ID starting after $2, at most $3 users at a time.
+   * Returns the last user ID of the batch and the size of the batch. Users already having a consumer
+   * role for the server are skipped, so that the query may be safely re-run.
+   */
+  public static final String SQL_ADD_NEW_RES_SERVER_ROLE_FOR_CONSUMER_BATCH =
+      "WITH consumers AS (SELECT DISTINCT user_id FROM roles WHERE role = 'CONSUMER'"
+          + " AND status = 'APPROVED' AND user_id > $2::uuid ORDER BY user_id LIMIT $3::integer)"
+          + ", inserted AS (INSERT INTO roles"
+          + " (user_id, resource_server_id, role, status, created_at, updated_at)"
+          + " SELECT user_id, $1::uuid, 'CONSUMER'::role_enum, 'APPROVED'::role_status_enum"
+          + ", NOW(), NOW() FROM consumers ON CONFLICT DO NOTHING)"
+          + " SELECT user_id AS last_user_id, (SELECT count(*) FROM consumers) AS batch_count"
+          + " FROM consumers ORDER BY user_id DESC LIMIT 1";
+
+  /* Records that consumer roles are to be added for a new resource server, from the first user */
+  public static final String SQL_CREATE_CONSUMER_ROLE_BACKFILL =
+      "INSERT INTO consumer_role_backfill (resource_server_id, last_user_id, created_at, updated_at)"
+          + " VALUES ($1::uuid, $2::uuid, NOW(), NOW())";
+
+  /*
+   * Locks the consumer role backfill of a resource server for a batch and gets the last user ID
+   * done. Returns no row if the backfill is done or a batch is being added by another node.
+   */
+  public static final String SQL_LOCK_CONSUMER_ROLE_BACKFILL =
+      "SELECT last_user_id FROM consumer_role_backfill WHERE resource_server_id = $1::uuid"
+          + " FOR UPDATE SKIP LOCKED";
+
+  public static final String SQL_UPDATE_CONSUMER_ROLE_BACKFILL =
+      "UPDATE consumer_role_backfill SET last_user_id = $2::uuid, updated_at = NOW()"
+          + " WHERE resource_server_id = $1::uuid";
+
+  public static final String SQL_DELETE_CONSUMER_ROLE_BACKFILL =
+      "DELETE FROM consumer_role_backfill WHERE resource_server_id = $1::uuid";
+
+  public static final String SQL_GET_PENDING_CONSUMER_ROLE_BACKFILLS =
+      "SELECT resource_server_id FROM consumer_role_backfill ORDER BY created_at";
+
+  public static final int CONSUMER_ROLE_BATCH_SIZE = 1000;
 }
@@ -7,6 +7,7 @@ import io.vertx.codegen.annotations.VertxGen;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.json.JsonObject;
 import iudx.aaa.server.apiserver.ApdUpdateRequest;
 import iudx.aaa.server.apiserver.CreateApdRequest;
@@ -42,6 +43,19 @@ public interface ApdService {
     return new ApdServiceVertxEBProxy(vertx, address);
   }
 
+  /**
+   * The createProxy with delivery options, used for all calls made through the proxy.
+   *
+   * @param vertx which is the vertx instance
+   * @param address which is the proxy address
+   * @param options which are the delivery options of the calls
+   * @return ApdServiceVertxEBProxy which is a service proxy
+   */
+  @GenIgnore
+  static ApdService createProxy(Vertx vertx, String address, DeliveryOptions options) {
+    return new ApdServiceVertxEBProxy(vertx, address, options);
+  }
+
   /**
    * The listApd implements the operation to view Access Policy Domain registrations.
    *
@@ -57,6 +57,11 @@ import static iudx.aaa.server.apd.Constants.SUCC_TITLE_APD_READ;
 import static iudx.aaa.server.apd.Constants.SUCC_TITLE_REGISTERED_APD;
 import static iudx.aaa.server.apd.Constants.SUCC_TITLE_UPDATED_APD;
 import static iudx.aaa.server.apd.Constants.UUID_REGEX;
+import static iudx.aaa.server.apiserver.util.StageTimings.APD_AUTH_TOKEN;
+import static iudx.aaa.server.apiserver.util.StageTimings.APD_CALL;
+import static iudx.aaa.server.apiserver.util.StageTimings.APD_LOOKUP;
+import static iudx.aaa.server.apiserver.util.StageTimings.STAGE_TIMINGS;
+import static iudx.aaa.server.apiserver.util.StageTimings.USER_LOOKUP;
 import static iudx.aaa.server.apiserver.util.Urn.URN_ALREADY_EXISTS;
 import static iudx.aaa.server.apiserver.util.Urn.URN_INVALID_INPUT;
 import static iudx.aaa.server.apiserver.util.Urn.URN_INVALID_ROLE;
@@ -84,6 +89,8 @@ import iudx.aaa.server.apiserver.Response.ResponseBuilder;
 import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.QueryMetrics;
+import iudx.aaa.server.apiserver.util.StageTimings;
 import iudx.aaa.server.registration.RegistrationService;
 import iudx.aaa.server.token.TokenService;
 import java.util.ArrayList;
@@ -113,6 +120,7 @@ public class ApdServiceImpl implements ApdService {
   private static final Logger LOGGER = LogManager.getLogger(ApdServiceImpl.class);
 
   private PgPool pool;
+  private PgPool readPool;
   private ApdWebClient apdWebClient;
   private RegistrationService registrationService;
   private TokenService tokenService;
@@ -132,7 +140,26 @@ public class ApdServiceImpl implements ApdService {
       ApdWebClient apdWebClient,
       RegistrationService regService,
       TokenService tokService) {
+    this(pool, pool, apdWebClient, regService, tokService);
+  }
+
+  /**
+   * Constructor to instantiate {@link ApdServiceImpl} with a separate pool for read-only queries.
+   *
+   * @param pool instance of {@link PgPool}
+   * @param readPool instance of {@link PgPool} for read-only queries, may be a read replica
+   * @param apdWebClient instance of {@link ApdWebClient}
+   * @param regService instance of {@link RegistrationService}
+   * @param tokService instance of {@link TokenService}
+   */
+  public ApdServiceImpl(
+      PgPool pool,
+      PgPool readPool,
+      ApdWebClient apdWebClient,
+      RegistrationService regService,
+      TokenService tokService) {
     this.pool = pool;
+    this.readPool = readPool;
     this.apdWebClient = apdWebClient;
     this.registrationService = regService;
     this.tokenService = tokService;
@@ -162,12 +189,15 @@ public class ApdServiceImpl implements ApdService {
       return this;
     }
 
+    String name;
     String query;
     Tuple tuple;
     if (user.getRoles().contains(Roles.COS_ADMIN)) {
+      name = "LIST_AUTH_QUERY";
       query = LIST_AUTH_QUERY;
       tuple = Tuple.of(ApdStatus.ACTIVE.toString(), ApdStatus.INACTIVE.toString());
     } else {
+      name = "LIST_USER_QUERY";
       query = LIST_USER_QUERY;
       tuple = Tuple.of(ApdStatus.ACTIVE.toString());
     }
@@ -176,8 +206,8 @@ public class ApdServiceImpl implements ApdService {
         Collectors.mapping(row -> row.getUUID("id").toString(), Collectors.toList());
 
     Future<List<String>> apdIds =
-        pool.withConnection(
-                conn -> conn.preparedQuery(query).collecting(apdIdCollector).execute(tuple))
+        readPool
+            .withConnection(conn -> QueryMetrics.query(conn, name, query, tuple, apdIdCollector))
             .map(SqlResult::value);
 
     Future<JsonObject> apdDetails =
@@ -288,9 +318,12 @@ public class ApdServiceImpl implements ApdService {
     Future<Map<UUID, JsonObject>> queryResult =
         pool.withConnection(
                 conn ->
-                    conn.preparedQuery(SQL_GET_APDS_BY_ID_COS_ADMIN)
-                        .collecting(collector)
-                        .execute(Tuple.of(apdIds.toArray(UUID[]::new))))
+                    QueryMetrics.query(
+                        conn,
+                        "SQL_GET_APDS_BY_ID_COS_ADMIN",
+                        SQL_GET_APDS_BY_ID_COS_ADMIN,
+                        Tuple.of(apdIds.toArray(UUID[]::new)),
+                        collector))
             .map(res -> res.value());
 
     Future<Void> validateStatus =
@@ -330,7 +363,9 @@ public class ApdServiceImpl implements ApdService {
                       .collect(Collectors.toList());
 
               return pool.withTransaction(
-                  conn -> conn.preparedQuery(SQL_UPDATE_APD_STATUS).executeBatch(tuple));
+                  conn ->
+                      QueryMetrics.batch(
+                          conn, "SQL_UPDATE_APD_STATUS", SQL_UPDATE_APD_STATUS, tuple));
             })
         .onSuccess(
             updated -> {
@@ -458,7 +493,12 @@ public class ApdServiceImpl implements ApdService {
               Tuple tuple = Tuple.of(name, url, ownerId);
 
               return pool.withConnection(
-                      conn -> conn.preparedQuery(SQL_INSERT_APD_IF_NOT_EXISTS).execute(tuple))
+                      conn ->
+                          QueryMetrics.query(
+                              conn,
+                              "SQL_INSERT_APD_IF_NOT_EXISTS",
+                              SQL_INSERT_APD_IF_NOT_EXISTS,
+                              tuple))
                   .compose(
                       res -> {
                         if (res.size() == 0) {
@@ -524,6 +564,7 @@ public class ApdServiceImpl implements ApdService {
     LOGGER.debug("Info : {} : Request received", LOGGER.getName());
 
     String req;
+    String name;
     String query;
     Tuple tuple;
     List<String> request;
@@ -547,6 +588,7 @@ public class ApdServiceImpl implements ApdService {
         uniqueIds.add(UUID.fromString(ids));
       }
       req = "id";
+      name = "GET_APDINFO_ID";
       query = GET_APDINFO_ID;
       tuple = Tuple.of(uniqueIds.toArray(UUID[]::new));
       request = apdIds;
@@ -555,6 +597,7 @@ public class ApdServiceImpl implements ApdService {
         uniqueUrl.add(ids);
       }
       req = "url";
+      name = "GET_APDINFO_URL";
       query = GET_APDINFO_URL;
       tuple = Tuple.of(uniqueUrl.toArray(String[]::new));
       request = apdUrl;
@@ -565,9 +608,7 @@ public class ApdServiceImpl implements ApdService {
     Future<List<ApdInfoObj>> apdDetails =
         pool.withTransaction(
             conn ->
-                conn.preparedQuery(query)
-                    .collecting(ApdCollector)
-                    .execute(tuple)
+                QueryMetrics.query(conn, name, query, tuple, ApdCollector)
                     .map(res -> res.value())
                     .compose(
                         apdResp -> {
@@ -711,15 +752,25 @@ public class ApdServiceImpl implements ApdService {
     Collector<Row, ?, List<JsonObject>> collector =
         Collectors.mapping(row -> row.toJson(), Collectors.toList());
 
-    Future<List<JsonObject>> apdDetails =
-        pool.withConnection(
-            conn ->
-                conn.preparedQuery(SQL_GET_APD_URL_STATUS)
-                    .collecting(collector)
-                    .execute(Tuple.of(apdUrl))
-                    .map(res -> res.value()));
+    JsonObject timings = new JsonObject();
 
-    Future<Map<String, JsonObject>> userAndOwnerDetails = getUserDetails(List.of(userId, ownerId));
+    Future<List<JsonObject>> apdDetails =
+        StageTimings.time(
+            APD_LOOKUP,
+            timings,
+            () ->
+                pool.withConnection(
+                    conn ->
+                        QueryMetrics.query(
+                                conn,
+                                "SQL_GET_APD_URL_STATUS",
+                                SQL_GET_APD_URL_STATUS,
+                                Tuple.of(apdUrl),
+                                collector)
+                            .map(res -> res.value())));
+
+    Future<Map<String, JsonObject>> userAndOwnerDetails =
+        StageTimings.time(USER_LOOKUP, timings, () -> getUserDetails(List.of(userId, ownerId)));
 
     Future<JsonObject> authAccessToken =
         apdDetails.compose(
@@ -735,8 +786,13 @@ public class ApdServiceImpl implements ApdService {
               }
 
               Promise<JsonObject> promise = Promise.promise();
-              tokenService.getAuthServerToken(apdUrl, promise);
-              return promise.future();
+              return StageTimings.time(
+                  APD_AUTH_TOKEN,
+                  timings,
+                  () -> {
+                    tokenService.getAuthServerToken(apdUrl, promise);
+                    return promise.future();
+                  });
             });
 
     Future<JsonObject> apdResponse =
@@ -765,8 +821,10 @@ public class ApdServiceImpl implements ApdService {
                    * ComposeException and add a message to the detail in case the APD was in an inactive
                    * state.
                    */
-                  return apdWebClient
-                      .callVerifyApdEndpoint(apdUrl, token, apdRequest)
+                  return StageTimings.time(
+                          APD_CALL,
+                          timings,
+                          () -> apdWebClient.callVerifyApdEndpoint(apdUrl, token, apdRequest))
                       .recover(
                           webClientErr -> {
                             if (webClientErr instanceof ComposeException) {
@@ -816,7 +874,8 @@ public class ApdServiceImpl implements ApdService {
                 result
                     .put(CREATE_TOKEN_URL, rsUrl)
                     .put(CREATE_TOKEN_CAT_ID, itemId)
-                    .put(CREATE_TOKEN_STATUS, CREATE_TOKEN_SUCCESS);
+                    .put(CREATE_TOKEN_STATUS, CREATE_TOKEN_SUCCESS)
+                    .put(STAGE_TIMINGS, timings);
 
                 handler.handle(Future.succeededFuture(result));
                 return;
@@ -829,7 +888,8 @@ public class ApdServiceImpl implements ApdService {
                     .put(CREATE_TOKEN_URL, apdUrl)
                     .put(CREATE_TOKEN_SESSIONID, response.getString(APD_RESP_SESSIONID))
                     .put(CREATE_TOKEN_LINK, response.getString(APD_RESP_LINK, apdUrl))
-                    .put(CREATE_TOKEN_STATUS, CREATE_TOKEN_APD_INTERAC);
+                    .put(CREATE_TOKEN_STATUS, CREATE_TOKEN_APD_INTERAC)
+                    .put(STAGE_TIMINGS, timings);
 
                 handler.handle(Future.succeededFuture(result));
                 return;
@@ -23,6 +23,11 @@ import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgPool;
 import io.vertx.serviceproxy.ServiceBinder;
 import io.vertx.sqlclient.PoolOptions;
+import iudx.aaa.server.apiserver.util.DependencyMetrics;
+import iudx.aaa.server.apiserver.util.LocalServiceRegistry;
+import iudx.aaa.server.apiserver.util.ReadReplicaPool;
+import iudx.aaa.server.apiserver.util.ServiceMessageCodec;
+import iudx.aaa.server.apiserver.util.SharedPgPool;
 import iudx.aaa.server.registration.RegistrationService;
 import iudx.aaa.server.token.TokenService;
 import java.util.Map;
@@ -115,7 +120,9 @@ public class ApdVerticle extends AbstractVerticle {
     }
 
     /* Create the client pool */
-    pool = PgPool.pool(vertx, connectOptions, poolOptions);
+    pool = SharedPgPool.pool(vertx, connectOptions, poolOptions, config(), "apd");
+    PgPool readPool =
+        ReadReplicaPool.pool(vertx, pool, connectOptions, poolOptions, config(), "apd");
 
     /* Create the APD web client */
     webClientOptions =
@@ -125,13 +132,24 @@ public class ApdVerticle extends AbstractVerticle {
             .setTrustAll(true)
             .setFollowRedirects(false);
     webClient = WebClient.create(vertx, webClientOptions);
+    DependencyMetrics.instrument(
+        webClient, DependencyMetrics.APD, webClientOptions.getMaxPoolSize());
     apdWebClient = new ApdWebClient(webClient, apdWebCliConfig);
 
-    registrationService = RegistrationService.createProxy(vertx, REGISTRATION_SERVICE_ADDRESS);
-    tokenService = TokenService.createProxy(vertx, TOKEN_SERVICE_ADDRESS);
-    apdService = new ApdServiceImpl(pool, apdWebClient, registrationService, tokenService);
-    binder = new ServiceBinder(vertx);
+    registrationService =
+        LocalServiceRegistry.lookup(
+            vertx,
+            RegistrationService.class,
+            REGISTRATION_SERVICE_ADDRESS,
+            RegistrationService::createProxy);
+    tokenService =
+        LocalServiceRegistry.lookup(
+            vertx, TokenService.class, TOKEN_SERVICE_ADDRESS, TokenService::createProxy);
+    apdService =
+        new ApdServiceImpl(pool, readPool, apdWebClient, registrationService, tokenService);
+    binder = ServiceMessageCodec.binder(vertx);
     consumer = binder.setAddress(APD_SERVICE_ADDRESS).register(ApdService.class, apdService);
+    LocalServiceRegistry.register(vertx, APD_SERVICE_ADDRESS, apdService);
 
     LOGGER.debug("Info : {} : Started", LOGGER.getName());
   }
@@ -139,5 +157,6 @@ public class ApdVerticle extends AbstractVerticle {
   @Override
   public void stop() {
     binder.unregister(consumer);
+    LocalServiceRegistry.unregister(vertx, APD_SERVICE_ADDRESS, apdService);
   }
 }
@@ -1,6 +1,7 @@
 package iudx.aaa.server.apiserver;
 
 import static iudx.aaa.server.apiserver.util.Constants.*;
+import static iudx.aaa.server.apiserver.util.Urn.URN_INVALID_INPUT;
 
 import com.nimbusds.jose.jwk.ECKey;
 import io.vertx.core.AbstractVerticle;
@@ -19,6 +20,7 @@ import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.handler.CorsHandler;
 import io.vertx.ext.web.handler.TimeoutHandler;
+import io.vertx.ext.web.openapi.Operation;
 import io.vertx.ext.web.openapi.RouterBuilder;
 import io.vertx.ext.web.openapi.RouterBuilderOptions;
 import io.vertx.pgclient.PgConnectOptions;
@@ -27,11 +29,20 @@ import io.vertx.sqlclient.PoolOptions;
 import iudx.aaa.server.admin.AdminService;
 import iudx.aaa.server.apd.ApdService;
 import iudx.aaa.server.apiserver.Response.ResponseBuilder;
+import iudx.aaa.server.apiserver.util.AdmissionControlHandler;
+import iudx.aaa.server.apiserver.util.AuditExportHandler;
 import iudx.aaa.server.apiserver.util.ClientAuthentication;
+import iudx.aaa.server.apiserver.util.Deadline;
 import iudx.aaa.server.apiserver.util.DelegationIdAuthorization;
 import iudx.aaa.server.apiserver.util.FailureHandler;
 import iudx.aaa.server.apiserver.util.FetchRoles;
+import iudx.aaa.server.apiserver.util.LocalServiceRegistry;
 import iudx.aaa.server.apiserver.util.OIDCAuthentication;
+import iudx.aaa.server.apiserver.util.RateLimitHandler;
+import iudx.aaa.server.apiserver.util.ReadReplicaPool;
+import iudx.aaa.server.apiserver.util.RouteMetricsHandler;
+import iudx.aaa.server.apiserver.util.SharedPgPool;
+import iudx.aaa.server.apiserver.util.StageTimings;
 import iudx.aaa.server.auditing.AuditingService;
 import iudx.aaa.server.policy.PolicyService;
 import iudx.aaa.server.registration.RegistrationService;
@@ -42,6 +53,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -144,7 +156,9 @@ public class ApiServerVerticle extends AbstractVerticle {
       poolOptions = new PoolOptions().setMaxSize(poolSize);
     }
 
-    PgPool pgPool = PgPool.pool(vertx, connectOptions, poolOptions);
+    PgPool pgPool = SharedPgPool.pool(vertx, connectOptions, poolOptions, config(), "apiserver");
+    PgPool readPool =
+        ReadReplicaPool.pool(vertx, pgPool, connectOptions, poolOptions, config(), "apiserver");
 
     Set<String> allowedHeaders = new HashSet<>();
     allowedHeaders.add(HEADER_ACCEPT);
@@ -159,6 +173,7 @@ public class ApiServerVerticle extends AbstractVerticle {
     allowedHeaders.add(HEADER_DELEGATION_ID);
     allowedHeaders.add(HEADER_EMAIL);
     allowedHeaders.add(HEADER_ROLE);
+    allowedHeaders.add(StageTimings.HEADER_REQUEST_SERVER_TIMING);
 
     Set<HttpMethod> allowedMethods = new HashSet<>();
     allowedMethods.add(HttpMethod.GET);
@@ -171,11 +186,32 @@ public class ApiServerVerticle extends AbstractVerticle {
     /* Passing the full config to OIDC auth, as the config has all the required keycloak
      * options */
     OIDCAuthentication oidcFlow = new OIDCAuthentication(vertx, config());
-    FetchRoles fetchRoles = new FetchRoles(pgPool, config());
-    ClientAuthentication clientFlow = new ClientAuthentication(pgPool);
-    DelegationIdAuthorization delegationAuth = new DelegationIdAuthorization(pgPool);
+    FetchRoles fetchRoles = new FetchRoles(pgPool, readPool, config());
+    ClientAuthentication clientFlow = new ClientAuthentication(vertx, pgPool, readPool, config());
+    DelegationIdAuthorization delegationAuth = new DelegationIdAuthorization(pgPool, config());
     FailureHandler failureHandler = new FailureHandler();
 
+    /* Evict cached client credentials when a client secret is reset on any node */
+    vertx
+        .eventBus()
+        .<String>consumer(CLIENT_SECRET_RESET_ADDRESS, msg -> clientFlow.invalidate(msg.body()));
+    /* Register client IDs created on any node so that they are not rejected as unknown */
+    vertx
+        .eventBus()
+        .<String>consumer(CLIENT_CREATED_ADDRESS, msg -> clientFlow.addKnownClient(msg.body()));
+    /* Evict cached delegations when delegations are deleted or role statuses change */
+    vertx
+        .eventBus()
+        .<String>consumer(
+            DELEGATION_INVALIDATE_ADDRESS,
+            msg -> {
+              if (msg.body() == null) {
+                delegationAuth.invalidateAll();
+              } else {
+                delegationAuth.invalidate(UUID.fromString(msg.body()));
+              }
+            });
+
     RouterBuilder.create(vertx, "docs/openapi.yaml")
         .onFailure(Throwable::printStackTrace)
         .onSuccess(
@@ -188,12 +224,27 @@ public class ApiServerVerticle extends AbstractVerticle {
               routerBuilder.setOptions(factoryOptions);
               routerBuilder.securityHandler("authorization", oidcFlow);
 
+              /* Added before the handlers of each operation, so that a limited client does not
+               * reach client authentication and the DB */
+              JsonObject rateLimits = config().getJsonObject(RateLimitHandler.RATE_LIMITS);
+              if (rateLimits != null) {
+                RateLimitHandler rateLimiter = new RateLimitHandler(vertx, rateLimits);
+                for (Operation op : routerBuilder.operations()) {
+                  if (rateLimiter.limits(op.getOperationId())) {
+                    op.handler(rateLimiter);
+                  }
+                }
+              }
+
               // Post token create
               routerBuilder
                   .operation(CREATE_TOKEN)
-                  .handler(clientFlow)
-                  .handler(ctx -> fetchRoles.fetch(ctx, Roles.allRoles))
-                  .handler(delegationAuth)
+                  .handler(StageTimings.stage(StageTimings.CLIENT_AUTH, clientFlow))
+                  /* Roles from the primary, so that a revoked role cannot be used for a token */
+                  .handler(
+                      StageTimings.stage(
+                          StageTimings.FETCH_ROLES, ctx -> fetchRoles.fetch(ctx, Roles.allRoles)))
+                  .handler(StageTimings.stage(StageTimings.DELEGATION_AUTH, delegationAuth))
                   .handler(this::createTokenHandler)
                   .failureHandler(failureHandler);
 
@@ -247,7 +298,7 @@ public class ApiServerVerticle extends AbstractVerticle {
               // Get Provider registrations
               routerBuilder
                   .operation(GET_PVDR_REGISTRATION)
-                  .handler(ctx -> fetchRoles.fetch(ctx, Set.of(Roles.ADMIN)))
+                  .handler(ctx -> fetchRoles.fetchForRead(ctx, Set.of(Roles.ADMIN)))
                   .handler(this::adminGetProviderRegHandler)
                   .failureHandler(failureHandler);
 
@@ -263,7 +314,7 @@ public class ApiServerVerticle extends AbstractVerticle {
                   .operation(GET_DELEGATIONS)
                   .handler(
                       ctx ->
-                          fetchRoles.fetch(
+                          fetchRoles.fetchForRead(
                               ctx, Set.of(Roles.CONSUMER, Roles.PROVIDER, Roles.DELEGATE)))
                   .handler(this::listDelegationsHandler)
                   .failureHandler(failureHandler);
@@ -286,7 +337,7 @@ public class ApiServerVerticle extends AbstractVerticle {
               routerBuilder
                   .operation(GET_DELEGATE_EMAILS)
                   .handler(clientFlow)
-                  .handler(ctx -> fetchRoles.fetch(ctx, Set.of(Roles.TRUSTEE)))
+                  .handler(ctx -> fetchRoles.fetchForRead(ctx, Set.of(Roles.TRUSTEE)))
                   .handler(this::getDelegateEmailsHandler)
                   .failureHandler(failureHandler);
 
@@ -307,7 +358,7 @@ public class ApiServerVerticle extends AbstractVerticle {
               // List APDs
               routerBuilder
                   .operation(LIST_APD)
-                  .handler(ctx -> fetchRoles.fetch(ctx, Roles.allRoles))
+                  .handler(ctx -> fetchRoles.fetchForRead(ctx, Roles.allRoles))
                   .handler(this::listApdHandler)
                   .failureHandler(failureHandler);
 
@@ -322,17 +373,55 @@ public class ApiServerVerticle extends AbstractVerticle {
               routerBuilder
                   .operation(SEARCH_USER)
                   .handler(clientFlow)
-                  .handler(ctx -> fetchRoles.fetch(ctx, Set.of(Roles.TRUSTEE)))
+                  .handler(ctx -> fetchRoles.fetchForRead(ctx, Set.of(Roles.TRUSTEE)))
                   .handler(this::searchUserHandler)
                   .failureHandler(failureHandler);
 
+              // Export audit records as NDJSON
+              routerBuilder
+                  .operation(EXPORT_AUDIT)
+                  .handler(ctx -> fetchRoles.fetch(ctx, Set.of(Roles.COS_ADMIN)))
+                  .handler(new AuditExportHandler(vertx))
+                  .failureHandler(failureHandler);
+
               // Get PublicKey
               routerBuilder.operation(GET_CERT).handler(this::pubCertHandler);
               // Get PublicKey in JWKS format
               routerBuilder.operation(GET_JWKS).handler(this::retrievePublicKey);
 
-              /* TimeoutHandler needs to be added as rootHandler */
-              routerBuilder.rootHandler(TimeoutHandler.create(serverTimeout));
+              /* Added first so that request latency includes the other root handlers */
+              routerBuilder.rootHandler(new RouteMetricsHandler(config()));
+
+              /* Rejects excess requests right away instead of letting them time out */
+              JsonObject admissionControl =
+                  config().getJsonObject(AdmissionControlHandler.ADMISSION_CONTROL);
+              if (admissionControl != null) {
+                routerBuilder.rootHandler(
+                    new AdmissionControlHandler(
+                        vertx, admissionControl, routerBuilder.operations()));
+              }
+
+              /* TimeoutHandler needs to be added as rootHandler. Audit exports stream for as long
+               * as the export takes, so they are not timed out */
+              TimeoutHandler timeoutHandler = TimeoutHandler.create(serverTimeout);
+              routerBuilder.rootHandler(
+                  ctx -> {
+                    if (EXPORT_AUDIT_ROUTE.equals(ctx.normalizedPath())) {
+                      ctx.next();
+                    } else {
+                      timeoutHandler.handle(ctx);
+                    }
+                  });
+              /* The deadline of the request is carried to the service calls, queries and outbound
+               * requests made for it. It is started after the timeout, so that the response times
+               * out before the work for it is given up */
+              routerBuilder.rootHandler(
+                  ctx -> {
+                    if (!EXPORT_AUDIT_ROUTE.equals(ctx.normalizedPath())) {
+                      Deadline.start(serverTimeout);
+                    }
+                    ctx.next();
+                  });
 
               // Router configuration- CORS, methods and headers
               routerBuilder.rootHandler(
@@ -371,6 +460,8 @@ public class ApiServerVerticle extends AbstractVerticle {
                   .handler(
                       routingContext -> {
                         HttpServerResponse response = routingContext.response();
+                        RouteMetricsHandler.setUrnType(
+                            routingContext, URN_INVALID_INPUT.toString());
                         response
                             .putHeader(HEADER_CONTENT_TYPE, MIME_APPLICATION_JSON)
                             .setStatusCode(404)
@@ -404,13 +495,33 @@ public class ApiServerVerticle extends AbstractVerticle {
                       });
 
               /* Get a handler for the Service Discovery interface. */
-              policyService = PolicyService.createProxy(vertx, POLICY_SERVICE_ADDRESS);
+              policyService =
+                  LocalServiceRegistry.lookup(
+                      vertx,
+                      PolicyService.class,
+                      POLICY_SERVICE_ADDRESS,
+                      PolicyService::createProxy);
               registrationService =
-                  RegistrationService.createProxy(vertx, REGISTRATION_SERVICE_ADDRESS);
-              tokenService = TokenService.createProxy(vertx, TOKEN_SERVICE_ADDRESS);
-              adminService = AdminService.createProxy(vertx, ADMIN_SERVICE_ADDRESS);
-              auditingService = AuditingService.createProxy(vertx, AUDITING_SERVICE_ADDRESS);
-              apdService = ApdService.createProxy(vertx, APD_SERVICE_ADDRESS);
+                  LocalServiceRegistry.lookup(
+                      vertx,
+                      RegistrationService.class,
+                      REGISTRATION_SERVICE_ADDRESS,
+                      RegistrationService::createProxy);
+              tokenService =
+                  LocalServiceRegistry.lookup(
+                      vertx, TokenService.class, TOKEN_SERVICE_ADDRESS, TokenService::createProxy);
+              adminService =
+                  LocalServiceRegistry.lookup(
+                      vertx, AdminService.class, ADMIN_SERVICE_ADDRESS, AdminService::createProxy);
+              auditingService =
+                  LocalServiceRegistry.lookup(
+                      vertx,
+                      AuditingService.class,
+                      AUDITING_SERVICE_ADDRESS,
+                      AuditingService::createProxy);
+              apdService =
+                  LocalServiceRegistry.lookup(
+                      vertx, ApdService.class, APD_SERVICE_ADDRESS, ApdService::createProxy);
             });
   }
 
@@ -420,6 +531,7 @@ public class ApiServerVerticle extends AbstractVerticle {
    * @param context which is RoutingContext
    */
   private void createTokenHandler(RoutingContext context) {
+    StageTimings.endStage(context);
 
     /* Mapping request body to Object */
     JsonObject tokenRequestJson = context.body().asJsonObject();
@@ -435,14 +547,33 @@ public class ApiServerVerticle extends AbstractVerticle {
         handler -> {
           if (handler.succeeded()) {
             JsonObject result = handler.result();
+            addServerTiming(context, StageTimings.take(result));
             Future.future(future -> handleAuditLogs(context, result));
-            processResponse(context.response(), result);
+            processResponse(context, result);
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            addServerTiming(context, new JsonObject());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
 
+  /**
+   * Add the timings of the stages of the request as a <em>Server-Timing</em> header, if the client
+   * asked for them.
+   *
+   * @param context
+   * @param serviceTimings timings of the stages run in the services
+   */
+  private void addServerTiming(RoutingContext context, JsonObject serviceTimings) {
+    if (!context.request().headers().contains(StageTimings.HEADER_REQUEST_SERVER_TIMING)) {
+      return;
+    }
+    JsonObject timings = StageTimings.requestTimings(context).copy().mergeIn(serviceTimings);
+    context
+        .response()
+        .putHeader(StageTimings.HEADER_SERVER_TIMING, StageTimings.serverTimingHeader(timings));
+  }
+
   /**
    * Handle the Token Introspection.
    *
@@ -456,9 +587,9 @@ public class ApiServerVerticle extends AbstractVerticle {
         introspectToken,
         handler -> {
           if (handler.succeeded()) {
-            processResponse(context.response(), handler.result());
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -482,9 +613,9 @@ public class ApiServerVerticle extends AbstractVerticle {
           if (handler.succeeded()) {
             JsonObject result = handler.result();
             Future.future(future -> handleAuditLogs(context, result));
-            processResponse(context.response(), handler.result());
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -506,9 +637,9 @@ public class ApiServerVerticle extends AbstractVerticle {
           if (handler.succeeded()) {
             JsonObject result = handler.result();
             Future.future(future -> handleAuditLogs(context, result));
-            processResponse(context.response(), handler.result());
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -525,9 +656,9 @@ public class ApiServerVerticle extends AbstractVerticle {
         user,
         handler -> {
           if (handler.succeeded()) {
-            processResponse(context.response(), handler.result());
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -546,12 +677,14 @@ public class ApiServerVerticle extends AbstractVerticle {
         request,
         user,
         handler -> {
+          /* Secret may have been changed even if the request failed later, hence always evict */
+          vertx.eventBus().publish(CLIENT_SECRET_RESET_ADDRESS, request.getClientId());
           if (handler.succeeded()) {
             JsonObject result = handler.result();
             Future.future(future -> handleAuditLogs(context, result));
-            processResponse(context.response(), handler.result());
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -565,9 +698,9 @@ public class ApiServerVerticle extends AbstractVerticle {
     registrationService.listResourceServer(
         handler -> {
           if (handler.succeeded()) {
-            processResponse(context.response(), handler.result());
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -587,9 +720,9 @@ public class ApiServerVerticle extends AbstractVerticle {
         user,
         handler -> {
           if (handler.succeeded()) {
-            processResponse(context.response(), handler.result());
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -620,9 +753,9 @@ public class ApiServerVerticle extends AbstractVerticle {
         user,
         handler -> {
           if (handler.succeeded()) {
-            processResponse(context.response(), handler.result());
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -642,12 +775,14 @@ public class ApiServerVerticle extends AbstractVerticle {
         request,
         user,
         handler -> {
+          /* Delegations of providers whose roles changed status are no longer valid */
+          vertx.eventBus().publish(DELEGATION_INVALIDATE_ADDRESS, null);
           if (handler.succeeded()) {
             JsonObject result = handler.result();
             Future.future(future -> handleAuditLogs(context, result));
-            processResponse(context.response(), handler.result());
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -665,9 +800,9 @@ public class ApiServerVerticle extends AbstractVerticle {
         user,
         handler -> {
           if (handler.succeeded()) {
-            processResponse(context.response(), handler.result());
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -685,12 +820,14 @@ public class ApiServerVerticle extends AbstractVerticle {
         request,
         user,
         handler -> {
+          request.forEach(
+              deleg -> vertx.eventBus().publish(DELEGATION_INVALIDATE_ADDRESS, deleg.getId()));
           if (handler.succeeded()) {
             JsonObject result = handler.result();
             Future.future(future -> handleAuditLogs(context, result));
-            processResponse(context.response(), handler.result());
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -715,9 +852,9 @@ public class ApiServerVerticle extends AbstractVerticle {
         delegatedRsUrl,
         handler -> {
           if (handler.succeeded()) {
-            processResponse(context.response(), handler.result());
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -741,9 +878,9 @@ public class ApiServerVerticle extends AbstractVerticle {
           if (handler.succeeded()) {
             JsonObject result = handler.result();
             Future.future(future -> handleAuditLogs(context, result));
-            processResponse(context.response(), handler.result());
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -766,9 +903,9 @@ public class ApiServerVerticle extends AbstractVerticle {
           if (handler.succeeded()) {
             JsonObject result = handler.result();
             Future.future(future -> handleAuditLogs(context, result));
-            processResponse(context.response(), handler.result());
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -786,9 +923,9 @@ public class ApiServerVerticle extends AbstractVerticle {
         user,
         handler -> {
           if (handler.succeeded()) {
-            processResponse(context.response(), handler.result());
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -812,9 +949,9 @@ public class ApiServerVerticle extends AbstractVerticle {
           if (handler.succeeded()) {
             JsonObject result = handler.result();
             Future.future(future -> handleAuditLogs(context, result));
-            processResponse(context.response(), handler.result());
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -832,9 +969,14 @@ public class ApiServerVerticle extends AbstractVerticle {
         user,
         handler -> {
           if (handler.succeeded()) {
-            processResponse(context.response(), handler.result());
+            JsonObject result = handler.result();
+            if (result.getInteger(STATUS, 400) == 201) {
+              String clientId = result.getJsonObject(RESULTS).getString(CLIENT_ID);
+              vertx.eventBus().publish(CLIENT_CREATED_ADDRESS, clientId);
+            }
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -877,9 +1019,9 @@ public class ApiServerVerticle extends AbstractVerticle {
         resourceServerUrl,
         handler -> {
           if (handler.succeeded()) {
-            processResponse(context.response(), handler.result());
+            processResponse(context, handler.result());
           } else {
-            processResponse(context.response(), handler.cause().getLocalizedMessage());
+            processResponse(context, handler.cause().getLocalizedMessage());
           }
         });
   }
@@ -907,10 +1049,10 @@ public class ApiServerVerticle extends AbstractVerticle {
             .end(new JsonObject().put(CERTIFICATE, certKeyString).encode());
 
       } else {
-        processResponse(context.response(), KS_PARSE_ERROR);
+        processResponse(context, KS_PARSE_ERROR);
       }
     } catch (Exception e) {
-      processResponse(context.response(), KS_PARSE_ERROR);
+      processResponse(context, KS_PARSE_ERROR);
     }
   }
   /**
@@ -933,20 +1075,22 @@ public class ApiServerVerticle extends AbstractVerticle {
             .end(new JsonObject().put("keys", result).encode());
       }
     } catch (Exception e) {
-      processResponse(context.response(), KS_PARSE_ERROR);
+      processResponse(context, KS_PARSE_ERROR);
     }
   }
 
   /**
    * HTTP Response Wrapper
    *
-   * @param response
+   * @param context
    * @param msg JsonObject
    * @return context response
    */
-  private Future<Void> processResponse(HttpServerResponse response, JsonObject msg) {
+  private Future<Void> processResponse(RoutingContext context, JsonObject msg) {
+    HttpServerResponse response = context.response();
     int status = msg.getInteger(STATUS, 400);
     msg.remove(STATUS);
+    RouteMetricsHandler.setUrnType(context, msg.getString(TYPE));
 
     /* In case of a timeout, the response may already be sent */
     if (response.ended()) {
@@ -959,8 +1103,10 @@ public class ApiServerVerticle extends AbstractVerticle {
     return response.setStatusCode(status).end(msg.toString());
   }
 
-  private Future<Void> processResponse(HttpServerResponse response, String msg) {
+  private Future<Void> processResponse(RoutingContext context, String msg) {
+    HttpServerResponse response = context.response();
     Response rs = new ResponseBuilder().title(INTERNAL_SVR_ERR).detail(msg).build();
+    RouteMetricsHandler.setUrnType(context, rs.getType());
     response.putHeader(HEADER_CONTENT_TYPE, MIME_APPLICATION_JSON);
     response.putHeader(HEADER_X_CONTENT_TYPE_OPTIONS, X_CONTENT_TYPE_OPTIONS_NOSNIFF);
     return response.setStatusCode(500).end(rs.toJsonString());
@@ -995,17 +1141,20 @@ public class ApiServerVerticle extends AbstractVerticle {
     auditLog.put(METHOD, request.method().toString());
     auditLog.put(USER_ID, userId);
 
-    auditingService.executeWriteQuery(
-        auditLog,
-        handler -> {
-          if (handler.succeeded()) {
-            LOGGER.info("{}; {}", SUCC_AUDIT_UPDATE, handler.result());
-            promise.complete();
-          } else {
-            LOGGER.error("{}; {}", ERR_AUDIT_UPDATE, handler.cause().getLocalizedMessage());
-            promise.complete();
-          }
-        });
+    /* The audit log is not part of the response, so it is not bound by the request deadline */
+    Deadline.detach(
+        () ->
+            auditingService.executeWriteQuery(
+                auditLog,
+                handler -> {
+                  if (handler.succeeded()) {
+                    LOGGER.info("{}; {}", SUCC_AUDIT_UPDATE, handler.result());
+                    promise.complete();
+                  } else {
+                    LOGGER.error("{}; {}", ERR_AUDIT_UPDATE, handler.cause().getLocalizedMessage());
+                    promise.complete();
+                  }
+                }));
 
     return promise.future();
   }
@@ -1,41 +1,57 @@
 package iudx.aaa.server.apiserver;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import io.vertx.codegen.annotations.DataObject;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import iudx.aaa.server.apiserver.util.Constants;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
-/** User object. */
-@DataObject(generateConverter = true)
-public class User {
+/**
+ * User object. A user is immutable once built, use {@link UserBuilder} to create a modified copy.
+ *
+ * <p>The resource servers of each role are held as sets, so checking if a user has a role for a
+ * resource server does not depend on the number of servers. Resource server URLs are interned, as
+ * the same few URLs appear in the roles of every user.
+ */
+@DataObject
+public final class User {
 
-  Map<String, String> name = new HashMap<String, String>();
+  private static final Interner<String> URLS = Interners.newWeakInterner();
 
-  UUID userId;
-  List<Roles> roles; // roles is list of approved roles
-  Map<String, List<String>> rolesToRsMapping;
+  private final Map<String, String> name;
+  private final UUID userId;
+  private final List<Roles> roles; // roles is list of approved roles
+  private final Map<Roles, Set<String>> rolesToRsMapping;
 
   public User(UserBuilder builder) {
-    this.name.putAll(builder.name);
+    this.name = Collections.unmodifiableMap(new HashMap<String, String>(builder.name));
     this.userId = builder.userId;
-    this.roles = builder.roles;
-    this.rolesToRsMapping = new HashMap<String, List<String>>(builder.rolesToRsMapping);
+    this.roles = List.copyOf(builder.roles);
+    this.rolesToRsMapping = Collections.unmodifiableMap(new EnumMap<>(builder.rolesToRsMapping));
   }
 
   public User(JsonObject json) {
-    UserConverter.fromJson(json, this);
+    this(UserBuilder.fromJson(json));
   }
 
   public JsonObject toJson() {
-    JsonObject obj = new JsonObject();
-    UserConverter.toJson(this, obj);
-    return obj;
+    return new JsonObject()
+        .put("name", new JsonObject(new LinkedHashMap<String, Object>(name)))
+        .put("roles", new JsonArray(roles.stream().map(Roles::name).collect(Collectors.toList())))
+        .put("rolesToRsMapping", new JsonObject(new LinkedHashMap<>(getRolesToRsMapping())))
+        .put("userId", userId.toString());
   }
 
   /**
@@ -46,51 +62,76 @@ public class User {
    */
   public JsonObject toJsonResponse() {
     JsonObject obj = this.toJson();
-    @SuppressWarnings("unchecked")
-    List<String> roles = obj.getJsonArray("roles").getList();
-    roles.replaceAll(String::toLowerCase);
-    obj.put("roles", roles);
+    obj.put("roles", new JsonArray(roles.stream().map(User::roleKey).collect(Collectors.toList())));
     return obj;
   }
 
-  public List<String> getResServersForRole(Roles role) {
-    return rolesToRsMapping.getOrDefault(role.toString().toLowerCase(), new ArrayList<String>());
+  /**
+   * Get the resource servers for which the user has a role.
+   *
+   * @param role the role
+   * @return unmodifiable set of resource server URLs, empty if the user does not have the role
+   */
+  public Set<String> getResServersForRole(Roles role) {
+    return rolesToRsMapping.getOrDefault(role, Set.of());
   }
 
-  public Map<String, String> getName() {
-    return name;
+  /**
+   * Check if the user has a role for a resource server.
+   *
+   * @param role the role
+   * @param resServerUrl the resource server URL
+   * @return true if the user has the role for the resource server
+   */
+  public boolean hasRoleForResServer(Roles role, String resServerUrl) {
+    return getResServersForRole(role).contains(resServerUrl);
   }
 
-  public void setName(Map<String, String> name) {
-    this.name = name;
+  public Map<String, String> getName() {
+    return name;
   }
 
   public String getUserId() {
     return userId.toString();
   }
 
-  public void setUserId(String userId) {
-    this.userId = UUID.fromString(userId);
+  public UUID getUserUuid() {
+    return userId;
   }
 
+  /**
+   * Get the approved roles of the user.
+   *
+   * @return unmodifiable list of roles
+   */
   public List<Roles> getRoles() {
-    return new ArrayList<Roles>(roles);
+    return roles;
   }
 
-  public void setRoles(List<Roles> roles) {
-    this.roles = new ArrayList<Roles>(roles);
+  /**
+   * Get the resource servers of each role.
+   *
+   * @return unmodifiable map of role to resource server URLs
+   */
+  public Map<Roles, Set<String>> getResServersByRole() {
+    return rolesToRsMapping;
   }
 
+  /**
+   * Get the resource servers of each role, keyed by the lowercase role name. The map is a copy and
+   * may be modified.
+   *
+   * @return map of lowercase role name to resource server URLs
+   */
   public Map<String, JsonArray> getRolesToRsMapping() {
-    return rolesToRsMapping.entrySet().stream()
-        .collect(Collectors.toMap(i -> i.getKey().toLowerCase(), i -> new JsonArray(i.getValue())));
+    Map<String, JsonArray> mapping = new HashMap<String, JsonArray>();
+    rolesToRsMapping.forEach(
+        (role, servers) -> mapping.put(roleKey(role), new JsonArray(List.copyOf(servers))));
+    return mapping;
   }
 
-  @SuppressWarnings("unchecked")
-  public void setRolesToRsMapping(Map<String, JsonArray> rolesToRsMapping) {
-    this.rolesToRsMapping =
-        rolesToRsMapping.entrySet().stream()
-            .collect(Collectors.toMap(i -> i.getKey().toLowerCase(), i -> i.getValue().getList()));
+  private static String roleKey(Roles role) {
+    return role.name().toLowerCase();
   }
 
   public static class UserBuilder {
@@ -98,9 +139,70 @@ public class User {
 
     private UUID userId = UUID.fromString(Constants.NIL_UUID);
 
-    private List<Roles> roles = new ArrayList<Roles>();
+    private List<Roles> roles = List.of();
+
+    private Map<Roles, Set<String>> rolesToRsMapping = new EnumMap<>(Roles.class);
+
+    public UserBuilder() {}
+
+    /**
+     * Create a builder initialized with an existing user, to build a modified copy of it.
+     *
+     * @param user the user
+     */
+    public UserBuilder(User user) {
+      this.name.putAll(user.name);
+      this.userId = user.userId;
+      this.roles = user.roles;
+      this.rolesToRsMapping.putAll(user.rolesToRsMapping);
+    }
+
+    private static UserBuilder fromJson(JsonObject json) {
+      UserBuilder builder = new UserBuilder();
+
+      JsonObject name = json.getJsonObject("name");
+      if (name != null) {
+        name.forEach(
+            entry -> {
+              if (entry.getValue() instanceof String) {
+                builder.name.put(entry.getKey(), (String) entry.getValue());
+              }
+            });
+      }
+
+      String userId = json.getString("userId");
+      if (userId != null) {
+        builder.userId(userId);
+      }
+
+      JsonArray roles = json.getJsonArray("roles");
+      if (roles != null) {
+        builder.roles(
+            roles.stream()
+                .map(role -> Roles.valueOf(((String) role).toUpperCase()))
+                .collect(Collectors.toList()));
+      }
 
-    private Map<String, List<String>> rolesToRsMapping = new HashMap<String, List<String>>();
+      JsonObject mapping = json.getJsonObject("rolesToRsMapping");
+      if (mapping != null) {
+        mapping.forEach(
+            entry -> {
+              if (entry.getValue() instanceof JsonArray) {
+                builder.rolesToRsMapping.put(
+                    Roles.valueOf(entry.getKey().toUpperCase()),
+                    internAll(((JsonArray) entry.getValue()).getList()));
+              }
+            });
+      }
+      return builder;
+    }
+
+    private static Set<String> internAll(Collection<?> servers) {
+      /* Insertion order is kept so that the JSON form lists servers in the order given */
+      Set<String> interned = new LinkedHashSet<String>();
+      servers.forEach(server -> interned.add(URLS.intern((String) server)));
+      return Collections.unmodifiableSet(interned);
+    }
 
     public UserBuilder name(String firstName, String lastName) {
       this.name.put("firstName", firstName);
@@ -108,6 +210,11 @@ public class User {
       return this;
     }
 
+    public UserBuilder name(Map<String, String> name) {
+      this.name = new HashMap<String, String>(name);
+      return this;
+    }
+
     public UserBuilder userId(String userId) {
       this.userId = UUID.fromString(userId);
       return this;
@@ -123,12 +230,29 @@ public class User {
       return this;
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Set the resource servers of each role. Replaces any previously set.
+     *
+     * @param rolesToRsMapping map of role name (in any case) to resource server URLs
+     * @return the builder
+     */
     public UserBuilder rolesToRsMapping(Map<String, JsonArray> rolesToRsMapping) {
-      this.rolesToRsMapping =
-          rolesToRsMapping.entrySet().stream()
-              .collect(
-                  Collectors.toMap(i -> i.getKey().toLowerCase(), i -> i.getValue().getList()));
+      this.rolesToRsMapping = new EnumMap<>(Roles.class);
+      rolesToRsMapping.forEach(
+          (role, servers) ->
+              resServersForRole(Roles.valueOf(role.toUpperCase()), servers.getList()));
+      return this;
+    }
+
+    /**
+     * Set the resource servers of a role.
+     *
+     * @param role the role
+     * @param servers the resource server URLs
+     * @return the builder
+     */
+    public UserBuilder resServersForRole(Roles role, Collection<String> servers) {
+      this.rolesToRsMapping.put(role, internAll(servers));
       return this;
     }
 
@@ -0,0 +1,250 @@
+package iudx.aaa.server.apiserver.util;
+
+import static iudx.aaa.server.apiserver.util.Constants.CREATE_TOKEN;
+import static iudx.aaa.server.apiserver.util.Constants.HEADER_CONTENT_TYPE;
+import static iudx.aaa.server.apiserver.util.Constants.HEADER_RETRY_AFTER;
+import static iudx.aaa.server.apiserver.util.Constants.JSON_OVERLOADED;
+import static iudx.aaa.server.apiserver.util.Constants.MIME_APPLICATION_JSON;
+import static iudx.aaa.server.apiserver.util.Constants.TIP_TOKEN;
+import static iudx.aaa.server.apiserver.util.Urn.URN_MISSING_INFO;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.openapi.Operation;
+import io.vertx.micrometer.backends.BackendRegistries;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Rejects requests with 503 and <em>Retry-After</em> when the node is overloaded, instead of
+ * letting them wait until they time out. Configured with <em>admissionControl</em> in the API
+ * server config:
+ *
+ * <ul>
+ *   <li><em>maxInFlight</em>, the most requests in progress on the node, 1024 if not set
+ *   <li><em>minInFlight</em>, the least the limit is lowered to under overload, 32 if not set
+ *   <li><em>maxEventLoopLagMs</em>, the event loop lag above which the node is overloaded, 100 ms
+ *       if not set
+ *   <li><em>maxDbPending</em>, the requests waiting for a Postgres connection above which the node
+ *       is overloaded, 50 if not set
+ *   <li><em>lowPriorityShare</em>, the share of the limit open to operations that are not
+ *       prioritized, 0.75 if not set
+ *   <li><em>priorityOperations</em>, the OpenAPI operation IDs prioritized, token creation and
+ *       introspection if not set
+ *   <li><em>retryAfterSeconds</em>, the <em>Retry-After</em> of rejected requests, 1 if not set
+ * </ul>
+ *
+ * <p>The limit on requests in progress adapts to load. Every 100 ms, the node is overloaded if the
+ * lag of an event loop, as reported by {@link EventLoopMonitor}, or the requests waiting for a
+ * Postgres connection, as reported by {@link SharedPgPool}, are above their maximum. The limit is
+ * then lowered by a tenth, else raised by a fiftieth of <em>maxInFlight</em>. While the node is
+ * overloaded, only prioritized operations are admitted. Other operations are admitted up to their
+ * share of the limit, so that the rest is kept for prioritized ones.
+ *
+ * <p>The limit and the count are shared by the instances of the API server verticle on the node.
+ * The count and limit are reported as <em>aaa.admission.inflight</em> and
+ * <em>aaa.admission.limit</em>, and rejected requests are counted in
+ * <em>aaa.admission.rejected</em>, tagged with the operation and the reason, <em>overload</em> or
+ * <em>limit</em>.
+ */
+public class AdmissionControlHandler implements Handler<RoutingContext> {
+
+  private static final Logger LOGGER = LogManager.getLogger(AdmissionControlHandler.class);
+
+  public static final String ADMISSION_CONTROL = "admissionControl";
+  public static final String MAX_IN_FLIGHT = "maxInFlight";
+  public static final String MIN_IN_FLIGHT = "minInFlight";
+  public static final String MAX_EVENT_LOOP_LAG_MS = "maxEventLoopLagMs";
+  public static final String MAX_DB_PENDING = "maxDbPending";
+  public static final String LOW_PRIORITY_SHARE = "lowPriorityShare";
+  public static final String PRIORITY_OPERATIONS = "priorityOperations";
+  public static final String RETRY_AFTER_SECONDS = "retryAfterSeconds";
+
+  public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+  public static final int DEFAULT_MIN_IN_FLIGHT = 32;
+  public static final long DEFAULT_MAX_EVENT_LOOP_LAG_MS = 100;
+  public static final int DEFAULT_MAX_DB_PENDING = 50;
+  public static final double DEFAULT_LOW_PRIORITY_SHARE = 0.75;
+  public static final List<String> DEFAULT_PRIORITY_OPERATIONS = List.of(CREATE_TOKEN, TIP_TOKEN);
+  public static final int DEFAULT_RETRY_AFTER_SECONDS = 1;
+
+  public static final String REASON_OVERLOAD = "overload";
+  public static final String REASON_LIMIT = "limit";
+
+  private static final String STATE_MAP_NAME = "iudx.aaa.admission";
+  private static final String STATE_KEY = "state";
+  private static final String OTHER_OPERATION = "other";
+  private static final long ADJUST_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final double DECREASE = 0.9;
+
+  private final MeterRegistry registry;
+  private final State state;
+  private final Map<String, String> operations = new HashMap<String, String>();
+  private final Set<String> priorityOperations;
+  private final int maxInFlight;
+  private final int minInFlight;
+  private final int increase;
+  private final double maxLagMs;
+  private final int maxDbPending;
+  private final double lowPriorityShare;
+  private final String retryAfter;
+  private final Map<String, Counter> rejected = new ConcurrentHashMap<String, Counter>();
+
+  /**
+   * Create the handler.
+   *
+   * @param vertx the Vert.x instance
+   * @param config the <em>admissionControl</em> config, may be empty
+   * @param routes the operations of the router, used to find the operation of a request
+   */
+  public AdmissionControlHandler(Vertx vertx, JsonObject config, List<Operation> routes) {
+    this.registry =
+        Objects.requireNonNullElse(BackendRegistries.getDefaultNow(), Metrics.globalRegistry);
+    this.maxInFlight = config.getInteger(MAX_IN_FLIGHT, DEFAULT_MAX_IN_FLIGHT);
+    this.minInFlight =
+        Math.min(maxInFlight, config.getInteger(MIN_IN_FLIGHT, DEFAULT_MIN_IN_FLIGHT));
+    this.increase = Math.max(1, maxInFlight / 50);
+    this.maxLagMs = config.getLong(MAX_EVENT_LOOP_LAG_MS, DEFAULT_MAX_EVENT_LOOP_LAG_MS);
+    this.maxDbPending = config.getInteger(MAX_DB_PENDING, DEFAULT_MAX_DB_PENDING);
+    this.lowPriorityShare = config.getDouble(LOW_PRIORITY_SHARE, DEFAULT_LOW_PRIORITY_SHARE);
+    this.retryAfter =
+        Integer.toString(config.getInteger(RETRY_AFTER_SECONDS, DEFAULT_RETRY_AFTER_SECONDS));
+
+    JsonArray priority = config.getJsonArray(PRIORITY_OPERATIONS);
+    this.priorityOperations =
+        priority == null
+            ? Set.copyOf(DEFAULT_PRIORITY_OPERATIONS)
+            : priority.stream().map(Object::toString).collect(Collectors.toSet());
+    for (Operation op : routes) {
+      operations.put(op.getHttpMethod().name() + ' ' + op.getOpenAPIPath(), op.getOperationId());
+    }
+
+    this.state =
+        (State)
+            vertx
+                .sharedData()
+                .<String, State>getLocalMap(STATE_MAP_NAME)
+                .computeIfAbsent(STATE_KEY, key -> new State(maxInFlight, registry));
+    LOGGER.info(
+        "Admission control enabled, max in-flight {}, prioritized {}",
+        maxInFlight,
+        priorityOperations);
+  }
+
+  @Override
+  public void handle(RoutingContext ctx) {
+    adjust();
+
+    String operation =
+        operations.getOrDefault(
+            ctx.request().method().name() + ' ' + ctx.normalizedPath(), OTHER_OPERATION);
+    boolean prioritized = priorityOperations.contains(operation);
+    int inFlight = state.inFlight.get();
+
+    if (!prioritized && state.overloaded) {
+      reject(ctx, operation, REASON_OVERLOAD);
+      return;
+    }
+    int limit = prioritized ? state.limit : (int) (state.limit * lowPriorityShare);
+    if (inFlight >= limit) {
+      reject(ctx, operation, REASON_LIMIT);
+      return;
+    }
+
+    state.inFlight.incrementAndGet();
+    ctx.addEndHandler(res -> state.inFlight.decrementAndGet());
+    ctx.next();
+  }
+
+  /* Update the limit from the load signals, at most once per interval across the node */
+  private void adjust() {
+    long now = System.nanoTime();
+    long last = state.lastAdjust.get();
+    if (now - last < ADJUST_INTERVAL_NANOS || !state.lastAdjust.compareAndSet(last, now)) {
+      return;
+    }
+
+    double lagMs =
+        registry.find(EventLoopMonitor.METRIC_LAG).timeGauges().stream()
+            .mapToDouble(gauge -> gauge.value(TimeUnit.MILLISECONDS))
+            .max()
+            .orElse(0);
+    double dbPending =
+        registry.find(SharedPgPool.METRIC_PENDING).gauges().stream()
+            .mapToDouble(Gauge::value)
+            .sum();
+    boolean overloaded = lagMs > maxLagMs || dbPending > maxDbPending;
+
+    int limit = state.limit;
+    int adjusted =
+        overloaded
+            ? Math.max(minInFlight, (int) (limit * DECREASE))
+            : Math.min(maxInFlight, limit + increase);
+    if (overloaded != state.overloaded) {
+      LOGGER.warn(
+          "Admission control {} : eventLoopLagMs={} dbPending={} inFlight={} limit={}",
+          overloaded ? "shedding load" : "recovered",
+          Math.round(lagMs),
+          Math.round(dbPending),
+          state.inFlight.get(),
+          adjusted);
+    }
+    state.limit = adjusted;
+    state.overloaded = overloaded;
+  }
+
+  private void reject(RoutingContext ctx, String operation, String reason) {
+    rejected
+        .computeIfAbsent(
+            operation + ' ' + reason,
+            key ->
+                Counter.builder("aaa.admission.rejected")
+                    .description("Requests rejected by admission control")
+                    .tag("operation", operation)
+                    .tag("reason", reason)
+                    .register(registry))
+        .increment();
+    RouteMetricsHandler.setUrnType(ctx, URN_MISSING_INFO.toString());
+    ctx.response()
+        .setStatusCode(503)
+        .putHeader(HEADER_RETRY_AFTER, retryAfter)
+        .putHeader(HEADER_CONTENT_TYPE, MIME_APPLICATION_JSON)
+        .end(JSON_OVERLOADED);
+  }
+
+  /** Admission state of the node, shared by the verticle instances. */
+  private static final class State implements Shareable {
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong lastAdjust = new AtomicLong(System.nanoTime());
+    private volatile int limit;
+    private volatile boolean overloaded;
+
+    private State(int limit, MeterRegistry registry) {
+      this.limit = limit;
+      Gauge.builder("aaa.admission.inflight", inFlight, AtomicInteger::get)
+          .description("Requests in progress counted by admission control")
+          .register(registry);
+      Gauge.builder("aaa.admission.limit", this, state -> state.limit)
+          .description("Current limit on requests in progress")
+          .register(registry);
+    }
+  }
+}
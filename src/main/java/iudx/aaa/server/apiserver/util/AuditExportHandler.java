@@ -0,0 +1,173 @@
+package iudx.aaa.server.apiserver.util;
+
+import static iudx.aaa.server.apiserver.util.Constants.ERR_TITLE_BAD_REQUEST;
+import static iudx.aaa.server.apiserver.util.Constants.HEADER_CONTENT_TYPE;
+import static iudx.aaa.server.apiserver.util.Constants.HEADER_X_CONTENT_TYPE_OPTIONS;
+import static iudx.aaa.server.apiserver.util.Constants.INTERNAL_SVR_ERR;
+import static iudx.aaa.server.apiserver.util.Constants.MIME_APPLICATION_JSON;
+import static iudx.aaa.server.apiserver.util.Constants.MIME_APPLICATION_NDJSON;
+import static iudx.aaa.server.apiserver.util.Constants.X_CONTENT_TYPE_OPTIONS_NOSNIFF;
+import static iudx.aaa.server.apiserver.util.Urn.URN_INVALID_INPUT;
+import static iudx.aaa.server.auditing.util.Constants.DETAIL;
+import static iudx.aaa.server.auditing.util.Constants.ENDPOINT;
+import static iudx.aaa.server.auditing.util.Constants.END_TIME;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_ADDRESS;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_CANCELLED;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_EVENT;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_EVENT_DATA;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_EVENT_END;
+import static iudx.aaa.server.auditing.util.Constants.METHOD;
+import static iudx.aaa.server.auditing.util.Constants.START_TIME;
+import static iudx.aaa.server.auditing.util.Constants.STREAM_ADDRESS;
+import static iudx.aaa.server.auditing.util.Constants.USER_ID;
+
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import iudx.aaa.server.apiserver.Response;
+import iudx.aaa.server.apiserver.Response.ResponseBuilder;
+import java.util.List;
+import java.util.UUID;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Streams an export of audit records to the HTTP response as NDJSON. The export is requested from
+ * the auditing verticle, which sends the records in chunks to a per-request event bus address. A
+ * chunk is acknowledged only once the response can take more data, so a slow client slows down the
+ * database cursor instead of records accumulating in memory. If the client goes away, the chunk
+ * waiting to be acknowledged is failed, so that the export closes its cursor at once instead of
+ * waiting for the acknowledgement to time out.
+ */
+public class AuditExportHandler implements Handler<RoutingContext> {
+
+  private static final Logger LOGGER = LogManager.getLogger(AuditExportHandler.class);
+  private static final List<String> FILTERS =
+      List.of(USER_ID, START_TIME, END_TIME, METHOD, ENDPOINT);
+
+  private final Vertx vertx;
+
+  public AuditExportHandler(Vertx vertx) {
+    this.vertx = vertx;
+  }
+
+  @Override
+  public void handle(RoutingContext context) {
+    MultiMap params = context.queryParams();
+    JsonObject request = new JsonObject();
+    FILTERS.stream()
+        .filter(params::contains)
+        .forEach(filter -> request.put(filter, params.get(filter)));
+
+    String streamAddress = EXPORT_ADDRESS + "." + UUID.randomUUID();
+    request.put(STREAM_ADDRESS, streamAddress);
+
+    HttpServerResponse response = context.response();
+    MessageConsumer<Buffer> consumer = vertx.eventBus().consumer(streamAddress);
+    ExportReceiver receiver = new ExportReceiver(response, consumer);
+    consumer.handler(receiver);
+    response.closeHandler(v -> receiver.cancel());
+    response.exceptionHandler(err -> receiver.cancel());
+
+    /* Wait for the consumer to be registered across the cluster before starting the export */
+    Promise<Void> registration = Promise.promise();
+    consumer.completionHandler(registration);
+
+    registration
+        .future()
+        .compose(registered -> vertx.eventBus().request(EXPORT_ADDRESS, request))
+        .onFailure(
+            err -> {
+              consumer.unregister();
+              if (response.ended()) {
+                return;
+              }
+              response.putHeader(HEADER_CONTENT_TYPE, MIME_APPLICATION_JSON);
+              response.putHeader(HEADER_X_CONTENT_TYPE_OPTIONS, X_CONTENT_TYPE_OPTIONS_NOSNIFF);
+
+              if (err instanceof ReplyException && ((ReplyException) err).failureCode() == 400) {
+                String detail = new JsonObject(err.getMessage()).getString(DETAIL);
+                Response rs =
+                    new ResponseBuilder()
+                        .type(URN_INVALID_INPUT)
+                        .title(ERR_TITLE_BAD_REQUEST)
+                        .detail(detail)
+                        .build();
+                RouteMetricsHandler.setUrnType(context, rs.getType());
+                response.setStatusCode(400).end(rs.toJsonString());
+                return;
+              }
+
+              LOGGER.error("Fail: Audit export failed : {}", err.getMessage());
+              Response rs =
+                  new ResponseBuilder().title(INTERNAL_SVR_ERR).detail(INTERNAL_SVR_ERR).build();
+              RouteMetricsHandler.setUrnType(context, rs.getType());
+              response.setStatusCode(500).end(rs.toJsonString());
+            });
+  }
+
+  /** Writes the chunks of one export to its response. */
+  private static final class ExportReceiver implements Handler<Message<Buffer>> {
+    private final HttpServerResponse response;
+    private final MessageConsumer<Buffer> consumer;
+    /* Chunk written to the response but not yet acknowledged, waiting for the response to drain */
+    private Message<Buffer> pendingAck;
+
+    private ExportReceiver(HttpServerResponse response, MessageConsumer<Buffer> consumer) {
+      this.response = response;
+      this.consumer = consumer;
+    }
+
+    @Override
+    public void handle(Message<Buffer> msg) {
+      String event = msg.headers().get(EXPORT_EVENT);
+
+      if (!response.headWritten()) {
+        response
+            .setChunked(true)
+            .putHeader(HEADER_CONTENT_TYPE, MIME_APPLICATION_NDJSON)
+            .putHeader(HEADER_X_CONTENT_TYPE_OPTIONS, X_CONTENT_TYPE_OPTIONS_NOSNIFF);
+      }
+
+      if (EXPORT_EVENT_DATA.equals(event)) {
+        response.write(msg.body());
+        /* Acknowledge the chunk once the response has room for the next one */
+        if (response.writeQueueFull()) {
+          pendingAck = msg;
+          response.drainHandler(
+              v -> {
+                pendingAck = null;
+                msg.reply(null);
+              });
+        } else {
+          msg.reply(null);
+        }
+      } else if (EXPORT_EVENT_END.equals(event)) {
+        consumer.unregister();
+        response.end();
+      } else {
+        /* The response has started, so the client can only be told of the error by not ending it */
+        LOGGER.error("Fail: Audit export failed while streaming");
+        consumer.unregister();
+        response.reset();
+      }
+    }
+
+    /* The client has gone away, stop the export */
+    private void cancel() {
+      consumer.unregister();
+      if (pendingAck != null) {
+        pendingAck.fail(499, EXPORT_CANCELLED);
+        pendingAck = null;
+      }
+    }
+  }
+}
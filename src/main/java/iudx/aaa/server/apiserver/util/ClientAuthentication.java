@@ -1,11 +1,22 @@
 package iudx.aaa.server.apiserver.util;
 
+import static iudx.aaa.server.apiserver.util.Constants.CLIENT_BLOOM_FILTER_FPP;
+import static iudx.aaa.server.apiserver.util.Constants.CLIENT_BLOOM_FILTER_MIN_INSERTIONS;
+import static iudx.aaa.server.apiserver.util.Constants.CLIENT_BLOOM_FILTER_REFRESH_MS;
+import static iudx.aaa.server.apiserver.util.Constants.CLIENT_CACHE_MAX_SIZE;
+import static iudx.aaa.server.apiserver.util.Constants.CLIENT_CACHE_TTL_SEC;
 import static iudx.aaa.server.apiserver.util.Constants.CLIENT_ID;
 import static iudx.aaa.server.apiserver.util.Constants.CLIENT_SECRET;
+import static iudx.aaa.server.apiserver.util.Constants.DEFAULT_CLIENT_CACHE_MAX_SIZE;
+import static iudx.aaa.server.apiserver.util.Constants.DEFAULT_CLIENT_CACHE_TTL_SEC;
+import static iudx.aaa.server.apiserver.util.Constants.DEFAULT_UNKNOWN_CLIENT_CACHE_TTL_SEC;
+import static iudx.aaa.server.apiserver.util.Constants.CLIENT_SECRET;
 import static iudx.aaa.server.apiserver.util.Constants.INTERNAL_SVR_ERR;
 import static iudx.aaa.server.apiserver.util.Constants.MISSING_TOKEN_CLIENT;
 import static iudx.aaa.server.apiserver.util.Constants.OBTAINED_USER_ID;
+import static iudx.aaa.server.apiserver.util.Constants.SQL_GET_ALL_CLIENT_IDS;
 import static iudx.aaa.server.apiserver.util.Constants.SQL_GET_DETAILS_BY_CLIENT_ID;
+import static iudx.aaa.server.apiserver.util.Constants.UNKNOWN_CLIENT_CACHE_TTL_SEC;
 import static iudx.aaa.server.apiserver.util.Urn.URN_INVALID_INPUT;
 import static iudx.aaa.server.apiserver.util.Urn.URN_MISSING_AUTH_TOKEN;
 import static iudx.aaa.server.token.Constants.INVALID_CLIENT_ID_SEC;
@@ -13,16 +24,31 @@ import static iudx.aaa.server.token.Constants.LOG_DB_ERROR;
 import static iudx.aaa.server.token.Constants.LOG_UNAUTHORIZED;
 import static iudx.aaa.server.token.Constants.LOG_USER_SECRET;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
 import io.vertx.sqlclient.Tuple;
 import iudx.aaa.server.apiserver.Response;
 import iudx.aaa.server.apiserver.Response.ResponseBuilder;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.logging.log4j.LogManager;
@@ -32,14 +58,182 @@ import org.apache.logging.log4j.Logger;
  * Handles client ID - client secret authentication, specifically for the get token API. Validates
  * that client ID exists and the corresponding client secret matches. If validation successful, add
  * user ID obtained from client ID lookup to the routing context.
+ *
+ * <p>Successfully validated client IDs are cached for a short TTL along with the hashed secret
+ * stored in the DB, so that repeated token requests from the same client do not hit the DB. A
+ * cache hit is only honoured if the presented secret matches the cached hash, otherwise the DB is
+ * consulted again. Entries are evicted using {@link #invalidate(String)} when a client secret is
+ * reset. A DB lookup that was in progress when an entry was evicted does not cache its result, as it
+ * may have read the secret from before the reset.
+ *
+ * <p>Client IDs that were not found in the DB are remembered for a short TTL, and requests with
+ * such client IDs are rejected without a DB lookup. If configured, a Bloom filter of all client IDs
+ * is periodically rebuilt from the DB. A client ID that is not in the filter may have been created
+ * on another node since the filter was built, so it is looked up on the primary instead of being
+ * rejected, and is added to the filter if found. Newly created client IDs should be added using
+ * {@link #addKnownClient(String)}, which also removes them from the negative cache.
  */
 public class ClientAuthentication implements Handler<RoutingContext> {
 
   private static final Logger LOGGER = LogManager.getLogger(ClientAuthentication.class);
   private PgPool pgPool;
+  private PgPool readPool;
+  private Cache<String, CachedClient> clientCache;
+  private Cache<String, Boolean> unknownClientCache;
+  /* Bumped on every eviction by invalidate, so that lookups started before it are not cached */
+  private final AtomicLong invalidations = new AtomicLong();
+
+  /* Bloom filter of all client IDs, null if not configured or not yet built */
+  private volatile BloomFilter<CharSequence> knownClients;
+  /* Client IDs added while the Bloom filter is being rebuilt, null if no rebuild is running */
+  private Set<String> addedDuringRebuild;
 
   public ClientAuthentication(PgPool pgPool) {
+    this(null, pgPool, new JsonObject());
+  }
+
+  /**
+   * Create client authentication handler. The config may contain:
+   *
+   * <ul>
+   *   <li><em>clientCredentialCacheTtlSeconds</em> and <em>clientCredentialCacheMaxSize</em> for
+   *       the cache of validated client credentials
+   *   <li><em>unknownClientCacheTtlSeconds</em> for the cache of client IDs not found in the DB
+   *   <li><em>clientIdBloomFilterRefreshMs</em> to enable the Bloom filter of client IDs, rebuilt
+   *       at the given interval
+   * </ul>
+   *
+   * @param vertx the Vert.x instance, used to schedule the Bloom filter rebuild. May be null if the
+   *     Bloom filter is not configured
+   * @param pgPool the Postgres pool
+   * @param config the API server config
+   */
+  public ClientAuthentication(Vertx vertx, PgPool pgPool, JsonObject config) {
+    this(vertx, pgPool, pgPool, config);
+  }
+
+  /**
+   * Create client authentication handler that builds the Bloom filter of client IDs from a read
+   * replica. Client credentials are always looked up on the primary, since a replica that is behind
+   * may still hold a secret that has been reset. A client ID missing from a filter built from a
+   * replica that is behind is looked up on the primary as any other client ID not in the filter.
+   *
+   * @param vertx the Vert.x instance, used to schedule the Bloom filter rebuild. May be null if the
+   *     Bloom filter is not configured
+   * @param pgPool the Postgres pool of the primary
+   * @param readPool the pool for read-only queries, see {@link ReadReplicaPool}
+   * @param config the API server config
+   */
+  public ClientAuthentication(Vertx vertx, PgPool pgPool, PgPool readPool, JsonObject config) {
     this.pgPool = pgPool;
+    this.readPool = readPool;
+
+    long cacheTtl = config.getLong(CLIENT_CACHE_TTL_SEC, DEFAULT_CLIENT_CACHE_TTL_SEC);
+    long cacheMaxSize = config.getLong(CLIENT_CACHE_MAX_SIZE, DEFAULT_CLIENT_CACHE_MAX_SIZE);
+    long unknownCacheTtl =
+        config.getLong(UNKNOWN_CLIENT_CACHE_TTL_SEC, DEFAULT_UNKNOWN_CLIENT_CACHE_TTL_SEC);
+
+    this.clientCache =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(cacheTtl, TimeUnit.SECONDS)
+            .maximumSize(cacheMaxSize)
+            .build();
+
+    this.unknownClientCache =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(unknownCacheTtl, TimeUnit.SECONDS)
+            .maximumSize(cacheMaxSize)
+            .build();
+
+    long bloomRefreshMs = config.getLong(CLIENT_BLOOM_FILTER_REFRESH_MS, 0L);
+    if (vertx != null && bloomRefreshMs > 0) {
+      rebuildKnownClients();
+      vertx.setPeriodic(bloomRefreshMs, id -> rebuildKnownClients());
+    }
+  }
+
+  /**
+   * Remove a client ID from the client credential cache. Called when the secret of the client is
+   * reset.
+   *
+   * @param clientId the client ID
+   */
+  public void invalidate(String clientId) {
+    if (clientId != null) {
+      invalidations.incrementAndGet();
+      clientCache.invalidate(clientId);
+    }
+  }
+
+  /**
+   * Register a newly created client ID, so that it is not rejected by the negative cache or the
+   * Bloom filter before the next rebuild.
+   *
+   * @param clientId the client ID
+   */
+  public void addKnownClient(String clientId) {
+    if (clientId == null) {
+      return;
+    }
+
+    unknownClientCache.invalidate(clientId);
+
+    BloomFilter<CharSequence> filter = knownClients;
+    if (filter != null) {
+      filter.put(clientId);
+    }
+    if (addedDuringRebuild != null) {
+      addedDuringRebuild.add(clientId);
+    }
+  }
+
+  /**
+   * Rebuild the Bloom filter of client IDs from the <em>user_clients</em> table. The old filter is
+   * kept in use until the new one is ready.
+   *
+   * @return a void Future
+   */
+  Future<Void> rebuildKnownClients() {
+    addedDuringRebuild = new HashSet<String>();
+
+    Collector<Row, ?, List<String>> clientIdCollector =
+        Collectors.mapping(row -> row.getUUID("client_id").toString(), Collectors.toList());
+
+    return readPool
+        .withConnection(
+            conn ->
+                QueryMetrics.query(
+                        conn, "SQL_GET_ALL_CLIENT_IDS", SQL_GET_ALL_CLIENT_IDS, clientIdCollector)
+                    .map(res -> res.value()))
+        .onSuccess(
+            clientIds -> {
+              BloomFilter<CharSequence> filter =
+                  BloomFilter.create(
+                      Funnels.stringFunnel(StandardCharsets.UTF_8),
+                      Math.max(clientIds.size() * 2, CLIENT_BLOOM_FILTER_MIN_INSERTIONS),
+                      CLIENT_BLOOM_FILTER_FPP);
+
+              clientIds.forEach(filter::put);
+              addedDuringRebuild.forEach(filter::put);
+
+              knownClients = filter;
+              LOGGER.debug("Info: Rebuilt client ID Bloom filter with {} IDs", clientIds.size());
+            })
+        .onFailure(err -> LOGGER.error("Fail: Could not rebuild client ID Bloom filter", err))
+        .onComplete(res -> addedDuringRebuild = null)
+        .mapEmpty();
+  }
+
+  /**
+   * Check if the client ID is not in the Bloom filter, in which case it either does not exist or
+   * was created after the filter was built.
+   *
+   * @param clientId the client ID
+   * @return true if the client ID is not in the filter
+   */
+  private boolean isNotInFilter(String clientId) {
+    BloomFilter<CharSequence> filter = knownClients;
+    return filter != null && !filter.mightContain(clientId);
   }
 
   @Override
@@ -58,17 +252,35 @@ public class ClientAuthentication implements Handler<RoutingContext> {
 
       if (clientId != null && !clientId.isBlank()) {
 
-        pgPool
-            .withConnection(
-                connection ->
-                    connection
-                        .preparedQuery(SQL_GET_DETAILS_BY_CLIENT_ID)
-                        .execute(Tuple.of(clientId))
-                        .map(
-                            rows ->
-                                rows.rowCount() > 0
-                                    ? rows.iterator().next().toJson()
-                                    : new JsonObject()))
+        if (unknownClientCache.getIfPresent(clientId) != null) {
+          LOGGER.error(LOG_UNAUTHORIZED + INVALID_CLIENT_ID_SEC);
+          Response rs =
+              new ResponseBuilder()
+                  .status(401)
+                  .type(URN_INVALID_INPUT)
+                  .title(INVALID_CLIENT_ID_SEC)
+                  .detail(INVALID_CLIENT_ID_SEC)
+                  .build();
+          routingContext.fail(new Throwable(rs.toJsonString()));
+          return;
+        }
+
+        CachedClient cached = clientCache.getIfPresent(clientId);
+        if (cached != null && clientSecret != null) {
+          byte[] requestSecretHashed = DigestUtils.sha512(clientSecret);
+
+          if (MessageDigest.isEqual(cached.secretHash, requestSecretHashed)) {
+            LOGGER.info("Info: client authenticated");
+            routingContext.put(OBTAINED_USER_ID, cached.userId).next();
+            return;
+          }
+          /* secret may have been reset elsewhere, fall through to the DB lookup */
+          clientCache.invalidate(clientId);
+        }
+
+        long lookupStartedAt = invalidations.get();
+        boolean mayBeNew = isNotInFilter(clientId);
+        getClientDetails(clientId)
             .onComplete(
                 dbHandler -> {
                   if (dbHandler.failed()) {
@@ -84,6 +296,7 @@ public class ClientAuthentication implements Handler<RoutingContext> {
                     return;
                   } else if (dbHandler.succeeded()) {
                     if (dbHandler.result().isEmpty()) {
+                      unknownClientCache.put(clientId, Boolean.TRUE);
                       Response rs =
                           new ResponseBuilder()
                               .status(401)
@@ -97,13 +310,17 @@ public class ClientAuthentication implements Handler<RoutingContext> {
                   }
 
                   JsonObject result = dbHandler.result();
+                  if (mayBeNew) {
+                    addKnownClient(clientId);
+                  }
                   String dbClientSecret = result.getString("client_secret");
 
                   /* Validating clientSecret hash - default value of `valid` is false */
                   boolean valid;
+                  byte[] dbSecretHashed;
                   try {
                     byte[] requestSecretHashed = DigestUtils.sha512(clientSecret);
-                    byte[] dbSecretHashed = Hex.decodeHex(dbClientSecret.toCharArray());
+                    dbSecretHashed = Hex.decodeHex(dbClientSecret.toCharArray());
 
                     valid = MessageDigest.isEqual(dbSecretHashed, requestSecretHashed);
                   } catch (Exception e) {
@@ -134,7 +351,13 @@ public class ClientAuthentication implements Handler<RoutingContext> {
 
                   LOGGER.info("Info: client authenticated");
 
-                  routingContext.put(OBTAINED_USER_ID, result.getString("user_id")).next();
+                  String userId = result.getString("user_id");
+                  clientCache.put(clientId, new CachedClient(userId, dbSecretHashed));
+                  /* The secret may have been reset while the lookup was in progress */
+                  if (invalidations.get() != lookupStartedAt) {
+                    clientCache.invalidate(clientId);
+                  }
+                  routingContext.put(OBTAINED_USER_ID, userId).next();
                 });
       } else {
         LOGGER.error("Fail: {}; {}", INVALID_CLIENT_ID_SEC, "null clientId/token");
@@ -159,4 +382,28 @@ public class ClientAuthentication implements Handler<RoutingContext> {
       routingContext.fail(new Throwable(rs.toJsonString()));
     }
   }
+
+  private Future<JsonObject> getClientDetails(String clientId) {
+    return pgPool.withConnection(
+        connection ->
+            QueryMetrics.query(
+                    connection,
+                    "SQL_GET_DETAILS_BY_CLIENT_ID",
+                    SQL_GET_DETAILS_BY_CLIENT_ID,
+                    Tuple.of(clientId))
+                .map(
+                    rows ->
+                        rows.rowCount() > 0 ? rows.iterator().next().toJson() : new JsonObject()));
+  }
+
+  /** Validated client credential held in the client cache. */
+  private static final class CachedClient {
+    private final String userId;
+    private final byte[] secretHash;
+
+    private CachedClient(String userId, byte[] secretHash) {
+      this.userId = userId;
+      this.secretHash = secretHash;
+    }
+  }
 }
@@ -20,6 +20,7 @@ public class Constants {
   public static final String HEADER_REFERER = "Referer";
   public static final String HEADER_ALLOW_ORIGIN = "Access-Control-Allow-Origin";
   public static final String HEADER_OPTIONS = "options";
+  public static final String HEADER_RETRY_AFTER = "Retry-After";
   public static final String BEARER = "Bearer";
   public static final String X_CONTENT_TYPE_OPTIONS_NOSNIFF = "nosniff";
 
@@ -47,6 +48,31 @@ public class Constants {
   public static final long DB_RECONNECT_INTERVAL_MS = 10000;
   public static final String SERVER_TIMEOUT_MS = "serverTimeoutMs";
   public static final String CORS_REGEX = "corsRegexString";
+  public static final String CLIENT_CACHE_TTL_SEC = "clientCredentialCacheTtlSeconds";
+  public static final String CLIENT_CACHE_MAX_SIZE = "clientCredentialCacheMaxSize";
+  public static final long DEFAULT_CLIENT_CACHE_TTL_SEC = 60;
+  public static final long DEFAULT_CLIENT_CACHE_MAX_SIZE = 10000;
+  public static final String UNKNOWN_CLIENT_CACHE_TTL_SEC = "unknownClientCacheTtlSeconds";
+  public static final long DEFAULT_UNKNOWN_CLIENT_CACHE_TTL_SEC = 30;
+  public static final String CLIENT_BLOOM_FILTER_REFRESH_MS = "clientIdBloomFilterRefreshMs";
+  public static final double CLIENT_BLOOM_FILTER_FPP = 0.01;
+  public static final int CLIENT_BLOOM_FILTER_MIN_INSERTIONS = 10000;
+  public static final String DELEGATION_CACHE_TTL_SEC = "delegationCacheTtlSeconds";
+  public static final String DELEGATION_NEGATIVE_CACHE_TTL_SEC =
+      "delegationNegativeCacheTtlSeconds";
+  public static final long DEFAULT_DELEGATION_CACHE_TTL_SEC = 60;
+  public static final long DEFAULT_DELEGATION_NEGATIVE_CACHE_TTL_SEC = 5;
+  public static final long DELEGATION_CACHE_MAX_SIZE = 10000;
+
+  /* Event bus address on which client IDs whose secrets were reset are published */
+  public static final String CLIENT_SECRET_RESET_ADDRESS = "iudx.aaa.client.secret.reset";
+  /* Event bus address on which newly created client IDs are published */
+  public static final String CLIENT_CREATED_ADDRESS = "iudx.aaa.client.created";
+  /*
+   * Event bus address on which deleted delegation IDs are published. A message with no body
+   * invalidates all cached delegations
+   */
+  public static final String DELEGATION_INVALIDATE_ADDRESS = "iudx.aaa.delegation.invalidate";
 
   // API Documentation endpoint
   public static final String ROUTE_STATIC_SPEC = "/apis/spec";
@@ -55,6 +81,7 @@ public class Constants {
   // Accept Headers and CORS
   public static final String MIME_APPLICATION_JSON = "application/json";
   public static final String MIME_TEXT_HTML = "text/html";
+  public static final String MIME_APPLICATION_NDJSON = "application/x-ndjson";
 
   public static final String NIL_UUID = "00000000-0000-0000-0000-000000000000";
 
@@ -80,7 +107,9 @@ public class Constants {
   public static final String GET_JWKS = "get-auth-v1-jwks";
   public static final String GET_DEFAULT_CLIENT_CREDS = "get-auth-v1-user-clientcredentials";
   public static final String SEARCH_USER = "get-auth-v1-user-search";
+  public static final String EXPORT_AUDIT = "get-auth-v1-admin-audit-export";
   public static final String TOKEN_ROUTE = "/auth/v1/token";
+  public static final String EXPORT_AUDIT_ROUTE = "/auth/v1/admin/audit/export";
 
   /* Query Params */
   public static final String QUERY_FILTER = "filter";
@@ -105,6 +134,10 @@ public class Constants {
   public static final String LOG_FAILED_DISCOVERY =
       "Fail: Unable to discover keycloak instance; {}";
   public static final String ERR_TIMEOUT = "Service unavailable";
+  public static final String ERR_OVERLOADED = "Server overloaded, retry later";
+  public static final String ERR_DEADLINE_EXCEEDED = "Request deadline exceeded";
+  public static final String ERR_TITLE_RATE_LIMITED = "Too many requests";
+  public static final String ERR_RATE_LIMITED = "Rate limit exceeded, retry later";
   public static final String ERR_TITLE_NO_SUCH_API = "No such API/method";
   public static final String ERR_DETAIL_NO_SUCH_API =
       "Refer to the " + ROUTE_DOC + " endpoint for documentation";
@@ -128,6 +161,24 @@ public class Constants {
           + ERR_TIMEOUT
           + "\"}";
 
+  public static final String JSON_OVERLOADED =
+      "{\"type\":\""
+          + URN_MISSING_INFO
+          + "\", \"title\":\""
+          + ERR_TIMEOUT
+          + "\", \"detail\":\""
+          + ERR_OVERLOADED
+          + "\"}";
+
+  public static final String JSON_RATE_LIMITED =
+      "{\"type\":\""
+          + URN_TOO_MANY_REQUESTS
+          + "\", \"title\":\""
+          + ERR_TITLE_RATE_LIMITED
+          + "\", \"detail\":\""
+          + ERR_RATE_LIMITED
+          + "\"}";
+
   public static final String JSON_NOT_FOUND =
       "{\"type\":\""
           + URN_INVALID_INPUT
@@ -153,6 +204,8 @@ public class Constants {
   public static final String KEYCLOAK_REALM = "keycloakRealm";
   public static final String KEYCLOAK_JWT_LEEWAY = "keycloakJwtLeeway";
   public static final String STATUS = "status";
+  public static final String TYPE = "type";
+  public static final String RESULTS = "results";
   public static final String SSL = "ssl";
   public static final String KS_ALIAS = "ES256";
   public static final String PUB_KEY = "publicKey";
@@ -201,6 +254,8 @@ public class Constants {
   public static final String SQL_GET_DETAILS_BY_CLIENT_ID =
       "SELECT user_id, client_secret FROM user_clients where client_id = $1::uuid";
 
+  public static final String SQL_GET_ALL_CLIENT_IDS = "SELECT client_id FROM user_clients";
+
   public static final String SQL_GET_DELEGATION_BY_USER_AND_DELEG_ID =
       "SELECT delegations.id AS \"delegationId\", role AS \"delegatedRole\""
           + ", roles.user_id AS \"delegatorUserId\""
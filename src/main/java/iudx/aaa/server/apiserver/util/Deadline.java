@@ -0,0 +1,220 @@
+package iudx.aaa.server.apiserver.util;
+
+import static iudx.aaa.server.apiserver.util.Constants.ERR_DEADLINE_EXCEEDED;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.micrometer.backends.BackendRegistries;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The deadline of the API request being handled, after which its response has timed out and the
+ * work done for it is wasted. The deadline is started by the API server when the request is
+ * received, with the same timeout as the response, and is kept on the Vert.x context of the
+ * request, so that it is seen by the callbacks of the work done for the request.
+ *
+ * <p>The deadline is carried to the services called by the request:
+ *
+ * <ul>
+ *   <li>requests sent on the event bus carry the remaining time in the <em>iudx-deadline-ms</em>
+ *       header, from which the receiving node sets the deadline of the context handling the
+ *       message, once {@link #install} is called. A message received after its deadline is failed
+ *       without being handled. Calls that are not part of the response, like audit logs, are made
+ *       with {@link #detach}, so that they are not given a deadline
+ *   <li>{@link LocalServiceRegistry} fails a service call after the deadline
+ *   <li>{@link DependencyMetrics} lowers the timeout of web client requests to the remaining time,
+ *       and does not call Keycloak after the deadline
+ *   <li>{@link SharedPgPool} does not use connections acquired after the deadline, and {@link
+ *       QueryMetrics} does not run queries after it and cancels queries still running at it
+ * </ul>
+ *
+ * <p>Work given up because its deadline has passed is counted in <em>aaa.deadline.exceeded</em>,
+ * tagged with where it was given up: <em>service</em>, <em>eventbus</em>, <em>http</em> or
+ * <em>db</em>.
+ */
+public final class Deadline {
+
+  public static final String HEADER = "iudx-deadline-ms";
+  public static final String METRIC_EXCEEDED = "aaa.deadline.exceeded";
+
+  /** Remaining time when there is no deadline. */
+  public static final long NONE = Long.MAX_VALUE;
+
+  public static final String SERVICE = "service";
+  public static final String EVENT_BUS = "eventbus";
+  public static final String HTTP = "http";
+  public static final String DB = "db";
+
+  private static final Object KEY = new Object();
+  private static final Map<String, Counter> EXCEEDED = new ConcurrentHashMap<String, Counter>();
+
+  private Deadline() {}
+
+  /**
+   * Carry deadlines across the event bus of a Vert.x instance. Must be called once for each
+   * instance.
+   *
+   * @param vertx the Vert.x instance
+   */
+  public static void install(Vertx vertx) {
+    vertx
+        .eventBus()
+        .addOutboundInterceptor(
+            dc -> {
+              long remaining = remainingNanos();
+              if (remaining != NONE && dc.send() && dc.message().replyAddress() != null) {
+                dc.message()
+                    .headers()
+                    .set(HEADER, Long.toString(TimeUnit.NANOSECONDS.toMillis(remaining)));
+              }
+              dc.next();
+            })
+        .addInboundInterceptor(
+            dc -> {
+              Message<?> msg = dc.message();
+              String header = msg.headers().get(HEADER);
+              if (header != null) {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(header));
+                if (remaining <= 0) {
+                  count(EVENT_BUS);
+                  msg.fail(503, ERR_DEADLINE_EXCEEDED);
+                  return;
+                }
+                set(System.nanoTime() + remaining);
+              }
+              dc.next();
+            });
+  }
+
+  /**
+   * Start the deadline of the request handled on the current context. An earlier deadline is kept.
+   *
+   * @param timeoutMs the time the request may take
+   */
+  public static void start(long timeoutMs) {
+    set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+  }
+
+  /**
+   * Run an action that is not part of the response to the request handled on the current context,
+   * e.g. a fire and forget audit log, without the deadline of the request. The action is run at
+   * once on a new duplicate of the context, so neither it nor the services it calls see the
+   * deadline.
+   *
+   * @param action the action
+   */
+  public static void detach(Runnable action) {
+    ContextInternal ctx = context();
+    if (ctx == null) {
+      action.run();
+      return;
+    }
+    ctx.duplicate().dispatch(action);
+  }
+
+  /**
+   * Get the time left until the deadline of the current context, rounded up.
+   *
+   * @return the remaining milliseconds, 0 or less if the deadline has passed, or {@link #NONE}
+   */
+  public static long remainingMs() {
+    long remaining = remainingNanos();
+    if (remaining == NONE) {
+      return NONE;
+    }
+    return remaining <= 0 ? 0 : (remaining + 999_999) / 1_000_000;
+  }
+
+  /**
+   * Check if the deadline of the current context has passed, counting the work given up if it has.
+   *
+   * @param stage where the work is given up
+   * @return true if the deadline has passed
+   */
+  public static boolean exceeded(String stage) {
+    if (remainingNanos() > 0) {
+      return false;
+    }
+    count(stage);
+    return true;
+  }
+
+  /**
+   * Get the failure of work whose deadline has passed.
+   *
+   * @param <T> the result type
+   * @return the failed future
+   */
+  public static <T> Future<T> failure() {
+    return Future.failedFuture(ERR_DEADLINE_EXCEEDED);
+  }
+
+  /**
+   * Run an action at the deadline of the current context, e.g. to cancel work in progress.
+   *
+   * @param stage where the work is given up
+   * @param action the action
+   * @return cancels the action, to be run when the work is done
+   */
+  public static Runnable onExpiry(String stage, Runnable action) {
+    long remaining = remainingMs();
+    Context ctx = Vertx.currentContext();
+    if (remaining == NONE || ctx == null) {
+      return () -> {};
+    }
+    Vertx vertx = ctx.owner();
+    long timer =
+        vertx.setTimer(
+            Math.max(1, remaining),
+            id -> {
+              count(stage);
+              action.run();
+            });
+    return () -> vertx.cancelTimer(timer);
+  }
+
+  private static long remainingNanos() {
+    ContextInternal ctx = context();
+    Long deadline = ctx == null ? null : (Long) ctx.localContextData().get(KEY);
+    return deadline == null ? NONE : deadline - System.nanoTime();
+  }
+
+  private static void set(long deadline) {
+    ContextInternal ctx = context();
+    if (ctx != null) {
+      ctx.localContextData()
+          .merge(KEY, deadline, (current, next) -> Math.min((Long) current, (Long) next));
+    }
+  }
+
+  /* Only a duplicated context belongs to a single request */
+  private static ContextInternal context() {
+    Context ctx = Vertx.currentContext();
+    if (ctx instanceof ContextInternal && ((ContextInternal) ctx).isDuplicate()) {
+      return (ContextInternal) ctx;
+    }
+    return null;
+  }
+
+  private static void count(String stage) {
+    EXCEEDED
+        .computeIfAbsent(
+            stage,
+            key ->
+                Counter.builder(METRIC_EXCEEDED)
+                    .description("Work given up because the deadline of its request passed")
+                    .tag("stage", key)
+                    .register(
+                        Objects.requireNonNullElse(
+                            BackendRegistries.getDefaultNow(), Metrics.globalRegistry)))
+        .increment();
+  }
+}
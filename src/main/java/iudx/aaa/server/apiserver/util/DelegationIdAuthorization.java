@@ -4,6 +4,8 @@ import static iudx.aaa.server.apiserver.util.Constants.*;
 import static iudx.aaa.server.apiserver.util.Urn.*;
 import static iudx.aaa.server.token.Constants.LOG_DB_ERROR;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
 import io.vertx.core.http.HttpServerRequest;
@@ -16,21 +18,78 @@ import iudx.aaa.server.apiserver.Response;
 import iudx.aaa.server.apiserver.Response.ResponseBuilder;
 import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
  * Validates the <em>delegationId</em> header based on the incoming user and puts all information
  * about the delegation as {@link DelegationInformation} object onto the {@link RoutingContext}.
+ *
+ * <p>Delegation lookups are cached by delegation ID and user ID. Invalid delegation IDs are cached
+ * for a shorter duration. Cached delegations are evicted using {@link #invalidate(UUID)} when a
+ * delegation is deleted and {@link #invalidateAll()} when role statuses change. A DB lookup that was
+ * in progress when delegations were evicted does not cache its result, as it may have read the
+ * delegation from before the change.
  */
 public class DelegationIdAuthorization implements Handler<RoutingContext> {
 
   private static final Logger LOGGER = LogManager.getLogger(DelegationIdAuthorization.class);
   private PgPool pgPool;
+  private Cache<DelegationKey, DelegationInformation> delegationCache;
+  private Cache<DelegationKey, Boolean> invalidDelegationCache;
+  /* Bumped on every eviction, so that lookups started before it are not cached */
+  private final AtomicLong invalidations = new AtomicLong();
 
   public DelegationIdAuthorization(PgPool pgPool) {
+    this(pgPool, new JsonObject());
+  }
+
+  /**
+   * Create delegation ID handler. The TTLs of the delegation caches may be set in the config using
+   * <em>delegationCacheTtlSeconds</em> and <em>delegationNegativeCacheTtlSeconds</em>.
+   *
+   * @param pgPool the Postgres pool
+   * @param config the API server config
+   */
+  public DelegationIdAuthorization(PgPool pgPool, JsonObject config) {
     this.pgPool = pgPool;
+
+    long ttl = config.getLong(DELEGATION_CACHE_TTL_SEC, DEFAULT_DELEGATION_CACHE_TTL_SEC);
+    long negativeTtl =
+        config.getLong(
+            DELEGATION_NEGATIVE_CACHE_TTL_SEC, DEFAULT_DELEGATION_NEGATIVE_CACHE_TTL_SEC);
+
+    this.delegationCache =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(ttl, TimeUnit.SECONDS)
+            .maximumSize(DELEGATION_CACHE_MAX_SIZE)
+            .build();
+    this.invalidDelegationCache =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(negativeTtl, TimeUnit.SECONDS)
+            .maximumSize(DELEGATION_CACHE_MAX_SIZE)
+            .build();
+  }
+
+  /**
+   * Remove a delegation from the cache. Called when the delegation is deleted.
+   *
+   * @param delegationId the delegation ID
+   */
+  public void invalidate(UUID delegationId) {
+    invalidations.incrementAndGet();
+    delegationCache.asMap().keySet().removeIf(key -> key.delegationId.equals(delegationId));
+  }
+
+  /** Remove all delegations from the cache. Called when the status of any role changes. */
+  public void invalidateAll() {
+    invalidations.incrementAndGet();
+    delegationCache.invalidateAll();
+    invalidDelegationCache.invalidateAll();
   }
 
   @Override
@@ -73,12 +132,37 @@ public class DelegationIdAuthorization implements Handler<RoutingContext> {
     }
 
     UUID delegationId = UUID.fromString(delegationIdStr);
+    DelegationKey key = new DelegationKey(delegationId, user.getUserId());
 
+    if (invalidDelegationCache.getIfPresent(key) != null) {
+      Response rs =
+          new ResponseBuilder()
+              .status(401)
+              .type(URN_INVALID_INPUT)
+              .title(ERR_DELEGATE)
+              .detail(ERR_DELEGATE)
+              .build();
+      routingContext.fail(new Throwable(rs.toJsonString()));
+      return;
+    }
+
+    DelegationInformation cached = delegationCache.getIfPresent(key);
+    if (cached != null) {
+      routingContext.put(DELEGATION_INFO, cached).next();
+      return;
+    }
+
+    long lookupStartedAt = invalidations.get();
     Tuple tuple = Tuple.of(delegationId, user.getUserId());
 
     pgPool
         .withConnection(
-            conn -> conn.preparedQuery(SQL_GET_DELEGATION_BY_USER_AND_DELEG_ID).execute(tuple))
+            conn ->
+                QueryMetrics.query(
+                    conn,
+                    "SQL_GET_DELEGATION_BY_USER_AND_DELEG_ID",
+                    SQL_GET_DELEGATION_BY_USER_AND_DELEG_ID,
+                    tuple))
         .onFailure(
             fail -> {
               LOGGER.error(LOG_DB_ERROR, fail.getLocalizedMessage());
@@ -93,6 +177,10 @@ public class DelegationIdAuthorization implements Handler<RoutingContext> {
         .onSuccess(
             rows -> {
               if (rows.rowCount() == 0) {
+                invalidDelegationCache.put(key, Boolean.TRUE);
+                if (invalidations.get() != lookupStartedAt) {
+                  invalidDelegationCache.invalidate(key);
+                }
                 Response rs =
                     new ResponseBuilder()
                         .status(401)
@@ -101,12 +189,46 @@ public class DelegationIdAuthorization implements Handler<RoutingContext> {
                         .detail(ERR_DELEGATE)
                         .build();
                 routingContext.fail(new Throwable(rs.toJsonString()));
+                return;
               }
 
               JsonObject data = rows.iterator().next().toJson();
               DelegationInformation delegInfo = new DelegationInformation(data);
 
+              delegationCache.put(key, delegInfo);
+              /* The delegation may have been deleted while the lookup was in progress */
+              if (invalidations.get() != lookupStartedAt) {
+                delegationCache.invalidate(key);
+              }
               routingContext.put(DELEGATION_INFO, delegInfo).next();
             });
   }
+
+  /** Key for the delegation caches. */
+  private static final class DelegationKey {
+    private final UUID delegationId;
+    private final String userId;
+
+    private DelegationKey(UUID delegationId, String userId) {
+      this.delegationId = delegationId;
+      this.userId = userId;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof DelegationKey)) {
+        return false;
+      }
+      DelegationKey other = (DelegationKey) obj;
+      return delegationId.equals(other.delegationId) && Objects.equals(userId, other.userId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(delegationId, userId);
+    }
+  }
 }
@@ -0,0 +1,316 @@
+package iudx.aaa.server.apiserver.util;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Scope;
+import io.vertx.core.Future;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.RequestOptions;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.impl.HttpContext;
+import io.vertx.ext.web.client.impl.WebClientInternal;
+import io.vertx.micrometer.backends.BackendRegistries;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of calls to the servers the AAA server depends on: Keycloak, the catalogue, APDs and
+ * resource servers. Each call is recorded in the <em>aaa.dependency.requests</em> timer, tagged
+ * with the dependency, the operation, the target host and the outcome, one of <em>success</em>,
+ * <em>client_error</em> and <em>server_error</em> by HTTP status, <em>timeout</em> or
+ * <em>failure</em>.
+ *
+ * <p>Calls made with a {@link WebClient} are recorded by adding an interceptor to the client using
+ * {@link #instrument}, with the path of the request as the operation. Other calls, like those of
+ * the Keycloak clients, are timed with {@link #time}, which also traces them as client spans since
+ * Vert.x does not see them.
+ *
+ * <p>The number of calls in progress to each target is reported as <em>aaa.dependency.inflight</em>
+ * and the number of connections the clients may open to a target of the dependency as
+ * <em>aaa.dependency.pool.max</em>, summed over the clients. A target whose in-flight calls are
+ * close to the pool size is saturated, and calls to it wait for a connection.
+ *
+ * <p>Each call is also recorded as a {@link FlightEvents#DEPENDENCY_CALL} flight recorder event.
+ *
+ * <p>Calls are made within the {@link Deadline} of the request they are made for. The timeout of a
+ * web client request is lowered to the time left, and a call is failed without being made if the
+ * deadline has passed.
+ *
+ * <p>Targets like APDs and resource servers come from the database and the catalogue. To bound the
+ * number of series, only the first {@link #MAX_TARGETS} hosts of a dependency are tagged by name,
+ * and the rest are tagged <em>other</em>.
+ */
+public final class DependencyMetrics {
+
+  public static final String METRIC_REQUESTS = "aaa.dependency.requests";
+  public static final String METRIC_INFLIGHT = "aaa.dependency.inflight";
+  public static final String METRIC_POOL_MAX = "aaa.dependency.pool.max";
+
+  public static final String KEYCLOAK = "keycloak";
+  public static final String CATALOGUE = "catalogue";
+  public static final String APD = "apd";
+  public static final String RESOURCE_SERVER = "resource_server";
+
+  public static final String SUCCESS = "success";
+  public static final String CLIENT_ERROR = "client_error";
+  public static final String SERVER_ERROR = "server_error";
+  public static final String TIMEOUT = "timeout";
+  public static final String FAILURE = "failure";
+
+  public static final int MAX_TARGETS = 50;
+  public static final String OTHER_TARGET = "other";
+
+  private static final String CALL_KEY = "dependencyMetricsCall";
+  private static final String DEADLINE_KEY = "dependencyMetricsDeadline";
+
+  private static final Map<String, Set<String>> TARGETS =
+      new ConcurrentHashMap<String, Set<String>>();
+  private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<String, Timer>();
+  private static final Map<String, AtomicInteger> IN_FLIGHT =
+      new ConcurrentHashMap<String, AtomicInteger>();
+  private static final Map<String, AtomicInteger> POOL_MAX =
+      new ConcurrentHashMap<String, AtomicInteger>();
+
+  private DependencyMetrics() {}
+
+  /**
+   * Record the calls made with a web client to a dependency.
+   *
+   * @param client the web client
+   * @param dependency the dependency
+   * @param maxPoolSize the maximum connections the client opens to each host
+   */
+  public static void instrument(WebClient client, String dependency, int maxPoolSize) {
+    addPool(dependency, maxPoolSize);
+    /* Mocked clients in tests do not support interceptors */
+    if (!(client instanceof WebClientInternal)) {
+      return;
+    }
+    ((WebClientInternal) client)
+        .addInterceptor(
+            ctx -> {
+              if (intercept(ctx, dependency)) {
+                ctx.next();
+              }
+            });
+  }
+
+  /**
+   * Add the connections a client may open to a host of a dependency to the pool size of the
+   * dependency.
+   *
+   * @param dependency the dependency
+   * @param maxPoolSize the maximum connections the client opens to each host
+   */
+  public static void addPool(String dependency, int maxPoolSize) {
+    POOL_MAX
+        .computeIfAbsent(
+            dependency,
+            dep -> {
+              AtomicInteger max = new AtomicInteger();
+              Gauge.builder(METRIC_POOL_MAX, max, AtomicInteger::get)
+                  .description("Connections the clients may open to a host of the dependency")
+                  .tag("dependency", dep)
+                  .register(registry());
+              return max;
+            })
+        .addAndGet(maxPoolSize);
+  }
+
+  /**
+   * Time a call to a dependency.
+   *
+   * @param <T> the result type
+   * @param dependency the dependency
+   * @param operation the operation, must be one of a fixed set
+   * @param target the host called
+   * @param call makes the call
+   * @return the result of the call
+   */
+  public static <T> Future<T> time(
+      String dependency, String operation, String target, Supplier<Future<T>> call) {
+    if (Deadline.exceeded(Deadline.HTTP)) {
+      return Deadline.failure();
+    }
+    Call started = new Call(dependency, operation, target);
+    Span span = Tracing.startSpan(dependency + ' ' + operation, SpanKind.CLIENT);
+    span.setAttribute("net.peer.name", target);
+    Future<T> result;
+    try (Scope scope = span.makeCurrent()) {
+      result = call.get();
+    } catch (RuntimeException e) {
+      result = Future.failedFuture(e);
+    }
+    return result.onComplete(
+        res -> {
+          started.end(res.succeeded() ? SUCCESS : outcome(res.cause()));
+          Tracing.endSpan(span, res.cause());
+        });
+  }
+
+  /**
+   * Get the host of a URL.
+   *
+   * @param url the URL, e.g. of Keycloak in the config
+   * @return the host, or the URL itself if it has none
+   */
+  public static String host(String url) {
+    try {
+      String host = URI.create(url).getHost();
+      return host == null ? url : host;
+    } catch (IllegalArgumentException e) {
+      return url;
+    }
+  }
+
+  /* Returns false if the request has been failed */
+  private static boolean intercept(HttpContext<?> ctx, String dependency) {
+    switch (ctx.phase()) {
+      case PREPARE_REQUEST:
+        /* Prepared when the request is sent, on the context of the work it is sent for */
+        long remaining = Deadline.remainingMs();
+        if (remaining != Deadline.NONE) {
+          if (Deadline.exceeded(Deadline.HTTP)) {
+            ctx.fail(Deadline.failure().cause());
+            return false;
+          }
+          ctx.set(DEADLINE_KEY, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(remaining));
+        }
+        break;
+      case CREATE_REQUEST:
+        Long deadline = ctx.get(DEADLINE_KEY);
+        if (deadline != null) {
+          RequestOptions options = ctx.requestOptions();
+          long remainingMs =
+              Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+          if (options.getTimeout() <= 0 || options.getTimeout() > remainingMs) {
+            options.setTimeout(remainingMs);
+          }
+        }
+        /* A redirect creates another request, which is part of the same call */
+        if (ctx.get(CALL_KEY) == null) {
+          String uri = ctx.requestOptions().getURI();
+          int query = uri.indexOf('?');
+          String path = query < 0 ? uri : uri.substring(0, query);
+          ctx.set(CALL_KEY, new Call(dependency, path, ctx.requestOptions().getHost()));
+        }
+        break;
+      case DISPATCH_RESPONSE:
+        end(ctx, outcome(ctx.response().statusCode()));
+        break;
+      case FAILURE:
+        /* The response may have failed a predicate, like expecting a 200 or JSON */
+        HttpClientResponse resp = ctx.clientResponse();
+        String outcome = resp == null ? outcome(ctx.failure()) : outcome(resp.statusCode());
+        end(ctx, SUCCESS.equals(outcome) ? FAILURE : outcome);
+        break;
+      default:
+        break;
+    }
+    return true;
+  }
+
+  private static void end(HttpContext<?> ctx, String outcome) {
+    Call call = ctx.get(CALL_KEY);
+    if (call != null) {
+      ctx.set(CALL_KEY, null);
+      call.end(outcome);
+    }
+  }
+
+  private static String outcome(int statusCode) {
+    if (statusCode >= 500) {
+      return SERVER_ERROR;
+    } else if (statusCode >= 400) {
+      return CLIENT_ERROR;
+    }
+    return SUCCESS;
+  }
+
+  private static String outcome(Throwable err) {
+    for (Throwable t = err; t != null; t = t.getCause()) {
+      if (t instanceof TimeoutException || t instanceof SocketTimeoutException) {
+        return TIMEOUT;
+      }
+    }
+    return FAILURE;
+  }
+
+  private static String target(String dependency, String host) {
+    String target = host == null ? OTHER_TARGET : host;
+    Set<String> known = TARGETS.computeIfAbsent(dependency, dep -> ConcurrentHashMap.newKeySet());
+    if (known.contains(target)) {
+      return target;
+    }
+    synchronized (known) {
+      if (known.size() < MAX_TARGETS) {
+        known.add(target);
+        return target;
+      }
+    }
+    return OTHER_TARGET;
+  }
+
+  private static MeterRegistry registry() {
+    return Objects.requireNonNullElse(BackendRegistries.getDefaultNow(), Metrics.globalRegistry);
+  }
+
+  /** A call in progress. */
+  private static final class Call {
+    private final String dependency;
+    private final String operation;
+    private final String target;
+    private final AtomicInteger inFlight;
+    private final long start = System.nanoTime();
+    private final FlightEvents.DependencyCallEvent event = FlightEvents.dependencyCall();
+
+    private Call(String dependency, String operation, String host) {
+      this.dependency = dependency;
+      this.operation = operation;
+      this.target = target(dependency, host);
+      this.inFlight =
+          IN_FLIGHT.computeIfAbsent(
+              dependency + ' ' + target,
+              key -> {
+                AtomicInteger count = new AtomicInteger();
+                Gauge.builder(METRIC_INFLIGHT, count, AtomicInteger::get)
+                    .description("Calls in progress to the dependency")
+                    .tag("dependency", dependency)
+                    .tag("target", target)
+                    .register(registry());
+                return count;
+              });
+      inFlight.incrementAndGet();
+    }
+
+    private void end(String outcome) {
+      inFlight.decrementAndGet();
+      TIMERS
+          .computeIfAbsent(
+              dependency + ' ' + operation + ' ' + target + ' ' + outcome,
+              key ->
+                  Timer.builder(METRIC_REQUESTS)
+                      .description("Latency of calls to the servers the AAA server depends on")
+                      .tag("dependency", dependency)
+                      .tag("operation", operation)
+                      .tag("target", target)
+                      .tag("outcome", outcome)
+                      .publishPercentileHistogram()
+                      .register(registry()))
+          .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      FlightEvents.dependencyCall(event, dependency, operation, target, outcome);
+    }
+  }
+}
@@ -0,0 +1,350 @@
+package iudx.aaa.server.apiserver.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.TimeGauge;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxException;
+import io.vertx.core.impl.VertxInternal;
+import io.vertx.core.impl.btc.BlockedThreadChecker;
+import io.vertx.core.impl.btc.BlockedThreadEvent;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Health of the Vert.x event loops, configured with <em>eventLoopMonitor</em> in the config:
+ *
+ * <ul>
+ *   <li><em>probeIntervalMs</em>, how often the lag and utilization are updated, 1000 ms if not set
+ *   <li><em>sampleIntervalMs</em>, how often the event loop threads are sampled for utilization,
+ *       100 ms if not set
+ *   <li><em>stackCapturePort</em>, the port of the stack capture endpoint. It is not started if not
+ *       set
+ *   <li><em>stackCaptureHost</em>, the host the endpoint listens on, <em>127.0.0.1</em> if not set
+ *   <li><em>maxCapturedStacks</em>, the number of stacks of blocked threads kept, 20 if not set
+ * </ul>
+ *
+ * <p>A monitor thread sends a task to each event loop every probe interval. The time the task waits
+ * to run is reported as <em>aaa.eventloop.lag</em>, tagged with the event loop thread. While a task
+ * has not run, the lag is the time it has waited so far, so that a stalled loop shows up before it
+ * recovers. The monitor thread also samples the top frame of each event loop thread. The fraction
+ * of samples in which the thread was not waiting for I/O is reported as
+ * <em>aaa.eventloop.utilization</em>. A blocking call, like a request of the Keycloak admin client,
+ * counts as busy. The tasks queued on each loop are reported as <em>aaa.eventloop.pending</em>.
+ *
+ * <p>Each time the Vert.x blocked thread checker finds a thread blocked, it is counted in
+ * <em>aaa.eventloop.blocked</em>. The count is tagged with the first method of the AAA server on
+ * the stack of the thread, i.e. the handler that was running. The stack is kept, and the last ones
+ * are returned with the current stacks of the event loops by the stack capture endpoint. The
+ * warning logged by the checker is kept as it is.
+ */
+public final class EventLoopMonitor {
+
+  private static final Logger LOGGER = LogManager.getLogger(EventLoopMonitor.class);
+  private static final Logger BLOCKED_LOGGER =
+      LogManager.getLogger(BlockedThreadChecker.LOGGER_NAME);
+
+  public static final String EVENT_LOOP_MONITOR = "eventLoopMonitor";
+  public static final String PROBE_INTERVAL_MS = "probeIntervalMs";
+  public static final String SAMPLE_INTERVAL_MS = "sampleIntervalMs";
+  public static final String STACK_CAPTURE_PORT = "stackCapturePort";
+  public static final String STACK_CAPTURE_HOST = "stackCaptureHost";
+  public static final String MAX_CAPTURED_STACKS = "maxCapturedStacks";
+
+  public static final long DEFAULT_PROBE_INTERVAL_MS = 1000;
+  public static final long DEFAULT_SAMPLE_INTERVAL_MS = 100;
+  public static final String DEFAULT_STACK_CAPTURE_HOST = "127.0.0.1";
+  public static final int DEFAULT_MAX_CAPTURED_STACKS = 20;
+
+  public static final String METRIC_LAG = "aaa.eventloop.lag";
+  public static final String METRIC_UTILIZATION = "aaa.eventloop.utilization";
+  public static final String METRIC_PENDING = "aaa.eventloop.pending";
+  public static final String METRIC_BLOCKED = "aaa.eventloop.blocked";
+
+  public static final String UNKNOWN_HANDLER = "unknown";
+
+  private static final String APP_PACKAGE = "iudx.aaa.server.";
+  private static final int MAX_STACK_DEPTH = 64;
+
+  /* Top frames of an event loop thread waiting for I/O */
+  private static final Set<String> IDLE_CLASSES =
+      Set.of(
+          "io.netty.channel.epoll.Native",
+          "io.netty.channel.kqueue.Native",
+          "sun.nio.ch.EPoll",
+          "sun.nio.ch.KQueue",
+          "sun.nio.ch.WEPoll",
+          "sun.nio.ch.WindowsSelectorImpl$SubSelector");
+
+  private final MeterRegistry registry;
+  private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+  private final List<Loop> loops = new ArrayList<Loop>();
+  private final Map<String, Counter> blockedCounters = new ConcurrentHashMap<String, Counter>();
+  private final Deque<JsonObject> captured = new ArrayDeque<JsonObject>();
+  private final int maxCaptured;
+  private final ScheduledExecutorService monitor =
+      Executors.newSingleThreadScheduledExecutor(
+          task -> {
+            Thread thread = new Thread(task, "aaa-eventloop-monitor");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private EventLoopMonitor(int maxCaptured) {
+    this.registry =
+        Objects.requireNonNullElse(BackendRegistries.getDefaultNow(), Metrics.globalRegistry);
+    this.maxCaptured = maxCaptured;
+  }
+
+  /**
+   * Start monitoring the event loops of a Vert.x instance. The monitor stops when Vert.x is closed.
+   *
+   * @param vertx the Vert.x instance
+   * @param config the <em>eventLoopMonitor</em> config, may be empty
+   * @return the monitor
+   */
+  public static EventLoopMonitor start(Vertx vertx, JsonObject config) {
+    VertxInternal vertxInternal = (VertxInternal) vertx;
+    EventLoopMonitor monitor =
+        new EventLoopMonitor(config.getInteger(MAX_CAPTURED_STACKS, DEFAULT_MAX_CAPTURED_STACKS));
+
+    for (EventExecutor executor : vertxInternal.getEventLoopGroup()) {
+      Loop loop = new Loop(executor);
+      monitor.loops.add(loop);
+      /* The thread of the loop is known once it runs a task */
+      executor.execute(() -> monitor.register(loop, Thread.currentThread()));
+    }
+    vertxInternal.blockedThreadChecker().setThreadBlockedHandler(monitor::blocked);
+
+    long probeMs = config.getLong(PROBE_INTERVAL_MS, DEFAULT_PROBE_INTERVAL_MS);
+    long sampleMs = config.getLong(SAMPLE_INTERVAL_MS, DEFAULT_SAMPLE_INTERVAL_MS);
+    monitor.monitor.scheduleAtFixedRate(monitor::probe, probeMs, probeMs, TimeUnit.MILLISECONDS);
+    monitor.monitor.scheduleAtFixedRate(monitor::sample, sampleMs, sampleMs, TimeUnit.MILLISECONDS);
+    vertxInternal.addCloseHook(
+        completion -> {
+          monitor.monitor.shutdownNow();
+          completion.complete();
+        });
+
+    Integer port = config.getInteger(STACK_CAPTURE_PORT);
+    if (port != null) {
+      String host = config.getString(STACK_CAPTURE_HOST, DEFAULT_STACK_CAPTURE_HOST);
+      vertx
+          .createHttpServer()
+          .requestHandler(
+              req ->
+                  req.response()
+                      .putHeader("Content-Type", "application/json")
+                      .end(monitor.stacks().encodePrettily()))
+          .listen(port, host)
+          .onSuccess(server -> LOGGER.info("Stack capture endpoint on {}:{}", host, port))
+          .onFailure(err -> LOGGER.error("Fail: Stack capture endpoint : {}", err.getMessage()));
+    }
+    return monitor;
+  }
+
+  /**
+   * Get the stacks of the last threads found blocked and the current stacks of the event loops.
+   *
+   * @return JSON with <em>blocked</em> and <em>eventLoops</em> arrays
+   */
+  public JsonObject stacks() {
+    JsonArray blocked;
+    synchronized (captured) {
+      blocked = new JsonArray(new ArrayList<Object>(captured));
+    }
+    JsonArray eventLoops = new JsonArray();
+    for (Loop loop : loops) {
+      Thread thread = loop.thread;
+      if (thread != null) {
+        eventLoops.add(
+            new JsonObject()
+                .put("thread", thread.getName())
+                .put("state", thread.getState().name())
+                .put("stack", stack(thread.getStackTrace())));
+      }
+    }
+    return new JsonObject().put("blocked", blocked).put("eventLoops", eventLoops);
+  }
+
+  private void register(Loop loop, Thread thread) {
+    loop.thread = thread;
+    String name = thread.getName();
+    TimeGauge.builder(METRIC_LAG, loop, TimeUnit.NANOSECONDS, Loop::lagNanos)
+        .description("Time a task waits to run on the event loop")
+        .tag("loop", name)
+        .register(registry);
+    Gauge.builder(METRIC_UTILIZATION, loop, l -> l.utilization)
+        .description("Fraction of time the event loop is not waiting for I/O")
+        .tag("loop", name)
+        .register(registry);
+    if (loop.executor instanceof SingleThreadEventExecutor) {
+      Gauge.builder(
+              METRIC_PENDING,
+              (SingleThreadEventExecutor) loop.executor,
+              SingleThreadEventExecutor::pendingTasks)
+          .description("Tasks queued on the event loop")
+          .tag("loop", name)
+          .register(registry);
+    }
+  }
+
+  private void probe() {
+    for (Loop loop : loops) {
+      loop.updateUtilization();
+      /* A loop that has not run the previous probe is still lagging */
+      if (loop.probeSubmitted != 0) {
+        continue;
+      }
+      long submitted = System.nanoTime();
+      loop.probeSubmitted = submitted;
+      loop.executor.execute(
+          () -> {
+            loop.lastLagNanos = System.nanoTime() - submitted;
+            loop.probeSubmitted = 0;
+          });
+    }
+  }
+
+  private void sample() {
+    for (Loop loop : loops) {
+      Thread thread = loop.thread;
+      if (thread == null) {
+        continue;
+      }
+      ThreadInfo info = threads.getThreadInfo(thread.getId(), 1);
+      if (info == null) {
+        continue;
+      }
+      StackTraceElement[] top = info.getStackTrace();
+      boolean idle =
+          top.length > 0 && top[0].isNativeMethod() && IDLE_CLASSES.contains(top[0].getClassName());
+      synchronized (loop) {
+        loop.samples++;
+        if (!idle) {
+          loop.busySamples++;
+        }
+      }
+    }
+  }
+
+  private void blocked(BlockedThreadEvent event) {
+    Thread thread = event.thread();
+    StackTraceElement[] stackTrace = thread.getStackTrace();
+    String handler = handler(stackTrace);
+    blockedCounters
+        .computeIfAbsent(
+            handler,
+            key ->
+                Counter.builder(METRIC_BLOCKED)
+                    .description("Times the blocked thread checker found a thread blocked")
+                    .tag("handler", key)
+                    .register(registry))
+        .increment();
+
+    JsonObject capture =
+        new JsonObject()
+            .put("time", Instant.now().toString())
+            .put("thread", thread.getName())
+            .put("blockedMs", TimeUnit.NANOSECONDS.toMillis(event.duration()))
+            .put("handler", handler)
+            .put("stack", stack(stackTrace));
+    synchronized (captured) {
+      if (captured.size() >= maxCaptured) {
+        captured.removeFirst();
+      }
+      captured.addLast(capture);
+    }
+
+    /* Same warning as the default handler of the checker */
+    String message =
+        "Thread "
+            + thread
+            + " has been blocked for "
+            + TimeUnit.NANOSECONDS.toMillis(event.duration())
+            + " ms, time limit is "
+            + TimeUnit.NANOSECONDS.toMillis(event.maxExecTime())
+            + " ms";
+    if (event.duration() <= event.warningExceptionTime()) {
+      BLOCKED_LOGGER.warn(message);
+    } else {
+      VertxException stackException = new VertxException("Thread blocked");
+      stackException.setStackTrace(stackTrace);
+      BLOCKED_LOGGER.warn(message, stackException);
+    }
+  }
+
+  /* The first method of the AAA server on the stack, e.g. KcAdmin.getEmailId */
+  private static String handler(StackTraceElement[] stackTrace) {
+    for (StackTraceElement frame : stackTrace) {
+      String className = frame.getClassName();
+      if (className.startsWith(APP_PACKAGE)) {
+        int lambda = className.indexOf("$$");
+        if (lambda >= 0) {
+          className = className.substring(0, lambda);
+        }
+        return className.substring(className.lastIndexOf('.') + 1) + '.' + frame.getMethodName();
+      }
+    }
+    return UNKNOWN_HANDLER;
+  }
+
+  private static JsonArray stack(StackTraceElement[] stackTrace) {
+    JsonArray stack = new JsonArray();
+    for (int i = 0; i < stackTrace.length && i < MAX_STACK_DEPTH; i++) {
+      stack.add(stackTrace[i].toString());
+    }
+    return stack;
+  }
+
+  /** An event loop and its measurements. */
+  private static final class Loop {
+    private final EventExecutor executor;
+    private volatile Thread thread;
+    private volatile long probeSubmitted;
+    private volatile long lastLagNanos;
+    private volatile double utilization;
+    private long samples;
+    private long busySamples;
+
+    private Loop(EventExecutor executor) {
+      this.executor = executor;
+    }
+
+    private double lagNanos() {
+      long submitted = probeSubmitted;
+      long waiting = submitted == 0 ? 0 : System.nanoTime() - submitted;
+      return Math.max(lastLagNanos, waiting);
+    }
+
+    private synchronized void updateUtilization() {
+      if (samples > 0) {
+        utilization = (double) busySamples / samples;
+      }
+      samples = 0;
+      busySamples = 0;
+    }
+  }
+}
@@ -6,6 +6,7 @@ import static iudx.aaa.server.apiserver.util.Constants.INVALID_JSON;
 import static iudx.aaa.server.apiserver.util.Constants.JSON_TIMEOUT;
 import static iudx.aaa.server.apiserver.util.Constants.MIME_APPLICATION_JSON;
 import static iudx.aaa.server.apiserver.util.Constants.STATUS;
+import static iudx.aaa.server.apiserver.util.Constants.TYPE;
 import static iudx.aaa.server.apiserver.util.Urn.*;
 
 import io.vertx.core.Future;
@@ -35,6 +36,7 @@ public class FailureHandler implements Handler<RoutingContext> {
     /* If timeout handler is triggered */
     if (context.failure() == null && context.statusCode() == 503) {
       LOGGER.error("Fail: Handling unexpected error: Timeout for {}", context.normalizedPath());
+      RouteMetricsHandler.setUrnType(context, URN_MISSING_INFO.toString());
       response.setStatusCode(503).end(JSON_TIMEOUT);
       return;
     }
@@ -43,50 +45,53 @@ public class FailureHandler implements Handler<RoutingContext> {
     Throwable failure = context.failure();
 
     if (failure instanceof DecodeException) {
-      processResponse(response, URN_INVALID_INPUT.toString(), INVALID_JSON);
+      processResponse(context, URN_INVALID_INPUT.toString(), INVALID_JSON);
     } else if (failure instanceof IllegalArgumentException) {
-      processResponse(response, failure.getLocalizedMessage());
+      processResponse(context, failure.getLocalizedMessage());
     } else if (failure instanceof NullPointerException) {
       response.setStatusCode(500).end();
       return;
     } else if (failure instanceof ParameterProcessorException) {
-      processResponse(response, failure.getLocalizedMessage());
+      processResponse(context, failure.getLocalizedMessage());
 
     } else if (failure instanceof BodyProcessorException) {
-      processResponse(response, failure.getLocalizedMessage());
+      processResponse(context, failure.getLocalizedMessage());
 
     } else if (failure instanceof RequestPredicateException) {
-      processResponse(response, failure.getLocalizedMessage());
+      processResponse(context, failure.getLocalizedMessage());
 
     } else if (failure instanceof DateTimeParseException) {
-      processResponse(response, failure.getLocalizedMessage());
+      processResponse(context, failure.getLocalizedMessage());
 
     } else {
-      processResponse(response, failure);
+      processResponse(context, failure);
       return;
     }
   }
 
-  private Future<Void> processResponse(HttpServerResponse response, Throwable failure) {
+  private Future<Void> processResponse(RoutingContext context, Throwable failure) {
     JsonObject msg = new JsonObject(failure.getLocalizedMessage());
     int status = msg.getInteger(STATUS, 400);
     msg.remove(STATUS);
-    return response.setStatusCode(status).end(msg.toString());
+    RouteMetricsHandler.setUrnType(context, msg.getString(TYPE));
+    return context.response().setStatusCode(status).end(msg.toString());
   }
 
-  private Future<Void> processResponse(HttpServerResponse response, String type, String title) {
+  private Future<Void> processResponse(RoutingContext context, String type, String title) {
     Response rs = new ResponseBuilder().type(type).title(title).detail(title).build();
-    return response.setStatusCode(500).end(rs.toJson().toString());
+    RouteMetricsHandler.setUrnType(context, type);
+    return context.response().setStatusCode(500).end(rs.toJson().toString());
   }
 
   /* Using this function for 400 Bad Request */
-  private Future<Void> processResponse(HttpServerResponse response, String detail) {
+  private Future<Void> processResponse(RoutingContext context, String detail) {
     Response rs =
         new ResponseBuilder()
             .type(URN_INVALID_INPUT)
             .title(ERR_TITLE_BAD_REQUEST)
             .detail(detail)
             .build();
-    return response.setStatusCode(400).end(rs.toJson().toString());
+    RouteMetricsHandler.setUrnType(context, rs.getType());
+    return context.response().setStatusCode(400).end(rs.toJson().toString());
   }
 }
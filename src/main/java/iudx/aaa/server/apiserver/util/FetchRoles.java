@@ -45,11 +45,24 @@ import org.apache.logging.log4j.Logger;
 public class FetchRoles {
 
   private PgPool pgPool;
+  private PgPool readPool;
   private JsonObject config;
   private static final Logger LOGGER = LogManager.getLogger(FetchRoles.class);
 
   public FetchRoles(PgPool pgPool, JsonObject config) {
+    this(pgPool, pgPool, config);
+  }
+
+  /**
+   * Create FetchRoles with a separate pool for routes that can use a read replica.
+   *
+   * @param pgPool the Postgres pool of the primary
+   * @param readPool the pool for read-only queries, see {@link ReadReplicaPool}
+   * @param config the API server config
+   */
+  public FetchRoles(PgPool pgPool, PgPool readPool, JsonObject config) {
     this.pgPool = pgPool;
+    this.readPool = readPool;
     this.config = config;
   }
 
@@ -70,6 +83,22 @@ public class FetchRoles {
    * @param requestedRoles a set of roles to be obtained (if the user has them)
    */
   public void fetch(RoutingContext ctx, Set<Roles> requestedRoles) {
+    fetch(ctx, requestedRoles, pgPool);
+  }
+
+  /**
+   * Fetch the requested roles as in {@link #fetch(RoutingContext, Set)}, from the read replica if
+   * one is configured. The roles may be slightly stale, so this is only used for routes that do not
+   * modify data based on the roles and do not need to see roles just added or changed.
+   *
+   * @param ctx the routing context
+   * @param requestedRoles a set of roles to be obtained (if the user has them)
+   */
+  public void fetchForRead(RoutingContext ctx, Set<Roles> requestedRoles) {
+    fetch(ctx, requestedRoles, readPool);
+  }
+
+  private void fetch(RoutingContext ctx, Set<Roles> requestedRoles, PgPool pool) {
     UUID userId = UUID.fromString(ctx.get(OBTAINED_USER_ID));
     String firstName = ctx.get(KC_GIVEN_NAME, "");
     String lastName = ctx.get(KC_FAMILY_NAME, "");
@@ -127,12 +156,10 @@ public class FetchRoles {
 
     String finalQuery = String.join(SQL_UNION, queries);
 
-    pgPool
-        .withConnection(
+    pool.withConnection(
             conn ->
-                conn.preparedQuery(finalQuery)
-                    .collecting(roleToRsCollector)
-                    .execute(Tuple.of(userId))
+                QueryMetrics.query(
+                        conn, "SQL_FETCH_ROLES", finalQuery, Tuple.of(userId), roleToRsCollector)
                     .map(res -> res.value()))
         .compose(
             roleToRsMap -> {
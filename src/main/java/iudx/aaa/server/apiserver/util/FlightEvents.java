@@ -0,0 +1,171 @@
+package iudx.aaa.server.apiserver.util;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import iudx.aaa.server.apiserver.ItemType;
+import iudx.aaa.server.apiserver.Roles;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events for token issuance, token introspection and calls to the servers the
+ * AAA server depends on, so that slow requests can be matched with GC pauses, safepoints and other
+ * JVM events in the same recording. The events are enabled in any recording unless its settings
+ * disable them, e.g. with <em>iudx.aaa.TokenIssuance#enabled=false</em>, and may be given a
+ * threshold. When no recording has an event enabled, recording it is only a check of whether it is
+ * enabled.
+ *
+ * <p>The outcome of token issuance and introspection is the <em>type</em> of the response, e.g.
+ * <em>urn:dx:as:Success</em>, or <em>error</em> if the request failed. The outcome of a dependency
+ * call is as in {@link DependencyMetrics}.
+ */
+public final class FlightEvents {
+
+  public static final String TOKEN_ISSUANCE = "iudx.aaa.TokenIssuance";
+  public static final String TOKEN_INTROSPECTION = "iudx.aaa.TokenIntrospection";
+  public static final String DEPENDENCY_CALL = "iudx.aaa.DependencyCall";
+
+  private static final String ERROR = "error";
+
+  private FlightEvents() {}
+
+  /**
+   * Wrap the result handler of token issuance to record the event when the result is handled.
+   *
+   * @param role the role requested
+   * @param itemType the type of item requested
+   * @param handler the result handler
+   * @return the handler recording the event, or the handler itself if the event is disabled
+   */
+  public static Handler<AsyncResult<JsonObject>> tokenIssuance(
+      Roles role, ItemType itemType, Handler<AsyncResult<JsonObject>> handler) {
+    TokenIssuanceEvent event = new TokenIssuanceEvent();
+    if (!event.isEnabled()) {
+      return handler;
+    }
+    event.begin();
+    return res -> {
+      event.end();
+      if (event.shouldCommit()) {
+        event.role = String.valueOf(role);
+        event.itemType = String.valueOf(itemType);
+        event.outcome = outcome(res);
+        event.commit();
+      }
+      handler.handle(res);
+    };
+  }
+
+  /**
+   * Wrap the result handler of token introspection to record the event when the result is handled.
+   *
+   * @param handler the result handler
+   * @return the handler recording the event, or the handler itself if the event is disabled
+   */
+  public static Handler<AsyncResult<JsonObject>> tokenIntrospection(
+      Handler<AsyncResult<JsonObject>> handler) {
+    TokenIntrospectionEvent event = new TokenIntrospectionEvent();
+    if (!event.isEnabled()) {
+      return handler;
+    }
+    event.begin();
+    return res -> {
+      event.end();
+      if (event.shouldCommit()) {
+        event.outcome = outcome(res);
+        event.commit();
+      }
+      handler.handle(res);
+    };
+  }
+
+  /* Begin a dependency call event, null if the event is disabled */
+  static DependencyCallEvent dependencyCall() {
+    DependencyCallEvent event = new DependencyCallEvent();
+    if (!event.isEnabled()) {
+      return null;
+    }
+    event.begin();
+    return event;
+  }
+
+  /* Record a dependency call event begun with dependencyCall */
+  static void dependencyCall(
+      DependencyCallEvent event,
+      String dependency,
+      String operation,
+      String target,
+      String outcome) {
+    if (event == null) {
+      return;
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.dependency = dependency;
+      event.operation = operation;
+      event.target = target;
+      event.outcome = outcome;
+      event.commit();
+    }
+  }
+
+  private static String outcome(AsyncResult<JsonObject> res) {
+    if (res.failed() || res.result() == null) {
+      return ERROR;
+    }
+    return res.result().getString("type", ERROR);
+  }
+
+  /** Issuance of a token. */
+  @Name(TOKEN_ISSUANCE)
+  @Label("Token Issuance")
+  @Category({"IUDX AAA", "Token"})
+  @Description("Request for a token, from the call to the token service to its result")
+  @StackTrace(false)
+  static final class TokenIssuanceEvent extends Event {
+    @Label("Role")
+    String role;
+
+    @Label("Item Type")
+    String itemType;
+
+    @Label("Outcome")
+    String outcome;
+  }
+
+  /** Introspection of a token. */
+  @Name(TOKEN_INTROSPECTION)
+  @Label("Token Introspection")
+  @Category({"IUDX AAA", "Token"})
+  @Description("Validation of a token presented by a resource server")
+  @StackTrace(false)
+  static final class TokenIntrospectionEvent extends Event {
+    @Label("Outcome")
+    String outcome;
+  }
+
+  /** Call to Keycloak, the catalogue, an APD or a resource server. */
+  @Name(DEPENDENCY_CALL)
+  @Label("Dependency Call")
+  @Category({"IUDX AAA", "Dependency"})
+  @Description("Call to a server the AAA server depends on")
+  @StackTrace(false)
+  static final class DependencyCallEvent extends Event {
+    @Label("Dependency")
+    String dependency;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Target")
+    String target;
+
+    @Label("Outcome")
+    String outcome;
+  }
+}
@@ -0,0 +1,496 @@
+package iudx.aaa.server.apiserver.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Scope;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.micrometer.backends.BackendRegistries;
+import io.vertx.serviceproxy.ServiceException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Registry of service implementations deployed in this JVM, used to route service calls to a
+ * co-located service instead of through event bus service proxies. In a cluster, the event bus
+ * sends a proxy call to a consumer on any node, encoded with the {@link ServiceMessageCodec}. A
+ * call to a local service does not leave the node and its arguments and result are not encoded, but
+ * copied. As with the event bus, the service method is called on the context of the verticle that
+ * registered the service, and the result is handled on the context of the caller. A failed call
+ * fails with a {@link ServiceException}, as it would through the proxy: a service failure that is
+ * not a ServiceException is converted to one with failure code -1, and an exception thrown by the
+ * service method to one with failure code 500.
+ *
+ * <p>In-process binding is enabled by the deployer when <em>inProcessServices</em> is set in the
+ * config. If it is not enabled, {@link #register} does nothing and {@link #lookup} returns a
+ * service that only calls the event bus proxy.
+ *
+ * <p>Since verticles are deployed one after the other and services depend on each other, the
+ * service returned by {@link #lookup} checks the registry on each call. The call goes to the least
+ * loaded local instance of the service. It goes through the event bus proxy if the service is not
+ * (yet) deployed locally, or if every local instance already has <em>localServiceMaxInFlight</em>
+ * calls in progress, so that an overloaded node sheds calls to the other nodes of the cluster. The
+ * number of calls routed each way is counted in the <em>aaa.service.calls</em> metric, and local
+ * calls are traced as internal spans.
+ *
+ * <p>Arguments and results are copied, as the event bus does for a message delivered on the same
+ * node: {@link JsonObject} values with {@link ServiceMessageCodec#transform}, {@link JsonArray}
+ * values using copy, and data objects, i.e. classes with a <em>toJson</em> method and a JsonObject
+ * constructor, by converting them to JSON and back. The elements of lists, sets and maps are copied
+ * the same way.
+ *
+ * <p>Either way, a call made after the {@link Deadline} of its request fails without being made,
+ * and a call in progress at the deadline fails then instead of waiting for the event bus timeout.
+ * Its result is ignored when it comes.
+ */
+public final class LocalServiceRegistry {
+
+  private static final Logger LOGGER = LogManager.getLogger(LocalServiceRegistry.class);
+  private static final String MAP_NAME = "iudx.aaa.local.services";
+  private static final String SETTINGS_KEY = "iudx.aaa.local.services.settings";
+
+  public static final int DEFAULT_MAX_IN_FLIGHT = 512;
+
+  private static final String CALLS_METRIC = "aaa.service.calls";
+  private static final String IN_FLIGHT_METRIC = "aaa.service.local.inflight";
+  private static final String LOCAL = "local";
+  private static final String REMOTE = "remote";
+  private static final String SPAN_HOP_ATTRIBUTE = "aaa.service.hop";
+
+  private LocalServiceRegistry() {}
+
+  /**
+   * Enable in-process binding for services deployed on this Vert.x instance. Must be called before
+   * verticles are deployed.
+   *
+   * @param vertx the Vert.x instance
+   * @param maxInFlight calls in progress on a local service instance after which calls are sent
+   *     through the event bus
+   */
+  public static void enable(Vertx vertx, int maxInFlight) {
+    services(vertx).put(SETTINGS_KEY, new Settings(maxInFlight));
+    LOGGER.info("In-process service binding enabled, max in-flight calls {}", maxInFlight);
+  }
+
+  /**
+   * Register a service implementation deployed by a verticle. Must be called on the context of the
+   * verticle, on which calls to the service are then made.
+   *
+   * @param vertx the Vert.x instance
+   * @param address the event bus address of the service
+   * @param service the service implementation
+   */
+  public static void register(Vertx vertx, String address, Object service) {
+    LocalMap<String, Shareable> services = services(vertx);
+    if (services.get(SETTINGS_KEY) == null) {
+      return;
+    }
+    if (services.putIfAbsent(address, new Bindings()) == null) {
+      registerInFlightGauge(address, (Bindings) services.get(address));
+    }
+    ((Bindings) services.get(address))
+        .instances.add(new Instance(service, (ContextInternal) vertx.getOrCreateContext()));
+  }
+
+  /**
+   * Unregister a service implementation when its verticle is undeployed.
+   *
+   * @param vertx the Vert.x instance
+   * @param address the event bus address of the service
+   * @param service the service implementation
+   */
+  public static void unregister(Vertx vertx, String address, Object service) {
+    Bindings bindings = (Bindings) services(vertx).get(address);
+    if (bindings != null) {
+      bindings.instances.removeIf(instance -> instance.service == service);
+    }
+  }
+
+  /**
+   * Get a service that calls a local implementation if one is registered and not overloaded, else
+   * the event bus proxy, within the deadline of the request.
+   *
+   * @param <T> the service interface
+   * @param vertx the Vert.x instance
+   * @param iface the service interface
+   * @param address the event bus address of the service
+   * @param createProxy creates the event bus proxy, e.g. <em>PolicyService::createProxy</em>
+   * @return the service
+   */
+  public static <T> T lookup(
+      Vertx vertx, Class<T> iface, String address, ProxyFactory<T> createProxy) {
+    T remote = createProxy.create(vertx, address, ServiceMessageCodec.deliveryOptions(vertx));
+    LocalMap<String, Shareable> services = services(vertx);
+    Settings settings = (Settings) services.get(SETTINGS_KEY);
+    if (settings == null) {
+      return withDeadline(iface, remote);
+    }
+
+    MeterRegistry registry =
+        Objects.requireNonNullElse(BackendRegistries.getDefaultNow(), Metrics.globalRegistry);
+    Counter localCalls = callCounter(registry, address, LOCAL, "available");
+    Counter noLocalCalls = callCounter(registry, address, REMOTE, "no_local_instance");
+    Counter overloadCalls = callCounter(registry, address, REMOTE, "overload");
+
+    InvocationHandler handler =
+        new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+              return method.invoke(this, args);
+            }
+            if (applyDeadline(args)) {
+              return method.getReturnType() == iface ? proxy : null;
+            }
+
+            Bindings bindings = (Bindings) services.get(address);
+            Instance instance = bindings == null ? null : bindings.leastLoaded();
+            if (instance == null) {
+              noLocalCalls.increment();
+              return call(proxy, remote, method, args);
+            }
+
+            if (instance.inFlight.get() >= settings.maxInFlight) {
+              overloadCalls.increment();
+              return call(proxy, remote, method, args);
+            }
+
+            localCalls.increment();
+            copyArgs(args);
+            instance.inFlight.incrementAndGet();
+            AtomicBoolean released = new AtomicBoolean();
+            Runnable release =
+                () -> {
+                  if (released.compareAndSet(false, true)) {
+                    instance.inFlight.decrementAndGet();
+                  }
+                };
+
+            /* The event bus hop is traced by Vert.x, the local call is not */
+            Span span =
+                Tracing.startSpan(
+                    iface.getSimpleName() + '.' + method.getName(), SpanKind.INTERNAL);
+            span.setAttribute(SPAN_HOP_ATTRIBUTE, LOCAL);
+            boolean completes = trackCompletion(release, span, Vertx.currentContext(), args);
+            long remainingMs = Deadline.remainingMs();
+
+            /* Handled on its own duplicated context, as a message received from the event bus */
+            instance
+                .context
+                .duplicate()
+                .runOnContext(
+                    v -> {
+                      if (remainingMs != Deadline.NONE) {
+                        Deadline.start(remainingMs);
+                      }
+                      try (Scope scope = span.makeCurrent()) {
+                        method.invoke(instance.service, args);
+                      } catch (Throwable t) {
+                        Throwable cause = t instanceof InvocationTargetException ? t.getCause() : t;
+                        LOGGER.error(
+                            "Fail: {}.{} threw : {}",
+                            iface.getSimpleName(),
+                            method.getName(),
+                            cause.getMessage());
+                        if (completes) {
+                          resultHandler(args)
+                              .handle(
+                                  Future.failedFuture(
+                                      new ServiceException(500, cause.getMessage())));
+                        }
+                      } finally {
+                        if (!completes) {
+                          release.run();
+                          span.end();
+                        }
+                      }
+                    });
+            /* Fluent service methods return the service itself */
+            return method.getReturnType() == iface ? proxy : null;
+          }
+        };
+    return iface.cast(
+        Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[] {iface}, handler));
+  }
+
+  /* The event bus proxy, with deadlines applied to its calls */
+  private static <T> T withDeadline(Class<T> iface, T remote) {
+    InvocationHandler handler =
+        (proxy, method, args) -> {
+          if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(remote, args);
+          }
+          if (applyDeadline(args)) {
+            return method.getReturnType() == iface ? proxy : null;
+          }
+          return call(proxy, remote, method, args);
+        };
+    return iface.cast(
+        Proxy.newProxyInstance(iface.getClassLoader(), new Class<?>[] {iface}, handler));
+  }
+
+  /*
+   * Fail the call if the deadline of its request has passed, else wrap its result handler so that
+   * the call fails at the deadline. Returns true if the call has failed.
+   */
+  @SuppressWarnings("unchecked")
+  private static boolean applyDeadline(Object[] args) {
+    if (!hasResultHandler(args) || Deadline.remainingMs() == Deadline.NONE) {
+      return false;
+    }
+    Handler<AsyncResult<Object>> resultHandler =
+        (Handler<AsyncResult<Object>>) args[args.length - 1];
+    if (Deadline.exceeded(Deadline.SERVICE)) {
+      resultHandler.handle(Deadline.failure());
+      return true;
+    }
+
+    AtomicBoolean handled = new AtomicBoolean();
+    Runnable cancel =
+        Deadline.onExpiry(
+            Deadline.SERVICE,
+            () -> {
+              if (handled.compareAndSet(false, true)) {
+                resultHandler.handle(Deadline.failure());
+              }
+            });
+    args[args.length - 1] =
+        (Handler<AsyncResult<Object>>)
+            res -> {
+              if (handled.compareAndSet(false, true)) {
+                cancel.run();
+                resultHandler.handle(res);
+              }
+            };
+    return false;
+  }
+
+  private static boolean hasResultHandler(Object[] args) {
+    return args != null && args.length > 0 && args[args.length - 1] instanceof Handler;
+  }
+
+  private static Object call(Object proxy, Object target, Method method, Object[] args)
+      throws Throwable {
+    try {
+      Object result = method.invoke(target, args);
+      /* Fluent service methods return the service itself */
+      return result == target ? proxy : result;
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Handler<AsyncResult<Object>> resultHandler(Object[] args) {
+    return (Handler<AsyncResult<Object>>) args[args.length - 1];
+  }
+
+  /*
+   * Wrap the result handler, which is the last argument of service methods, so that the call is
+   * counted as in progress and its span is open until the result is handled. The result is copied
+   * and handled on the context of the caller, and failures are converted as the proxy would.
+   * Returns false if there is no handler.
+   */
+  private static boolean trackCompletion(
+      Runnable release, Span span, Context caller, Object[] args) {
+    if (!hasResultHandler(args)) {
+      return false;
+    }
+    Handler<AsyncResult<Object>> resultHandler = resultHandler(args);
+    AtomicBoolean handled = new AtomicBoolean();
+    args[args.length - 1] =
+        (Handler<AsyncResult<Object>>)
+            res -> {
+              /* A proxy call is only replied to once */
+              if (!handled.compareAndSet(false, true)) {
+                return;
+              }
+              release.run();
+              Tracing.endSpan(span, res.cause());
+              AsyncResult<Object> reply =
+                  res.succeeded()
+                      ? Future.succeededFuture(copy(res.result()))
+                      : Future.failedFuture(toServiceException(res.cause()));
+              if (caller == null) {
+                resultHandler.handle(reply);
+              } else {
+                caller.runOnContext(v -> resultHandler.handle(reply));
+              }
+            };
+    return true;
+  }
+
+  private static ServiceException toServiceException(Throwable cause) {
+    return cause instanceof ServiceException
+        ? (ServiceException) cause
+        : new ServiceException(-1, cause.getMessage());
+  }
+
+  private static void copyArgs(Object[] args) {
+    if (args == null) {
+      return;
+    }
+    for (int i = 0; i < args.length; i++) {
+      args[i] = copy(args[i]);
+    }
+  }
+
+  /* Copy a value as it would be by encoding it for the event bus */
+  private static Object copy(Object value) {
+    if (value instanceof JsonObject) {
+      return ServiceMessageCodec.INSTANCE.transform((JsonObject) value);
+    } else if (value instanceof JsonArray) {
+      return ((JsonArray) value).copy();
+    } else if (value instanceof List) {
+      return ((List<?>) value)
+          .stream().map(LocalServiceRegistry::copy).collect(Collectors.toList());
+    } else if (value instanceof Set) {
+      return ((Set<?>) value).stream().map(LocalServiceRegistry::copy).collect(Collectors.toSet());
+    } else if (value instanceof Map) {
+      Map<Object, Object> copy = new HashMap<Object, Object>();
+      ((Map<?, ?>) value).forEach((key, val) -> copy.put(key, copy(val)));
+      return copy;
+    } else if (value == null) {
+      return null;
+    }
+    return DATA_OBJECT_COPIERS.get(value.getClass()).apply(value);
+  }
+
+  /*
+   * Copies instances of a class through JSON if it is a data object, else returns them as they
+   * are. Handlers, strings, enums and other immutable values are not data objects.
+   */
+  private static final ClassValue<UnaryOperator<Object>> DATA_OBJECT_COPIERS =
+      new ClassValue<UnaryOperator<Object>>() {
+        @Override
+        protected UnaryOperator<Object> computeValue(Class<?> type) {
+          try {
+            Method toJson = type.getMethod("toJson");
+            Constructor<?> fromJson = type.getConstructor(JsonObject.class);
+            if (toJson.getReturnType() != JsonObject.class) {
+              return UnaryOperator.identity();
+            }
+            return value -> {
+              try {
+                return fromJson.newInstance((JsonObject) toJson.invoke(value));
+              } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not copy " + type.getName(), e);
+              }
+            };
+          } catch (NoSuchMethodException e) {
+            return UnaryOperator.identity();
+          }
+        }
+      };
+
+  private static Counter callCounter(
+      MeterRegistry registry, String address, String hop, String reason) {
+    return Counter.builder(CALLS_METRIC)
+        .description("Service calls by whether they were handled on this node")
+        .tag("service", address)
+        .tag("hop", hop)
+        .tag("reason", reason)
+        .register(registry);
+  }
+
+  private static void registerInFlightGauge(String address, Bindings bindings) {
+    MeterRegistry registry =
+        Objects.requireNonNullElse(BackendRegistries.getDefaultNow(), Metrics.globalRegistry);
+    Gauge.builder(
+            IN_FLIGHT_METRIC,
+            bindings,
+            b -> b.instances.stream().mapToInt(i -> i.inFlight.get()).sum())
+        .description("Service calls in progress on local instances")
+        .tag("service", address)
+        .register(registry);
+  }
+
+  private static LocalMap<String, Shareable> services(Vertx vertx) {
+    return vertx.sharedData().getLocalMap(MAP_NAME);
+  }
+
+  /**
+   * Creates the event bus proxy of a service.
+   *
+   * @param <T> the service interface
+   */
+  @FunctionalInterface
+  public interface ProxyFactory<T> {
+    /**
+     * Create the proxy.
+     *
+     * @param vertx the Vert.x instance
+     * @param address the event bus address of the service
+     * @param options the delivery options of the calls
+     * @return the proxy
+     */
+    T create(Vertx vertx, String address, DeliveryOptions options);
+  }
+
+  /** Settings for in-process binding. */
+  private static final class Settings implements Shareable {
+    private final int maxInFlight;
+
+    private Settings(int maxInFlight) {
+      this.maxInFlight = maxInFlight;
+    }
+  }
+
+  /**
+   * A local service implementation, the context of the verticle that registered it and the number
+   * of calls in progress on it.
+   */
+  private static final class Instance {
+    private final Object service;
+    private final ContextInternal context;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private Instance(Object service, ContextInternal context) {
+      this.service = service;
+      this.context = context;
+    }
+  }
+
+  /** Implementations registered for an address, one per deployed verticle instance. */
+  private static final class Bindings implements Shareable {
+    private final List<Instance> instances = new CopyOnWriteArrayList<Instance>();
+
+    private Instance leastLoaded() {
+      Instance least = null;
+      for (Instance instance : instances) {
+        if (least == null || instance.inFlight.get() < least.inFlight.get()) {
+          least = instance;
+        }
+      }
+      return least;
+    }
+  }
+}
@@ -33,6 +33,7 @@ public class OIDCAuthentication implements AuthenticationHandler {
   private Vertx vertx;
   private JsonObject keycloakOptions;
   private OAuth2Auth keycloak;
+  private String keycloakHost;
 
   public OIDCAuthentication(Vertx vertx, JsonObject keycloakOptions) {
     this.vertx = vertx;
@@ -64,8 +65,11 @@ public class OIDCAuthentication implements AuthenticationHandler {
      * chain and prevents all the onFailure blocks from being triggered */
     if (token != null && !token.isBlank()) {
       TokenCredentials credentials = new TokenCredentials().setToken(token);
-      keycloak
-          .authenticate(credentials)
+      DependencyMetrics.time(
+              DependencyMetrics.KEYCLOAK,
+              "authenticate",
+              keycloakHost,
+              () -> keycloak.authenticate(credentials))
           .onFailure(
               authHandler -> {
                 Response rs =
@@ -80,7 +84,11 @@ public class OIDCAuthentication implements AuthenticationHandler {
           .compose(
               mapper -> {
                 User cred = User.create(new JsonObject().put("access_token", token));
-                return keycloak.userInfo(cred);
+                return DependencyMetrics.time(
+                    DependencyMetrics.KEYCLOAK,
+                    "userinfo",
+                    keycloakHost,
+                    () -> keycloak.userInfo(cred));
                 /*
                  * Add extra onFailure as userinfo may not respect leeway. Token may pass authentication,
                  * but may fail userinfo auth
@@ -168,6 +176,7 @@ public class OIDCAuthentication implements AuthenticationHandler {
     String url = keycloakOptions.getString(KEYCLOAK_URL);
     String realm = keycloakOptions.getString(KEYCLOAK_REALM);
     String site = url + "/realms/" + realm;
+    keycloakHost = DependencyMetrics.host(url);
 
     /* Options for OAuth2, KeyCloack. */
     OAuth2Options options =
@@ -180,6 +189,8 @@ public class OIDCAuthentication implements AuthenticationHandler {
                 new JWTOptions().setLeeway(keycloakOptions.getInteger(KEYCLOAK_JWT_LEEWAY)));
 
     options.getHttpClientOptions().setSsl(true).setVerifyHost(false).setTrustAll(true);
+    DependencyMetrics.addPool(
+        DependencyMetrics.KEYCLOAK, options.getHttpClientOptions().getMaxPoolSize());
 
     /* Discovers the keycloack instance */
     KeycloakAuth.discover(
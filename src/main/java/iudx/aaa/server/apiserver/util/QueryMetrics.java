@@ -0,0 +1,215 @@
+package iudx.aaa.server.apiserver.util;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
+import io.vertx.pgclient.PgConnection;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlClient;
+import io.vertx.sqlclient.SqlResult;
+import io.vertx.sqlclient.Tuple;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs named Postgres queries. The services run their queries with {@link #query} and {@link
+ * #batch}, naming each query after the constant holding its SQL.
+ *
+ * <p>The time to execute each query is recorded in the <em>aaa.db.query</em> timer, and the number
+ * of rows returned or affected in <em>aaa.db.query.rows</em>, tagged with the query. A query taking
+ * <em>slowQueryThresholdMs</em> of <em>postgresOptions</em> or more, 500 ms if not set, is logged.
+ *
+ * <p>Queries are run within the {@link Deadline} of the request they are run for. A query run after
+ * the deadline fails without being sent, and a query still running on a connection at the deadline
+ * is cancelled.
+ */
+public final class QueryMetrics {
+
+  private static final Logger LOGGER = LogManager.getLogger(QueryMetrics.class);
+
+  public static final String SLOW_QUERY_THRESHOLD_MS = "slowQueryThresholdMs";
+  public static final long DEFAULT_SLOW_QUERY_THRESHOLD_MS = 500;
+
+  private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<String, Timer>();
+  private static final Map<String, DistributionSummary> ROWS =
+      new ConcurrentHashMap<String, DistributionSummary>();
+
+  private static volatile long thresholdNanos =
+      TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_QUERY_THRESHOLD_MS);
+
+  private QueryMetrics() {}
+
+  /**
+   * Set the threshold of the slow query log, if the config has one. The threshold is the same for
+   * all verticles of the node.
+   *
+   * @param config the verticle config, may contain <em>slowQueryThresholdMs</em>
+   */
+  public static void configure(JsonObject config) {
+    Object threshold = config.getValue(SLOW_QUERY_THRESHOLD_MS);
+    if (threshold != null) {
+      thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(threshold.toString()));
+    }
+  }
+
+  /**
+   * Run a prepared query without parameters.
+   *
+   * @param client the pool or connection to run the query on
+   * @param name the name of the query, used in metrics
+   * @param sql the SQL
+   * @return a Future of the rows
+   */
+  public static Future<RowSet<Row>> query(SqlClient client, String name, String sql) {
+    return timed(client, name, () -> client.preparedQuery(sql).execute());
+  }
+
+  /**
+   * Run a prepared query.
+   *
+   * @param client the pool or connection to run the query on
+   * @param name the name of the query, used in metrics
+   * @param sql the SQL
+   * @param tuple the parameters
+   * @return a Future of the rows
+   */
+  public static Future<RowSet<Row>> query(SqlClient client, String name, String sql, Tuple tuple) {
+    return timed(client, name, () -> client.preparedQuery(sql).execute(tuple));
+  }
+
+  /**
+   * Run a prepared query without parameters, collecting the rows.
+   *
+   * @param client the pool or connection to run the query on
+   * @param name the name of the query, used in metrics
+   * @param sql the SQL
+   * @param collector the collector of the rows
+   * @return a Future of the collected rows
+   */
+  public static <R> Future<SqlResult<R>> query(
+      SqlClient client, String name, String sql, Collector<Row, ?, R> collector) {
+    return timed(client, name, () -> client.preparedQuery(sql).collecting(collector).execute());
+  }
+
+  /**
+   * Run a prepared query, collecting the rows.
+   *
+   * @param client the pool or connection to run the query on
+   * @param name the name of the query, used in metrics
+   * @param sql the SQL
+   * @param tuple the parameters
+   * @param collector the collector of the rows
+   * @return a Future of the collected rows
+   */
+  public static <R> Future<SqlResult<R>> query(
+      SqlClient client, String name, String sql, Tuple tuple, Collector<Row, ?, R> collector) {
+    return timed(
+        client, name, () -> client.preparedQuery(sql).collecting(collector).execute(tuple));
+  }
+
+  /**
+   * Run a prepared query once for each of a batch of parameters.
+   *
+   * @param client the pool or connection to run the query on
+   * @param name the name of the query, used in metrics
+   * @param sql the SQL
+   * @param batch the parameters
+   * @return a Future of the rows of the first run, followed by the others
+   */
+  public static Future<RowSet<Row>> batch(
+      SqlClient client, String name, String sql, List<Tuple> batch) {
+    return timed(client, name, () -> client.preparedQuery(sql).executeBatch(batch));
+  }
+
+  private static <T extends SqlResult<?>> Future<T> timed(
+      SqlClient client, String name, Supplier<Future<T>> execute) {
+    if (Deadline.exceeded(Deadline.DB)) {
+      return Deadline.failure();
+    }
+    long start = System.nanoTime();
+    Runnable cancel = cancelAtDeadline(client);
+    return execute
+        .get()
+        .onComplete(
+            res -> {
+              cancel.run();
+              record(name, System.nanoTime() - start, res.result(), res.succeeded());
+            });
+  }
+
+  /* Cancel the query running on a connection at the deadline, returns what stops the cancel */
+  private static Runnable cancelAtDeadline(SqlClient client) {
+    if (!(client instanceof PgConnection)) {
+      return () -> {};
+    }
+    AtomicBoolean done = new AtomicBoolean();
+    Runnable stop =
+        Deadline.onExpiry(
+            Deadline.DB,
+            () -> {
+              if (!done.get()) {
+                ((PgConnection) client).cancelRequest();
+              }
+            });
+    return () -> {
+      done.set(true);
+      stop.run();
+    };
+  }
+
+  private static void record(String name, long nanos, SqlResult<?> result, boolean succeeded) {
+    String outcome = succeeded ? "success" : "failure";
+    TIMERS
+        .computeIfAbsent(
+            name + ' ' + outcome,
+            key ->
+                Timer.builder("aaa.db.query")
+                    .description("Time to execute a query")
+                    .tag("query", name)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry()))
+        .record(nanos, TimeUnit.NANOSECONDS);
+
+    long rows = 0;
+    for (SqlResult<?> res = result; res != null; res = res.next()) {
+      rows += res.rowCount();
+    }
+    if (succeeded) {
+      ROWS.computeIfAbsent(
+              name,
+              key ->
+                  DistributionSummary.builder("aaa.db.query.rows")
+                      .description("Rows returned or affected by a query")
+                      .tag("query", name)
+                      .register(registry()))
+          .record(rows);
+    }
+
+    if (nanos >= thresholdNanos) {
+      LOGGER.warn(
+          "Slow query : query={} outcome={} executeMs={} rows={}",
+          name,
+          outcome,
+          TimeUnit.NANOSECONDS.toMillis(nanos),
+          rows);
+    }
+  }
+
+  private static MeterRegistry registry() {
+    return Objects.requireNonNullElse(BackendRegistries.getDefaultNow(), Metrics.globalRegistry);
+  }
+}
@@ -0,0 +1,324 @@
+package iudx.aaa.server.apiserver.util;
+
+import static iudx.aaa.server.apiserver.util.Constants.CLIENT_ID;
+import static iudx.aaa.server.apiserver.util.Constants.HEADER_CONTENT_TYPE;
+import static iudx.aaa.server.apiserver.util.Constants.HEADER_RETRY_AFTER;
+import static iudx.aaa.server.apiserver.util.Constants.JSON_RATE_LIMITED;
+import static iudx.aaa.server.apiserver.util.Constants.MIME_APPLICATION_JSON;
+import static iudx.aaa.server.apiserver.util.Constants.OBTAINED_USER_ID;
+import static iudx.aaa.server.apiserver.util.Urn.URN_TOO_MANY_REQUESTS;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.web.Route;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.micrometer.backends.BackendRegistries;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Token bucket rate limits on API operations, per client and per user. Configured with
+ * <em>rateLimits</em> in the API server config:
+ *
+ * <ul>
+ *   <li><em>operations</em>, a map of OpenAPI operation ID to the limit of the operation, with
+ *       <em>capacity</em>, the requests allowed in a burst, and <em>refillPerSecond</em>, the
+ *       sustained rate. The limit under <em>*</em> applies to operations not listed. Operations
+ *       without a limit are not limited
+ *   <li><em>reconcileIntervalMs</em>, how often the nodes of the cluster share their usage, 1000 ms
+ *       if not set
+ *   <li><em>maxBuckets</em>, the most buckets kept on a node, 100000 if not set
+ * </ul>
+ *
+ * <p>The handler is added as the first handler of an operation, after the security handler and
+ * before client authentication looks up the client in the DB. A request is limited by the user ID
+ * set by {@link OIDCAuthentication} if it has a token, else by its source address and
+ * <em>clientId</em> header, so that a client sending wrong secrets is limited as well. As the
+ * client ID is not authenticated yet, it is not used alone, else anyone knowing a client ID could
+ * use up its limit. Requests with neither are not limited. Each response carries
+ * <em>RateLimit-Limit</em>, <em>RateLimit-Remaining</em> and <em>RateLimit-Reset</em>, the seconds
+ * until the bucket is full. A request over the limit gets 429 with <em>Retry-After</em>.
+ *
+ * <p>Buckets are kept on each node and shared by the instances of the API server verticle. Every
+ * reconcile interval, a node publishes the requests it admitted per bucket on the event bus, which
+ * the cluster manager carries to the other nodes, and each node takes them from its own buckets. A
+ * client spreading requests across nodes is thus held to the limit of the cluster, give or take
+ * what the nodes admit within an interval.
+ */
+public class RateLimitHandler implements Handler<RoutingContext> {
+
+  private static final Logger LOGGER = LogManager.getLogger(RateLimitHandler.class);
+
+  public static final String RATE_LIMITS = "rateLimits";
+  public static final String OPERATIONS = "operations";
+  public static final String CAPACITY = "capacity";
+  public static final String REFILL_PER_SECOND = "refillPerSecond";
+  public static final String RECONCILE_INTERVAL_MS = "reconcileIntervalMs";
+  public static final String MAX_BUCKETS = "maxBuckets";
+  public static final String ANY_OPERATION = "*";
+
+  public static final long DEFAULT_RECONCILE_INTERVAL_MS = 1000;
+  public static final int DEFAULT_MAX_BUCKETS = 100000;
+
+  public static final String HEADER_LIMIT = "RateLimit-Limit";
+  public static final String HEADER_REMAINING = "RateLimit-Remaining";
+  public static final String HEADER_RESET = "RateLimit-Reset";
+
+  public static final String USAGE_ADDRESS = "iudx.aaa.ratelimit.usage";
+
+  private static final String STATE_MAP_NAME = "iudx.aaa.ratelimit";
+  private static final String STATE_KEY = "state";
+  private static final String NODE = "node";
+  private static final String USAGE = "usage";
+  private static final String CLIENT = "client";
+  private static final String USER = "user";
+
+  private final Map<String, Limit> limits = new HashMap<String, Limit>();
+  private final State state;
+  private final Map<String, Counter> rejected = new ConcurrentHashMap<String, Counter>();
+
+  /**
+   * Create the handler. The first handler created on a node starts sharing usage with the other
+   * nodes.
+   *
+   * @param vertx the Vert.x instance
+   * @param config the <em>rateLimits</em> config
+   */
+  public RateLimitHandler(Vertx vertx, JsonObject config) {
+    JsonObject operations = config.getJsonObject(OPERATIONS, new JsonObject());
+    for (String operation : operations.fieldNames()) {
+      JsonObject limit = operations.getJsonObject(operation);
+      limits.put(
+          operation, new Limit(limit.getDouble(CAPACITY), limit.getDouble(REFILL_PER_SECOND)));
+    }
+
+    int maxBuckets = config.getInteger(MAX_BUCKETS, DEFAULT_MAX_BUCKETS);
+    this.state =
+        (State)
+            vertx
+                .sharedData()
+                .<String, State>getLocalMap(STATE_MAP_NAME)
+                .computeIfAbsent(STATE_KEY, key -> new State(maxBuckets));
+    if (state.started) {
+      return;
+    }
+    state.started = true;
+
+    vertx
+        .eventBus()
+        .<JsonObject>consumer(USAGE_ADDRESS, msg -> state.reconcile(msg.body()))
+        .exceptionHandler(err -> LOGGER.error("Fail: Rate limit usage : {}", err.getMessage()));
+    long interval = config.getLong(RECONCILE_INTERVAL_MS, DEFAULT_RECONCILE_INTERVAL_MS);
+    vertx.setPeriodic(
+        interval,
+        id -> {
+          JsonObject usage = state.takeUsage();
+          if (!usage.isEmpty()) {
+            vertx
+                .eventBus()
+                .publish(USAGE_ADDRESS, new JsonObject().put(NODE, state.node).put(USAGE, usage));
+          }
+        });
+    LOGGER.info("Rate limits enabled for operations {}", limits.keySet());
+  }
+
+  /**
+   * Check if an operation is limited.
+   *
+   * @param operation the OpenAPI operation ID
+   * @return true if the operation has a limit
+   */
+  public boolean limits(String operation) {
+    return limit(operation) != null;
+  }
+
+  @Override
+  public void handle(RoutingContext ctx) {
+    Route route = ctx.currentRoute();
+    String operation = route == null ? null : route.getName();
+    Limit limit = limit(operation);
+
+    String userId = ctx.get(OBTAINED_USER_ID);
+    String clientId = ctx.request().getHeader(CLIENT_ID);
+    String kind = userId != null ? USER : clientId != null ? CLIENT : null;
+    if (limit == null || kind == null) {
+      ctx.next();
+      return;
+    }
+
+    String key =
+        operation + ' ' + kind + ':' + (userId != null ? userId : source(ctx) + '/' + clientId);
+    Bucket bucket = state.bucket(key, limit);
+    if (bucket == null) {
+      /* Too many buckets, the request is let through rather than failed */
+      ctx.next();
+      return;
+    }
+
+    double remaining;
+    boolean admitted;
+    synchronized (bucket) {
+      admitted = bucket.tryTake();
+      remaining = bucket.tokens;
+    }
+    ctx.response()
+        .putHeader(HEADER_LIMIT, Long.toString((long) limit.capacity))
+        .putHeader(HEADER_REMAINING, Long.toString((long) Math.max(0, remaining)))
+        .putHeader(HEADER_RESET, seconds(limit.capacity - remaining, limit));
+    if (admitted) {
+      ctx.next();
+      return;
+    }
+
+    rejected
+        .computeIfAbsent(
+            operation + ' ' + kind,
+            k ->
+                Counter.builder("aaa.ratelimit.rejected")
+                    .description("Requests rejected by rate limits")
+                    .tag("operation", operation)
+                    .tag("key", kind)
+                    .register(registry()))
+        .increment();
+    RouteMetricsHandler.setUrnType(ctx, URN_TOO_MANY_REQUESTS.toString());
+    ctx.response()
+        .setStatusCode(429)
+        .putHeader(HEADER_RETRY_AFTER, seconds(1 - remaining, limit))
+        .putHeader(HEADER_CONTENT_TYPE, MIME_APPLICATION_JSON)
+        .end(JSON_RATE_LIMITED);
+  }
+
+  private Limit limit(String operation) {
+    Limit limit = operation == null ? null : limits.get(operation);
+    return limit == null ? limits.get(ANY_OPERATION) : limit;
+  }
+
+  private static String source(RoutingContext ctx) {
+    SocketAddress address = ctx.request().remoteAddress();
+    return address == null ? "" : address.host();
+  }
+
+  private static String seconds(double tokens, Limit limit) {
+    return Long.toString((long) Math.ceil(Math.max(0, tokens) / limit.refillPerSecond));
+  }
+
+  private static MeterRegistry registry() {
+    return Objects.requireNonNullElse(BackendRegistries.getDefaultNow(), Metrics.globalRegistry);
+  }
+
+  /** Limit of an operation. */
+  private static final class Limit {
+    private final double capacity;
+    private final double refillPerSecond;
+
+    private Limit(double capacity, double refillPerSecond) {
+      this.capacity = capacity;
+      this.refillPerSecond = refillPerSecond;
+    }
+  }
+
+  /** Token bucket of a client or user for an operation. */
+  private static final class Bucket {
+    private final Limit limit;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+    /* Requests admitted since usage was last published */
+    private int used;
+
+    private Bucket(Limit limit) {
+      this.limit = limit;
+      this.tokens = limit.capacity;
+    }
+
+    private void refill() {
+      long now = System.nanoTime();
+      tokens = Math.min(limit.capacity, tokens + (now - refilledAt) / 1e9 * limit.refillPerSecond);
+      refilledAt = now;
+    }
+
+    private boolean tryTake() {
+      refill();
+      if (tokens < 1) {
+        return false;
+      }
+      tokens -= 1;
+      used++;
+      return true;
+    }
+  }
+
+  /** Buckets of the node, shared by the verticle instances. */
+  private static final class State implements Shareable {
+    private final String node = UUID.randomUUID().toString();
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<String, Bucket>();
+    private final int maxBuckets;
+    private volatile boolean started;
+
+    private State(int maxBuckets) {
+      this.maxBuckets = maxBuckets;
+      Gauge.builder("aaa.ratelimit.buckets", buckets, Map::size)
+          .description("Rate limit buckets kept on the node")
+          .register(registry());
+    }
+
+    /* The bucket of a key, null if there are too many buckets */
+    private Bucket bucket(String key, Limit limit) {
+      Bucket bucket = buckets.get(key);
+      if (bucket != null || buckets.size() >= maxBuckets) {
+        return bucket;
+      }
+      return buckets.computeIfAbsent(key, k -> new Bucket(limit));
+    }
+
+    /* Take the usage since the last call, and drop buckets that are full again */
+    private JsonObject takeUsage() {
+      JsonObject usage = new JsonObject();
+      buckets
+          .entrySet()
+          .removeIf(
+              entry -> {
+                Bucket bucket = entry.getValue();
+                synchronized (bucket) {
+                  if (bucket.used > 0) {
+                    usage.put(entry.getKey(), bucket.used);
+                    bucket.used = 0;
+                    return false;
+                  }
+                  bucket.refill();
+                  return bucket.tokens >= bucket.limit.capacity;
+                }
+              });
+      return usage;
+    }
+
+    /* Take the usage of another node from the buckets of this node */
+    private void reconcile(JsonObject message) {
+      if (node.equals(message.getString(NODE))) {
+        return;
+      }
+      JsonObject usage = message.getJsonObject(USAGE);
+      for (String key : usage.fieldNames()) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+          continue;
+        }
+        synchronized (bucket) {
+          bucket.refill();
+          bucket.tokens = Math.max(0, bucket.tokens - usage.getInteger(key));
+        }
+      }
+    }
+  }
+}
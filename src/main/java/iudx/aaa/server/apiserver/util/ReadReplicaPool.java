@@ -0,0 +1,204 @@
+package iudx.aaa.server.apiserver.util;
+
+import static iudx.aaa.server.apiserver.util.Constants.DATABASE_IP;
+import static iudx.aaa.server.apiserver.util.Constants.DATABASE_PORT;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.Row;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Objects;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Creates pools for read-only queries that go to a read replica of the database. The replica is
+ * configured with <em>replicaOptions</em> in <em>postgresOptions</em>:
+ *
+ * <ul>
+ *   <li><em>databaseIP</em> and <em>databasePort</em> of the replica. The database, schema and
+ *       credentials are those of the primary
+ *   <li><em>databasePoolSize</em>, the size of the shared replica pool, see {@link SharedPgPool}.
+ *       Defaults to that of the primary
+ *   <li><em>maxLagMs</em>, the replication lag after which reads go to the primary, 1000 ms if not
+ *       set
+ *   <li><em>lagCheckIntervalMs</em>, how often the replication lag is checked, 1000 ms if not set
+ * </ul>
+ *
+ * <p>Reads go to the replica only while its last measured replication lag is within
+ * <em>maxLagMs</em>, so they see data at most about <em>maxLagMs</em> + <em>lagCheckIntervalMs</em>
+ * old. Otherwise, and until the lag is first measured, they go to the primary. If no replica is
+ * configured, the primary pool is used for reads.
+ *
+ * <p>Only use the read pool for queries that can tolerate this staleness. Queries that must see the
+ * result of a preceding write, like listing the roles of a user after adding them, use the primary
+ * pool. The number of reads sent to each is counted in the <em>aaa.db.reads</em> metric and the
+ * replication lag is reported as <em>aaa.db.replica.lag</em>.
+ */
+public final class ReadReplicaPool {
+
+  private static final Logger LOGGER = LogManager.getLogger(ReadReplicaPool.class);
+
+  public static final String REPLICA_OPTIONS = "replicaOptions";
+  public static final String REPLICA_MAX_LAG_MS = "maxLagMs";
+  public static final String REPLICA_LAG_CHECK_INTERVAL_MS = "lagCheckIntervalMs";
+  public static final long DEFAULT_REPLICA_MAX_LAG_MS = 1000;
+  public static final long DEFAULT_REPLICA_LAG_CHECK_INTERVAL_MS = 1000;
+  public static final String REPLICA_POOL_NAME = "aaa-postgres-replica";
+
+  /* A server that is not in recovery is a primary, so has no lag */
+  static final String SQL_REPLICATION_LAG =
+      "SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0"
+          + " WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+          + " ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000"
+          + " END AS lag_ms";
+
+  private ReadReplicaPool() {}
+
+  /**
+   * Get the pool for read-only queries of a verticle.
+   *
+   * @param vertx the Vert.x instance
+   * @param primary the pool of the primary
+   * @param connectOptions the connect options of the primary
+   * @param poolOptions options of the pool of the verticle
+   * @param config the verticle config
+   * @param owner name of the verticle, used in metrics
+   * @return the pool for reads, which is the primary pool if no replica is configured
+   */
+  public static PgPool pool(
+      Vertx vertx,
+      PgPool primary,
+      PgConnectOptions connectOptions,
+      PoolOptions poolOptions,
+      JsonObject config,
+      String owner) {
+    JsonObject replicaOptions = config.getJsonObject(REPLICA_OPTIONS);
+    if (replicaOptions == null) {
+      return primary;
+    }
+
+    PgConnectOptions replicaConnectOptions =
+        new PgConnectOptions(connectOptions)
+            .setHost(replicaOptions.getString(DATABASE_IP))
+            .setPort(Integer.parseInt(replicaOptions.getString(DATABASE_PORT)));
+    PgPool replica =
+        SharedPgPool.pool(
+            vertx,
+            replicaConnectOptions,
+            poolOptions,
+            config.copy().mergeIn(replicaOptions),
+            REPLICA_POOL_NAME,
+            owner);
+
+    long maxLagMs = replicaOptions.getLong(REPLICA_MAX_LAG_MS, DEFAULT_REPLICA_MAX_LAG_MS);
+    long checkIntervalMs =
+        replicaOptions.getLong(
+            REPLICA_LAG_CHECK_INTERVAL_MS, DEFAULT_REPLICA_LAG_CHECK_INTERVAL_MS);
+
+    LagMonitor monitor = new LagMonitor(replica, maxLagMs, owner);
+    monitor.check();
+    vertx.setPeriodic(checkIntervalMs, id -> monitor.check());
+
+    MeterRegistry registry =
+        Objects.requireNonNullElse(BackendRegistries.getDefaultNow(), Metrics.globalRegistry);
+    Counter replicaReads = readCounter(registry, owner, "replica");
+    Counter primaryReads = readCounter(registry, owner, "primary");
+    Gauge.builder("aaa.db.replica.lag", monitor, m -> m.lagMs)
+        .description("Replication lag of the read replica in milliseconds")
+        .tag("owner", owner)
+        .register(registry);
+
+    InvocationHandler handler =
+        (proxy, method, args) -> {
+          if (method.getDeclaringClass() == Object.class) {
+            return invoke(replica, method, args);
+          }
+          /* The primary pool is owned, and closed, by the verticle */
+          if ("close".equals(method.getName())) {
+            return invoke(replica, method, args);
+          }
+
+          if (monitor.usable) {
+            replicaReads.increment();
+            return invoke(replica, method, args);
+          }
+          primaryReads.increment();
+          return invoke(primary, method, args);
+        };
+    return (PgPool)
+        Proxy.newProxyInstance(
+            PgPool.class.getClassLoader(), new Class<?>[] {PgPool.class}, handler);
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static Counter readCounter(MeterRegistry registry, String owner, String target) {
+    return Counter.builder("aaa.db.reads")
+        .description("Read-only queries by the server they were sent to")
+        .tag("owner", owner)
+        .tag("target", target)
+        .register(registry);
+  }
+
+  /** Periodically measures the replication lag of the replica. */
+  private static final class LagMonitor {
+    private final PgPool replica;
+    private final long maxLagMs;
+    private final String owner;
+    private volatile boolean usable;
+    private volatile double lagMs = Double.NaN;
+
+    private LagMonitor(PgPool replica, long maxLagMs, String owner) {
+      this.replica = replica;
+      this.maxLagMs = maxLagMs;
+      this.owner = owner;
+    }
+
+    private void check() {
+      replica
+          .withConnection(
+              conn -> QueryMetrics.query(conn, "SQL_REPLICATION_LAG", SQL_REPLICATION_LAG))
+          .onSuccess(
+              rows -> {
+                Row row = rows.iterator().next();
+                Double lag = row.getDouble("lag_ms");
+                /* The lag is unknown if the replica has not replayed anything yet */
+                lagMs = lag == null ? Double.NaN : lag;
+                update(lag != null && lag <= maxLagMs);
+              })
+          .onFailure(
+              err -> {
+                LOGGER.error("Fail: Could not check replica lag : {}", err.getMessage());
+                lagMs = Double.NaN;
+                update(false);
+              });
+    }
+
+    private void update(boolean nowUsable) {
+      if (usable && !nowUsable) {
+        LOGGER.warn("Replica lag {} ms over {} ms, {} reads go to primary", lagMs, maxLagMs, owner);
+      } else if (!usable && nowUsable) {
+        LOGGER.info("Replica lag {} ms, {} reads go to replica", lagMs, owner);
+      }
+      usable = nowUsable;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package iudx.aaa.server.apiserver.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Route;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.micrometer.backends.BackendRegistries;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Records the latency of each request in the <em>aaa.http.server.requests</em> timer, tagged with
+ * the OpenAPI operation ID of the route, the HTTP status code and the URN type of the response. The
+ * timer publishes a percentile histogram, so that percentiles of an operation can be computed
+ * across nodes, and counts requests within each SLO in <em>routeMetricsSloMs</em> of the API server
+ * config.
+ *
+ * <p>The handler is added as a root handler, so the latency includes authentication and the other
+ * root handlers. The operation ID is the name of the route that handled the request, which is set
+ * by the router builder. Other routes are named by their path, and requests that matched no route
+ * are tagged <em>unmatched</em>. The URN type is set by the code writing the response using {@link
+ * #setUrnType}, and is <em>none</em> if it is not set.
+ */
+public class RouteMetricsHandler implements Handler<RoutingContext> {
+
+  public static final String METRIC_NAME = "aaa.http.server.requests";
+  public static final String CONFIG_SLO_MS = "routeMetricsSloMs";
+  public static final List<Long> DEFAULT_SLO_MS = List.of(25L, 50L, 100L, 250L, 500L, 1000L, 2500L);
+
+  private static final String URN_TYPE_KEY = "routeMetricsUrnType";
+  private static final String UNMATCHED = "unmatched";
+  private static final String NONE = "none";
+
+  private final MeterRegistry registry;
+  private final Duration[] slos;
+  private final Map<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+
+  /**
+   * Create the handler.
+   *
+   * @param config the API server config, may contain <em>routeMetricsSloMs</em>, an array of SLO
+   *     latencies in milliseconds
+   */
+  public RouteMetricsHandler(JsonObject config) {
+    this.registry =
+        Objects.requireNonNullElse(BackendRegistries.getDefaultNow(), Metrics.globalRegistry);
+
+    JsonArray sloMs = config.getJsonArray(CONFIG_SLO_MS);
+    List<Long> millis =
+        sloMs == null
+            ? DEFAULT_SLO_MS
+            : sloMs.stream()
+                .map(ms -> ((Number) ms).longValue())
+                .sorted()
+                .collect(Collectors.toList());
+    this.slos = millis.stream().map(Duration::ofMillis).toArray(Duration[]::new);
+  }
+
+  /**
+   * Set the URN type of the response, used to tag the latency of the request.
+   *
+   * @param ctx the routing context
+   * @param urnType the <em>type</em> of the response body, may be null
+   */
+  public static void setUrnType(RoutingContext ctx, String urnType) {
+    if (urnType != null) {
+      ctx.put(URN_TYPE_KEY, urnType);
+    }
+  }
+
+  @Override
+  public void handle(RoutingContext ctx) {
+    long start = System.nanoTime();
+    ctx.addEndHandler(res -> record(ctx, System.nanoTime() - start));
+    ctx.next();
+  }
+
+  private void record(RoutingContext ctx, long durationNanos) {
+    Route route = ctx.currentRoute();
+    String operation = route == null || route.getName() == null ? UNMATCHED : route.getName();
+    String status = Integer.toString(ctx.response().getStatusCode());
+    String urnType = ctx.get(URN_TYPE_KEY, NONE);
+
+    timers
+        .computeIfAbsent(
+            operation + ' ' + status + ' ' + urnType, key -> timer(operation, status, urnType))
+        .record(durationNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private Timer timer(String operation, String status, String urnType) {
+    return Timer.builder(METRIC_NAME)
+        .description("Latency of API requests by OpenAPI operation")
+        .tag("operation", operation)
+        .tag("status", status)
+        .tag("urn", urnType)
+        .publishPercentileHistogram()
+        .serviceLevelObjectives(slos)
+        .register(registry);
+  }
+}
@@ -0,0 +1,441 @@
+package iudx.aaa.server.apiserver.util;
+
+import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceBinder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary message codec for the messages of service calls. The generated service proxies
+ * send the arguments of a call, with data objects such as {@link iudx.aaa.server.apiserver.User},
+ * {@link iudx.aaa.server.apiserver.RequestToken} and {@link
+ * iudx.aaa.server.apiserver.DelegationInformation} converted to JSON, in a {@link JsonObject}, and
+ * services reply with a JsonObject. This codec encodes these JsonObjects instead of the JSON text
+ * of the system codec. An encoded message is written as
+ *
+ * <pre>
+ * [int length of the rest][byte version][object]
+ * </pre>
+ *
+ * <p>Each value is a tag byte followed by the value: ints, longs and doubles as such, strings as
+ * their UTF-8 length and bytes, and objects and arrays as their size and entries. Strings holding a
+ * UUID, such as user, resource server and delegation IDs, are written as two longs. Other values
+ * (enums, instants, binary and big numbers) are written as their JSON text, so that they decode as
+ * they would from JSON. Tags are only ever added in a new version.
+ *
+ * <p>Proxies created by {@link LocalServiceRegistry#lookup} send calls with this codec, and
+ * services bound with {@link #binder} reply with it. When the call is delivered on the same node,
+ * the event bus copies the message with {@link #transform} instead of encoding it, and the
+ * in-process binding of {@link LocalServiceRegistry} copies JSON values the same way. All nodes of
+ * a cluster must have the codec, as a node without it cannot decode the message.
+ */
+public final class ServiceMessageCodec implements MessageCodec<JsonObject, JsonObject> {
+
+  public static final String NAME = "iudx.aaa.service.binary";
+  public static final ServiceMessageCodec INSTANCE = new ServiceMessageCodec();
+
+  private static final byte VERSION = 1;
+
+  private static final byte NULL = 0;
+  private static final byte TRUE = 1;
+  private static final byte FALSE = 2;
+  private static final byte INT = 3;
+  private static final byte LONG = 4;
+  private static final byte DOUBLE = 5;
+  private static final byte STRING = 6;
+  private static final byte UUID_STRING = 7;
+  private static final byte OBJECT = 8;
+  private static final byte ARRAY = 9;
+  private static final byte JSON_TEXT = 10;
+
+  private static final int UUID_LENGTH = 36;
+
+  private ServiceMessageCodec() {}
+
+  /**
+   * Register the codec with the event bus, if it is not already registered.
+   *
+   * @param eventBus the event bus
+   */
+  public static void register(EventBus eventBus) {
+    try {
+      eventBus.registerCodec(INSTANCE);
+    } catch (IllegalStateException e) {
+      /* Already registered by another verticle */
+    }
+  }
+
+  /**
+   * Delivery options for sending service calls with the codec.
+   *
+   * @param vertx the Vert.x instance
+   * @return the delivery options
+   */
+  public static DeliveryOptions deliveryOptions(Vertx vertx) {
+    register(vertx.eventBus());
+    return new DeliveryOptions().setCodecName(NAME);
+  }
+
+  /**
+   * A service binder for services replying with the codec.
+   *
+   * @param vertx the Vert.x instance
+   * @return the service binder
+   */
+  public static ServiceBinder binder(Vertx vertx) {
+    register(vertx.eventBus());
+    return new ServiceBinder(vertx)
+        .addInterceptor((v, context, msg) -> Future.succeededFuture(new BinaryReply(msg)));
+  }
+
+  @Override
+  public void encodeToWire(Buffer buffer, JsonObject json) {
+    Writer writer = new Writer();
+    writer.writeByte(VERSION);
+    writer.writeObject(json.getMap());
+    buffer.appendInt(writer.length).appendBytes(writer.bytes, 0, writer.length);
+  }
+
+  @Override
+  public JsonObject decodeFromWire(int pos, Buffer buffer) {
+    int length = buffer.getInt(pos);
+    int start = pos + Integer.BYTES;
+    Reader reader = new Reader(buffer.getBytes(start, start + length));
+    byte version = reader.readByte();
+    if (version != VERSION) {
+      throw new IllegalStateException("Unknown service message version " + version);
+    }
+    return reader.readObject();
+  }
+
+  @Override
+  public JsonObject transform(JsonObject json) {
+    return json.copy();
+  }
+
+  @Override
+  public String name() {
+    return NAME;
+  }
+
+  @Override
+  public byte systemCodecID() {
+    return -1;
+  }
+
+  /*
+   * The UUID in a string, if the string is exactly the text of the UUID, i.e. lower case hex digits
+   * with dashes as written by UUID.toString
+   */
+  private static UUID asUuid(String value) {
+    if (value.length() != UUID_LENGTH) {
+      return null;
+    }
+    long msb = 0;
+    long lsb = 0;
+    int digits = 0;
+    for (int i = 0; i < UUID_LENGTH; i++) {
+      char c = value.charAt(i);
+      if (i == 8 || i == 13 || i == 18 || i == 23) {
+        if (c != '-') {
+          return null;
+        }
+        continue;
+      }
+      int digit = Character.digit(c, 16);
+      if (digit < 0 || Character.isUpperCase(c)) {
+        return null;
+      }
+      if (digits++ < 16) {
+        msb = (msb << 4) | digit;
+      } else {
+        lsb = (lsb << 4) | digit;
+      }
+    }
+    return new UUID(msb, lsb);
+  }
+
+  /** Writes values to a byte array, which grows as needed. */
+  private static final class Writer {
+    private byte[] bytes = new byte[512];
+    private int length;
+
+    private void ensure(int extra) {
+      if (length + extra > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+      }
+    }
+
+    private void writeByte(byte value) {
+      ensure(1);
+      bytes[length++] = value;
+    }
+
+    private void writeInt(int value) {
+      ensure(Integer.BYTES);
+      for (int shift = 24; shift >= 0; shift -= 8) {
+        bytes[length++] = (byte) (value >>> shift);
+      }
+    }
+
+    private void writeLong(long value) {
+      ensure(Long.BYTES);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        bytes[length++] = (byte) (value >>> shift);
+      }
+    }
+
+    /* Sizes and lengths are written 7 bits to a byte, as most are small */
+    private void writeVarInt(int value) {
+      ensure(5);
+      while ((value & ~0x7F) != 0) {
+        bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      bytes[length++] = (byte) value;
+    }
+
+    private void writeString(String value) {
+      int chars = value.length();
+      int ascii = 0;
+      while (ascii < chars && value.charAt(ascii) < 0x80) {
+        ascii++;
+      }
+      if (ascii < chars) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(utf8.length);
+        ensure(utf8.length);
+        System.arraycopy(utf8, 0, bytes, length, utf8.length);
+        length += utf8.length;
+        return;
+      }
+      /* Most strings are ASCII, which is its own UTF-8 encoding */
+      writeVarInt(chars);
+      ensure(chars);
+      for (int i = 0; i < chars; i++) {
+        bytes[length++] = (byte) value.charAt(i);
+      }
+    }
+
+    private void writeObject(Map<?, ?> map) {
+      writeVarInt(map.size());
+      /* Objects and arrays may hold maps and lists, which are written as objects and arrays */
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        writeString(String.valueOf(entry.getKey()));
+        writeValue(entry.getValue());
+      }
+    }
+
+    private void writeArray(List<?> list) {
+      writeVarInt(list.size());
+      for (Object value : list) {
+        writeValue(value);
+      }
+    }
+
+    private void writeValue(Object value) {
+      if (value == null) {
+        writeByte(NULL);
+      } else if (value instanceof String) {
+        String string = (String) value;
+        UUID uuid = asUuid(string);
+        if (uuid == null) {
+          writeByte(STRING);
+          writeString(string);
+        } else {
+          writeByte(UUID_STRING);
+          writeLong(uuid.getMostSignificantBits());
+          writeLong(uuid.getLeastSignificantBits());
+        }
+      } else if (value instanceof Boolean) {
+        writeByte((Boolean) value ? TRUE : FALSE);
+      } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+        writeByte(INT);
+        writeInt(((Number) value).intValue());
+      } else if (value instanceof Long) {
+        writeByte(LONG);
+        writeLong((Long) value);
+      } else if (value instanceof Double || value instanceof Float) {
+        writeByte(DOUBLE);
+        writeLong(Double.doubleToRawLongBits(((Number) value).doubleValue()));
+      } else if (value instanceof JsonObject) {
+        writeByte(OBJECT);
+        writeObject(((JsonObject) value).getMap());
+      } else if (value instanceof Map) {
+        writeByte(OBJECT);
+        writeObject((Map<?, ?>) value);
+      } else if (value instanceof JsonArray) {
+        writeByte(ARRAY);
+        writeArray(((JsonArray) value).getList());
+      } else if (value instanceof List) {
+        writeByte(ARRAY);
+        writeArray((List<?>) value);
+      } else {
+        writeByte(JSON_TEXT);
+        writeString(Json.encode(value));
+      }
+    }
+  }
+
+  /** Reads values from the bytes of a message. */
+  private static final class Reader {
+    private final byte[] bytes;
+    private int pos;
+
+    private Reader(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    private byte readByte() {
+      return bytes[pos++];
+    }
+
+    private int readInt() {
+      int value = 0;
+      for (int i = 0; i < Integer.BYTES; i++) {
+        value = (value << 8) | (bytes[pos++] & 0xFF);
+      }
+      return value;
+    }
+
+    private long readLong() {
+      long value = 0;
+      for (int i = 0; i < Long.BYTES; i++) {
+        value = (value << 8) | (bytes[pos++] & 0xFF);
+      }
+      return value;
+    }
+
+    private int readVarInt() {
+      int value = 0;
+      for (int shift = 0; ; shift += 7) {
+        byte b = readByte();
+        value |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+    }
+
+    private String readString() {
+      int length = readVarInt();
+      String value = new String(bytes, pos, length, StandardCharsets.UTF_8);
+      pos += length;
+      return value;
+    }
+
+    private JsonObject readObject() {
+      int size = readVarInt();
+      JsonObject json = new JsonObject(new LinkedHashMap<String, Object>(size * 4 / 3 + 1));
+      for (int i = 0; i < size; i++) {
+        String key = readString();
+        json.put(key, readValue());
+      }
+      return json;
+    }
+
+    private JsonArray readArray() {
+      int size = readVarInt();
+      JsonArray json = new JsonArray(new ArrayList<Object>(size));
+      for (int i = 0; i < size; i++) {
+        json.add(readValue());
+      }
+      return json;
+    }
+
+    private Object readValue() {
+      byte tag = readByte();
+      switch (tag) {
+        case NULL:
+          return null;
+        case TRUE:
+          return true;
+        case FALSE:
+          return false;
+        case INT:
+          return readInt();
+        case LONG:
+          return readLong();
+        case DOUBLE:
+          return Double.longBitsToDouble(readLong());
+        case STRING:
+          return readString();
+        case UUID_STRING:
+          return new UUID(readLong(), readLong()).toString();
+        case OBJECT:
+          return readObject();
+        case ARRAY:
+          return readArray();
+        case JSON_TEXT:
+          return Json.decodeValue(readString());
+        default:
+          throw new IllegalStateException("Unknown service message value tag " + tag);
+      }
+    }
+  }
+
+  /**
+   * A service call received by a bound service, whose JsonObject reply is sent with the codec.
+   * Failures and other replies are sent as they are.
+   */
+  private static final class BinaryReply implements Message<JsonObject> {
+    private final Message<JsonObject> msg;
+
+    private BinaryReply(Message<JsonObject> msg) {
+      this.msg = msg;
+    }
+
+    @Override
+    public String address() {
+      return msg.address();
+    }
+
+    @Override
+    public MultiMap headers() {
+      return msg.headers();
+    }
+
+    @Override
+    public JsonObject body() {
+      return msg.body();
+    }
+
+    @Override
+    public String replyAddress() {
+      return msg.replyAddress();
+    }
+
+    @Override
+    public boolean isSend() {
+      return msg.isSend();
+    }
+
+    @Override
+    public void reply(Object message, DeliveryOptions options) {
+      if (message instanceof JsonObject && options.getCodecName() == null) {
+        options.setCodecName(NAME);
+      }
+      msg.reply(message, options);
+    }
+
+    @Override
+    public <R> Future<Message<R>> replyAndRequest(Object message, DeliveryOptions options) {
+      return msg.replyAndRequest(message, options);
+    }
+  }
+}
@@ -0,0 +1,371 @@
+package iudx.aaa.server.apiserver.util;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.micrometer.backends.BackendRegistries;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.SqlConnection;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Creates Postgres pools backed by a single pool per node, shared by all verticles. The size of the
+ * shared pool, <em>databasePoolSize</em> in <em>postgresOptions</em>, is the budget of connections
+ * for the node, regardless of the number of verticles and verticle instances deployed.
+ *
+ * <p>The <em>poolSize</em> of a verticle is its fair share of the budget: all instances of the
+ * verticle together hold at most that many connections at a time, and wait for one of their
+ * connections to be released after that. This keeps a verticle under load from starving the others
+ * of connections. The share is applied to <em>withConnection</em>, <em>withTransaction</em> and
+ * <em>getConnection</em>, which is how the services use the pool.
+ *
+ * <p>If <em>databasePoolSize</em> is not set, each verticle instance gets its own pool of
+ * <em>poolSize</em> connections as before.
+ *
+ * <p>For each verticle, the time spent waiting for its share, the number of waiting requests and
+ * the connections in use are reported as <em>aaa.db.pool.wait</em>, <em>aaa.db.pool.queue</em> and
+ * <em>aaa.db.pool.inuse</em>, tagged with the pool and verticle. Vert.x reports the metrics of the
+ * shared pool itself under its name, <em>aaa-postgres</em> for the primary.
+ *
+ * <p>The whole wait for a connection, share and pool, is recorded in <em>aaa.db.pool.acquire</em>,
+ * and the requests waiting for one are reported as <em>aaa.db.pool.pending</em>, with or without a
+ * budget. A connection acquired after the {@link Deadline} of the request is not used. The queries
+ * themselves are timed by {@link QueryMetrics}.
+ */
+public final class SharedPgPool {
+
+  private static final Logger LOGGER = LogManager.getLogger(SharedPgPool.class);
+
+  public static final String DATABASE_POOL_SIZE = "databasePoolSize";
+  public static final String SHARED_POOL_NAME = "aaa-postgres";
+  public static final String METRIC_PENDING = "aaa.db.pool.pending";
+  private static final String SHARES_MAP_NAME = "iudx.aaa.pg.shares";
+  private static final Map<String, Acquire> ACQUIRES = new ConcurrentHashMap<String, Acquire>();
+
+  private SharedPgPool() {}
+
+  /**
+   * Get a pool for a verticle.
+   *
+   * @param vertx the Vert.x instance
+   * @param connectOptions the connect options
+   * @param poolOptions options of the pool of the verticle, the max size is the verticle's share
+   * @param config the verticle config
+   * @param owner name of the verticle, used in metrics
+   * @return the pool
+   */
+  public static PgPool pool(
+      Vertx vertx,
+      PgConnectOptions connectOptions,
+      PoolOptions poolOptions,
+      JsonObject config,
+      String owner) {
+    return pool(vertx, connectOptions, poolOptions, config, SHARED_POOL_NAME, owner);
+  }
+
+  /**
+   * Get a pool for a verticle, backed by a shared pool with the given name. Pools to different
+   * servers, e.g. a read replica, must use different names.
+   *
+   * @param vertx the Vert.x instance
+   * @param connectOptions the connect options
+   * @param poolOptions options of the pool of the verticle, the max size is the verticle's share
+   * @param config the verticle config
+   * @param name name of the shared pool
+   * @param owner name of the verticle, used in metrics
+   * @return the pool
+   */
+  public static PgPool pool(
+      Vertx vertx,
+      PgConnectOptions connectOptions,
+      PoolOptions poolOptions,
+      JsonObject config,
+      String name,
+      String owner) {
+    QueryMetrics.configure(config);
+    Acquire acquire = acquire(name, owner);
+    String budget = config.getString(DATABASE_POOL_SIZE);
+    if (budget == null) {
+      return wrap(PgPool.pool(vertx, connectOptions, poolOptions), null, acquire, vertx);
+    }
+
+    PoolOptions sharedOptions =
+        new PoolOptions(poolOptions)
+            .setShared(true)
+            .setName(name)
+            .setMaxSize(Integer.parseInt(budget));
+    PgPool shared = PgPool.pool(vertx, connectOptions, sharedOptions);
+
+    Share share =
+        (Share)
+            vertx
+                .sharedData()
+                .<String, Share>getLocalMap(SHARES_MAP_NAME)
+                .computeIfAbsent(
+                    name + "/" + owner, k -> new Share(name, owner, poolOptions.getMaxSize()));
+    LOGGER.debug("Using shared pool {} for {}, share {} of {}", name, owner, share.limit, budget);
+    return wrap(shared, share, acquire, vertx);
+  }
+
+  /* Shared by the instances of the verticle, as the gauge is */
+  private static Acquire acquire(String name, String owner) {
+    return ACQUIRES.computeIfAbsent(name + "/" + owner, k -> new Acquire(name, owner));
+  }
+
+  /* A pool limited to a share, if any, that records the wait for its connections */
+  private static PgPool wrap(PgPool pool, Share share, Acquire acquire, Vertx vertx) {
+    InvocationHandler handler =
+        (proxy, method, args) -> {
+          /* The callback variants are left out, the services use the futures */
+          if (method.getReturnType() != Future.class) {
+            return invoke(pool, method, args);
+          }
+          switch (method.getName()) {
+            case "withConnection":
+            case "withTransaction":
+              if (args[args.length - 1] instanceof Function) {
+                return withConnection(pool, method, args, share, acquire, vertx);
+              }
+              return invoke(pool, method, args);
+            case "getConnection":
+              if (args == null || args.length == 0) {
+                return getConnection(pool, share, acquire, vertx);
+              }
+              return invoke(pool, method, args);
+            default:
+              return invoke(pool, method, args);
+          }
+        };
+    return (PgPool)
+        Proxy.newProxyInstance(
+            PgPool.class.getClassLoader(), new Class<?>[] {PgPool.class}, handler);
+  }
+
+  private static Future<Object> withConnection(
+      PgPool pool, Method method, Object[] args, Share share, Acquire acquire, Vertx vertx) {
+    @SuppressWarnings("unchecked")
+    Function<SqlConnection, Future<?>> function =
+        (Function<SqlConnection, Future<?>>) args[args.length - 1];
+    Runnable acquired = acquire.waiting();
+    Object[] timedArgs = args.clone();
+    timedArgs[args.length - 1] =
+        (Function<SqlConnection, Future<?>>)
+            conn -> {
+              acquired.run();
+              if (Deadline.exceeded(Deadline.DB)) {
+                return Deadline.failure();
+              }
+              return function.apply(conn);
+            };
+    if (share == null) {
+      return invokeAsync(pool, method, timedArgs).onComplete(res -> acquired.run());
+    }
+    return share
+        .acquire(vertx)
+        .compose(
+            permit ->
+                invokeAsync(pool, method, timedArgs)
+                    .onComplete(
+                        res -> {
+                          acquired.run();
+                          share.release();
+                        }));
+  }
+
+  private static Future<SqlConnection> getConnection(
+      PgPool pool, Share share, Acquire acquire, Vertx vertx) {
+    Runnable acquired = acquire.waiting();
+    Future<SqlConnection> conn =
+        share == null
+            ? pool.getConnection()
+            : share
+                .acquire(vertx)
+                .compose(
+                    permit ->
+                        pool.getConnection()
+                            .onFailure(err -> share.release())
+                            .map(c -> releasingOnClose(c, share)));
+    return conn.onComplete(res -> acquired.run())
+        .compose(
+            c -> {
+              if (Deadline.exceeded(Deadline.DB)) {
+                return c.close().transform(res -> Deadline.failure());
+              }
+              return Future.succeededFuture(c);
+            });
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static Future<Object> invokeAsync(Object target, Method method, Object[] args) {
+    try {
+      @SuppressWarnings("unchecked")
+      Future<Object> result = (Future<Object>) invoke(target, method, args);
+      return result;
+    } catch (Throwable t) {
+      return Future.failedFuture(t);
+    }
+  }
+
+  /* A connection that releases its permit when closed */
+  private static SqlConnection releasingOnClose(SqlConnection conn, Share share) {
+    InvocationHandler handler =
+        new InvocationHandler() {
+          private boolean closed;
+
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("close".equals(method.getName()) && !closed) {
+              closed = true;
+              share.release();
+            }
+            Object result = SharedPgPool.invoke(conn, method, args);
+            return result == conn ? proxy : result;
+          }
+        };
+    return (SqlConnection)
+        Proxy.newProxyInstance(
+            SqlConnection.class.getClassLoader(), new Class<?>[] {SqlConnection.class}, handler);
+  }
+
+  /** The wait of a verticle for connections. */
+  private static final class Acquire {
+    private final Timer time;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private Acquire(String name, String owner) {
+      MeterRegistry registry =
+          Objects.requireNonNullElse(BackendRegistries.getDefaultNow(), Metrics.globalRegistry);
+      time =
+          Timer.builder("aaa.db.pool.acquire")
+              .description("Time waiting for a connection from the pool")
+              .tag("pool", name)
+              .tag("owner", owner)
+              .publishPercentileHistogram()
+              .register(registry);
+      Gauge.builder(METRIC_PENDING, pending, AtomicInteger::get)
+          .description("Requests waiting for a connection from the pool")
+          .tag("pool", name)
+          .tag("owner", owner)
+          .register(registry);
+    }
+
+    /* Count a wait for a connection, until the returned task is first run */
+    private Runnable waiting() {
+      pending.incrementAndGet();
+      long start = System.nanoTime();
+      AtomicBoolean done = new AtomicBoolean();
+      return () -> {
+        if (done.compareAndSet(false, true)) {
+          pending.decrementAndGet();
+          time.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+      };
+    }
+  }
+
+  /** Connections a verticle may hold at a time, across all of its instances. */
+  private static final class Share implements Shareable {
+    private final int limit;
+    private final Queue<Waiter> waiters = new ArrayDeque<Waiter>();
+    private final Timer waitTime;
+    private int inUse;
+
+    private Share(String name, String owner, int limit) {
+      this.limit = limit;
+      MeterRegistry registry =
+          Objects.requireNonNullElse(BackendRegistries.getDefaultNow(), Metrics.globalRegistry);
+      waitTime =
+          Timer.builder("aaa.db.pool.wait")
+              .description("Time waiting for a connection within the verticle's share")
+              .tag("pool", name)
+              .tag("owner", owner)
+              .register(registry);
+      Gauge.builder("aaa.db.pool.queue", this, Share::queued)
+          .description("Requests waiting for a connection within the verticle's share")
+          .tag("pool", name)
+          .tag("owner", owner)
+          .register(registry);
+      Gauge.builder("aaa.db.pool.inuse", this, Share::inUse)
+          .description("Connections in use by the verticle")
+          .tag("pool", name)
+          .tag("owner", owner)
+          .register(registry);
+    }
+
+    private synchronized int queued() {
+      return waiters.size();
+    }
+
+    private synchronized int inUse() {
+      return inUse;
+    }
+
+    private Future<Void> acquire(Vertx vertx) {
+      synchronized (this) {
+        if (inUse < limit) {
+          inUse++;
+          waitTime.record(0, TimeUnit.NANOSECONDS);
+          return Future.succeededFuture();
+        }
+        Waiter waiter = new Waiter(vertx.getOrCreateContext());
+        waiters.add(waiter);
+        return waiter.promise.future();
+      }
+    }
+
+    private void release() {
+      Waiter next;
+      synchronized (this) {
+        next = waiters.poll();
+        if (next == null) {
+          inUse--;
+          return;
+        }
+      }
+      /* The permit passes to the waiter, on the context it asked for it from */
+      waitTime.record(System.nanoTime() - next.since, TimeUnit.NANOSECONDS);
+      next.context.runOnContext(v -> next.promise.complete());
+    }
+  }
+
+  /** A request waiting for a connection. */
+  private static final class Waiter {
+    private final Context context;
+    private final Promise<Void> promise = Promise.promise();
+    private final long since = System.nanoTime();
+
+    private Waiter(Context context) {
+      this.context = context;
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package iudx.aaa.server.apiserver.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.micrometer.backends.BackendRegistries;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Timing of the stages of token issuance. The duration of each stage is recorded in the
+ * <em>aaa.token.stage</em> timer, tagged with the stage name, and collected per request in a {@link
+ * JsonObject} of stage name to milliseconds.
+ *
+ * <p>The stages on the API server, like client authentication and fetching roles, are route
+ * handlers. A stage started with {@link #stage} lasts until the next stage starts, or until {@link
+ * #endStage} is called, so it includes the time until the handler calls <em>next</em>. The stages
+ * in the token, policy and APD services are timed with {@link #time}. The services add their
+ * timings to their result under {@link #STAGE_TIMINGS}, which the API server removes from the
+ * response. If the client sends the {@link #HEADER_REQUEST_SERVER_TIMING} header, the timings are
+ * returned in the <em>Server-Timing</em> response header.
+ */
+public final class StageTimings {
+
+  public static final String METRIC_NAME = "aaa.token.stage";
+  public static final String STAGE_TIMINGS = "stageTimings";
+  public static final String HEADER_REQUEST_SERVER_TIMING = "x-request-server-timing";
+  public static final String HEADER_SERVER_TIMING = "Server-Timing";
+
+  public static final String CLIENT_AUTH = "client_auth";
+  public static final String FETCH_ROLES = "fetch_roles";
+  public static final String DELEGATION_AUTH = "delegation_auth";
+  public static final String VERIFY_RESOURCE_ACCESS = "verify_resource_access";
+  public static final String CATALOGUE = "catalogue";
+  public static final String APD = "apd";
+  public static final String APD_LOOKUP = "apd_lookup";
+  public static final String USER_LOOKUP = "keycloak_user_lookup";
+  public static final String APD_AUTH_TOKEN = "apd_auth_token";
+  public static final String APD_CALL = "apd_call";
+  public static final String JWT_SIGN = "jwt_sign";
+
+  private static final String CURRENT_STAGE_KEY = "stageTimingsCurrent";
+  private static final String CURRENT_START_KEY = "stageTimingsStart";
+  private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<String, Timer>();
+
+  private StageTimings() {}
+
+  /**
+   * Wrap a route handler so that it starts a stage of the request.
+   *
+   * @param stage the stage name
+   * @param handler the handler
+   * @return the wrapped handler
+   */
+  public static Handler<RoutingContext> stage(String stage, Handler<RoutingContext> handler) {
+    return ctx -> {
+      endStage(ctx);
+      ctx.put(CURRENT_STAGE_KEY, stage);
+      ctx.put(CURRENT_START_KEY, System.nanoTime());
+      handler.handle(ctx);
+    };
+  }
+
+  /**
+   * End the stage in progress for the request, if any.
+   *
+   * @param ctx the routing context
+   */
+  public static void endStage(RoutingContext ctx) {
+    String stage = ctx.remove(CURRENT_STAGE_KEY);
+    Long start = ctx.remove(CURRENT_START_KEY);
+    if (stage != null && start != null) {
+      record(stage, System.nanoTime() - start, requestTimings(ctx));
+    }
+  }
+
+  /**
+   * Get the timings of the stages of a request run so far on the API server.
+   *
+   * @param ctx the routing context
+   * @return the timings, in milliseconds by stage name
+   */
+  public static JsonObject requestTimings(RoutingContext ctx) {
+    JsonObject timings = ctx.get(STAGE_TIMINGS);
+    if (timings == null) {
+      timings = new JsonObject();
+      ctx.put(STAGE_TIMINGS, timings);
+    }
+    return timings;
+  }
+
+  /**
+   * Time an asynchronous stage.
+   *
+   * @param <T> the result type
+   * @param stage the stage name
+   * @param timings per-request timings to add the duration to, may be null
+   * @param action starts the stage
+   * @return the result of the stage
+   */
+  public static <T> Future<T> time(String stage, JsonObject timings, Supplier<Future<T>> action) {
+    long start = System.nanoTime();
+    Future<T> result;
+    try {
+      result = action.get();
+    } catch (RuntimeException e) {
+      result = Future.failedFuture(e);
+    }
+    return result.onComplete(res -> record(stage, System.nanoTime() - start, timings));
+  }
+
+  /**
+   * Time a synchronous stage.
+   *
+   * @param <T> the result type
+   * @param stage the stage name
+   * @param timings per-request timings to add the duration to, may be null
+   * @param action runs the stage
+   * @return the result of the stage
+   */
+  public static <T> T timeSync(String stage, JsonObject timings, Supplier<T> action) {
+    long start = System.nanoTime();
+    try {
+      return action.get();
+    } finally {
+      record(stage, System.nanoTime() - start, timings);
+    }
+  }
+
+  /**
+   * Remove the stage timings added to a result by a service.
+   *
+   * @param result the result, may be null
+   * @return the timings, empty if there are none
+   */
+  public static JsonObject take(JsonObject result) {
+    Object timings = result == null ? null : result.remove(STAGE_TIMINGS);
+    return timings instanceof JsonObject ? (JsonObject) timings : new JsonObject();
+  }
+
+  /**
+   * Format timings as a <em>Server-Timing</em> header value.
+   *
+   * @param timings the timings, in milliseconds by stage name
+   * @return the header value
+   */
+  public static String serverTimingHeader(JsonObject timings) {
+    return timings.stream()
+        .map(entry -> entry.getKey() + ";dur=" + entry.getValue())
+        .collect(Collectors.joining(", "));
+  }
+
+  private static void record(String stage, long durationNanos, JsonObject timings) {
+    TIMERS.computeIfAbsent(stage, StageTimings::timer).record(durationNanos, TimeUnit.NANOSECONDS);
+    if (timings != null) {
+      /* Microsecond precision is enough, and keeps the header short */
+      timings.put(stage, Math.round(durationNanos / 1000.0) / 1000.0);
+    }
+  }
+
+  private static Timer timer(String stage) {
+    MeterRegistry registry =
+        Objects.requireNonNullElse(BackendRegistries.getDefaultNow(), Metrics.globalRegistry);
+    return Timer.builder(METRIC_NAME)
+        .description("Duration of the stages of token issuance")
+        .tag("stage", stage)
+        .publishPercentileHistogram()
+        .register(registry);
+  }
+}
@@ -0,0 +1,234 @@
+package iudx.aaa.server.apiserver.util;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.tracing.TracingOptions;
+import io.vertx.tracing.opentelemetry.OpenTelemetryOptions;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * OpenTelemetry tracing, configured with <em>tracingOptions</em> in the config:
+ *
+ * <ul>
+ *   <li><em>exporter</em>, <em>otlp</em> to export spans to a collector over OTLP/gRPC,
+ *       <em>file</em> to write them as JSON lines to a file, or <em>none</em>
+ *   <li><em>otlpEndpoint</em>, the collector, <em>http://localhost:4317</em> if not set
+ *   <li><em>file</em>, the file spans are appended to
+ *   <li><em>sampleRatio</em>, the ratio of requests traced, 1.0 if not set. A request that comes
+ *       with a sampled trace context is always traced
+ *   <li><em>serviceName</em>, <em>iudx-aaa-server</em> if not set
+ * </ul>
+ *
+ * <p>Vert.x traces the HTTP requests served, the event bus messages of service proxies, the web
+ * client calls to the catalogue, APDs and resource servers, and the queries to Postgres, and
+ * propagates the W3C trace context in message and request headers. Calls that do not go through
+ * Vert.x, i.e. in-process service calls and the Keycloak admin client, are traced with {@link
+ * #startSpan}.
+ */
+public final class Tracing {
+
+  private static final Logger LOGGER = LogManager.getLogger(Tracing.class);
+
+  public static final String TRACING_OPTIONS = "tracingOptions";
+  public static final String EXPORTER = "exporter";
+  public static final String OTLP_ENDPOINT = "otlpEndpoint";
+  public static final String FILE = "file";
+  public static final String SAMPLE_RATIO = "sampleRatio";
+  public static final String SERVICE_NAME = "serviceName";
+
+  public static final String EXPORTER_OTLP = "otlp";
+  public static final String EXPORTER_FILE = "file";
+  public static final String EXPORTER_NONE = "none";
+  public static final String DEFAULT_OTLP_ENDPOINT = "http://localhost:4317";
+  public static final String DEFAULT_SERVICE_NAME = "iudx-aaa-server";
+
+  private static final String INSTRUMENTATION_NAME = "iudx.aaa.server";
+  private static final AttributeKey<String> SERVICE_NAME_KEY =
+      AttributeKey.stringKey("service.name");
+
+  private static volatile OpenTelemetry openTelemetry = OpenTelemetry.noop();
+  private static volatile SdkTracerProvider tracerProvider;
+
+  private Tracing() {}
+
+  /**
+   * Set up tracing from the config. Must be called once, before creating the Vert.x instance.
+   *
+   * @param config the config
+   * @return the tracing options of the Vert.x instance, null if tracing is not configured
+   */
+  public static TracingOptions options(JsonObject config) {
+    JsonObject tracingOptions = config.getJsonObject(TRACING_OPTIONS);
+    String exporterType =
+        tracingOptions == null ? EXPORTER_NONE : tracingOptions.getString(EXPORTER, EXPORTER_NONE);
+    if (EXPORTER_NONE.equals(exporterType)) {
+      return null;
+    }
+
+    SpanExporter exporter;
+    if (EXPORTER_OTLP.equals(exporterType)) {
+      exporter =
+          OtlpGrpcSpanExporter.builder()
+              .setEndpoint(tracingOptions.getString(OTLP_ENDPOINT, DEFAULT_OTLP_ENDPOINT))
+              .build();
+    } else if (EXPORTER_FILE.equals(exporterType)) {
+      exporter = new FileSpanExporter(tracingOptions.getString(FILE));
+    } else {
+      throw new IllegalArgumentException("Unknown trace exporter " + exporterType);
+    }
+
+    Resource resource =
+        Resource.getDefault()
+            .merge(
+                Resource.create(
+                    Attributes.of(
+                        SERVICE_NAME_KEY,
+                        tracingOptions.getString(SERVICE_NAME, DEFAULT_SERVICE_NAME))));
+    double ratio = tracingOptions.getDouble(SAMPLE_RATIO, 1.0);
+
+    tracerProvider =
+        SdkTracerProvider.builder()
+            .setResource(resource)
+            .setSampler(Sampler.parentBased(Sampler.traceIdRatioBased(ratio)))
+            .addSpanProcessor(BatchSpanProcessor.builder(exporter).build())
+            .build();
+    OpenTelemetrySdk sdk =
+        OpenTelemetrySdk.builder()
+            .setTracerProvider(tracerProvider)
+            .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+            .build();
+    openTelemetry = sdk;
+    LOGGER.info("Tracing enabled, exporting spans with {} exporter", exporterType);
+    return new OpenTelemetryOptions(sdk);
+  }
+
+  /**
+   * Get the tracer for spans created by the server. It creates no spans if tracing is not
+   * configured.
+   *
+   * @return the tracer
+   */
+  public static Tracer tracer() {
+    return openTelemetry.getTracer(INSTRUMENTATION_NAME);
+  }
+
+  /**
+   * Start a span that is a child of the current span of the Vert.x context, if any.
+   *
+   * @param name the span name
+   * @param kind the span kind
+   * @return the span
+   */
+  public static Span startSpan(String name, SpanKind kind) {
+    return tracer().spanBuilder(name).setSpanKind(kind).startSpan();
+  }
+
+  /**
+   * End a span, marking it as failed if there is an error.
+   *
+   * @param span the span
+   * @param err the error, null if the operation succeeded
+   */
+  public static void endSpan(Span span, Throwable err) {
+    if (err != null) {
+      span.setStatus(StatusCode.ERROR, String.valueOf(err.getMessage()));
+    }
+    span.end();
+  }
+
+  /** Export the spans not yet exported and stop tracing. */
+  public static void shutdown() {
+    if (tracerProvider != null) {
+      tracerProvider.shutdown().join(10, TimeUnit.SECONDS);
+    }
+  }
+
+  /** Appends spans to a file, one JSON object per line. */
+  private static final class FileSpanExporter implements SpanExporter {
+    private final BufferedWriter writer;
+
+    private FileSpanExporter(String file) {
+      try {
+        this.writer =
+            Files.newBufferedWriter(
+                Paths.get(file),
+                StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Could not open trace file " + file, e);
+      }
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+      try {
+        for (SpanData span : spans) {
+          JsonObject attributes = new JsonObject();
+          span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), value));
+          JsonObject json =
+              new JsonObject()
+                  .put("traceId", span.getTraceId())
+                  .put("spanId", span.getSpanId())
+                  .put("parentSpanId", span.getParentSpanId())
+                  .put("name", span.getName())
+                  .put("kind", span.getKind().name())
+                  .put("startEpochNanos", span.getStartEpochNanos())
+                  .put(
+                      "durationMs",
+                      (span.getEndEpochNanos() - span.getStartEpochNanos()) / 1_000_000.0)
+                  .put("status", span.getStatus().getStatusCode().name())
+                  .put("attributes", attributes);
+          writer.write(json.encode());
+          writer.newLine();
+        }
+        writer.flush();
+        return CompletableResultCode.ofSuccess();
+      } catch (IOException e) {
+        LOGGER.error("Fail: Could not write spans : {}", e.getMessage());
+        return CompletableResultCode.ofFailure();
+      }
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+      return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public synchronized CompletableResultCode shutdown() {
+      try {
+        writer.close();
+        return CompletableResultCode.ofSuccess();
+      } catch (IOException e) {
+        return CompletableResultCode.ofFailure();
+      }
+    }
+  }
+}
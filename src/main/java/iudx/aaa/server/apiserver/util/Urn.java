@@ -11,7 +11,8 @@ public enum Urn {
   URN_INVALID_INPUT("urn:dx:as:InvalidInput"),
   URN_ALREADY_EXISTS("urn:dx:as:AlreadyExists"),
   URN_INVALID_AUTH_TOKEN("urn:dx:as:InvalidAuthenticationToken"),
-  URN_MISSING_AUTH_TOKEN("urn:dx:as:MissingAuthenticationToken");
+  URN_MISSING_AUTH_TOKEN("urn:dx:as:MissingAuthenticationToken"),
+  URN_TOO_MANY_REQUESTS("urn:dx:as:TooManyRequests");
 
   private String text;
 
@@ -0,0 +1,183 @@
+package iudx.aaa.server.auditing;
+
+import static iudx.aaa.server.auditing.util.Constants.DATABASE_TABLE_NAME;
+import static iudx.aaa.server.auditing.util.Constants.ERROR;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_ACK_TIMEOUT_MS;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_EVENT;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_EVENT_DATA;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_EVENT_END;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_EVENT_ERROR;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_FAILED;
+import static iudx.aaa.server.auditing.util.Constants.FAILED;
+import static iudx.aaa.server.auditing.util.Constants.PARAMS_KEY;
+import static iudx.aaa.server.auditing.util.Constants.QUERY_KEY;
+import static iudx.aaa.server.auditing.util.Constants.STREAM_ADDRESS;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowStream;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Transaction;
+import io.vertx.sqlclient.Tuple;
+import iudx.aaa.server.auditing.util.QueryBuilder;
+import iudx.aaa.server.auditing.util.ResponseBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Streams audit records matching an export request as NDJSON. Records are read with a Postgres
+ * cursor and sent in chunks of at most <em>auditingExportFetchSize</em> records to the stream
+ * address in the request. The cursor is paused until the receiver acknowledges a chunk, so at most
+ * one chunk is held in memory regardless of the size of the export.
+ *
+ * <p>The export request is replied to once the cursor is open, or failed with a 400 status if the
+ * request is invalid. Each message sent to the stream address has the {@link
+ * iudx.aaa.server.auditing.util.Constants#EXPORT_EVENT} header set to <em>data</em>, <em>end</em>
+ * or <em>error</em>.
+ */
+public class AuditExporter implements Handler<Message<JsonObject>> {
+
+  private static final Logger LOGGER = LogManager.getLogger(AuditExporter.class);
+
+  private final Vertx vertx;
+  private final PgPool pool;
+  private final String databaseTableName;
+  private final int fetchSize;
+  private final QueryBuilder queryBuilder = new QueryBuilder();
+
+  /**
+   * Create the exporter.
+   *
+   * @param vertx the Vert.x instance
+   * @param pool pool for the auditing database
+   * @param databaseTableName the audit table
+   * @param fetchSize number of records fetched from the cursor and sent in a chunk
+   */
+  public AuditExporter(Vertx vertx, PgPool pool, String databaseTableName, int fetchSize) {
+    this.vertx = vertx;
+    this.pool = pool;
+    this.databaseTableName = databaseTableName;
+    this.fetchSize = fetchSize;
+  }
+
+  @Override
+  public void handle(Message<JsonObject> msg) {
+    JsonObject request = msg.body().copy().put(DATABASE_TABLE_NAME, databaseTableName);
+    String streamAddress = request.getString(STREAM_ADDRESS);
+    JsonObject query = queryBuilder.buildExportQuery(request);
+
+    if (query.containsKey(ERROR)) {
+      LOGGER.error("Fail: Query returned with an error: " + query.getString(ERROR));
+      ResponseBuilder responseBuilder =
+          new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(query.getString(ERROR));
+      msg.fail(400, responseBuilder.getResponse().encode());
+      return;
+    }
+
+    Tuple params = Tuple.tuple();
+    query.getJsonArray(PARAMS_KEY).forEach(params::addValue);
+
+    pool.getConnection()
+        .compose(
+            conn ->
+                conn.begin()
+                    .compose(
+                        tx ->
+                            conn.prepare(query.getString(QUERY_KEY))
+                                .map(ps -> new Export(conn, tx, ps.createStream(fetchSize, params))))
+                    .onFailure(err -> conn.close()))
+        .onSuccess(
+            export -> {
+              msg.reply(null);
+              export.start(streamAddress);
+            })
+        .onFailure(
+            err -> {
+              LOGGER.error("Fail: Could not open audit export cursor : {}", err.getMessage());
+              ResponseBuilder responseBuilder =
+                  new ResponseBuilder(FAILED).setTypeAndTitle(500).setMessage(EXPORT_FAILED);
+              msg.fail(500, responseBuilder.getResponse().encode());
+            });
+  }
+
+  /** State of a single export. */
+  private final class Export {
+    private final SqlConnection conn;
+    private final Transaction tx;
+    private final RowStream<Row> stream;
+    private String streamAddress;
+    private Buffer chunk = Buffer.buffer();
+    private int chunkRows;
+    private boolean closed;
+
+    private Export(SqlConnection conn, Transaction tx, RowStream<Row> stream) {
+      this.conn = conn;
+      this.tx = tx;
+      this.stream = stream;
+    }
+
+    private void start(String streamAddress) {
+      this.streamAddress = streamAddress;
+
+      stream.exceptionHandler(
+          err -> {
+            LOGGER.error("Fail: Audit export failed : {}", err.getMessage());
+            vertx.eventBus().send(streamAddress, null, event(EXPORT_EVENT_ERROR));
+            close();
+          });
+
+      stream.endHandler(
+          v -> {
+            Future<Void> sent = chunkRows > 0 ? sendChunk() : Future.succeededFuture();
+            sent.onSuccess(
+                    res ->
+                        vertx.eventBus().send(streamAddress, null, event(EXPORT_EVENT_END)))
+                .onComplete(res -> close());
+          });
+
+      stream.handler(
+          row -> {
+            chunk.appendString(AuditingServiceImpl.getJsonObject(row).encode()).appendByte(
+                (byte) '\n');
+            if (++chunkRows >= fetchSize) {
+              stream.pause();
+              sendChunk().onSuccess(res -> stream.resume()).onFailure(err -> close());
+            }
+          });
+    }
+
+    /* Send the current chunk and wait for it to be acknowledged */
+    private Future<Void> sendChunk() {
+      Buffer data = chunk;
+      chunk = Buffer.buffer();
+      chunkRows = 0;
+
+      return vertx
+          .eventBus()
+          .request(streamAddress, data, event(EXPORT_EVENT_DATA))
+          .<Void>mapEmpty()
+          .onFailure(err -> LOGGER.warn("Audit export aborted : {}", err.getMessage()));
+    }
+
+    private DeliveryOptions event(String event) {
+      return new DeliveryOptions()
+          .addHeader(EXPORT_EVENT, event)
+          .setSendTimeout(EXPORT_ACK_TIMEOUT_MS);
+    }
+
+    private void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      stream.close().compose(res -> tx.rollback()).onComplete(res -> conn.close());
+    }
+  }
+}
@@ -0,0 +1,519 @@
+package iudx.aaa.server.auditing;
+
+import static iudx.aaa.server.auditing.util.Constants.DEFAULT_SPOOL_MAX_BYTES;
+import static iudx.aaa.server.auditing.util.Constants.DEFAULT_SPOOL_REPLAY_INTERVAL_MS;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_DEAD_LETTER_FILE;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_DIRECTORY;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_FILE_PREFIX;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_FILE_SUFFIX;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_FSYNC;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_FULL;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_INSTANCE_PREFIX;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_LOCK_FILE;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_MAX_BYTES;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_REPLAY_INTERVAL_MS;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_SEGMENT_BYTES;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
+import io.vertx.sqlclient.Tuple;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Local write-behind spool for audit records that could not be written to the auditing database.
+ * Records are appended as JSON lines to segment files in the spool directory and replayed into the
+ * database in batches once it is reachable again. Segments of records that have been replayed are
+ * deleted.
+ *
+ * <p>Each spool uses its own subdirectory of <em>auditingSpoolDirectory</em>, held with a file lock
+ * while the spool is open, so that several auditing verticle instances or processes may share the
+ * directory. A restarted instance takes the first unlocked subdirectory and replays the segments
+ * left in it.
+ *
+ * <p>A batch that fails to replay because the database is unavailable is kept and retried at the
+ * next replay. A batch that fails for any other reason is split and replayed in halves, and a
+ * single record that still fails is moved to the <em>dead-letter.jsonl</em> file of the spool, so
+ * that it does not block the records spooled after it. Records are replayed so that those already
+ * in the database are skipped, as a batch may have been written without its result being received.
+ *
+ * <p>The total size of the spool is limited by <em>auditingSpoolMaxBytes</em>, records that do not
+ * fit are dropped. The <em>auditingSpoolFsync</em> option controls when spooled data is forced to
+ * disk:
+ *
+ * <ul>
+ *   <li><em>always</em> - after every append
+ *   <li><em>periodic</em> - at every replay interval
+ *   <li><em>never</em> - left to the OS
+ * </ul>
+ *
+ * <p>The size of the spool and the records spooled, replayed, dropped and dead-lettered are
+ * reported as <em>aaa.audit.spool.*</em> metrics, tagged with the subdirectory of the spool.
+ *
+ * <p>All file operations run serially on a dedicated worker executor.
+ */
+public class AuditSpool {
+
+  private static final Logger LOGGER = LogManager.getLogger(AuditSpool.class);
+
+  enum FsyncPolicy {
+    ALWAYS,
+    PERIODIC,
+    NEVER
+  }
+
+  private final Vertx vertx;
+  private final Path baseDirectory;
+  private final long maxBytes;
+  private final FsyncPolicy fsyncPolicy;
+  private final long replayIntervalMs;
+  private final WorkerExecutor executor;
+
+  private final AtomicLong spoolBytes = new AtomicLong();
+  private final MeterRegistry registry;
+  /* Tagged with the spool subdirectory, registered when the spool is opened */
+  private final List<Meter> meters = new ArrayList<Meter>();
+  private Counter spooledRecords;
+  private Counter replayedRecords;
+  private Counter droppedRecords;
+  private Counter deadLetteredRecords;
+
+  private Path directory;
+  /* Holds the lock of the spool subdirectory while open */
+  private FileChannel lockChannel;
+  private FileChannel currentSegment;
+  private long segmentSequence;
+  private boolean replaying;
+  private long timerId = -1;
+
+  /**
+   * Create the spool. The spool directory is created when the spool is opened.
+   *
+   * @param vertx the Vert.x instance
+   * @param config the auditing config, which must have <em>auditingSpoolDirectory</em>
+   */
+  public AuditSpool(Vertx vertx, JsonObject config) {
+    this.vertx = vertx;
+    this.baseDirectory = Paths.get(config.getString(SPOOL_DIRECTORY));
+    this.maxBytes = config.getLong(SPOOL_MAX_BYTES, DEFAULT_SPOOL_MAX_BYTES);
+    this.fsyncPolicy =
+        FsyncPolicy.valueOf(
+            config.getString(SPOOL_FSYNC, FsyncPolicy.PERIODIC.toString()).toUpperCase());
+    this.replayIntervalMs =
+        config.getLong(SPOOL_REPLAY_INTERVAL_MS, DEFAULT_SPOOL_REPLAY_INTERVAL_MS);
+    this.executor = vertx.createSharedWorkerExecutor("audit-spool", 1);
+    this.registry =
+        Objects.requireNonNullElse(BackendRegistries.getDefaultNow(), Metrics.globalRegistry);
+  }
+
+  /* Register the meters of the spool, tagged with its subdirectory */
+  private void registerMeters() {
+    String spool = directory.toString();
+    meters.add(
+        Gauge.builder("aaa.audit.spool.bytes", spoolBytes, AtomicLong::get)
+            .description("Size of audit records held in the local spool")
+            .baseUnit("bytes")
+            .tag("spool", spool)
+            .register(registry));
+    spooledRecords =
+        Counter.builder("aaa.audit.spool.records.spooled")
+            .description("Audit records written to the local spool")
+            .tag("spool", spool)
+            .register(registry);
+    replayedRecords =
+        Counter.builder("aaa.audit.spool.records.replayed")
+            .description("Spooled audit records replayed into the auditing database")
+            .tag("spool", spool)
+            .register(registry);
+    droppedRecords =
+        Counter.builder("aaa.audit.spool.records.dropped")
+            .description("Audit records dropped as the local spool was full")
+            .tag("spool", spool)
+            .register(registry);
+    deadLetteredRecords =
+        Counter.builder("aaa.audit.spool.records.deadlettered")
+            .description("Spooled audit records moved to the dead-letter file as they failed")
+            .tag("spool", spool)
+            .register(registry);
+    meters.addAll(List.of(spooledRecords, replayedRecords, droppedRecords, deadLetteredRecords));
+  }
+
+  /**
+   * Lock a subdirectory of the spool directory and account for segments left over from a previous
+   * run.
+   *
+   * @return a void Future
+   */
+  public Future<Void> open() {
+    return executor.executeBlocking(
+        () -> {
+          lockDirectory();
+          registerMeters();
+          List<Path> segments = listSegments();
+          long size = 0;
+          for (Path segment : segments) {
+            size += Files.size(segment);
+            segmentSequence = Math.max(segmentSequence, sequenceOf(segment) + 1);
+          }
+          spoolBytes.set(size);
+          if (!segments.isEmpty()) {
+            LOGGER.warn("Found {} bytes of spooled audit records in {}", size, directory);
+          }
+          return null;
+        });
+  }
+
+  /**
+   * Start replaying spooled records at the configured interval.
+   *
+   * @param writer writes a batch of records to the auditing database
+   */
+  public void startReplay(Function<List<Tuple>, Future<Void>> writer) {
+    timerId = vertx.setPeriodic(replayIntervalMs, id -> replay(writer));
+  }
+
+  /**
+   * Check if there are spooled records that have not been replayed yet.
+   *
+   * @return true if the spool is empty
+   */
+  public boolean isEmpty() {
+    return spoolBytes.get() == 0;
+  }
+
+  /**
+   * Append records to the spool.
+   *
+   * @param records the records, each a tuple of primary key, body, endpoint, method, time and user
+   *     ID
+   * @return a void Future that fails if the records could not be spooled
+   */
+  public Future<Void> append(List<Tuple> records) {
+    StringBuilder lines = new StringBuilder();
+    for (Tuple record : records) {
+      JsonArray line = new JsonArray();
+      for (int i = 0; i < record.size(); i++) {
+        line.add(record.getValue(i));
+      }
+      lines.append(line.encode()).append('\n');
+    }
+    byte[] data = lines.toString().getBytes(StandardCharsets.UTF_8);
+
+    return executor
+        .executeBlocking(
+            () -> {
+              if (spoolBytes.get() + data.length > maxBytes) {
+                throw new IllegalStateException(SPOOL_FULL);
+              }
+
+              if (currentSegment == null) {
+                openSegment();
+              }
+              ByteBuffer buf = ByteBuffer.wrap(data);
+              while (buf.hasRemaining()) {
+                currentSegment.write(buf);
+              }
+              if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                currentSegment.force(false);
+              }
+              spoolBytes.addAndGet(data.length);
+
+              if (currentSegment.size() >= SPOOL_SEGMENT_BYTES) {
+                closeSegment();
+              }
+              return null;
+            })
+        .<Void>mapEmpty()
+        .onSuccess(res -> spooledRecords.increment(records.size()))
+        .onFailure(
+            err -> {
+              droppedRecords.increment(records.size());
+              LOGGER.error("Fail: Could not spool {} audit records : {}", records.size(), err);
+            });
+  }
+
+  /**
+   * Stop replaying, close the current segment and release the spool subdirectory.
+   *
+   * @return a void Future
+   */
+  public Future<Void> close() {
+    if (timerId != -1) {
+      vertx.cancelTimer(timerId);
+    }
+    return executor
+        .executeBlocking(
+            () -> {
+              closeSegment();
+              if (lockChannel != null) {
+                lockChannel.close();
+                lockChannel = null;
+              }
+              /* The subdirectory may be taken by another spool, which registers its own meters */
+              meters.forEach(registry::remove);
+              meters.clear();
+              return null;
+            })
+        .onComplete(res -> executor.close())
+        .mapEmpty();
+  }
+
+  /**
+   * Replay all spooled segments, oldest first. The current segment is closed first so that all
+   * spooled records are replayed. Replay stops at the first batch that could not be written as the
+   * database is unavailable; the records not yet written are kept in the segment. Records that fail
+   * for other reasons are moved to the dead-letter file.
+   *
+   * @param writer writes a batch of records to the auditing database
+   * @return a void Future that fails if some records could not be replayed
+   */
+  Future<Void> replay(Function<List<Tuple>, Future<Void>> writer) {
+    if (replaying) {
+      return Future.succeededFuture();
+    }
+
+    if (isEmpty()) {
+      if (fsyncPolicy == FsyncPolicy.PERIODIC) {
+        return executor.executeBlocking(
+            () -> {
+              if (currentSegment != null) {
+                currentSegment.force(false);
+              }
+              return null;
+            });
+      }
+      return Future.succeededFuture();
+    }
+
+    replaying = true;
+    return executor
+        .executeBlocking(
+            () -> {
+              closeSegment();
+              return listSegments();
+            })
+        .compose(segments -> replaySegments(segments, 0, writer))
+        .onComplete(
+            res -> {
+              replaying = false;
+              if (res.failed()) {
+                LOGGER.warn("Audit spool replay incomplete : {}", res.cause().getMessage());
+              }
+            });
+  }
+
+  private Future<Void> replaySegments(
+      List<Path> segments, int index, Function<List<Tuple>, Future<Void>> writer) {
+    if (index >= segments.size()) {
+      return Future.succeededFuture();
+    }
+
+    Path segment = segments.get(index);
+    return executor
+        .executeBlocking(() -> Files.readAllLines(segment, StandardCharsets.UTF_8))
+        .compose(this::deadLetterCorrupt)
+        .compose(lines -> replayLines(segment, lines, 0, writer))
+        .compose(res -> replaySegments(segments, index + 1, writer));
+  }
+
+  private Future<Void> replayLines(
+      Path segment, List<String> lines, int from, Function<List<Tuple>, Future<Void>> writer) {
+    if (from >= lines.size()) {
+      return executor.executeBlocking(
+          () -> {
+            long size = Files.size(segment);
+            Files.delete(segment);
+            spoolBytes.addAndGet(-size);
+            return null;
+          });
+    }
+
+    int to = Math.min(from + AuditWriteBuffer.MAX_BATCH_SIZE, lines.size());
+
+    return replayBatch(lines.subList(from, to), writer)
+        .recover(
+            err ->
+                keepRemaining(segment, lines.subList(from, lines.size()))
+                    .compose(res -> Future.failedFuture(err)))
+        .compose(res -> replayLines(segment, lines, to, writer));
+  }
+
+  /*
+   * Write a batch of spooled lines. A batch that fails for a reason other than the database being
+   * unavailable is split in halves until the records that fail are found and dead-lettered
+   */
+  private Future<Void> replayBatch(List<String> lines, Function<List<Tuple>, Future<Void>> writer) {
+    List<Tuple> batch = lines.stream().map(AuditSpool::toTuple).collect(Collectors.toList());
+
+    return writer
+        .apply(batch)
+        .onSuccess(res -> replayedRecords.increment(batch.size()))
+        .recover(
+            err -> {
+              if (AuditWriteBuffer.isTransient(err)) {
+                return Future.failedFuture(err);
+              }
+              if (lines.size() == 1) {
+                return deadLetter(lines, err.getMessage());
+              }
+              int mid = lines.size() / 2;
+              return replayBatch(lines.subList(0, mid), writer)
+                  .compose(res -> replayBatch(lines.subList(mid, lines.size()), writer));
+            });
+  }
+
+  /* Dead-letter lines that cannot be parsed, e.g. written partially before a crash */
+  private Future<List<String>> deadLetterCorrupt(List<String> lines) {
+    List<String> valid = new ArrayList<String>(lines.size());
+    List<String> corrupt = new ArrayList<String>();
+    for (String line : lines) {
+      try {
+        toTuple(line);
+        valid.add(line);
+      } catch (DecodeException | ClassCastException e) {
+        corrupt.add(line);
+      }
+    }
+    if (corrupt.isEmpty()) {
+      return Future.succeededFuture(valid);
+    }
+    return deadLetter(corrupt, "unreadable spool line").map(res -> valid);
+  }
+
+  private Future<Void> deadLetter(List<String> lines, String reason) {
+    return executor
+        .executeBlocking(
+            () ->
+                Files.write(
+                    directory.resolve(SPOOL_DEAD_LETTER_FILE),
+                    lines,
+                    StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND))
+        .<Void>mapEmpty()
+        .onSuccess(
+            res -> {
+              deadLetteredRecords.increment(lines.size());
+              LOGGER.error(
+                  "Fail: Moved {} spooled audit records to {} : {}",
+                  lines.size(),
+                  directory.resolve(SPOOL_DEAD_LETTER_FILE),
+                  reason);
+            });
+  }
+
+  /* Rewrite the segment with only the lines that were not replayed */
+  private Future<Void> keepRemaining(Path segment, List<String> remaining) {
+    return executor.executeBlocking(
+        () -> {
+          long oldSize = Files.size(segment);
+          Path tmp = segment.resolveSibling(segment.getFileName() + ".tmp");
+          Files.write(tmp, remaining, StandardCharsets.UTF_8);
+          Files.move(
+              tmp, segment, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+          spoolBytes.addAndGet(Files.size(segment) - oldSize);
+          return null;
+        });
+  }
+
+  private static Tuple toTuple(String line) {
+    JsonArray values = new JsonArray(line);
+    Tuple tuple = Tuple.tuple();
+    for (int i = 0; i < values.size(); i++) {
+      Object value = values.getValue(i);
+      tuple.addValue(value instanceof Number ? ((Number) value).longValue() : value);
+    }
+    return tuple;
+  }
+
+  /* Take the first subdirectory of the spool directory that is not locked by another spool */
+  private void lockDirectory() throws IOException {
+    for (int instance = 0; ; instance++) {
+      Path dir = baseDirectory.resolve(SPOOL_INSTANCE_PREFIX + instance);
+      Files.createDirectories(dir);
+      FileChannel channel =
+          FileChannel.open(
+              dir.resolve(SPOOL_LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      FileLock acquired;
+      try {
+        acquired = channel.tryLock();
+      } catch (OverlappingFileLockException e) {
+        /* Locked by another spool in this JVM */
+        acquired = null;
+      }
+      if (acquired != null) {
+        directory = dir;
+        lockChannel = channel;
+        return;
+      }
+      channel.close();
+    }
+  }
+
+  private void openSegment() throws IOException {
+    Path segment =
+        directory.resolve(
+            SPOOL_FILE_PREFIX + String.format("%020d", segmentSequence++) + SPOOL_FILE_SUFFIX);
+    currentSegment =
+        FileChannel.open(
+            segment,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND);
+  }
+
+  private void closeSegment() throws IOException {
+    if (currentSegment != null) {
+      currentSegment.force(false);
+      currentSegment.close();
+      currentSegment = null;
+    }
+  }
+
+  private List<Path> listSegments() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .filter(
+              path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SPOOL_FILE_PREFIX) && name.endsWith(SPOOL_FILE_SUFFIX);
+              })
+          .sorted()
+          .collect(Collectors.toCollection(ArrayList::new));
+    }
+  }
+
+  private static long sequenceOf(Path segment) {
+    String name = segment.getFileName().toString();
+    return Long.parseLong(
+        name.substring(SPOOL_FILE_PREFIX.length(), name.length() - SPOOL_FILE_SUFFIX.length()));
+  }
+}
@@ -0,0 +1,250 @@
+package iudx.aaa.server.auditing;
+
+import static iudx.aaa.server.auditing.util.Constants.BUFFER_FULL;
+import static iudx.aaa.server.auditing.util.Constants.SKIP_DUPLICATES;
+import static iudx.aaa.server.auditing.util.Constants.WRITE_QUERY_COLUMN_COUNT;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.pgclient.PgException;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Tuple;
+import iudx.aaa.server.apiserver.util.QueryMetrics;
+import iudx.aaa.server.auditing.util.QueryBuilder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Bounded buffer of audit records that are written to the auditing database in batches. A batch
+ * is written as a single parameterized multi-row insert when the buffer has a full batch of records
+ * or when the flush interval elapses. The future returned when adding a record completes once the
+ * batch containing it has been written. Batches are always written on the context the buffer was
+ * created on, not on the context of the call adding the record that filled a batch, so that a batch
+ * shared by several requests is not bound by the deadline of one of them.
+ *
+ * <p>If an {@link AuditSpool} is set, batches that could not be written as the database is
+ * unavailable are spooled to local disk instead of failing, and further batches are spooled until
+ * the spool has been replayed, so that callers do not wait on an unavailable database. Batches
+ * rejected by the database for other reasons are failed, as replaying them would fail again.
+ */
+public class AuditWriteBuffer {
+
+  private static final Logger LOGGER = LogManager.getLogger(AuditWriteBuffer.class);
+
+  /* Postgres allows at most 65535 bind parameters in a query */
+  static final int MAX_BATCH_SIZE = 65535 / WRITE_QUERY_COLUMN_COUNT;
+
+  private final PgPool pool;
+  private final String databaseTableName;
+  private final int batchSize;
+  private final int capacity;
+  private final ArrayDeque<PendingRecord> buffer;
+  private final long timerId;
+  private final Vertx vertx;
+  private final Context context;
+  /* Batches being written or spooled, waited for on close */
+  private final Set<Future<Void>> inFlight = ConcurrentHashMap.newKeySet();
+  private AuditSpool spool;
+
+  /**
+   * Create the buffer and start the periodic flush.
+   *
+   * @param vertx the Vert.x instance
+   * @param pool pool for the auditing database
+   * @param databaseTableName the audit table
+   * @param batchSize maximum number of records written in one insert
+   * @param capacity maximum number of records held in the buffer
+   * @param flushIntervalMs interval at which buffered records are written
+   */
+  public AuditWriteBuffer(
+      Vertx vertx,
+      PgPool pool,
+      String databaseTableName,
+      int batchSize,
+      int capacity,
+      long flushIntervalMs) {
+    this.vertx = vertx;
+    this.context = ((ContextInternal) vertx.getOrCreateContext()).unwrap();
+    this.pool = pool;
+    this.databaseTableName = databaseTableName;
+    this.batchSize = Math.min(batchSize, MAX_BATCH_SIZE);
+    this.capacity = capacity;
+    this.buffer = new ArrayDeque<PendingRecord>(capacity);
+    this.timerId = vertx.setPeriodic(flushIntervalMs, id -> flush());
+  }
+
+  /**
+   * Set the spool used when the auditing database is unavailable. Replay of the spool into the
+   * database is started.
+   *
+   * @param spool the opened spool
+   */
+  public void setSpool(AuditSpool spool) {
+    this.spool = spool;
+    spool.startReplay(this::replay);
+  }
+
+  /**
+   * Add an audit record to the buffer.
+   *
+   * @param record tuple of primary key, body, endpoint, method, time and user ID
+   * @return a void Future that completes when the record is written, or fails if the buffer is
+   *     full or the write failed
+   */
+  public Future<Void> add(Tuple record) {
+    Promise<Void> promise = Promise.promise();
+    boolean fullBatch;
+
+    synchronized (this) {
+      if (buffer.size() >= capacity) {
+        LOGGER.error("Fail: {}, dropping audit record", BUFFER_FULL);
+        return Future.failedFuture(BUFFER_FULL);
+      }
+      buffer.add(new PendingRecord(record, promise));
+      fullBatch = buffer.size() >= batchSize;
+    }
+
+    if (fullBatch) {
+      context.runOnContext(v -> flush());
+    }
+    return promise.future();
+  }
+
+  /** Write all buffered records in batches. */
+  public void flush() {
+    List<PendingRecord> batch;
+    while (!(batch = drainBatch()).isEmpty()) {
+      write(batch);
+    }
+  }
+
+  /**
+   * Stop the periodic flush and write all buffered records. The spool is closed once the batches
+   * being written have been written or spooled.
+   *
+   * @return a void Future that completes when the buffer is closed
+   */
+  public Future<Void> close() {
+    vertx.cancelTimer(timerId);
+    flush();
+    return Future.join(new ArrayList<Future<Void>>(inFlight))
+        .transform(res -> spool == null ? Future.succeededFuture() : spool.close());
+  }
+
+  private synchronized List<PendingRecord> drainBatch() {
+    List<PendingRecord> batch = new ArrayList<PendingRecord>(Math.min(buffer.size(), batchSize));
+    while (!buffer.isEmpty() && batch.size() < batchSize) {
+      batch.add(buffer.poll());
+    }
+    return batch;
+  }
+
+  private void write(List<PendingRecord> batch) {
+    List<Tuple> records = batch.stream().map(pending -> pending.record).collect(Collectors.toList());
+
+    Future<Void> written;
+    if (spool != null && !spool.isEmpty()) {
+      written = spool.append(records);
+    } else {
+      written = insert(records);
+      if (spool != null) {
+        written =
+            written.recover(
+                err -> isTransient(err) ? spool.append(records) : Future.failedFuture(err));
+      }
+    }
+
+    Future<Void> writing = written;
+    inFlight.add(writing);
+    writing
+        .onComplete(res -> inFlight.remove(writing))
+        .onSuccess(res -> batch.forEach(pending -> pending.promise.complete()))
+        .onFailure(err -> batch.forEach(pending -> pending.promise.fail(err)));
+  }
+
+  /**
+   * Write audit records to the database in a single insert.
+   *
+   * @param records the records
+   * @return a void Future
+   */
+  Future<Void> insert(List<Tuple> records) {
+    return insert(
+        records,
+        "SQL_AUDIT_BATCH_WRITE",
+        QueryBuilder.buildBatchWritingQuery(databaseTableName, records.size()));
+  }
+
+  /**
+   * Write spooled audit records to the database in a single insert, skipping records that are
+   * already in the database, as a spooled batch may have been written without its result being
+   * received.
+   *
+   * @param records the records
+   * @return a void Future
+   */
+  Future<Void> replay(List<Tuple> records) {
+    return insert(
+        records,
+        "SQL_AUDIT_SPOOL_REPLAY",
+        QueryBuilder.buildBatchWritingQuery(databaseTableName, records.size()) + SKIP_DUPLICATES);
+  }
+
+  /**
+   * Check if a write failed as the database is unavailable, in which case it may succeed later.
+   * Failures other than a Postgres error, e.g. a closed connection or a pool timeout, are taken to
+   * be transient, as are Postgres errors of the connection, resource, operator intervention and
+   * lock classes.
+   *
+   * @param err the failure
+   * @return true if the write may be retried
+   */
+  static boolean isTransient(Throwable err) {
+    if (!(err instanceof PgException)) {
+      return true;
+    }
+    String state = ((PgException) err).getSqlState();
+    return state == null
+        || state.startsWith("08")
+        || state.startsWith("53")
+        || state.startsWith("57")
+        || state.equals("40001")
+        || state.equals("40P01")
+        || state.equals("55P03");
+  }
+
+  private Future<Void> insert(List<Tuple> records, String name, String query) {
+    Tuple tuple = Tuple.tuple();
+    records.forEach(
+        record -> {
+          for (int i = 0; i < record.size(); i++) {
+            tuple.addValue(record.getValue(i));
+          }
+        });
+
+    return pool.withConnection(conn -> QueryMetrics.query(conn, name, query, tuple))
+        .onSuccess(rows -> LOGGER.debug("Info: Wrote {} audit records", records.size()))
+        .onFailure(
+            err -> LOGGER.error("Fail: Could not write {} audit records : {}", records.size(), err))
+        .mapEmpty();
+  }
+
+  private static final class PendingRecord {
+    private final Tuple record;
+    private final Promise<Void> promise;
+
+    private PendingRecord(Tuple record, Promise<Void> promise) {
+      this.record = record;
+      this.promise = promise;
+    }
+  }
+}
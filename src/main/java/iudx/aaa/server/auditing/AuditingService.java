@@ -7,6 +7,7 @@ import io.vertx.codegen.annotations.VertxGen;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.json.JsonObject;
 
 /**
@@ -30,6 +31,11 @@ public interface AuditingService {
     return new AuditingServiceVertxEBProxy(vertx, address);
   }
 
+  @GenIgnore
+  static AuditingService createProxy(Vertx vertx, String address, DeliveryOptions options) {
+    return new AuditingServiceVertxEBProxy(vertx, address, options);
+  }
+
   @Fluent
   AuditingService executeWriteQuery(JsonObject request, Handler<AsyncResult<JsonObject>> handler);
 
@@ -1,29 +1,46 @@
 package iudx.aaa.server.auditing;
 
+import static iudx.aaa.server.auditing.util.Constants.BATCH_SIZE;
 import static iudx.aaa.server.auditing.util.Constants.BODY;
 import static iudx.aaa.server.auditing.util.Constants.BODY_COLUMN_INDEX;
+import static iudx.aaa.server.auditing.util.Constants.BUFFER_CAPACITY;
 import static iudx.aaa.server.auditing.util.Constants.DATABASE_TABLE_NAME;
+import static iudx.aaa.server.auditing.util.Constants.DEFAULT_BATCH_SIZE;
+import static iudx.aaa.server.auditing.util.Constants.DEFAULT_BUFFER_CAPACITY;
+import static iudx.aaa.server.auditing.util.Constants.DEFAULT_FLUSH_INTERVAL_MS;
+import static iudx.aaa.server.auditing.util.Constants.DEFAULT_READ_PAGE_SIZE;
+import static iudx.aaa.server.auditing.util.Constants.DEFAULT_RETENTION_MONTHS;
 import static iudx.aaa.server.auditing.util.Constants.EMPTY_RESPONSE;
 import static iudx.aaa.server.auditing.util.Constants.ENDPOINT;
 import static iudx.aaa.server.auditing.util.Constants.ENDPOINT_COLUMN_INDEX;
 import static iudx.aaa.server.auditing.util.Constants.ERROR;
 import static iudx.aaa.server.auditing.util.Constants.FAILED;
-import static iudx.aaa.server.auditing.util.Constants.MESSAGE;
+import static iudx.aaa.server.auditing.util.Constants.FLUSH_INTERVAL_MS;
+import static iudx.aaa.server.auditing.util.Constants.ID;
+import static iudx.aaa.server.auditing.util.Constants.ID_COLUMN_INDEX;
+import static iudx.aaa.server.auditing.util.Constants.LIMIT;
+import static iudx.aaa.server.auditing.util.Constants.MAINTAIN_PARTITIONS_QUERY;
 import static iudx.aaa.server.auditing.util.Constants.METHOD;
 import static iudx.aaa.server.auditing.util.Constants.METHOD_COLUMN_INDEX;
+import static iudx.aaa.server.auditing.util.Constants.PARAMS_KEY;
+import static iudx.aaa.server.auditing.util.Constants.PARTITION_MAINTENANCE_INTERVAL_MS;
+import static iudx.aaa.server.auditing.util.Constants.PARTITION_MONTHS_AHEAD;
 import static iudx.aaa.server.auditing.util.Constants.QUERY_KEY;
+import static iudx.aaa.server.auditing.util.Constants.READ_PAGE_SIZE;
 import static iudx.aaa.server.auditing.util.Constants.RESULTS;
+import static iudx.aaa.server.auditing.util.Constants.RETENTION_MONTHS;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_DIRECTORY;
 import static iudx.aaa.server.auditing.util.Constants.SUCCESS;
 import static iudx.aaa.server.auditing.util.Constants.TIME;
 import static iudx.aaa.server.auditing.util.Constants.TIME_COLUMN_INDEX;
 import static iudx.aaa.server.auditing.util.Constants.USERID_COLUMN_INDEX;
 import static iudx.aaa.server.auditing.util.Constants.USERID_NOT_FOUND;
 import static iudx.aaa.server.auditing.util.Constants.USER_ID;
+import static iudx.aaa.server.auditing.util.Constants.WRITE_SUCCESS;
 
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
-import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -31,7 +48,9 @@ import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgPool;
 import io.vertx.sqlclient.PoolOptions;
 import io.vertx.sqlclient.Row;
-import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Tuple;
+import iudx.aaa.server.apiserver.util.QueryMetrics;
+import iudx.aaa.server.apiserver.util.SharedPgPool;
 import iudx.aaa.server.auditing.util.QueryBuilder;
 import iudx.aaa.server.auditing.util.ResponseBuilder;
 import java.sql.Timestamp;
@@ -46,7 +65,7 @@ public class AuditingServiceImpl implements AuditingService {
   PgPool pool;
   private Vertx vertx;
   private QueryBuilder queryBuilder = new QueryBuilder();
-  private JsonObject query = new JsonObject();
+  private AuditWriteBuffer writeBuffer;
   private String databaseIP;
   private int databasePort;
   private String databaseName;
@@ -54,7 +73,12 @@ public class AuditingServiceImpl implements AuditingService {
   private String databasePassword;
   private String databaseTableName;
   private int databasePoolSize;
-  private ResponseBuilder responseBuilder;
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  private int bufferCapacity = DEFAULT_BUFFER_CAPACITY;
+  private long flushIntervalMs = DEFAULT_FLUSH_INTERVAL_MS;
+  private int readPageSize = DEFAULT_READ_PAGE_SIZE;
+  private int retentionMonths = DEFAULT_RETENTION_MONTHS;
+  private long maintenanceTimerId;
 
   public AuditingServiceImpl(JsonObject propObj, Vertx vertxInstance) {
 
@@ -66,6 +90,11 @@ public class AuditingServiceImpl implements AuditingService {
       databasePassword = propObj.getString("auditingDatabasePassword");
       databaseTableName = propObj.getString("auditingDatabaseTableName");
       databasePoolSize = propObj.getInteger("auditingPoolSize");
+      batchSize = propObj.getInteger(BATCH_SIZE, DEFAULT_BATCH_SIZE);
+      bufferCapacity = propObj.getInteger(BUFFER_CAPACITY, DEFAULT_BUFFER_CAPACITY);
+      flushIntervalMs = propObj.getLong(FLUSH_INTERVAL_MS, DEFAULT_FLUSH_INTERVAL_MS);
+      readPageSize = propObj.getInteger(READ_PAGE_SIZE, DEFAULT_READ_PAGE_SIZE);
+      retentionMonths = propObj.getInteger(RETENTION_MONTHS, DEFAULT_RETENTION_MONTHS);
     }
 
     this.connectOptions =
@@ -80,33 +109,92 @@ public class AuditingServiceImpl implements AuditingService {
 
     this.vertx = vertxInstance;
     this.poolOptions = new PoolOptions().setMaxSize(databasePoolSize);
-    this.pool = PgPool.pool(vertxInstance, connectOptions, poolOptions);
+    this.pool =
+        SharedPgPool.pool(
+            vertxInstance, connectOptions, poolOptions, new JsonObject(), "auditing", "auditing");
+    this.writeBuffer =
+        new AuditWriteBuffer(
+            vertxInstance, pool, databaseTableName, batchSize, bufferCapacity, flushIntervalMs);
+
+    if (propObj != null && propObj.getString(SPOOL_DIRECTORY) != null) {
+      AuditSpool spool = new AuditSpool(vertxInstance, propObj);
+      spool
+          .open()
+          .onSuccess(res -> writeBuffer.setSpool(spool))
+          .onFailure(err -> LOGGER.error("Fail: Could not open audit spool : {}", err.getMessage()));
+    }
+
+    maintainPartitions();
+    maintenanceTimerId =
+        vertxInstance.setPeriodic(PARTITION_MAINTENANCE_INTERVAL_MS, id -> maintainPartitions());
+  }
+
+  /**
+   * Write all buffered audit records. Called when the verticle is stopped.
+   *
+   * @return a void Future that completes when the records are written or spooled
+   */
+  public Future<Void> close() {
+    vertx.cancelTimer(maintenanceTimerId);
+    return writeBuffer.close();
+  }
+
+  /**
+   * Create upcoming monthly partitions of the audit table and drop partitions older than the
+   * retention period, if one is configured.
+   */
+  private void maintainPartitions() {
+    pool.withConnection(
+            conn ->
+                QueryMetrics.query(
+                    conn,
+                    "MAINTAIN_PARTITIONS_QUERY",
+                    MAINTAIN_PARTITIONS_QUERY,
+                    Tuple.of(databaseTableName, PARTITION_MONTHS_AHEAD, retentionMonths)))
+        .onSuccess(res -> LOGGER.debug("Info: Audit table partitions maintained"))
+        .onFailure(
+            err -> LOGGER.warn("Could not maintain audit table partitions : {}", err.getMessage()));
   }
 
   @Override
   public AuditingService executeWriteQuery(
       JsonObject request, Handler<AsyncResult<JsonObject>> handler) {
-    request.put(DATABASE_TABLE_NAME, databaseTableName);
-    query = queryBuilder.buildWritingQuery(request);
+    JsonObject record = queryBuilder.buildWritingRecord(request);
 
-    if (query.containsKey(ERROR)) {
-      LOGGER.error("Fail: Query returned with an error: " + query.getString(ERROR));
-      responseBuilder =
-          new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(query.getString(ERROR));
+    if (record.containsKey(ERROR)) {
+      LOGGER.error("Fail: Query returned with an error: " + record.getString(ERROR));
+      ResponseBuilder responseBuilder =
+          new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(record.getString(ERROR));
       handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
       return null;
     }
 
-    Future<JsonObject> result = writeInDatabase(query);
-    result.onComplete(
-        resultHandler -> {
-          if (resultHandler.succeeded()) {
-            handler.handle(Future.succeededFuture(resultHandler.result()));
-          } else if (resultHandler.failed()) {
-            LOGGER.error("failed ::" + resultHandler.cause());
-            handler.handle(Future.failedFuture(resultHandler.cause().getMessage()));
-          }
-        });
+    Tuple tuple =
+        Tuple.of(
+            record.getString(ID),
+            record.getString(BODY),
+            record.getString(ENDPOINT),
+            record.getString(METHOD),
+            record.getLong(TIME),
+            record.getString(USER_ID));
+
+    writeBuffer
+        .add(tuple)
+        .onComplete(
+            resultHandler -> {
+              if (resultHandler.succeeded()) {
+                ResponseBuilder responseBuilder =
+                    new ResponseBuilder(SUCCESS).setTypeAndTitle(200).setMessage(WRITE_SUCCESS);
+                handler.handle(Future.succeededFuture(responseBuilder.getResponse()));
+              } else {
+                LOGGER.error("failed ::" + resultHandler.cause());
+                ResponseBuilder responseBuilder =
+                    new ResponseBuilder(FAILED)
+                        .setTypeAndTitle(400)
+                        .setMessage(resultHandler.cause().getMessage());
+                handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
+              }
+            });
     return this;
   }
 
@@ -117,17 +205,17 @@ public class AuditingServiceImpl implements AuditingService {
 
     if (!request.containsKey(USER_ID)) {
       LOGGER.debug("Info: " + USERID_NOT_FOUND);
-      responseBuilder =
+      ResponseBuilder responseBuilder =
           new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(USERID_NOT_FOUND);
       handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
       return null;
     }
     request.put(DATABASE_TABLE_NAME, databaseTableName);
-    query = queryBuilder.buildReadingQuery(request);
+    JsonObject query = queryBuilder.buildReadingQuery(request, readPageSize);
 
     if (query.containsKey(ERROR)) {
       LOGGER.error("Fail: Query returned with an error: " + query.getString(ERROR));
-      responseBuilder =
+      ResponseBuilder responseBuilder =
           new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(query.getString(ERROR));
       handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
       return null;
@@ -148,66 +236,48 @@ public class AuditingServiceImpl implements AuditingService {
     return this;
   }
 
+  /**
+   * Read one page of audit records. If the page is full, the response has a cursor to read the
+   * next page.
+   */
   private Future<JsonObject> executeReadQuery(JsonObject query) {
-    Promise<JsonObject> promise = Promise.promise();
-    JsonArray jsonArray = new JsonArray();
-    pool.withConnection(connection -> connection.query(query.getString(QUERY_KEY)).execute())
-        .onComplete(
+    Tuple params = Tuple.tuple();
+    query.getJsonArray(PARAMS_KEY).forEach(params::addValue);
+    int limit = query.getInteger(LIMIT);
+
+    return pool.withConnection(
+            connection ->
+                QueryMetrics.query(
+                    connection, "SQL_AUDIT_READ", query.getString(QUERY_KEY), params))
+        .map(
             rows -> {
-              RowSet<Row> result = rows.result();
-              if (result == null) {
-                responseBuilder =
-                    new ResponseBuilder(FAILED).setTypeAndTitle(204).setMessage(EMPTY_RESPONSE);
-                promise.complete(responseBuilder.getResponse());
+              JsonArray jsonArray = new JsonArray();
+              Row last = null;
+              for (Row rs : rows) {
+                jsonArray.add(getJsonObject(rs));
+                last = rs;
               }
-              if (result != null) {
-                for (Row rs : result) {
-                  jsonArray.add(getJsonObject(rs));
-                }
-                if (jsonArray.isEmpty()) {
-                  responseBuilder =
-                      new ResponseBuilder(FAILED).setTypeAndTitle(204).setMessage(EMPTY_RESPONSE);
-                } else {
-                  responseBuilder =
-                      new ResponseBuilder(SUCCESS).setTypeAndTitle(200).setJsonArray(jsonArray);
-                  LOGGER.debug("Info: RESPONSE" + responseBuilder.getResponse().getString(RESULTS));
-                }
-                promise.complete(responseBuilder.getResponse());
-              }
-            });
-    return promise.future();
-  }
 
-  private Future<JsonObject> writeInDatabase(JsonObject query) {
-    Promise<JsonObject> promise = Promise.promise();
-    JsonObject response = new JsonObject();
-    pool.withConnection(connection -> connection.query(query.getString(QUERY_KEY)).execute())
-        .onComplete(
-            rows -> {
-              if (rows.succeeded()) {
-                response.put(MESSAGE, "Table Updated Successfully");
-                responseBuilder =
-                    new ResponseBuilder(SUCCESS)
-                        .setTypeAndTitle(200)
-                        .setMessage(response.getString(MESSAGE));
-                LOGGER.debug("Info: " + responseBuilder.getResponse().toString());
-                promise.complete(responseBuilder.getResponse());
+              if (jsonArray.isEmpty()) {
+                return new ResponseBuilder(FAILED)
+                    .setTypeAndTitle(204)
+                    .setMessage(EMPTY_RESPONSE)
+                    .getResponse();
               }
-              if (rows.failed()) {
-                LOGGER.error("Info: failed :" + rows.cause());
-                response.put(MESSAGE, rows.cause().getMessage());
-                responseBuilder =
-                    new ResponseBuilder(FAILED)
-                        .setTypeAndTitle(400)
-                        .setMessage(response.getString(MESSAGE));
-                LOGGER.debug("Info: " + responseBuilder.getResponse().toString());
-                promise.fail(responseBuilder.getResponse().toString());
+
+              ResponseBuilder responseBuilder =
+                  new ResponseBuilder(SUCCESS).setTypeAndTitle(200).setJsonArray(jsonArray);
+              if (jsonArray.size() == limit) {
+                responseBuilder.setNextCursor(
+                    QueryBuilder.encodeCursor(
+                        last.getLong(TIME_COLUMN_INDEX), last.getString(ID_COLUMN_INDEX)));
               }
+              LOGGER.debug("Info: RESPONSE" + responseBuilder.getResponse().getString(RESULTS));
+              return responseBuilder.getResponse();
             });
-    return promise.future();
   }
 
-  private JsonObject getJsonObject(Row rs) {
+  static JsonObject getJsonObject(Row rs) {
     JsonObject entries = new JsonObject();
     LOGGER.debug("COUNT: " + (rs.getString(METHOD_COLUMN_INDEX)));
     LOGGER.debug("TIME: " + (rs.getLong(TIME_COLUMN_INDEX)));
@@ -1,9 +1,32 @@
 package iudx.aaa.server.auditing;
 
+import static iudx.aaa.server.auditing.util.Constants.BATCH_SIZE;
+import static iudx.aaa.server.auditing.util.Constants.BUFFER_CAPACITY;
+import static iudx.aaa.server.auditing.util.Constants.DEFAULT_BATCH_SIZE;
+import static iudx.aaa.server.auditing.util.Constants.DEFAULT_BUFFER_CAPACITY;
+import static iudx.aaa.server.auditing.util.Constants.DEFAULT_EXPORT_FETCH_SIZE;
+import static iudx.aaa.server.auditing.util.Constants.DEFAULT_FLUSH_INTERVAL_MS;
+import static iudx.aaa.server.auditing.util.Constants.DEFAULT_READ_PAGE_SIZE;
+import static iudx.aaa.server.auditing.util.Constants.DEFAULT_RETENTION_MONTHS;
+import static iudx.aaa.server.auditing.util.Constants.DEFAULT_SPOOL_MAX_BYTES;
+import static iudx.aaa.server.auditing.util.Constants.DEFAULT_SPOOL_REPLAY_INTERVAL_MS;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_ADDRESS;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_FETCH_SIZE;
+import static iudx.aaa.server.auditing.util.Constants.FLUSH_INTERVAL_MS;
+import static iudx.aaa.server.auditing.util.Constants.READ_PAGE_SIZE;
+import static iudx.aaa.server.auditing.util.Constants.RETENTION_MONTHS;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_DIRECTORY;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_FSYNC;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_MAX_BYTES;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_REPLAY_INTERVAL_MS;
+
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonObject;
 import io.vertx.serviceproxy.ServiceBinder;
+import iudx.aaa.server.apiserver.util.LocalServiceRegistry;
+import iudx.aaa.server.apiserver.util.ServiceMessageCodec;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -20,7 +43,8 @@ public class AuditingVerticle extends AbstractVerticle {
   private int poolSize;
   private ServiceBinder binder;
   private MessageConsumer<JsonObject> consumer;
-  private AuditingService auditing;
+  private MessageConsumer<JsonObject> exportConsumer;
+  private AuditingServiceImpl auditing;
 
   @Override
   public void start() throws Exception {
@@ -41,16 +65,41 @@ public class AuditingVerticle extends AbstractVerticle {
     propObj.put("auditingDatabasePassword", databasePassword);
     propObj.put("auditingDatabaseTableName", databaseTableName);
     propObj.put("auditingPoolSize", poolSize);
+    propObj.put(BATCH_SIZE, config().getInteger(BATCH_SIZE, DEFAULT_BATCH_SIZE));
+    propObj.put(BUFFER_CAPACITY, config().getInteger(BUFFER_CAPACITY, DEFAULT_BUFFER_CAPACITY));
+    propObj.put(FLUSH_INTERVAL_MS, config().getLong(FLUSH_INTERVAL_MS, DEFAULT_FLUSH_INTERVAL_MS));
+    propObj.put(READ_PAGE_SIZE, config().getInteger(READ_PAGE_SIZE, DEFAULT_READ_PAGE_SIZE));
+    propObj.put(RETENTION_MONTHS, config().getInteger(RETENTION_MONTHS, DEFAULT_RETENTION_MONTHS));
+    if (config().getString(SPOOL_DIRECTORY) != null) {
+      propObj.put(SPOOL_DIRECTORY, config().getString(SPOOL_DIRECTORY));
+      propObj.put(SPOOL_MAX_BYTES, config().getLong(SPOOL_MAX_BYTES, DEFAULT_SPOOL_MAX_BYTES));
+      propObj.put(SPOOL_FSYNC, config().getString(SPOOL_FSYNC, "periodic"));
+      propObj.put(
+          SPOOL_REPLAY_INTERVAL_MS,
+          config().getLong(SPOOL_REPLAY_INTERVAL_MS, DEFAULT_SPOOL_REPLAY_INTERVAL_MS));
+    }
 
-    binder = new ServiceBinder(vertx);
+    binder = ServiceMessageCodec.binder(vertx);
     auditing = new AuditingServiceImpl(propObj, vertx);
     consumer =
         binder.setAddress(AUDITING_SERVICE_ADDRESS).register(AuditingService.class, auditing);
+    LocalServiceRegistry.register(vertx, AUDITING_SERVICE_ADDRESS, auditing);
+
+    int exportFetchSize = config().getInteger(EXPORT_FETCH_SIZE, DEFAULT_EXPORT_FETCH_SIZE);
+    exportConsumer =
+        vertx
+            .eventBus()
+            .consumer(
+                EXPORT_ADDRESS,
+                new AuditExporter(vertx, auditing.pool, databaseTableName, exportFetchSize));
     LOGGER.info("Auditing Verticle Started");
   }
 
   @Override
-  public void stop() {
+  public void stop(Promise<Void> stopPromise) {
     binder.unregister(consumer);
+    LocalServiceRegistry.unregister(vertx, AUDITING_SERVICE_ADDRESS, auditing);
+    exportConsumer.unregister();
+    auditing.close().onComplete(stopPromise);
   }
 }
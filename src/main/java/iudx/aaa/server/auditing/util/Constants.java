@@ -32,17 +32,81 @@ public class Constants {
   public static final String USER_ID = "userId";
   public static final String BODY = "body";
   public static final String API = "api";
+  /* Row placeholders for each audit record are appended by QueryBuilder.buildBatchWritingQuery */
   public static final String WRITE_QUERY =
-      "INSERT INTO $0 (id,body,endpoint,method,time,userid) VALUES ('$1','$2','$3','$4',$5,'$6')";
+      "INSERT INTO $0 (id,body,endpoint,method,time,userid) VALUES ";
+  public static final int WRITE_QUERY_COLUMN_COUNT = 6;
+  /* Appended to the batch write when replaying the spool */
+  public static final String SKIP_DUPLICATES = " ON CONFLICT DO NOTHING";
 
   public static final String MESSAGE = "message";
+  public static final String WRITE_SUCCESS = "Table Updated Successfully";
+  public static final String BUFFER_FULL = "Audit write buffer is full";
+
+  /* Audit write buffer configuration */
+  public static final String BATCH_SIZE = "auditingBatchSize";
+  public static final String FLUSH_INTERVAL_MS = "auditingFlushIntervalMs";
+  public static final String BUFFER_CAPACITY = "auditingBufferCapacity";
+  public static final int DEFAULT_BATCH_SIZE = 100;
+  public static final long DEFAULT_FLUSH_INTERVAL_MS = 200;
+  public static final int DEFAULT_BUFFER_CAPACITY = 10000;
+
+  /* Audit spool configuration, the spool is enabled only if the directory is set */
+  public static final String SPOOL_DIRECTORY = "auditingSpoolDirectory";
+  public static final String SPOOL_MAX_BYTES = "auditingSpoolMaxBytes";
+  public static final String SPOOL_FSYNC = "auditingSpoolFsync";
+  public static final String SPOOL_REPLAY_INTERVAL_MS = "auditingSpoolReplayIntervalMs";
+  public static final long DEFAULT_SPOOL_MAX_BYTES = 256L * 1024 * 1024;
+  public static final long DEFAULT_SPOOL_REPLAY_INTERVAL_MS = 5000;
+  public static final long SPOOL_SEGMENT_BYTES = 16L * 1024 * 1024;
+  public static final String SPOOL_FILE_PREFIX = "audit-";
+  public static final String SPOOL_FILE_SUFFIX = ".spool";
+  public static final String SPOOL_FULL = "Audit spool is full";
+  public static final String SPOOL_INSTANCE_PREFIX = "instance-";
+  public static final String SPOOL_LOCK_FILE = ".lock";
+  public static final String SPOOL_DEAD_LETTER_FILE = "dead-letter.jsonl";
   public static final String DATABASE_TABLE_NAME = "databaseTableName";
+  /* Conditions and keyset are appended with bind parameters by QueryBuilder.buildReadingQuery */
   public static final String READ_QUERY =
-      "SELECT body,endpoint,method,time,userid from $0 where userid='$1'";
-  public static final String START_TIME_QUERY = " and time>=$2";
-  public static final String END_TIME_QUERY = " and time<=$3";
-  public static final String ENDPOINT_QUERY = " and endpoint='$4'";
-  public static final String METHOD_QUERY = " and method='$5'";
+      "SELECT body,endpoint,method,time,userid,id FROM $0 WHERE userid = $1";
+  public static final String START_TIME_QUERY = " AND time >= $";
+  public static final String END_TIME_QUERY = " AND time <= $";
+  public static final String ENDPOINT_QUERY = " AND endpoint = $";
+  public static final String METHOD_QUERY = " AND method = $";
+  public static final String KEYSET_QUERY = " AND (time, id) < ($%d, $%d)";
+  public static final String ORDER_LIMIT_QUERY = " ORDER BY time DESC, id DESC LIMIT $";
+  public static final String EXPORT_ORDER_QUERY = " ORDER BY time, id";
+
+  public static final String PARAMS_KEY = "params";
+  public static final String LIMIT = "limit";
+  public static final String CURSOR = "cursor";
+  public static final String NEXT_CURSOR = "nextCursor";
+  public static final String INVALID_LIMIT = "Invalid limit";
+  public static final String INVALID_CURSOR = "Invalid cursor";
+
+  /* Audit read and partition configuration */
+  public static final String READ_PAGE_SIZE = "auditingReadPageSize";
+  public static final int DEFAULT_READ_PAGE_SIZE = 1000;
+  public static final String RETENTION_MONTHS = "auditingRetentionMonths";
+  public static final int DEFAULT_RETENTION_MONTHS = 0;
+  public static final int PARTITION_MONTHS_AHEAD = 2;
+  public static final long PARTITION_MAINTENANCE_INTERVAL_MS = 24L * 60 * 60 * 1000;
+  /* Audit export. Records are streamed as NDJSON chunks to the stream address sent in the export
+   * request, each chunk is acknowledged by the receiver before the next is sent */
+  public static final String EXPORT_ADDRESS = "iudx.aaa.auditing.export";
+  public static final String STREAM_ADDRESS = "streamAddress";
+  public static final String EXPORT_EVENT = "event";
+  public static final String EXPORT_EVENT_DATA = "data";
+  public static final String EXPORT_EVENT_END = "end";
+  public static final String EXPORT_EVENT_ERROR = "error";
+  public static final String EXPORT_FETCH_SIZE = "auditingExportFetchSize";
+  public static final int DEFAULT_EXPORT_FETCH_SIZE = 500;
+  public static final long EXPORT_ACK_TIMEOUT_MS = 60000;
+  public static final String EXPORT_FAILED = "Audit export failed";
+  public static final String EXPORT_CANCELLED = "Audit export cancelled by the client";
+
+  public static final String MAINTAIN_PARTITIONS_QUERY =
+      "SELECT audit_maintain_partitions($1, $2, $3)";
 
   /* Column indices depend on order of columns in READ_QUERY */
   public static final int BODY_COLUMN_INDEX = 0;
@@ -50,4 +114,5 @@ public class Constants {
   public static final int METHOD_COLUMN_INDEX = 2;
   public static final int TIME_COLUMN_INDEX = 3;
   public static final int USERID_COLUMN_INDEX = 4;
+  public static final int ID_COLUMN_INDEX = 5;
 }
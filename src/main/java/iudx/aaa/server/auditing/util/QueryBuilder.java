@@ -2,6 +2,7 @@ package iudx.aaa.server.auditing.util;
 
 import static iudx.aaa.server.auditing.util.Constants.API;
 import static iudx.aaa.server.auditing.util.Constants.BODY;
+import static iudx.aaa.server.auditing.util.Constants.CURSOR;
 import static iudx.aaa.server.auditing.util.Constants.DATABASE_TABLE_NAME;
 import static iudx.aaa.server.auditing.util.Constants.DATA_NOT_FOUND;
 import static iudx.aaa.server.auditing.util.Constants.ENDPOINT;
@@ -9,24 +10,36 @@ import static iudx.aaa.server.auditing.util.Constants.ENDPOINT_QUERY;
 import static iudx.aaa.server.auditing.util.Constants.END_TIME;
 import static iudx.aaa.server.auditing.util.Constants.END_TIME_QUERY;
 import static iudx.aaa.server.auditing.util.Constants.ERROR;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_ORDER_QUERY;
+import static iudx.aaa.server.auditing.util.Constants.ID;
+import static iudx.aaa.server.auditing.util.Constants.INVALID_CURSOR;
 import static iudx.aaa.server.auditing.util.Constants.INVALID_DATE_TIME;
+import static iudx.aaa.server.auditing.util.Constants.INVALID_LIMIT;
 import static iudx.aaa.server.auditing.util.Constants.INVALID_TIME;
+import static iudx.aaa.server.auditing.util.Constants.KEYSET_QUERY;
+import static iudx.aaa.server.auditing.util.Constants.LIMIT;
 import static iudx.aaa.server.auditing.util.Constants.METHOD;
 import static iudx.aaa.server.auditing.util.Constants.METHOD_QUERY;
 import static iudx.aaa.server.auditing.util.Constants.MISSING_END_TIME;
 import static iudx.aaa.server.auditing.util.Constants.MISSING_START_TIME;
+import static iudx.aaa.server.auditing.util.Constants.ORDER_LIMIT_QUERY;
+import static iudx.aaa.server.auditing.util.Constants.PARAMS_KEY;
 import static iudx.aaa.server.auditing.util.Constants.QUERY_KEY;
 import static iudx.aaa.server.auditing.util.Constants.READ_QUERY;
 import static iudx.aaa.server.auditing.util.Constants.START_TIME;
 import static iudx.aaa.server.auditing.util.Constants.START_TIME_QUERY;
+import static iudx.aaa.server.auditing.util.Constants.TIME;
 import static iudx.aaa.server.auditing.util.Constants.USERID_NOT_FOUND;
 import static iudx.aaa.server.auditing.util.Constants.USER_ID;
 import static iudx.aaa.server.auditing.util.Constants.WRITE_QUERY;
+import static iudx.aaa.server.auditing.util.Constants.WRITE_QUERY_COLUMN_COUNT;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeParseException;
-import java.util.Arrays;
+import java.util.Base64;
 import java.util.UUID;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -36,8 +49,14 @@ public class QueryBuilder {
 
   private static final Logger LOGGER = LogManager.getLogger(QueryBuilder.class);
 
-  //  primaryKey,body,endpoint,method,time,userid
-  public JsonObject buildWritingQuery(JsonObject request) {
+  /**
+   * Validate a write request and build the audit record to be inserted.
+   *
+   * @param request the write request
+   * @return JSON object with the {@link Constants#ERROR} key if the request is invalid, else a
+   *     JSON object having the record's primary key, body, endpoint, method, time and user ID
+   */
+  public JsonObject buildWritingRecord(JsonObject request) {
 
     if (!request.containsKey(BODY)
         || !request.containsKey(API)
@@ -53,28 +72,133 @@ public class QueryBuilder {
     ZonedDateTime zst = ZonedDateTime.now();
     long time = getEpochTime(zst);
     String userId = request.getString(USER_ID);
-    String databaseTableName = request.getString(DATABASE_TABLE_NAME);
 
-    StringBuilder query =
-        new StringBuilder(
-            WRITE_QUERY
-                .replace("$0", databaseTableName)
-                .replace("$1", primaryKey)
-                .replace("$2", body)
-                .replace("$3", endPoint)
-                .replace("$4", methodName)
-                .replace("$5", Long.toString(time))
-                .replace("$6", userId));
-
-    LOGGER.info("Info: Query " + query);
-    return new JsonObject().put(QUERY_KEY, query);
+    return new JsonObject()
+        .put(ID, primaryKey)
+        .put(BODY, body)
+        .put(ENDPOINT, endPoint)
+        .put(METHOD, methodName)
+        .put(TIME, time)
+        .put(USER_ID, userId);
+  }
+
+  /**
+   * Build a parameterized multi-row insert query for audit records. Each row has {@link
+   * Constants#WRITE_QUERY_COLUMN_COUNT} parameters in the order primary key, body, endpoint,
+   * method, time and user ID.
+   *
+   * @param databaseTableName the audit table
+   * @param rowCount number of rows to be inserted
+   * @return the query
+   */
+  public static String buildBatchWritingQuery(String databaseTableName, int rowCount) {
+    StringBuilder query = new StringBuilder(WRITE_QUERY.replace("$0", databaseTableName));
+
+    int param = 1;
+    for (int row = 0; row < rowCount; row++) {
+      if (row > 0) {
+        query.append(',');
+      }
+      query.append('(');
+      for (int col = 0; col < WRITE_QUERY_COLUMN_COUNT; col++) {
+        if (col > 0) {
+          query.append(',');
+        }
+        query.append('$').append(param++);
+      }
+      query.append(')');
+    }
+    return query.toString();
   }
 
   private long getEpochTime(ZonedDateTime time) {
     return time.toInstant().toEpochMilli();
   }
 
-  public JsonObject buildReadingQuery(JsonObject request) {
+  /**
+   * Encode the position of an audit record as an opaque cursor for keyset pagination.
+   *
+   * @param time time of the record
+   * @param id primary key of the record
+   * @return the cursor
+   */
+  public static String encodeCursor(long time, String id) {
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString((time + ":" + id).getBytes(UTF_8));
+  }
+
+  /**
+   * Validate a read request and build a parameterized query for one page of audit records, newest
+   * first. If the request has a {@link Constants#CURSOR}, the page starts after the record the
+   * cursor points to.
+   *
+   * @param request the read request
+   * @param pageSize the maximum number of records in a page
+   * @return JSON object with the {@link Constants#ERROR} key if the request is invalid, else a
+   *     JSON object having the query, its parameters and the page limit
+   */
+  public JsonObject buildReadingQuery(JsonObject request, int pageSize) {
+    JsonObject filter = buildFilterQuery(request);
+    if (filter.containsKey(ERROR)) {
+      return filter;
+    }
+
+    int limit = pageSize;
+    if (request.containsKey(LIMIT)) {
+      Object requested = request.getValue(LIMIT);
+      if (!(requested instanceof Integer)
+          || (Integer) requested < 1
+          || (Integer) requested > pageSize) {
+        return new JsonObject().put(ERROR, INVALID_LIMIT);
+      }
+      limit = (Integer) requested;
+    }
+
+    StringBuilder query = new StringBuilder(filter.getString(QUERY_KEY));
+    JsonArray params = filter.getJsonArray(PARAMS_KEY);
+
+    if (request.containsKey(CURSOR)) {
+      long cursorTime;
+      String cursorId;
+      try {
+        byte[] decoded = Base64.getUrlDecoder().decode(request.getString(CURSOR));
+        String[] position = new String(decoded, UTF_8).split(":", 2);
+        cursorTime = Long.parseLong(position[0]);
+        cursorId = position[1];
+      } catch (IllegalArgumentException | ClassCastException | ArrayIndexOutOfBoundsException e) {
+        return new JsonObject().put(ERROR, INVALID_CURSOR);
+      }
+      params.add(cursorTime).add(cursorId);
+      query.append(String.format(KEYSET_QUERY, params.size() - 1, params.size()));
+    }
+
+    query.append(ORDER_LIMIT_QUERY).append(params.add(limit).size());
+    LOGGER.debug("Info: QUERY " + query);
+
+    return new JsonObject()
+        .put(QUERY_KEY, query.toString())
+        .put(PARAMS_KEY, params)
+        .put(LIMIT, limit);
+  }
+
+  /**
+   * Validate an export request and build a parameterized query for all matching audit records,
+   * oldest first. The query is meant to be read with a cursor.
+   *
+   * @param request the export request
+   * @return JSON object with the {@link Constants#ERROR} key if the request is invalid, else a
+   *     JSON object having the query and its parameters
+   */
+  public JsonObject buildExportQuery(JsonObject request) {
+    JsonObject filter = buildFilterQuery(request);
+    if (filter.containsKey(ERROR)) {
+      return filter;
+    }
+    return filter.put(QUERY_KEY, filter.getString(QUERY_KEY) + EXPORT_ORDER_QUERY);
+  }
+
+  private JsonObject buildFilterQuery(JsonObject request) {
     LOGGER.debug("Trying to build reading query.");
 
     String userId = request.getString(USER_ID);
@@ -133,26 +257,18 @@ public class QueryBuilder {
 
     LOGGER.debug("Epoch fromTime: " + fromTime);
     LOGGER.debug("Epoch toTime: " + toTime);
-    StringBuilder userIdQuery =
-        new StringBuilder(READ_QUERY.replace("$0", databaseTableName).replace("$1", userId));
-    LOGGER.debug("Info: QUERY " + userIdQuery);
+    StringBuilder query = new StringBuilder(READ_QUERY.replace("$0", databaseTableName));
+    JsonArray params = new JsonArray().add(userId);
 
     if (request.containsKey(START_TIME) && request.containsKey(END_TIME)) {
-      StringBuilder tempQuery = userIdQuery;
-      for (String s :
-          Arrays.asList(
-              START_TIME_QUERY.replace("$2", Long.toString(fromTime)),
-              END_TIME_QUERY.replace("$3", Long.toString(toTime)))) tempQuery.append(s);
-      userIdQuery = tempQuery;
-      LOGGER.debug("Info: QUERY with start and end time" + userIdQuery);
+      query.append(START_TIME_QUERY).append(params.add(fromTime).size());
+      query.append(END_TIME_QUERY).append(params.add(toTime).size());
     }
     if (request.containsKey(METHOD) && request.containsKey(ENDPOINT)) {
-      StringBuilder tempQuery = userIdQuery;
-      tempQuery.append(ENDPOINT_QUERY.replace("$4", endPoint));
-      tempQuery.append(METHOD_QUERY.replace("$5", method));
-      LOGGER.debug("Info: QUERY with method and endpoint " + tempQuery);
-      return new JsonObject().put(QUERY_KEY, tempQuery);
+      query.append(ENDPOINT_QUERY).append(params.add(endPoint).size());
+      query.append(METHOD_QUERY).append(params.add(method).size());
     }
-    return new JsonObject().put(QUERY_KEY, userIdQuery);
+
+    return new JsonObject().put(QUERY_KEY, query.toString()).put(PARAMS_KEY, params);
   }
 }
@@ -3,6 +3,7 @@ package iudx.aaa.server.auditing.util;
 import static iudx.aaa.server.auditing.util.Constants.DETAIL;
 import static iudx.aaa.server.auditing.util.Constants.ERROR_TYPE;
 import static iudx.aaa.server.auditing.util.Constants.FAILED;
+import static iudx.aaa.server.auditing.util.Constants.NEXT_CURSOR;
 import static iudx.aaa.server.auditing.util.Constants.RESULTS;
 import static iudx.aaa.server.auditing.util.Constants.SUCCESS;
 import static iudx.aaa.server.auditing.util.Constants.TITLE;
@@ -42,6 +43,11 @@ public class ResponseBuilder {
     return this;
   }
 
+  public ResponseBuilder setNextCursor(String cursor) {
+    response.put(NEXT_CURSOR, cursor);
+    return this;
+  }
+
   public JsonObject getResponse() {
     return response;
   }
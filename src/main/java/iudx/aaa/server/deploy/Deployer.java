@@ -32,6 +32,10 @@ import io.vertx.micrometer.backends.BackendRegistries;
 import io.vertx.spi.cluster.hazelcast.HazelcastClusterManager;
 import iudx.aaa.server.apiserver.util.ComposeException;
 import iudx.aaa.server.apiserver.util.ComposeExceptionMessageCodec;
+import iudx.aaa.server.apiserver.util.Deadline;
+import iudx.aaa.server.apiserver.util.EventLoopMonitor;
+import iudx.aaa.server.apiserver.util.LocalServiceRegistry;
+import iudx.aaa.server.apiserver.util.Tracing;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -64,6 +68,8 @@ public class Deployer {
   private static final Logger LOGGER = LogManager.getLogger(Deployer.class);
   private static ClusterManager mgr;
   private static Vertx vertx;
+  private static final String IN_PROCESS_SERVICES = "inProcessServices";
+  private static final String LOCAL_SERVICE_MAX_IN_FLIGHT = "localServiceMaxInFlight";
 
   /**
    * Recursively deploy all modules.
@@ -208,7 +214,8 @@ public class Deployer {
         new VertxOptions()
             .setClusterManager(mgr)
             .setEventBusOptions(ebOptions)
-            .setMetricsOptions(getMetricsOptions());
+            .setMetricsOptions(getMetricsOptions())
+            .setTracingOptions(Tracing.options(configuration));
     LOGGER.debug("metrics-options" + options.getMetricsOptions());
     try {
       ConfigResolve.resolve(configuration);
@@ -232,6 +239,19 @@ public class Deployer {
                 .registerDefaultCodec(ComposeException.class, new ComposeExceptionMessageCodec());
             LOGGER.debug("Added ComposeException message codec");
             setJVMmetrics();
+            EventLoopMonitor.start(
+                vertx,
+                configuration.getJsonObject(
+                    EventLoopMonitor.EVENT_LOOP_MONITOR, new JsonObject()));
+            /* Carry request deadlines with service calls between nodes */
+            Deadline.install(vertx);
+            /* Bind services deployed on this node directly, proxies are used for other nodes */
+            if (configuration.getBoolean(IN_PROCESS_SERVICES, false)) {
+              LocalServiceRegistry.enable(
+                  vertx,
+                  configuration.getInteger(
+                      LOCAL_SERVICE_MAX_IN_FLIGHT, LocalServiceRegistry.DEFAULT_MAX_IN_FLIGHT));
+            }
             if (modules.isEmpty()) {
               recursiveDeploy(vertx, configuration, 0);
             } else {
@@ -246,8 +266,8 @@ public class Deployer {
   /**
    * Graceful shutdown of Vertx application in a sequential manner - 1) undeploy verticle including
    * unregistering of services through the stop method of verticle 2) unregister the vertx from
-   * cluster 3) shutdown of vertx 4) shutdown of log4g2. The function is triggered by shutdown hook
-   * on a normal shutdown of application.
+   * cluster 3) shutdown of vertx 4) export of pending spans 5) shutdown of log4g2. The function is
+   * triggered by shutdown hook on a normal shutdown of application.
    */
   public static void gracefulShutdown() {
     Set<String> deployIDSet = vertx.deploymentIDs();
@@ -300,6 +320,8 @@ public class Deployer {
 
     try {
       latch_vertx.await(5, TimeUnit.SECONDS);
+      // export the remaining spans
+      Tracing.shutdown();
       // then shut down log4j
       if (LogManager.getContext() instanceof LoggerContext) {
         LOGGER.debug("Shutting down log4j2");
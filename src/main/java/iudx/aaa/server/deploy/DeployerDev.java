@@ -10,6 +10,10 @@ import io.vertx.core.eventbus.EventBusOptions;
 import io.vertx.core.json.JsonObject;
 import iudx.aaa.server.apiserver.util.ComposeException;
 import iudx.aaa.server.apiserver.util.ComposeExceptionMessageCodec;
+import iudx.aaa.server.apiserver.util.Deadline;
+import iudx.aaa.server.apiserver.util.EventLoopMonitor;
+import iudx.aaa.server.apiserver.util.LocalServiceRegistry;
+import iudx.aaa.server.apiserver.util.Tracing;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -29,6 +33,8 @@ import org.apache.logging.log4j.Logger;
  */
 public class DeployerDev {
   private static final Logger LOGGER = LogManager.getLogger(DeployerDev.class);
+  private static final String IN_PROCESS_SERVICES = "inProcessServices";
+  private static final String LOCAL_SERVICE_MAX_IN_FLIGHT = "localServiceMaxInFlight";
 
   public static void recursiveDeploy(Vertx vertx, JsonObject configs, int i) {
     if (i >= configs.getJsonArray("modules").size()) {
@@ -73,6 +79,7 @@ public class DeployerDev {
       LOGGER.fatal("Invalid option passed in config {}", e.getMessage());
       return;
     }
+    options.setTracingOptions(Tracing.options(configuration));
     Vertx vertx = Vertx.vertx(options);
     /*
      * Include ComposeException message codec so that ComposeException objects can be sent accross
@@ -82,6 +89,18 @@ public class DeployerDev {
         .eventBus()
         .registerDefaultCodec(ComposeException.class, new ComposeExceptionMessageCodec());
     LOGGER.debug("Added ComposeException message codec");
+    EventLoopMonitor.start(
+        vertx,
+        configuration.getJsonObject(EventLoopMonitor.EVENT_LOOP_MONITOR, new JsonObject()));
+    /* Carry request deadlines with service calls sent through the event bus */
+    Deadline.install(vertx);
+    /* All services are in this JVM, so they can be bound directly instead of through proxies */
+    if (configuration.getBoolean(IN_PROCESS_SERVICES, false)) {
+      LocalServiceRegistry.enable(
+          vertx,
+          configuration.getInteger(
+              LOCAL_SERVICE_MAX_IN_FLIGHT, LocalServiceRegistry.DEFAULT_MAX_IN_FLIGHT));
+    }
     recursiveDeploy(vertx, configuration, 0);
   }
 
@@ -8,6 +8,8 @@ import static iudx.aaa.server.policy.Constants.RESULTS;
 import static iudx.aaa.server.policy.Constants.TYPE;
 import static iudx.aaa.server.policy.Constants.UUID_REGEX;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.json.JsonArray;
@@ -20,6 +22,7 @@ import iudx.aaa.server.apiserver.Response;
 import iudx.aaa.server.apiserver.util.ComposeException;
 import iudx.aaa.server.apiserver.util.Urn;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -44,17 +47,32 @@ public class CatalogueClient {
   public static final String CAT_RESP_PROVIDER_TYPE = "iudx:Provider";
   public static final String CAT_RESP_RES_SERVER_TYPE = "iudx:ResourceServer";
 
+  public static final String CAT_INVALID_ITEM_CACHE_TTL_SEC = "invalidItemCacheTtlSeconds";
+  public static final long DEFAULT_INVALID_ITEM_CACHE_TTL_SEC = 30;
+  public static final long INVALID_ITEM_CACHE_MAX_SIZE = 10000;
+
   private final WebClient client;
   private final String catHost;
   private final Integer catPort;
   private final String catBasePath;
 
+  /* Item IDs recently found to be non-existent or not resources, mapped to the error response */
+  private final Cache<UUID, Response> invalidItemCache;
+
   public CatalogueClient(WebClient client, JsonObject options) {
 
     this.client = client;
     this.catHost = options.getString("catServerHost");
     this.catPort = Integer.parseInt(options.getString("catServerPort"));
     this.catBasePath = options.getString("catServerBasePath");
+
+    long invalidItemTtl =
+        options.getLong(CAT_INVALID_ITEM_CACHE_TTL_SEC, DEFAULT_INVALID_ITEM_CACHE_TTL_SEC);
+    this.invalidItemCache =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(invalidItemTtl, TimeUnit.SECONDS)
+            .maximumSize(INVALID_ITEM_CACHE_MAX_SIZE)
+            .build();
   }
 
   /**
@@ -67,6 +85,12 @@ public class CatalogueClient {
   public Future<ResourceObj> getResourceDetails(UUID itemId) {
     Promise<ResourceObj> promise = Promise.promise();
 
+    /* Reject items that were recently found to be invalid without calling the catalogue */
+    Response cachedInvalid = invalidItemCache.getIfPresent(itemId);
+    if (cachedInvalid != null) {
+      return Future.failedFuture(new ComposeException(cachedInvalid));
+    }
+
     ResourceObjBuilder builder = new ResourceObjBuilder();
 
     Future<JsonArray> catExistenceResponse =
@@ -87,6 +111,7 @@ public class CatalogueClient {
                             .detail(itemId.toString())
                             .status(400)
                             .build();
+                    invalidItemCache.put(itemId, r);
                     return Future.failedFuture(new ComposeException(r));
                   } else {
                     LOGGER.error(
@@ -117,6 +142,7 @@ public class CatalogueClient {
                         .detail(itemId.toString())
                         .status(400)
                         .build();
+                invalidItemCache.put(itemId, r);
                 return Future.failedFuture(new ComposeException(r));
               }
 
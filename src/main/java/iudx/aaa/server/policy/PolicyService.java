@@ -7,6 +7,7 @@ import io.vertx.codegen.annotations.VertxGen;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.json.JsonObject;
 import iudx.aaa.server.apiserver.CreateDelegationRequest;
 import iudx.aaa.server.apiserver.DelegationInformation;
@@ -45,6 +46,19 @@ public interface PolicyService {
     return new PolicyServiceVertxEBProxy(vertx, address);
   }
 
+  /**
+   * The createProxy with delivery options, used for all calls made through the proxy.
+   *
+   * @param vertx which is the vertx instance
+   * @param address which is the proxy address
+   * @param options which are the delivery options of the calls
+   * @return PolicyServiceVertxEBProxy which is a service proxy
+   */
+  @GenIgnore
+  static PolicyService createProxy(Vertx vertx, String address, DeliveryOptions options) {
+    return new PolicyServiceVertxEBProxy(vertx, address, options);
+  }
+
   /**
    * The verifyPolicy implements the policy list operation.
    *
@@ -1,5 +1,8 @@
 package iudx.aaa.server.policy;
 
+import static iudx.aaa.server.apiserver.util.StageTimings.APD;
+import static iudx.aaa.server.apiserver.util.StageTimings.CATALOGUE;
+import static iudx.aaa.server.apiserver.util.StageTimings.STAGE_TIMINGS;
 import static iudx.aaa.server.apiserver.util.Urn.URN_ALREADY_EXISTS;
 import static iudx.aaa.server.apiserver.util.Urn.URN_INVALID_INPUT;
 import static iudx.aaa.server.apiserver.util.Urn.URN_INVALID_ROLE;
@@ -78,6 +81,8 @@ import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.User.UserBuilder;
 import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.QueryMetrics;
+import iudx.aaa.server.apiserver.util.StageTimings;
 import iudx.aaa.server.apiserver.util.Urn;
 import iudx.aaa.server.registration.RegistrationService;
 import java.util.ArrayList;
@@ -108,6 +113,7 @@ public class PolicyServiceImpl implements PolicyService {
 
   private static final Logger LOGGER = LogManager.getLogger(PolicyServiceImpl.class);
   private final PgPool pool;
+  private final PgPool readPool;
   private final RegistrationService registrationService;
   private final ApdService apdService;
   private final CatalogueClient catalogueClient;
@@ -126,7 +132,17 @@ public class PolicyServiceImpl implements PolicyService {
       RegistrationService registrationService,
       ApdService apdService,
       CatalogueClient catalogueClient) {
+    this(pool, pool, registrationService, apdService, catalogueClient);
+  }
+
+  public PolicyServiceImpl(
+      PgPool pool,
+      PgPool readPool,
+      RegistrationService registrationService,
+      ApdService apdService,
+      CatalogueClient catalogueClient) {
     this.pool = pool;
+    this.readPool = readPool;
     this.registrationService = registrationService;
     this.apdService = apdService;
     this.catalogueClient = catalogueClient;
@@ -144,7 +160,7 @@ public class PolicyServiceImpl implements PolicyService {
 
     Promise<JsonObject> p = Promise.promise();
 
-    if (!user.getResServersForRole(Roles.CONSUMER).contains(resource.getResServerUrl())) {
+    if (!user.hasRoleForResServer(Roles.CONSUMER, resource.getResServerUrl())) {
       Response r =
           new ResponseBuilder()
               .status(403)
@@ -170,8 +186,15 @@ public class PolicyServiceImpl implements PolicyService {
         .put(CALL_APD_OWNERID, resource.getOwnerId().toString())
         .put(CALL_APD_CONTEXT, request.getContext());
 
-    apdService.callApd(apdContext, p);
-    return p.future();
+    JsonObject timings = new JsonObject();
+    return StageTimings.time(
+            APD,
+            timings,
+            () -> {
+              apdService.callApd(apdContext, p);
+              return p.future();
+            })
+        .map(res -> res.put(STAGE_TIMINGS, StageTimings.take(res).mergeIn(timings)));
   }
 
   /**
@@ -185,7 +208,7 @@ public class PolicyServiceImpl implements PolicyService {
   Future<JsonObject> verifyProviderAccess(User user, RequestToken request, ResourceObj resource) {
     Promise<JsonObject> p = Promise.promise();
 
-    if (!user.getResServersForRole(Roles.PROVIDER).contains(resource.getResServerUrl())) {
+    if (!user.hasRoleForResServer(Roles.PROVIDER, resource.getResServerUrl())) {
       Response r =
           new ResponseBuilder()
               .status(403)
@@ -335,7 +358,9 @@ public class PolicyServiceImpl implements PolicyService {
     }
 
     UUID itemId = UUID.fromString(itemIdStr);
-    Future<ResourceObj> resourceDetails = catalogueClient.getResourceDetails(itemId);
+    JsonObject timings = new JsonObject();
+    Future<ResourceObj> resourceDetails =
+        StageTimings.time(CATALOGUE, timings, () -> catalogueClient.getResourceDetails(itemId));
 
     Future<JsonObject> verifyAccessByRole =
         resourceDetails.compose(
@@ -356,6 +381,7 @@ public class PolicyServiceImpl implements PolicyService {
         .onSuccess(
             s -> {
               s.put(CREATE_TOKEN_RG, resourceDetails.result().getResGrpId().toString());
+              s.put(STAGE_TIMINGS, StageTimings.take(s).mergeIn(timings));
               handler.handle(Future.succeededFuture(s));
             })
         .onFailure(
@@ -394,11 +420,14 @@ public class PolicyServiceImpl implements PolicyService {
         Collectors.mapping(row -> row.toJson(), Collectors.toList());
 
     Future<List<JsonObject>> data =
-        pool.withConnection(
+        readPool.withConnection(
             conn ->
-                conn.preparedQuery(LIST_DELEGATION_AS_DELEGATOR_OR_DELEGATE)
-                    .collecting(collect)
-                    .execute(Tuple.of(UUID.fromString(user.getUserId())))
+                QueryMetrics.query(
+                        conn,
+                        "LIST_DELEGATION_AS_DELEGATOR_OR_DELEGATE",
+                        LIST_DELEGATION_AS_DELEGATOR_OR_DELEGATE,
+                        Tuple.of(UUID.fromString(user.getUserId())),
+                        collect)
                     .map(res -> res.value()));
 
     Future<JsonObject> userInfo =
@@ -480,9 +509,8 @@ public class PolicyServiceImpl implements PolicyService {
     Future<Set<UUID>> idServerMap =
         pool.withConnection(
             conn ->
-                conn.preparedQuery(GET_DELEGATIONS_BY_ID)
-                    .collecting(collect)
-                    .execute(queryTup)
+                QueryMetrics.query(
+                        conn, "GET_DELEGATIONS_BY_ID", GET_DELEGATIONS_BY_ID, queryTup, collect)
                     .map(res -> res.value()));
 
     Future<Void> validate =
@@ -504,8 +532,11 @@ public class PolicyServiceImpl implements PolicyService {
             i ->
                 pool.withTransaction(
                     conn ->
-                        conn.preparedQuery(DELETE_DELEGATIONS)
-                            .execute(Tuple.of(ids.toArray(UUID[]::new)))))
+                        QueryMetrics.query(
+                            conn,
+                            "DELETE_DELEGATIONS",
+                            DELETE_DELEGATIONS,
+                            Tuple.of(ids.toArray(UUID[]::new)))))
         .onSuccess(
             res -> {
               Response r =
@@ -552,7 +583,7 @@ public class PolicyServiceImpl implements PolicyService {
     // check if the (role + resource server) for a delegation is owned by the user
     List<String> rsRoleNotOwnedByUser =
         request.stream()
-            .filter(obj -> !user.getResServersForRole(obj.getRole()).contains(obj.getResSerUrl()))
+            .filter(obj -> !user.hasRoleForResServer(obj.getRole(), obj.getResSerUrl()))
             .map(obj -> obj.getResSerUrl())
             .collect(Collectors.toList());
 
@@ -600,9 +631,12 @@ public class PolicyServiceImpl implements PolicyService {
             res ->
                 pool.withConnection(
                     conn ->
-                        conn.preparedQuery(GET_ROLE_IDS_BY_ROLE_AND_RS)
-                            .collecting(roleRsToRoleIdCollector)
-                            .execute(tup)
+                        QueryMetrics.query(
+                                conn,
+                                "GET_ROLE_IDS_BY_ROLE_AND_RS",
+                                GET_ROLE_IDS_BY_ROLE_AND_RS,
+                                tup,
+                                roleRsToRoleIdCollector)
                             .map(succ -> succ.value())));
 
     Future<List<Tuple>> createTuples =
@@ -627,8 +661,11 @@ public class PolicyServiceImpl implements PolicyService {
             tuples -> {
               return pool.withTransaction(
                   conn ->
-                      conn.preparedQuery(CHECK_EXISTING_DELEGATIONS)
-                          .executeBatch(tuples)
+                      QueryMetrics.batch(
+                              conn,
+                              "CHECK_EXISTING_DELEGATIONS",
+                              CHECK_EXISTING_DELEGATIONS,
+                              tuples)
                           .compose(
                               ar -> {
                                 // This check to get response when batch query is executed for
@@ -666,8 +703,8 @@ public class PolicyServiceImpl implements PolicyService {
                               })
                           .compose(
                               tups ->
-                                  conn.preparedQuery(INSERT_DELEGATION)
-                                      .executeBatch(tups)
+                                  QueryMetrics.batch(
+                                          conn, "INSERT_DELEGATION", INSERT_DELEGATION, tups)
                                       .mapEmpty()));
             });
 
@@ -725,9 +762,12 @@ public class PolicyServiceImpl implements PolicyService {
     Future<Set<UUID>> check =
         pool.withConnection(
                 conn ->
-                    conn.preparedQuery(SQL_GET_DELEG_USER_IDS_BY_DELEGATION_INFO)
-                        .collecting(delegateUserIdCollector)
-                        .execute(tuple))
+                    QueryMetrics.query(
+                        conn,
+                        "SQL_GET_DELEG_USER_IDS_BY_DELEGATION_INFO",
+                        SQL_GET_DELEG_USER_IDS_BY_DELEGATION_INFO,
+                        tuple,
+                        delegateUserIdCollector))
             .map(res -> res.value());
 
     Future<List<String>> uniqDelegIds =
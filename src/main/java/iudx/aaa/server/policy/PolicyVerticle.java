@@ -16,6 +16,11 @@ import io.vertx.pgclient.PgPool;
 import io.vertx.serviceproxy.ServiceBinder;
 import io.vertx.sqlclient.PoolOptions;
 import iudx.aaa.server.apd.ApdService;
+import iudx.aaa.server.apiserver.util.DependencyMetrics;
+import iudx.aaa.server.apiserver.util.LocalServiceRegistry;
+import iudx.aaa.server.apiserver.util.ReadReplicaPool;
+import iudx.aaa.server.apiserver.util.ServiceMessageCodec;
+import iudx.aaa.server.apiserver.util.SharedPgPool;
 import iudx.aaa.server.registration.RegistrationService;
 import java.util.Map;
 import org.apache.logging.log4j.LogManager;
@@ -98,17 +103,30 @@ public class PolicyVerticle extends AbstractVerticle {
         new WebClientOptions().setSsl(true).setVerifyHost(true).setTrustAll(false);
 
     WebClient webClientForCatClient = WebClient.create(vertx, clientOptions);
+    DependencyMetrics.instrument(
+        webClientForCatClient, DependencyMetrics.CATALOGUE, clientOptions.getMaxPoolSize());
 
     /* Create the client pool */
-    PgPool pool = PgPool.pool(vertx, connectOptions, poolOptions);
-    registrationService = RegistrationService.createProxy(vertx, REGISTRATION_SERVICE_ADDRESS);
-    apdService = ApdService.createProxy(vertx, APD_SERVICE_ADDRESS);
+    PgPool pool = SharedPgPool.pool(vertx, connectOptions, poolOptions, config(), "policy");
+    PgPool readPool =
+        ReadReplicaPool.pool(vertx, pool, connectOptions, poolOptions, config(), "policy");
+    registrationService =
+        LocalServiceRegistry.lookup(
+            vertx,
+            RegistrationService.class,
+            REGISTRATION_SERVICE_ADDRESS,
+            RegistrationService::createProxy);
+    apdService =
+        LocalServiceRegistry.lookup(
+            vertx, ApdService.class, APD_SERVICE_ADDRESS, ApdService::createProxy);
     catalogueClient = new CatalogueClient(webClientForCatClient, catalogueOptions);
-    policyService = new PolicyServiceImpl(pool, registrationService, apdService, catalogueClient);
+    policyService =
+        new PolicyServiceImpl(pool, readPool, registrationService, apdService, catalogueClient);
 
-    binder = new ServiceBinder(vertx);
+    binder = ServiceMessageCodec.binder(vertx);
     consumer =
         binder.setAddress(POLICY_SERVICE_ADDRESS).register(PolicyService.class, policyService);
+    LocalServiceRegistry.register(vertx, POLICY_SERVICE_ADDRESS, policyService);
 
     LOGGER.debug("Info : {} : Started", LOGGER.getName());
   }
@@ -116,5 +134,6 @@ public class PolicyVerticle extends AbstractVerticle {
   @Override
   public void stop() {
     binder.unregister(consumer);
+    LocalServiceRegistry.unregister(vertx, POLICY_SERVICE_ADDRESS, policyService);
   }
 }
@@ -3,6 +3,7 @@ package iudx.aaa.server.registration;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.json.JsonObject;
+import iudx.aaa.server.apiserver.util.DependencyMetrics;
 import jakarta.ws.rs.NotFoundException;
 import jakarta.ws.rs.ProcessingException;
 import java.util.HashMap;
@@ -26,6 +27,7 @@ public class KcAdmin {
 
   Keycloak keycloak;
   String realm;
+  String host;
 
   /**
    * Create an instance of the Keycloak Admin client. Verticles can call the constructor with params
@@ -47,6 +49,8 @@ public class KcAdmin {
      */
     ResteasyClient client = new ResteasyClientBuilderImpl().connectionPoolSize(poolSize).build();
     this.realm = realm;
+    this.host = DependencyMetrics.host(serverUrl);
+    DependencyMetrics.addPool(DependencyMetrics.KEYCLOAK, poolSize);
     keycloak =
         KeycloakBuilder.builder()
             .serverUrl(serverUrl)
@@ -66,6 +70,11 @@ public class KcAdmin {
    * @return a future of String type containing the email address
    */
   public Future<String> getEmailId(String id) {
+    return DependencyMetrics.time(
+        DependencyMetrics.KEYCLOAK, "admin_get_user", host, () -> fetchEmailId(id));
+  }
+
+  private Future<String> fetchEmailId(String id) {
     Promise<String> p = Promise.promise();
     RealmResource realmResource;
     UsersResource usersResource;
@@ -107,6 +116,11 @@ public class KcAdmin {
    * @return map of keycloak ID to JSON object with name, email
    */
   public Future<Map<String, JsonObject>> getDetails(List<String> ids) {
+    return DependencyMetrics.time(
+        DependencyMetrics.KEYCLOAK, "admin_get_users", host, () -> fetchDetails(ids));
+  }
+
+  private Future<Map<String, JsonObject>> fetchDetails(List<String> ids) {
     Promise<Map<String, JsonObject>> p = Promise.promise();
     RealmResource realmResource;
     UsersResource usersResource;
@@ -157,6 +171,11 @@ public class KcAdmin {
    * @return
    */
   public Future<JsonObject> findUserByEmail(String email) {
+    return DependencyMetrics.time(
+        DependencyMetrics.KEYCLOAK, "admin_search_user", host, () -> searchUserByEmail(email));
+  }
+
+  private Future<JsonObject> searchUserByEmail(String email) {
     Promise<JsonObject> p = Promise.promise();
     RealmResource realmResource;
     UsersResource usersResource;
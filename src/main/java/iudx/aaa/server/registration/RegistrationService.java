@@ -7,6 +7,7 @@ import io.vertx.codegen.annotations.VertxGen;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.json.JsonObject;
 import iudx.aaa.server.apiserver.AddRolesRequest;
 import iudx.aaa.server.apiserver.ResetClientSecretRequest;
@@ -44,6 +45,19 @@ public interface RegistrationService {
     return new RegistrationServiceVertxEBProxy(vertx, address);
   }
 
+  /**
+   * The createProxy with delivery options, used for all calls made through the proxy.
+   *
+   * @param vertx which is the vertx instance
+   * @param address which is the proxy address
+   * @param options which are the delivery options of the calls
+   * @return RegistrationServiceVertxEBProxy which is a service proxy
+   */
+  @GenIgnore
+  static RegistrationService createProxy(Vertx vertx, String address, DeliveryOptions options) {
+    return new RegistrationServiceVertxEBProxy(vertx, address, options);
+  }
+
   /**
    * addRoles implements adding of roles to the user.
    *
@@ -79,6 +79,7 @@ import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.User.UserBuilder;
 import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.QueryMetrics;
 import iudx.aaa.server.apiserver.util.Urn;
 import iudx.aaa.server.token.TokenService;
 import java.security.SecureRandom;
@@ -110,6 +111,7 @@ public class RegistrationServiceImpl implements RegistrationService {
   private static final Logger LOGGER = LogManager.getLogger(RegistrationServiceImpl.class);
 
   private PgPool pool;
+  private PgPool readPool;
   private KcAdmin kc;
   private TokenService tokenService;
   private static String COS_URL = "";
@@ -119,7 +121,23 @@ public class RegistrationServiceImpl implements RegistrationService {
 
   public RegistrationServiceImpl(
       PgPool pool, KcAdmin kc, TokenService tokenService, JsonObject options) {
+    this(pool, pool, kc, tokenService, options);
+  }
+
+  /**
+   * Create the registration service with a separate pool for read-only queries that can tolerate
+   * replication lag.
+   *
+   * @param pool the Postgres pool of the primary
+   * @param readPool the pool for read-only queries, may be a read replica
+   * @param kc the Keycloak admin client
+   * @param tokenService the token service
+   * @param options the registration config
+   */
+  public RegistrationServiceImpl(
+      PgPool pool, PgPool readPool, KcAdmin kc, TokenService tokenService, JsonObject options) {
     this.pool = pool;
+    this.readPool = readPool;
     this.kc = kc;
     this.tokenService = tokenService;
     COS_URL = options.getString(CONFIG_COS_URL);
@@ -141,10 +159,10 @@ public class RegistrationServiceImpl implements RegistrationService {
     final String phoneInReq = request.getPhone();
     final JsonObject userInfo = request.getUserInfo();
 
-    List<String> ownedRsForProviderRole = user.getResServersForRole(Roles.PROVIDER);
+    Set<String> ownedRsForProviderRole = user.getResServersForRole(Roles.PROVIDER);
     List<String> requestedRsForProviderRole = request.getProvider();
 
-    List<String> ownedRsForConsumerRole = user.getResServersForRole(Roles.CONSUMER);
+    Set<String> ownedRsForConsumerRole = user.getResServersForRole(Roles.CONSUMER);
     List<String> requestedRsForConsumerRole = request.getConsumer();
 
     Set<String> allRequestedRs =
@@ -202,9 +220,12 @@ public class RegistrationServiceImpl implements RegistrationService {
     Future<Map<String, UUID>> getRequestedRs =
         pool.withConnection(
             conn ->
-                conn.preparedQuery(SQL_GET_RS_IDS_BY_URL)
-                    .collecting(rsCollector)
-                    .execute(Tuple.of(allRequestedRs.toArray(String[]::new)))
+                QueryMetrics.query(
+                        conn,
+                        "SQL_GET_RS_IDS_BY_URL",
+                        SQL_GET_RS_IDS_BY_URL,
+                        Tuple.of(allRequestedRs.toArray(String[]::new)),
+                        rsCollector)
                     .map(res -> res.value()));
 
     Future<Void> checkEmailAndResourceServerUrls =
@@ -265,9 +286,12 @@ public class RegistrationServiceImpl implements RegistrationService {
 
               return pool.withConnection(
                   conn ->
-                      conn.preparedQuery(SQL_CHECK_PENDING_REJECTED_PROVIDER_ROLES)
-                          .collecting(pendingRejectedUrlsCollector)
-                          .execute(Tuple.of(requestedRsIds, user.getUserId()))
+                      QueryMetrics.query(
+                              conn,
+                              "SQL_CHECK_PENDING_REJECTED_PROVIDER_ROLES",
+                              SQL_CHECK_PENDING_REJECTED_PROVIDER_ROLES,
+                              Tuple.of(requestedRsIds, user.getUserId()),
+                              pendingRejectedUrlsCollector)
                           .map(succ -> succ.value())
                           .compose(
                               map -> {
@@ -297,8 +321,8 @@ public class RegistrationServiceImpl implements RegistrationService {
             i ->
                 pool.withConnection(
                     conn ->
-                        conn.preparedQuery(SQL_GET_PHONE)
-                            .execute(Tuple.of(user.getUserId()))
+                        QueryMetrics.query(
+                                conn, "SQL_GET_PHONE", SQL_GET_PHONE, Tuple.of(user.getUserId()))
                             .map(
                                 rows ->
                                     rows.iterator().hasNext()
@@ -314,9 +338,12 @@ public class RegistrationServiceImpl implements RegistrationService {
             i ->
                 pool.withConnection(
                     conn ->
-                        conn.preparedQuery(SQL_GET_CLIENTS_FORMATTED)
-                            .collecting(clientCollector)
-                            .execute(Tuple.of(user.getUserId()))
+                        QueryMetrics.query(
+                                conn,
+                                "SQL_GET_CLIENTS_FORMATTED",
+                                SQL_GET_CLIENTS_FORMATTED,
+                                Tuple.of(user.getUserId()),
+                                clientCollector)
                             .map(res -> res.value())));
 
     Future<List<Tuple>> createRoleTuple =
@@ -359,18 +386,24 @@ public class RegistrationServiceImpl implements RegistrationService {
             rolesListTuple ->
                 pool.withTransaction(
                     conn ->
-                        conn.preparedQuery(SQL_CREATE_USER_IF_NOT_EXISTS)
-                            .execute(Tuple.of(user.getUserId(), phoneInReq, userInfo))
+                        QueryMetrics.query(
+                                conn,
+                                "SQL_CREATE_USER_IF_NOT_EXISTS",
+                                SQL_CREATE_USER_IF_NOT_EXISTS,
+                                Tuple.of(user.getUserId(), phoneInReq, userInfo))
                             .compose(
                                 userCreated ->
-                                    conn.preparedQuery(SQL_CREATE_ROLE)
-                                        .executeBatch(rolesListTuple)
+                                    QueryMetrics.batch(
+                                            conn,
+                                            "SQL_CREATE_ROLE",
+                                            SQL_CREATE_ROLE,
+                                            rolesListTuple)
                                         .mapEmpty())));
 
     insertUserAndRoles
         .onSuccess(
             inserted -> {
-              List<Roles> existingRoles = user.getRoles();
+              List<Roles> existingRoles = new ArrayList<Roles>(user.getRoles());
               Map<String, JsonArray> existingRolesToRsMap = user.getRolesToRsMapping();
 
               if (requestedRoles.contains(Roles.CONSUMER)) {
@@ -471,8 +504,7 @@ public class RegistrationServiceImpl implements RegistrationService {
     Future<JsonObject> phoneDetails =
         pool.withConnection(
             conn ->
-                conn.preparedQuery(SQL_GET_PHONE)
-                    .execute(Tuple.of(user.getUserId()))
+                QueryMetrics.query(conn, "SQL_GET_PHONE", SQL_GET_PHONE, Tuple.of(user.getUserId()))
                     .map(
                         rows ->
                             rows.iterator().hasNext()
@@ -487,9 +519,12 @@ public class RegistrationServiceImpl implements RegistrationService {
     Future<List<JsonObject>> clientQuery =
         pool.withConnection(
             conn ->
-                conn.preparedQuery(SQL_GET_CLIENTS_FORMATTED)
-                    .collecting(clientDetails)
-                    .execute(Tuple.of(user.getUserId()))
+                QueryMetrics.query(
+                        conn,
+                        "SQL_GET_CLIENTS_FORMATTED",
+                        SQL_GET_CLIENTS_FORMATTED,
+                        Tuple.of(user.getUserId()),
+                        clientDetails)
                     .map(res -> res.value()));
 
     CompositeFuture.all(phoneDetails, clientQuery, email)
@@ -577,8 +612,8 @@ public class RegistrationServiceImpl implements RegistrationService {
             x ->
                 pool.withConnection(
                     conn ->
-                        conn.preparedQuery(SQL_GET_PHONE)
-                            .execute(Tuple.of(user.getUserId()))
+                        QueryMetrics.query(
+                                conn, "SQL_GET_PHONE", SQL_GET_PHONE, Tuple.of(user.getUserId()))
                             .map(rows -> rows.iterator().next().toJson())));
 
     Collector<Row, ?, List<JsonObject>> clientDetails =
@@ -589,9 +624,12 @@ public class RegistrationServiceImpl implements RegistrationService {
             x ->
                 pool.withConnection(
                     conn ->
-                        conn.preparedQuery(SQL_GET_CLIENTS_FORMATTED)
-                            .collecting(clientDetails)
-                            .execute(Tuple.of(user.getUserId()))
+                        QueryMetrics.query(
+                                conn,
+                                "SQL_GET_CLIENTS_FORMATTED",
+                                SQL_GET_CLIENTS_FORMATTED,
+                                Tuple.of(user.getUserId()),
+                                clientDetails)
                             .map(res -> res.value())));
 
     /* TODO: kc.getEmailId is slow, already being performed at addRole. Consider using once only */
@@ -672,11 +710,9 @@ public class RegistrationServiceImpl implements RegistrationService {
         Collectors.mapping(row -> row.toJson(), Collectors.toList());
 
     Future<List<JsonObject>> rsFuture =
-        pool.withConnection(
+        readPool.withConnection(
             conn ->
-                conn.preparedQuery(SQL_GET_ALL_RS)
-                    .collecting(orgCollect)
-                    .execute()
+                QueryMetrics.query(conn, "SQL_GET_ALL_RS", SQL_GET_ALL_RS, orgCollect)
                     .map(rows -> rows.value()));
 
     Future<JsonObject> ownerFuture =
@@ -790,8 +826,8 @@ public class RegistrationServiceImpl implements RegistrationService {
     Future<Void> checkClientId =
         pool.withConnection(
                 conn ->
-                    conn.preparedQuery(SQL_CHECK_CLIENT_ID_EXISTS)
-                        .execute(tuple)
+                    QueryMetrics.query(
+                            conn, "SQL_CHECK_CLIENT_ID_EXISTS", SQL_CHECK_CLIENT_ID_EXISTS, tuple)
                         .map(row -> row.iterator().next().getBoolean(0)))
             .compose(
                 res -> {
@@ -830,9 +866,12 @@ public class RegistrationServiceImpl implements RegistrationService {
 
               return pool.withConnection(
                   conn ->
-                      conn.preparedQuery(SQL_GET_RS_AND_APDS_FOR_REVOKE)
-                          .collecting(getTokenRevokeReqList)
-                          .execute(Tuple.of(omittedServers.toArray(String[]::new)))
+                      QueryMetrics.query(
+                              conn,
+                              "SQL_GET_RS_AND_APDS_FOR_REVOKE",
+                              SQL_GET_RS_AND_APDS_FOR_REVOKE,
+                              Tuple.of(omittedServers.toArray(String[]::new)),
+                              getTokenRevokeReqList)
                           .map(res -> res.value()));
             });
 
@@ -866,7 +905,9 @@ public class RegistrationServiceImpl implements RegistrationService {
 
               return pool.withConnection(
                   conn ->
-                      conn.preparedQuery(SQL_UPDATE_CLIENT_SECRET).execute(tup).map(clientSecret));
+                      QueryMetrics.query(
+                              conn, "SQL_UPDATE_CLIENT_SECRET", SQL_UPDATE_CLIENT_SECRET, tup)
+                          .map(clientSecret));
             })
         .onSuccess(
             cliSec -> {
@@ -982,7 +1023,12 @@ public class RegistrationServiceImpl implements RegistrationService {
 
               Future<RowSet<Row>> inserting =
                   pool.withTransaction(
-                      conn -> conn.preparedQuery(SQL_CREATE_USER_IF_NOT_EXISTS).executeBatch(tups));
+                      conn ->
+                          QueryMetrics.batch(
+                              conn,
+                              "SQL_CREATE_USER_IF_NOT_EXISTS",
+                              SQL_CREATE_USER_IF_NOT_EXISTS,
+                              tups));
 
               Future<Void> logIfInserted =
                   inserting.compose(
@@ -1049,9 +1095,12 @@ public class RegistrationServiceImpl implements RegistrationService {
     Future<Void> checkDefaultClientId =
         pool.withConnection(
                 conn ->
-                    conn.preparedQuery(SQL_CHECK_DEFAULT_CLIENT_EXISTS)
-                        .collecting(clientIdCollector)
-                        .execute(tuple)
+                    QueryMetrics.query(
+                            conn,
+                            "SQL_CHECK_DEFAULT_CLIENT_EXISTS",
+                            SQL_CHECK_DEFAULT_CLIENT_EXISTS,
+                            tuple,
+                            clientIdCollector)
                         .map(res -> res.value()))
             .compose(
                 cidList -> {
@@ -1090,8 +1139,11 @@ public class RegistrationServiceImpl implements RegistrationService {
 
               return pool.withConnection(
                   conn ->
-                      conn.preparedQuery(SQL_CREATE_USER_IF_NOT_EXISTS)
-                          .execute(Tuple.of(userId, NIL_PHONE, emptyUserInfo))
+                      QueryMetrics.query(
+                              conn,
+                              "SQL_CREATE_USER_IF_NOT_EXISTS",
+                              SQL_CREATE_USER_IF_NOT_EXISTS,
+                              Tuple.of(userId, NIL_PHONE, emptyUserInfo))
                           .mapEmpty());
             });
 
@@ -1114,7 +1166,9 @@ public class RegistrationServiceImpl implements RegistrationService {
                       .put(RESP_CLIENT_SC, clientSecret);
 
               return pool.withConnection(
-                      conn -> conn.preparedQuery(SQL_CREATE_CLIENT).execute(clientTuple))
+                      conn ->
+                          QueryMetrics.query(
+                              conn, "SQL_CREATE_CLIENT", SQL_CREATE_CLIENT, clientTuple))
                   .compose(succ -> Future.succeededFuture(clientDetails));
             });
 
@@ -1214,8 +1268,11 @@ public class RegistrationServiceImpl implements RegistrationService {
             keycloakId ->
                 pool.withConnection(
                     conn ->
-                        conn.preparedQuery(SQL_CHECK_USER_HAS_PROV_CONS_ROLE_FOR_RS)
-                            .execute(Tuple.of(keycloakId, role, resourceServerUrl))
+                        QueryMetrics.query(
+                                conn,
+                                "SQL_CHECK_USER_HAS_PROV_CONS_ROLE_FOR_RS",
+                                SQL_CHECK_USER_HAS_PROV_CONS_ROLE_FOR_RS,
+                                Tuple.of(keycloakId, role, resourceServerUrl))
                             .map(row -> row.iterator().next().getBoolean("exists"))));
 
     checkHasRole
@@ -25,6 +25,10 @@ import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgPool;
 import io.vertx.serviceproxy.ServiceBinder;
 import io.vertx.sqlclient.PoolOptions;
+import iudx.aaa.server.apiserver.util.LocalServiceRegistry;
+import iudx.aaa.server.apiserver.util.ReadReplicaPool;
+import iudx.aaa.server.apiserver.util.ServiceMessageCodec;
+import iudx.aaa.server.apiserver.util.SharedPgPool;
 import iudx.aaa.server.token.TokenService;
 import java.util.Map;
 import org.apache.logging.log4j.LogManager;
@@ -124,7 +128,9 @@ public class RegistrationVerticle extends AbstractVerticle {
     }
 
     /* Create the client pool */
-    pool = PgPool.pool(vertx, connectOptions, poolOptions);
+    pool = SharedPgPool.pool(vertx, connectOptions, poolOptions, config(), "registration");
+    PgPool readPool =
+        ReadReplicaPool.pool(vertx, pool, connectOptions, poolOptions, config(), "registration");
 
     KcAdmin kcadmin =
         new KcAdmin(
@@ -134,13 +140,17 @@ public class RegistrationVerticle extends AbstractVerticle {
             keycloakAdminClientSecret,
             keycloakAdminPoolSize);
 
-    tokenService = TokenService.createProxy(vertx, TOKEN_SERVICE_ADDRESS);
-    registrationService = new RegistrationServiceImpl(pool, kcadmin, tokenService, options);
-    binder = new ServiceBinder(vertx);
+    tokenService =
+        LocalServiceRegistry.lookup(
+            vertx, TokenService.class, TOKEN_SERVICE_ADDRESS, TokenService::createProxy);
+    registrationService =
+        new RegistrationServiceImpl(pool, readPool, kcadmin, tokenService, options);
+    binder = ServiceMessageCodec.binder(vertx);
     consumer =
         binder
             .setAddress(REGISTRATION_SERVICE_ADDRESS)
             .register(RegistrationService.class, registrationService);
+    LocalServiceRegistry.register(vertx, REGISTRATION_SERVICE_ADDRESS, registrationService);
 
     LOGGER.debug("Info : {} : Started", LOGGER.getName());
   }
@@ -148,5 +158,6 @@ public class RegistrationVerticle extends AbstractVerticle {
   @Override
   public void stop() {
     binder.unregister(consumer);
+    LocalServiceRegistry.unregister(vertx, REGISTRATION_SERVICE_ADDRESS, registrationService);
   }
 }
@@ -13,6 +13,7 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.client.WebClientOptions;
 import io.vertx.ext.web.client.predicate.ResponsePredicate;
+import iudx.aaa.server.apiserver.util.DependencyMetrics;
 import java.util.Optional;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -32,6 +33,8 @@ public class TokenRevokeService {
         new WebClientOptions().setSsl(true).setVerifyHost(true).setTrustAll(false);
 
     this.client = WebClient.create(vertx, clientOptions);
+    DependencyMetrics.instrument(
+        client, DependencyMetrics.RESOURCE_SERVER, clientOptions.getMaxPoolSize());
   }
 
   /**
@@ -7,6 +7,7 @@ import io.vertx.codegen.annotations.VertxGen;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.json.JsonObject;
 import iudx.aaa.server.apiserver.DelegationInformation;
 import iudx.aaa.server.apiserver.IntrospectToken;
@@ -43,6 +44,19 @@ public interface TokenService {
     return new TokenServiceVertxEBProxy(vertx, address);
   }
 
+  /**
+   * The createProxy with delivery options, used for all calls made through the proxy.
+   *
+   * @param vertx which is the vertx instance
+   * @param address which is the proxy address
+   * @param options which are the delivery options of the calls
+   * @return TokenServiceVertxEBProxy which is a service proxy
+   */
+  @GenIgnore
+  static TokenService createProxy(Vertx vertx, String address, DeliveryOptions options) {
+    return new TokenServiceVertxEBProxy(vertx, address, options);
+  }
+
   /**
    * The createToken implements the token creation operation.
    *
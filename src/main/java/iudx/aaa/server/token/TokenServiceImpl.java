@@ -1,5 +1,8 @@
 package iudx.aaa.server.token;
 
+import static iudx.aaa.server.apiserver.util.StageTimings.JWT_SIGN;
+import static iudx.aaa.server.apiserver.util.StageTimings.STAGE_TIMINGS;
+import static iudx.aaa.server.apiserver.util.StageTimings.VERIFY_RESOURCE_ACCESS;
 import static iudx.aaa.server.apiserver.util.Urn.*;
 import static iudx.aaa.server.registration.Constants.ERR_DETAIL_NO_APPROVED_ROLES;
 import static iudx.aaa.server.registration.Constants.ERR_TITLE_NO_APPROVED_ROLES;
@@ -27,6 +30,9 @@ import iudx.aaa.server.apiserver.RevokeToken;
 import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.FlightEvents;
+import iudx.aaa.server.apiserver.util.QueryMetrics;
+import iudx.aaa.server.apiserver.util.StageTimings;
 import iudx.aaa.server.policy.PolicyService;
 import iudx.aaa.server.registration.RegistrationService;
 import java.util.List;
@@ -74,12 +80,26 @@ public class TokenServiceImpl implements TokenService {
       DelegationInformation delegationInfo,
       User user,
       Handler<AsyncResult<JsonObject>> handler) {
+    issueToken(
+        request,
+        delegationInfo,
+        user,
+        FlightEvents.tokenIssuance(request.getRole(), request.getItemType(), handler));
+    return this;
+  }
+
+  private void issueToken(
+      RequestToken request,
+      DelegationInformation delegationInfo,
+      User user,
+      Handler<AsyncResult<JsonObject>> handler) {
     LOGGER.debug(REQ_RECEIVED);
 
     Roles role = request.getRole();
     ItemType itemType = request.getItemType();
 
     JsonObject jsonRequest = request.toJson();
+    JsonObject timings = new JsonObject();
 
     /* manually putting user_id as it's required by getJwt */
     jsonRequest.put(USER_ID, user.getUserId());
@@ -94,7 +114,7 @@ public class TokenServiceImpl implements TokenService {
               .detail(ERR_DETAIL_NO_APPROVED_ROLES)
               .build();
       handler.handle(Future.succeededFuture(r.toJson()));
-      return this;
+      return;
     }
 
     /* Verify that the user has the requested role - the resource server check is later */
@@ -107,7 +127,7 @@ public class TokenServiceImpl implements TokenService {
               .detail(ERR_DETAIL_ROLE_NOT_OWNED)
               .build();
       handler.handle(Future.succeededFuture(resp.toJson()));
-      return this;
+      return;
     }
 
     if (role.equals(Roles.DELEGATE) && delegationInfo == null) {
@@ -119,7 +139,7 @@ public class TokenServiceImpl implements TokenService {
               .detail(ERR_DETAIL_DELEGATION_INFO_MISSING)
               .build();
       handler.handle(Future.succeededFuture(resp.toJson()));
-      return this;
+      return;
     }
 
     if (itemType.equals(ItemType.RESOURCE_GROUP)) {
@@ -131,7 +151,7 @@ public class TokenServiceImpl implements TokenService {
               .detail(ERR_DETAIL_NO_RES_GRP_TOKEN)
               .build();
       handler.handle(Future.succeededFuture(r.toJson()));
-      return this;
+      return;
     } else if (itemType.equals(ItemType.COS)) {
       if (!request.getRole().equals(Roles.COS_ADMIN)) {
         Response r =
@@ -142,7 +162,7 @@ public class TokenServiceImpl implements TokenService {
                 .detail(ERR_DETAIL_INVALID_ROLE_FOR_COS)
                 .build();
         handler.handle(Future.succeededFuture(r.toJson()));
-        return this;
+        return;
       }
 
       if (!request.getItemId().equals(CLAIM_ISSUER)) {
@@ -154,11 +174,11 @@ public class TokenServiceImpl implements TokenService {
                 .detail(ERR_DETAIL_INVALID_COS_URL)
                 .build();
         handler.handle(Future.succeededFuture(r.toJson()));
-        return this;
+        return;
       }
 
       jsonRequest.put(URL, request.getItemId());
-      JsonObject jwt = getJwt(jsonRequest);
+      JsonObject jwt = StageTimings.timeSync(JWT_SIGN, timings, () -> getJwt(jsonRequest));
 
       LOGGER.info(LOG_TOKEN_SUCC);
 
@@ -169,7 +189,7 @@ public class TokenServiceImpl implements TokenService {
               .title(TOKEN_SUCCESS)
               .objectResults(jwt)
               .build();
-      handler.handle(Future.succeededFuture(resp.toJson()));
+      handler.handle(Future.succeededFuture(resp.toJson().put(STAGE_TIMINGS, timings)));
     } else if (itemType.equals(ItemType.RESOURCE_SERVER)) {
       Future<JsonObject> checkIdenToken =
           validateForIdentityToken(request.getItemId(), role, delegationInfo, user);
@@ -178,7 +198,8 @@ public class TokenServiceImpl implements TokenService {
           .onSuccess(
               result -> {
                 jsonRequest.mergeIn(result, true);
-                JsonObject jwt = getJwt(jsonRequest);
+                JsonObject jwt =
+                    StageTimings.timeSync(JWT_SIGN, timings, () -> getJwt(jsonRequest));
 
                 LOGGER.info(LOG_TOKEN_SUCC);
 
@@ -189,7 +210,7 @@ public class TokenServiceImpl implements TokenService {
                         .title(TOKEN_SUCCESS)
                         .objectResults(jwt)
                         .build();
-                handler.handle(Future.succeededFuture(resp.toJson()));
+                handler.handle(Future.succeededFuture(resp.toJson().put(STAGE_TIMINGS, timings)));
                 return;
               })
           .onFailure(
@@ -204,17 +225,23 @@ public class TokenServiceImpl implements TokenService {
               });
     } else if (itemType.equals(ItemType.RESOURCE)) {
       Promise<JsonObject> policyHandler = Promise.promise();
-      policyService.verifyResourceAccess(request, delegationInfo, user, policyHandler);
 
-      policyHandler
-          .future()
+      StageTimings.time(
+              VERIFY_RESOURCE_ACCESS,
+              timings,
+              () -> {
+                policyService.verifyResourceAccess(request, delegationInfo, user, policyHandler);
+                return policyHandler.future();
+              })
           .onSuccess(
               result -> {
+                timings.mergeIn(StageTimings.take(result));
                 jsonRequest.mergeIn(result, true);
 
                 if (jsonRequest.getString(STATUS).equals(SUCCESS)) {
 
-                  JsonObject jwt = getJwt(jsonRequest);
+                  JsonObject jwt =
+                      StageTimings.timeSync(JWT_SIGN, timings, () -> getJwt(jsonRequest));
                   Response resp =
                       new ResponseBuilder()
                           .status(200)
@@ -223,10 +250,12 @@ public class TokenServiceImpl implements TokenService {
                           .objectResults(jwt)
                           .build();
 
-                  handler.handle(Future.succeededFuture(resp.toJson()));
+                  handler.handle(
+                      Future.succeededFuture(resp.toJson().put(STAGE_TIMINGS, timings)));
                 } else if (jsonRequest.getString(STATUS).equals(APD_INTERACTION)) {
 
-                  JsonObject apdJwt = getApdJwt(jsonRequest);
+                  JsonObject apdJwt =
+                      StageTimings.timeSync(JWT_SIGN, timings, () -> getApdJwt(jsonRequest));
                   /* Add context to the error response containing the APD token */
                   Response resp =
                       new ResponseBuilder()
@@ -237,7 +266,8 @@ public class TokenServiceImpl implements TokenService {
                           .errorContext(apdJwt)
                           .build();
 
-                  handler.handle(Future.succeededFuture(resp.toJson()));
+                  handler.handle(
+                      Future.succeededFuture(resp.toJson().put(STAGE_TIMINGS, timings)));
                 }
 
                 LOGGER.info(LOG_TOKEN_SUCC);
@@ -253,8 +283,6 @@ public class TokenServiceImpl implements TokenService {
                 handler.handle(Future.failedFuture("Internal error"));
               });
     }
-
-    return this;
   }
 
   /** {@inheritDoc} */
@@ -294,7 +322,7 @@ public class TokenServiceImpl implements TokenService {
 
     Tuple tuple = Tuple.of(rsUrl);
 
-    pgSelelctQuery(GET_URL, tuple)
+    pgSelelctQuery("GET_URL", GET_URL, tuple)
         .onComplete(
             dbHandler -> {
               if (dbHandler.failed()) {
@@ -380,6 +408,12 @@ public class TokenServiceImpl implements TokenService {
   @Override
   public TokenService validateToken(
       IntrospectToken introspectToken, Handler<AsyncResult<JsonObject>> handler) {
+    introspect(introspectToken, FlightEvents.tokenIntrospection(handler));
+    return this;
+  }
+
+  private void introspect(
+      IntrospectToken introspectToken, Handler<AsyncResult<JsonObject>> handler) {
 
     LOGGER.debug(REQ_RECEIVED);
 
@@ -394,7 +428,7 @@ public class TokenServiceImpl implements TokenService {
               .detail(MISSING_TOKEN)
               .build();
       handler.handle(Future.succeededFuture(resp.toJson()));
-      return this;
+      return;
     }
 
     TokenCredentials authInfo = new TokenCredentials(accessToken);
@@ -448,8 +482,6 @@ public class TokenServiceImpl implements TokenService {
               LOGGER.error(fail.getMessage());
               handler.handle(Future.failedFuture("Internal error"));
             });
-
-    return this;
   }
 
   /**
@@ -597,17 +629,18 @@ public class TokenServiceImpl implements TokenService {
   }
 
   /**
+   * @param name the name of the query
    * Handles the PostgreSQL query.
    *
    * @param query which is SQL
    * @param tuple which contains fields
    * @return future associated with Promise
    */
-  Future<JsonArray> pgSelelctQuery(String query, Tuple tuple) {
+  Future<JsonArray> pgSelelctQuery(String name, String query, Tuple tuple) {
 
     Promise<JsonArray> promise = Promise.promise();
     pgPool
-        .withConnection(connection -> connection.preparedQuery(query).execute(tuple))
+        .withConnection(connection -> QueryMetrics.query(connection, name, query, tuple))
         .onComplete(
             handler -> {
               if (handler.succeeded()) {
@@ -641,7 +674,8 @@ public class TokenServiceImpl implements TokenService {
           new ComposeException(400, URN_INVALID_INPUT, ERR_COS_ADMIN_NO_RS, ERR_COS_ADMIN_NO_RS));
     }
 
-    Future<JsonArray> resServer = pgSelelctQuery(CHECK_RS_EXISTS_BY_URL, Tuple.of(url));
+    Future<JsonArray> resServer =
+        pgSelelctQuery("CHECK_RS_EXISTS_BY_URL", CHECK_RS_EXISTS_BY_URL, Tuple.of(url));
 
     Future<Void> checkUrlExists =
         resServer.compose(
@@ -676,7 +710,7 @@ public class TokenServiceImpl implements TokenService {
                         403, URN_INVALID_INPUT, ACCESS_DENIED, ERR_DOES_NOT_HAVE_ROLE_FOR_RS));
               }
 
-              if (user.getResServersForRole(role).contains(url)) {
+              if (user.hasRoleForResServer(role, url)) {
                 JsonObject result = new JsonObject().put(URL, url);
                 return Future.succeededFuture(result);
               }
@@ -12,6 +12,9 @@ import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgPool;
 import io.vertx.serviceproxy.ServiceBinder;
 import io.vertx.sqlclient.PoolOptions;
+import iudx.aaa.server.apiserver.util.LocalServiceRegistry;
+import iudx.aaa.server.apiserver.util.ServiceMessageCodec;
+import iudx.aaa.server.apiserver.util.SharedPgPool;
 import iudx.aaa.server.policy.PolicyService;
 import iudx.aaa.server.registration.RegistrationService;
 import java.util.Map;
@@ -105,13 +108,21 @@ public class TokenVerticle extends AbstractVerticle {
     /* Initializing the services */
     provider = jwtInitConfig();
     revokeService = new TokenRevokeService(vertx);
-    pgPool = PgPool.pool(vertx, connectOptions, poolOptions);
-    policyService = PolicyService.createProxy(vertx, POLICY_SERVICE_ADDRESS);
-    registrationService = RegistrationService.createProxy(vertx, REGISTRATION_SERVICE_ADDRESS);
+    pgPool = SharedPgPool.pool(vertx, connectOptions, poolOptions, config(), "token");
+    policyService =
+        LocalServiceRegistry.lookup(
+            vertx, PolicyService.class, POLICY_SERVICE_ADDRESS, PolicyService::createProxy);
+    registrationService =
+        LocalServiceRegistry.lookup(
+            vertx,
+            RegistrationService.class,
+            REGISTRATION_SERVICE_ADDRESS,
+            RegistrationService::createProxy);
     tokenService =
         new TokenServiceImpl(pgPool, policyService, registrationService, provider, revokeService);
-    binder = new ServiceBinder(vertx);
+    binder = ServiceMessageCodec.binder(vertx);
     consumer = binder.setAddress(TOKEN_SERVICE_ADDRESS).register(TokenService.class, tokenService);
+    LocalServiceRegistry.register(vertx, TOKEN_SERVICE_ADDRESS, tokenService);
 
     LOGGER.debug("Info : {} : Started", LOGGER.getName());
   }
@@ -133,5 +144,6 @@ public class TokenVerticle extends AbstractVerticle {
   @Override
   public void stop() {
     binder.unregister(consumer);
+    LocalServiceRegistry.unregister(vertx, TOKEN_SERVICE_ADDRESS, tokenService);
   }
 }
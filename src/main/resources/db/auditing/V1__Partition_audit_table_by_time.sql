@@ -0,0 +1,76 @@
+-- Migration for the auditing database (not the AAA database). Converts the audit table to a table
+-- range-partitioned by month on the time column (epoch milliseconds). Run with flyway using
+-- -locations=filesystem:src/main/resources/db/auditing -placeholders.auditTable=<auditingDatabaseTableName>
+
+-- Create the partition holding records of the month starting at month_start (UTC)
+CREATE OR REPLACE FUNCTION audit_create_partition(tbl text, month_start date) RETURNS void AS $$
+DECLARE
+  part text := tbl || '_p' || to_char(month_start, 'YYYYMM');
+  lower_ms bigint := (extract(epoch FROM (month_start::timestamp AT TIME ZONE 'UTC')) * 1000)::bigint;
+  upper_ms bigint := (extract(epoch FROM ((month_start + interval '1 month')::timestamp AT TIME ZONE 'UTC')) * 1000)::bigint;
+BEGIN
+  EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF %I FOR VALUES FROM (%s) TO (%s)',
+    part, tbl, lower_ms, upper_ms);
+END;
+$$ LANGUAGE plpgsql;
+
+-- Create partitions for the current month and the next months_ahead months. If retention_months
+-- is positive, drop monthly partitions older than retention_months months. Dropping a partition
+-- removes its records without a DELETE scan or vacuum.
+CREATE OR REPLACE FUNCTION audit_maintain_partitions(tbl text, months_ahead int, retention_months int) RETURNS void AS $$
+DECLARE
+  current_month date := date_trunc('month', now() AT TIME ZONE 'UTC')::date;
+  child record;
+BEGIN
+  FOR i IN 0..months_ahead LOOP
+    PERFORM audit_create_partition(tbl, (current_month + make_interval(months => i))::date);
+  END LOOP;
+
+  IF retention_months > 0 THEN
+    FOR child IN
+      SELECT c.relname FROM pg_inherits inh
+        JOIN pg_class c ON c.oid = inh.inhrelid
+        JOIN pg_class p ON p.oid = inh.inhparent
+      WHERE p.relname = tbl
+        AND length(c.relname) = length(tbl) + 8
+        AND left(c.relname, length(tbl) + 2) = tbl || '_p'
+        AND right(c.relname, 6) ~ '^[0-9]{6}$'
+    LOOP
+      IF to_date(right(child.relname, 6), 'YYYYMM') < current_month - make_interval(months => retention_months) THEN
+        EXECUTE format('DROP TABLE %I', child.relname);
+      END IF;
+    END LOOP;
+  END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+ALTER TABLE "${auditTable}" RENAME TO "${auditTable}_unpartitioned";
+
+CREATE TABLE "${auditTable}" (LIKE "${auditTable}_unpartitioned" INCLUDING DEFAULTS)
+  PARTITION BY RANGE (time);
+
+ALTER TABLE "${auditTable}" ADD PRIMARY KEY (id, time);
+
+-- Reads are by user and time range, ordered by (time, id) for keyset pagination
+CREATE INDEX "${auditTable}_userid_time_id_idx" ON "${auditTable}" (userid, time DESC, id DESC);
+
+-- Records outside all monthly partitions
+CREATE TABLE "${auditTable}_default" PARTITION OF "${auditTable}" DEFAULT;
+
+DO $$
+DECLARE
+  m date;
+BEGIN
+  SELECT date_trunc('month', to_timestamp(min(time) / 1000.0) AT TIME ZONE 'UTC')::date INTO m
+    FROM "${auditTable}_unpartitioned";
+  WHILE m IS NOT NULL AND m < date_trunc('month', now() AT TIME ZONE 'UTC')::date LOOP
+    PERFORM audit_create_partition('${auditTable}', m);
+    m := (m + interval '1 month')::date;
+  END LOOP;
+  PERFORM audit_maintain_partitions('${auditTable}', 2, 0);
+END
+$$;
+
+INSERT INTO "${auditTable}" SELECT * FROM "${auditTable}_unpartitioned";
+
+DROP TABLE "${auditTable}_unpartitioned";
@@ -0,0 +1,34 @@
+-- Migration for the auditing database (not the AAA database). Records written for a month before
+-- its partition exists land in the default partition, after which CREATE TABLE ... PARTITION OF
+-- for that month fails and partition maintenance stalls. The partition is now created detached,
+-- the records of its month are moved into it from the default partition, and it is then attached,
+-- all in the transaction of the maintenance call.
+
+CREATE OR REPLACE FUNCTION audit_create_partition(tbl text, month_start date) RETURNS void AS $$
+DECLARE
+  part text := tbl || '_p' || to_char(month_start, 'YYYYMM');
+  def text := tbl || '_default';
+  lower_ms bigint := (extract(epoch FROM (month_start::timestamp AT TIME ZONE 'UTC')) * 1000)::bigint;
+  upper_ms bigint := (extract(epoch FROM ((month_start + interval '1 month')::timestamp AT TIME ZONE 'UTC')) * 1000)::bigint;
+  moved bigint;
+BEGIN
+  IF to_regclass(quote_ident(part)) IS NOT NULL THEN
+    RETURN;
+  END IF;
+
+  EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS)', part, tbl);
+
+  IF to_regclass(quote_ident(def)) IS NOT NULL THEN
+    EXECUTE format(
+      'WITH moved AS (DELETE FROM %I WHERE time >= %s AND time < %s RETURNING *)'
+      ' INSERT INTO %I SELECT * FROM moved', def, lower_ms, upper_ms, part);
+    GET DIAGNOSTICS moved = ROW_COUNT;
+    IF moved > 0 THEN
+      RAISE WARNING 'Moved % audit records from % into %', moved, def, part;
+    END IF;
+  END IF;
+
+  EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%s) TO (%s)',
+    tbl, part, lower_ms, upper_ms);
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,25 @@
+-- Indexes for queries run on every request (role fetch, client credential and delegation
+-- lookups) and for registration/policy queries filtering on the same columns. One index per
+-- column set, so that writes do not maintain overlapping indexes
+
+-- FetchRoles provider/consumer roles, covering so that the heap is not read, and role checks in
+-- registration and policy, some of which read roles of any status
+CREATE INDEX IF NOT EXISTS idx_roles_user_id_status ON roles (user_id, status) INCLUDE (role, resource_server_id);
+
+-- FetchRoles delegate role, delegation checks in policy for a given status
+CREATE INDEX IF NOT EXISTS idx_delegations_user_id_status ON delegations (user_id, status);
+
+-- Joins from roles to their delegations
+CREATE INDEX IF NOT EXISTS idx_delegations_role_id ON delegations (role_id);
+
+-- Client ID - client secret authentication, covering so that the heap is not read
+CREATE INDEX IF NOT EXISTS idx_user_clients_client_id ON user_clients (client_id) INCLUDE (user_id, client_secret);
+
+-- Listing/checking clients of a user
+CREATE INDEX IF NOT EXISTS idx_user_clients_user_id ON user_clients (user_id);
+
+-- FetchRoles trustee role, which only reads active APDs
+CREATE INDEX IF NOT EXISTS idx_apds_owner_id_active ON apds (owner_id) INCLUDE (url) WHERE status = 'ACTIVE';
+
+-- FetchRoles admin role
+CREATE INDEX IF NOT EXISTS idx_resource_server_owner_id ON resource_server (owner_id);
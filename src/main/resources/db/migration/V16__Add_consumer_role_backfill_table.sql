@@ -0,0 +1,31 @@
+-- Resource servers whose consumer roles are still being added to existing consumers, with the
+-- last user ID done. The row is added in the transaction creating the server and removed after
+-- the last batch, so that an interrupted fan-out is resumed from where it stopped
+CREATE TABLE consumer_role_backfill (
+    resource_server_id uuid NOT NULL,
+    last_user_id uuid NOT NULL,
+    created_at timestamp without time zone NOT NULL,
+    updated_at timestamp without time zone NOT NULL
+);
+
+ALTER TABLE consumer_role_backfill OWNER TO ${flyway:user};
+
+ALTER TABLE ONLY consumer_role_backfill
+    ADD CONSTRAINT consumer_role_backfill_pkey PRIMARY KEY (resource_server_id);
+
+ALTER TABLE ONLY consumer_role_backfill
+    ADD CONSTRAINT consumer_role_backfill_resource_server_id_fkey FOREIGN KEY (resource_server_id) REFERENCES resource_server(id) ON DELETE CASCADE;
+
+GRANT SELECT,INSERT,DELETE,UPDATE ON TABLE consumer_role_backfill TO ${authUser};
+
+-- A user has at most one consumer role per resource server, so that re-run batches can skip
+-- roles already added. Duplicates left by concurrent fan-outs are removed first, keeping a role
+-- that has delegations, else the oldest
+DELETE FROM roles AS r USING roles AS k
+    WHERE r.role = 'CONSUMER' AND k.role = 'CONSUMER'
+    AND r.user_id = k.user_id AND r.resource_server_id = k.resource_server_id AND r.id <> k.id
+    AND NOT EXISTS (SELECT 1 FROM delegations AS d WHERE d.role_id = r.id)
+    AND (EXISTS (SELECT 1 FROM delegations AS d WHERE d.role_id = k.id)
+        OR (k.created_at, k.id) < (r.created_at, r.id));
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_roles_consumer_user_id_resource_server_id ON roles (user_id, resource_server_id) WHERE role = 'CONSUMER';
@@ -0,0 +1,268 @@
+package iudx.aaa.server.admin;
+
+import static iudx.aaa.server.admin.Constants.CONSUMER_ROLE_BATCH_SIZE;
+import static iudx.aaa.server.admin.Constants.SQL_ADD_NEW_RES_SERVER_ROLE_FOR_CONSUMER_BATCH;
+import static iudx.aaa.server.admin.Constants.SQL_CREATE_CONSUMER_ROLE_BACKFILL;
+import static iudx.aaa.server.admin.Constants.SQL_CREATE_RS_IF_NOT_EXIST;
+import static iudx.aaa.server.admin.Constants.SQL_DELETE_CONSUMER_ROLE_BACKFILL;
+import static iudx.aaa.server.admin.Constants.SQL_GET_PENDING_CONSUMER_ROLE_BACKFILLS;
+import static iudx.aaa.server.admin.Constants.SQL_LOCK_CONSUMER_ROLE_BACKFILL;
+import static iudx.aaa.server.admin.Constants.SQL_UPDATE_CONSUMER_ROLE_BACKFILL;
+import static iudx.aaa.server.apiserver.util.Constants.NIL_UUID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PreparedQuery;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowIterator;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.SqlResult;
+import io.vertx.sqlclient.Tuple;
+import iudx.aaa.server.apiserver.CreateRsRequest;
+import iudx.aaa.server.apiserver.Roles;
+import iudx.aaa.server.apiserver.User;
+import iudx.aaa.server.apiserver.User.UserBuilder;
+import iudx.aaa.server.registration.KcAdmin;
+import iudx.aaa.server.registration.RegistrationService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for adding consumer roles in batches after creating a resource server. */
+public class CreateResourceServerBatchTest {
+
+  private static final User COS_ADMIN = new UserBuilder().roles(List.of(Roles.COS_ADMIN)).build();
+  private static final String OWNER_EMAIL = "owner@iudx.io";
+  private static final UUID RS_ID = UUID.randomUUID();
+
+  private PgPool pool;
+  private SqlConnection conn;
+  private List<Future<RowSet<Row>>> batches;
+  /* The last user ID in the backfill row of the server, null if there is no row */
+  private AtomicReference<UUID> backfill;
+  private List<UUID> batchesFrom;
+  private PreparedQuery<RowSet<Row>> createBackfill;
+  private PreparedQuery<RowSet<Row>> deleteBackfill;
+  private AdminServiceImpl adminService;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    pool = mock(PgPool.class);
+    conn = mock(SqlConnection.class);
+    batches = new ArrayList<Future<RowSet<Row>>>();
+    backfill = new AtomicReference<>();
+    batchesFrom = new ArrayList<UUID>();
+
+    when(pool.withTransaction(any()))
+        .thenAnswer(inv -> ((Function<SqlConnection, Future<?>>) inv.getArgument(0)).apply(conn));
+    when(pool.withConnection(any()))
+        .thenAnswer(inv -> ((Function<SqlConnection, Future<?>>) inv.getArgument(0)).apply(conn));
+
+    RowSet<Row> created = rsCreated();
+    PreparedQuery<RowSet<Row>> createRs = mock(PreparedQuery.class);
+    when(createRs.execute(any(Tuple.class))).thenReturn(Future.succeededFuture(created));
+    when(conn.preparedQuery(SQL_CREATE_RS_IF_NOT_EXIST)).thenReturn(createRs);
+
+    createBackfill =
+        statement(
+            tuple -> {
+              backfill.set(tuple.getUUID(1));
+              return empty();
+            });
+    when(conn.preparedQuery(SQL_CREATE_CONSUMER_ROLE_BACKFILL)).thenReturn(createBackfill);
+
+    PreparedQuery<RowSet<Row>> lockBackfill =
+        statement(tuple -> backfill.get() == null ? empty() : lastUser(backfill.get()));
+    when(conn.preparedQuery(SQL_LOCK_CONSUMER_ROLE_BACKFILL)).thenReturn(lockBackfill);
+
+    PreparedQuery<RowSet<Row>> updateBackfill =
+        statement(
+            tuple -> {
+              backfill.set(tuple.getUUID(1));
+              return empty();
+            });
+    when(conn.preparedQuery(SQL_UPDATE_CONSUMER_ROLE_BACKFILL)).thenReturn(updateBackfill);
+
+    deleteBackfill =
+        statement(
+            tuple -> {
+              backfill.set(null);
+              return empty();
+            });
+    when(conn.preparedQuery(SQL_DELETE_CONSUMER_ROLE_BACKFILL)).thenReturn(deleteBackfill);
+
+    PreparedQuery<RowSet<Row>> batch = mock(PreparedQuery.class);
+    when(batch.execute(any(Tuple.class)))
+        .thenAnswer(
+            inv -> {
+              batchesFrom.add(inv.<Tuple>getArgument(0).getUUID(1));
+              return batches.remove(0);
+            });
+    when(conn.preparedQuery(SQL_ADD_NEW_RES_SERVER_ROLE_FOR_CONSUMER_BATCH)).thenReturn(batch);
+
+    SqlResult<List<UUID>> pending = mock(SqlResult.class);
+    when(pending.value()).thenAnswer(inv -> backfill.get() == null ? List.of() : List.of(RS_ID));
+    PreparedQuery<SqlResult<List<UUID>>> collecting = mock(PreparedQuery.class);
+    when(collecting.execute()).thenReturn(Future.succeededFuture(pending));
+    PreparedQuery<RowSet<Row>> getPending = mock(PreparedQuery.class);
+    when(getPending.collecting(any(Collector.class))).thenReturn(collecting);
+    when(conn.preparedQuery(SQL_GET_PENDING_CONSUMER_ROLE_BACKFILLS)).thenReturn(getPending);
+
+    RegistrationService registrationService = mock(RegistrationService.class);
+    doAnswer(
+            inv -> {
+              Promise<JsonObject> p = inv.getArgument(1);
+              p.complete(
+                  new JsonObject()
+                      .put(
+                          OWNER_EMAIL,
+                          new JsonObject()
+                              .put("keycloakId", UUID.randomUUID().toString())
+                              .put("email", OWNER_EMAIL)
+                              .put("name", new JsonObject().put("firstName", "aa"))));
+              return inv.getMock();
+            })
+        .when(registrationService)
+        .findUserByEmail(anySet(), any());
+
+    adminService = new AdminServiceImpl(pool, mock(KcAdmin.class), registrationService);
+  }
+
+  @Test
+  @DisplayName("The server is created before any consumer roles are added")
+  void serverCreatedFirst() {
+    Promise<RowSet<Row>> firstBatch = Promise.promise();
+    batches.add(firstBatch.future());
+
+    AtomicReference<AsyncResult<JsonObject>> result = new AtomicReference<>();
+    adminService.createResourceServer(request(), COS_ADMIN, result::set);
+
+    assertTrue(result.get().succeeded());
+    assertEquals(201, result.get().result().getInteger("status"));
+    verify(createBackfill)
+        .execute(
+            argThat(
+                (Tuple t) ->
+                    RS_ID.equals(t.getUUID(0)) && UUID.fromString(NIL_UUID).equals(t.getUUID(1))));
+    assertEquals(List.of(UUID.fromString(NIL_UUID)), batchesFrom);
+
+    firstBatch.complete(batch(10, UUID.randomUUID()));
+    assertNull(backfill.get());
+  }
+
+  @Test
+  @DisplayName("Each batch is a separate transaction and the backfill is removed after the last")
+  void allBatches() {
+    UUID lastUserId = UUID.randomUUID();
+    batches.add(Future.succeededFuture(batch(CONSUMER_ROLE_BATCH_SIZE, lastUserId)));
+    batches.add(Future.succeededFuture(batch(10, UUID.randomUUID())));
+
+    AtomicReference<AsyncResult<JsonObject>> result = new AtomicReference<>();
+    adminService.createResourceServer(request(), COS_ADMIN, result::set);
+
+    assertTrue(result.get().succeeded());
+    assertEquals(0, batches.size());
+    assertEquals(List.of(UUID.fromString(NIL_UUID), lastUserId), batchesFrom);
+    /* One transaction creating the server and one for each batch */
+    verify(pool, times(3)).withTransaction(any());
+    verify(deleteBackfill).execute(argThat((Tuple t) -> RS_ID.equals(t.getUUID(0))));
+    assertNull(backfill.get());
+  }
+
+  @Test
+  @DisplayName("A failed batch does not fail the request and is resumed from the last batch done")
+  void failedBatch() {
+    UUID lastUserId = UUID.randomUUID();
+    batches.add(Future.succeededFuture(batch(CONSUMER_ROLE_BATCH_SIZE, lastUserId)));
+    batches.add(Future.failedFuture("connection reset"));
+
+    AtomicReference<AsyncResult<JsonObject>> result = new AtomicReference<>();
+    adminService.createResourceServer(request(), COS_ADMIN, result::set);
+
+    assertTrue(result.get().succeeded());
+    assertEquals(201, result.get().result().getInteger("status"));
+    assertEquals(lastUserId, backfill.get());
+    verify(deleteBackfill, never()).execute(any(Tuple.class));
+
+    batches.add(Future.succeededFuture(batch(10, UUID.randomUUID())));
+    assertTrue(adminService.resumeConsumerRoleBackfills().succeeded());
+
+    assertEquals(List.of(UUID.fromString(NIL_UUID), lastUserId, lastUserId), batchesFrom);
+    assertNull(backfill.get());
+  }
+
+  private static CreateRsRequest request() {
+    return new CreateRsRequest(
+        new JsonObject()
+            .put("name", "dummy")
+            .put("url", "dummy.iudx.io")
+            .put("owner", OWNER_EMAIL));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static PreparedQuery<RowSet<Row>> statement(Function<Tuple, RowSet<Row>> result) {
+    PreparedQuery<RowSet<Row>> query = mock(PreparedQuery.class);
+    when(query.execute(any(Tuple.class)))
+        .thenAnswer(inv -> Future.succeededFuture(result.apply(inv.getArgument(0))));
+    return query;
+  }
+
+  private static RowSet<Row> rsCreated() {
+    Row row = mock(Row.class);
+    when(row.getUUID("id")).thenReturn(RS_ID);
+    return rows(row);
+  }
+
+  private static RowSet<Row> lastUser(UUID lastUserId) {
+    Row row = mock(Row.class);
+    when(row.getUUID("last_user_id")).thenReturn(lastUserId);
+    return rows(row);
+  }
+
+  private static RowSet<Row> batch(long size, UUID lastUserId) {
+    Row row = mock(Row.class);
+    when(row.getLong("batch_count")).thenReturn(size);
+    when(row.getUUID("last_user_id")).thenReturn(lastUserId);
+    return rows(row);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static RowSet<Row> empty() {
+    RowSet<Row> rows = mock(RowSet.class);
+    when(rows.rowCount()).thenReturn(0);
+    return rows;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static RowSet<Row> rows(Row row) {
+    RowIterator<Row> iterator = mock(RowIterator.class);
+    when(iterator.next()).thenReturn(row);
+    RowSet<Row> rows = mock(RowSet.class);
+    when(rows.rowCount()).thenReturn(1);
+    when(rows.iterator()).thenReturn(iterator);
+    return rows;
+  }
+}
@@ -150,9 +150,13 @@ public class GetProviderRegistrationsTest {
 
     String SERVER_URL = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
 
-    User adminUser = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-    adminUser.setRoles(List.of(Roles.ADMIN));
-    adminUser.setRolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)));
+    User adminUser =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)))
+            .build();
 
     Future<Void> setup = utils.createFakeResourceServer(SERVER_URL, adminUser);
 
@@ -218,9 +222,13 @@ public class GetProviderRegistrationsTest {
 
     String SERVER_URL = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
 
-    User adminUser = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-    adminUser.setRoles(List.of(Roles.ADMIN));
-    adminUser.setRolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)));
+    User adminUser =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)))
+            .build();
 
     User providerA = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
     User providerB = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
@@ -308,9 +316,13 @@ public class GetProviderRegistrationsTest {
 
     String SERVER_URL = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
 
-    User adminUser = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-    adminUser.setRoles(List.of(Roles.ADMIN));
-    adminUser.setRolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)));
+    User adminUser =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)))
+            .build();
 
     User providerA = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
     User providerB = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
@@ -397,9 +409,13 @@ public class GetProviderRegistrationsTest {
 
     String SERVER_URL = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
 
-    User adminUser = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-    adminUser.setRoles(List.of(Roles.ADMIN));
-    adminUser.setRolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)));
+    User adminUser =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)))
+            .build();
 
     User providerA = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
     User providerB = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
@@ -488,10 +504,15 @@ public class GetProviderRegistrationsTest {
     String SERVER_URL_ONE = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
     String SERVER_URL_TWO = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
 
-    User adminUser = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-    adminUser.setRoles(List.of(Roles.ADMIN));
-    adminUser.setRolesToRsMapping(
-        Map.of(Roles.ADMIN.toString(), new JsonArray(List.of(SERVER_URL_ONE, SERVER_URL_TWO))));
+    User adminUser =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(
+                Map.of(
+                    Roles.ADMIN.toString(), new JsonArray(List.of(SERVER_URL_ONE, SERVER_URL_TWO))))
+            .build();
 
     User providerA = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
     User providerB = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
@@ -609,15 +630,23 @@ public class GetProviderRegistrationsTest {
     String SERVER_URL_ONE = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
     String SERVER_URL_TWO = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
 
-    User adminOfOne = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-    adminOfOne.setRoles(List.of(Roles.ADMIN));
-    adminOfOne.setRolesToRsMapping(
-        Map.of(Roles.ADMIN.toString(), new JsonArray(List.of(SERVER_URL_ONE))));
-
-    User adminOfTwo = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-    adminOfTwo.setRoles(List.of(Roles.ADMIN));
-    adminOfTwo.setRolesToRsMapping(
-        Map.of(Roles.ADMIN.toString(), new JsonArray(List.of(SERVER_URL_TWO))));
+    User adminOfOne =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(
+                Map.of(Roles.ADMIN.toString(), new JsonArray(List.of(SERVER_URL_ONE))))
+            .build();
+
+    User adminOfTwo =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(
+                Map.of(Roles.ADMIN.toString(), new JsonArray(List.of(SERVER_URL_TWO))))
+            .build();
 
     User providerA = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
     User providerB = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
@@ -164,12 +164,15 @@ public class UpdateProviderRegistrationStatusTest {
   void duplicateIds(VertxTestContext testContext) {
 
     // using fake user of a non-existent RS and fake IDs for this test
-    User fakeAdminUser = new UserBuilder().userId(UUID.randomUUID()).build();
-    fakeAdminUser.setRoles(List.of(Roles.ADMIN));
-    fakeAdminUser.setRolesToRsMapping(
-        Map.of(
-            Roles.ADMIN.toString(),
-            new JsonArray().add(RandomStringUtils.randomAlphabetic(10) + ".com")));
+    User fakeAdminUser =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(
+                Map.of(
+                    Roles.ADMIN.toString(),
+                    new JsonArray().add(RandomStringUtils.randomAlphabetic(10) + ".com")))
+            .build();
 
     UUID duplicateId = UUID.randomUUID();
 
@@ -202,9 +205,13 @@ public class UpdateProviderRegistrationStatusTest {
   void approveProvider(VertxTestContext testContext) {
     String SERVER_URL = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
 
-    User adminUser = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-    adminUser.setRoles(List.of(Roles.ADMIN));
-    adminUser.setRolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)));
+    User adminUser =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)))
+            .build();
 
     User providerA = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
 
@@ -266,9 +273,13 @@ public class UpdateProviderRegistrationStatusTest {
   void rejectProvider(VertxTestContext testContext) {
     String SERVER_URL = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
 
-    User adminUser = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-    adminUser.setRoles(List.of(Roles.ADMIN));
-    adminUser.setRolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)));
+    User adminUser =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)))
+            .build();
 
     User providerA = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
 
@@ -330,9 +341,13 @@ public class UpdateProviderRegistrationStatusTest {
   void notExistentId(VertxTestContext testContext) {
     String SERVER_URL = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
 
-    User adminUser = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-    adminUser.setRoles(List.of(Roles.ADMIN));
-    adminUser.setRolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)));
+    User adminUser =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)))
+            .build();
 
     User providerA = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
 
@@ -390,10 +405,13 @@ public class UpdateProviderRegistrationStatusTest {
     String SERVER_URL_ONE = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
     String SERVER_URL_TWO = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
 
-    User adminOfOne = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-    adminOfOne.setRoles(List.of(Roles.ADMIN));
-    adminOfOne.setRolesToRsMapping(
-        Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL_ONE)));
+    User adminOfOne =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL_ONE)))
+            .build();
 
     User providerA = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
 
@@ -460,10 +478,15 @@ public class UpdateProviderRegistrationStatusTest {
     String SERVER_URL_ONE = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
     String SERVER_URL_TWO = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
 
-    User adminUser = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-    adminUser.setRoles(List.of(Roles.ADMIN));
-    adminUser.setRolesToRsMapping(
-        Map.of(Roles.ADMIN.toString(), new JsonArray(List.of(SERVER_URL_ONE, SERVER_URL_TWO))));
+    User adminUser =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(
+                Map.of(
+                    Roles.ADMIN.toString(), new JsonArray(List.of(SERVER_URL_ONE, SERVER_URL_TWO))))
+            .build();
 
     User providerA = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
     User providerB = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
@@ -568,9 +591,13 @@ public class UpdateProviderRegistrationStatusTest {
   void approveProviderAndApproveAgain(VertxTestContext testContext) {
     String SERVER_URL = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
 
-    User adminUser = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-    adminUser.setRoles(List.of(Roles.ADMIN));
-    adminUser.setRolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)));
+    User adminUser =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)))
+            .build();
 
     User providerA = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
 
@@ -666,9 +693,13 @@ public class UpdateProviderRegistrationStatusTest {
   void rejectProviderThenApprove(VertxTestContext testContext) {
     String SERVER_URL = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
 
-    User adminUser = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-    adminUser.setRoles(List.of(Roles.ADMIN));
-    adminUser.setRolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)));
+    User adminUser =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)))
+            .build();
 
     User providerA = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
 
@@ -764,9 +795,13 @@ public class UpdateProviderRegistrationStatusTest {
   void keycloakFailRollback(VertxTestContext testContext) {
     String SERVER_URL = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".com";
 
-    User adminUser = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-    adminUser.setRoles(List.of(Roles.ADMIN));
-    adminUser.setRolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)));
+    User adminUser =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(SERVER_URL)))
+            .build();
 
     User providerA = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
 
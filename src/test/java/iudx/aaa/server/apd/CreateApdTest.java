@@ -165,17 +165,18 @@ public class CreateApdTest {
   @Test
   @DisplayName("Test user calling does not have COS admin role")
   void notAdmin(VertxTestContext testContext) {
-    User provConsAdminUser = new User(normalUser.toJson());
-
-    provConsAdminUser.setRoles(List.of(Roles.CONSUMER, Roles.PROVIDER, Roles.ADMIN, Roles.TRUSTEE));
-    provConsAdminUser.setRolesToRsMapping(
-        Map.of(
-            Roles.CONSUMER.toString(),
-            new JsonArray().add("some-url.com"),
-            Roles.PROVIDER.toString(),
-            new JsonArray().add("some-url.com"),
-            Roles.ADMIN.toString(),
-            new JsonArray().add("some-url.com")));
+    User provConsAdminUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.CONSUMER, Roles.PROVIDER, Roles.ADMIN, Roles.TRUSTEE))
+            .rolesToRsMapping(
+                Map.of(
+                    Roles.CONSUMER.toString(),
+                    new JsonArray().add("some-url.com"),
+                    Roles.PROVIDER.toString(),
+                    new JsonArray().add("some-url.com"),
+                    Roles.ADMIN.toString(),
+                    new JsonArray().add("some-url.com")))
+            .build();
 
     JsonObject jsonRequest =
         new JsonObject()
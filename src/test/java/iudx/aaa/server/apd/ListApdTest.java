@@ -493,16 +493,18 @@ public class ListApdTest {
   @DisplayName("List APD - provider/consumer/admin")
   void ListApdAsProviderConsumerAdmin(VertxTestContext testContext) {
 
-    User provConsAdminUser = new User(normalUser.toJson());
-    provConsAdminUser.setRoles(List.of(Roles.CONSUMER, Roles.PROVIDER, Roles.ADMIN));
-    provConsAdminUser.setRolesToRsMapping(
-        Map.of(
-            Roles.CONSUMER.toString(),
-            new JsonArray().add("some-url.com"),
-            Roles.PROVIDER.toString(),
-            new JsonArray().add("some-url.com"),
-            Roles.ADMIN.toString(),
-            new JsonArray().add("some-url.com")));
+    User provConsAdminUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.CONSUMER, Roles.PROVIDER, Roles.ADMIN))
+            .rolesToRsMapping(
+                Map.of(
+                    Roles.CONSUMER.toString(),
+                    new JsonArray().add("some-url.com"),
+                    Roles.PROVIDER.toString(),
+                    new JsonArray().add("some-url.com"),
+                    Roles.ADMIN.toString(),
+                    new JsonArray().add("some-url.com")))
+            .build();
 
     String activeApdAId = utils.apdMap.get(ACTIVE_A).toString();
     String activeApdBId = utils.apdMap.get(ACTIVE_B).toString();
@@ -203,16 +203,18 @@ public class UpdateApdTest {
     Checkpoint trusteeNotAllowed = testContext.checkpoint();
     Checkpoint adminProvConsNotAllowed = testContext.checkpoint();
 
-    User provConsAdminUser = new User(normalUser.toJson());
-    provConsAdminUser.setRoles(List.of(Roles.CONSUMER, Roles.PROVIDER, Roles.ADMIN));
-    provConsAdminUser.setRolesToRsMapping(
-        Map.of(
-            Roles.CONSUMER.toString(),
-            new JsonArray().add("some-url.com"),
-            Roles.PROVIDER.toString(),
-            new JsonArray().add("some-url.com"),
-            Roles.ADMIN.toString(),
-            new JsonArray().add("some-url.com")));
+    User provConsAdminUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.CONSUMER, Roles.PROVIDER, Roles.ADMIN))
+            .rolesToRsMapping(
+                Map.of(
+                    Roles.CONSUMER.toString(),
+                    new JsonArray().add("some-url.com"),
+                    Roles.PROVIDER.toString(),
+                    new JsonArray().add("some-url.com"),
+                    Roles.ADMIN.toString(),
+                    new JsonArray().add("some-url.com")))
+            .build();
 
     apdService.updateApd(
         List.of(),
@@ -0,0 +1,164 @@
+package iudx.aaa.server.apiserver;
+
+import static iudx.aaa.server.apiserver.util.Constants.CREATE_TOKEN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.ext.web.openapi.Operation;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.aaa.server.apiserver.util.AdmissionControlHandler;
+import iudx.aaa.server.apiserver.util.SharedPgPool;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for admission control. */
+@ExtendWith({VertxExtension.class})
+public class AdmissionControlHandlerTest {
+
+  private static final String TOKEN_PATH = "/auth/v1/token";
+  private static final String ROLES_PATH = "/auth/v1/user/roles";
+
+  @BeforeAll
+  static void addRegistry() {
+    Metrics.addRegistry(new SimpleMeterRegistry());
+  }
+
+  @Test
+  @DisplayName("Prioritized operations get the share of the limit kept from the others")
+  void prioritizedShare(Vertx vertx, VertxTestContext testContext) {
+    List<RoutingContext> held = new ArrayList<RoutingContext>();
+    JsonObject config =
+        new JsonObject()
+            .put(AdmissionControlHandler.MAX_IN_FLIGHT, 2)
+            .put(AdmissionControlHandler.LOW_PRIORITY_SHARE, 0.5);
+
+    start(vertx, config, held)
+        .compose(
+            client ->
+                send(vertx, client.get(ROLES_PATH).send(), new ArrayList<Integer>())
+                    .compose(statuses -> send(vertx, client.get(ROLES_PATH).send(), statuses))
+                    .compose(statuses -> send(vertx, client.post(TOKEN_PATH).send(), statuses))
+                    .compose(statuses -> send(vertx, client.post(TOKEN_PATH).send(), statuses)))
+        .onComplete(
+            testContext.succeeding(
+                statuses ->
+                    testContext.verify(
+                        () -> {
+                          /* Requests are held, so one of each is admitted and the next is not */
+                          assertEquals(List.of(200, 503, 200, 503), statuses);
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Other operations are shed while requests wait for database connections")
+  void shedOnOverload(Vertx vertx, VertxTestContext testContext) {
+    AtomicInteger dbPending = new AtomicInteger(100);
+    Gauge.builder(SharedPgPool.METRIC_PENDING, dbPending, AtomicInteger::get)
+        .tag("pool", "admission-test")
+        .register(Metrics.globalRegistry);
+
+    start(vertx, new JsonObject(), null)
+        .compose(client -> delay(vertx, 150).map(client))
+        .compose(
+            client ->
+                client
+                    .get(ROLES_PATH)
+                    .send()
+                    .compose(
+                        shed -> {
+                          assertEquals(503, shed.statusCode());
+                          assertEquals("1", shed.getHeader("Retry-After"));
+                          return client.post(TOKEN_PATH).send();
+                        }))
+        .onComplete(
+            res -> {
+              dbPending.set(0);
+              testContext.verify(
+                  () -> {
+                    assertEquals(200, res.result().statusCode());
+                    testContext.completeNow();
+                  });
+            });
+  }
+
+  /* Start a server whose requests are held if held is not null, else ended */
+  private static Future<WebClient> start(
+      Vertx vertx, JsonObject config, List<RoutingContext> held) {
+    Operation token = mock(Operation.class);
+    when(token.getHttpMethod()).thenReturn(HttpMethod.POST);
+    when(token.getOpenAPIPath()).thenReturn(TOKEN_PATH);
+    when(token.getOperationId()).thenReturn(CREATE_TOKEN);
+
+    Router router = Router.router(vertx);
+    router.route().handler(new AdmissionControlHandler(vertx, config, List.of(token)));
+    router
+        .route()
+        .handler(
+            ctx -> {
+              if (held == null) {
+                ctx.response().end();
+              } else {
+                held.add(ctx);
+              }
+            });
+    return vertx
+        .createHttpServer()
+        .requestHandler(router)
+        .listen(0)
+        .map(
+            server ->
+                WebClient.create(
+                    vertx,
+                    new WebClientOptions()
+                        .setDefaultHost("localhost")
+                        .setDefaultPort(server.actualPort())));
+  }
+
+  /* Send a request, taking a held request to be admitted if there is no response soon */
+  private static Future<List<Integer>> send(
+      Vertx vertx, Future<HttpResponse<Buffer>> response, List<Integer> statuses) {
+    Promise<List<Integer>> promise = Promise.promise();
+    long timer =
+        vertx.setTimer(
+            200,
+            id -> {
+              statuses.add(200);
+              promise.tryComplete(statuses);
+            });
+    response.onSuccess(
+        res -> {
+          vertx.cancelTimer(timer);
+          statuses.add(res.statusCode());
+          promise.tryComplete(statuses);
+        });
+    return promise.future();
+  }
+
+  private static Future<Void> delay(Vertx vertx, long ms) {
+    Promise<Void> promise = Promise.promise();
+    vertx.setTimer(ms, id -> promise.complete());
+    return promise.future();
+  }
+}
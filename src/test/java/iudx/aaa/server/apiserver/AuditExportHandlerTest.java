@@ -0,0 +1,84 @@
+package iudx.aaa.server.apiserver;
+
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_ADDRESS;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_CANCELLED;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_EVENT;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_EVENT_DATA;
+import static iudx.aaa.server.auditing.util.Constants.STREAM_ADDRESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.aaa.server.apiserver.util.AuditExportHandler;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+
+/** Unit tests for streaming audit exports to the HTTP response. */
+@ExtendWith({VertxExtension.class})
+public class AuditExportHandlerTest {
+
+  @Test
+  @DisplayName("A chunk waiting for the response to drain is failed when the client goes away")
+  void clientClosed(Vertx vertx, VertxTestContext testContext) {
+    HttpServerResponse response = mock(HttpServerResponse.class, Answers.RETURNS_SELF);
+    when(response.headWritten()).thenReturn(false);
+    when(response.writeQueueFull()).thenReturn(true);
+    RoutingContext context = mock(RoutingContext.class);
+    when(context.queryParams()).thenReturn(MultiMap.caseInsensitiveMultiMap());
+    when(context.response()).thenReturn(response);
+
+    /* Exporter that sends one chunk and waits for it to be acknowledged */
+    vertx
+        .eventBus()
+        .<JsonObject>consumer(
+            EXPORT_ADDRESS,
+            msg -> {
+              msg.reply(null);
+              long sent = System.nanoTime();
+              vertx
+                  .eventBus()
+                  .request(
+                      msg.body().getString(STREAM_ADDRESS),
+                      Buffer.buffer("{}\n"),
+                      new DeliveryOptions().addHeader(EXPORT_EVENT, EXPORT_EVENT_DATA))
+                  .onComplete(
+                      testContext.failing(
+                          err ->
+                              testContext.verify(
+                                  () -> {
+                                    assertTrue(err instanceof ReplyException);
+                                    assertEquals(EXPORT_CANCELLED, err.getMessage());
+                                    assertTrue(System.nanoTime() - sent < 5_000_000_000L);
+                                    testContext.completeNow();
+                                  })));
+            });
+
+    new AuditExportHandler(vertx).handle(context);
+
+    ArgumentCaptor<Handler<Void>> closeHandler = ArgumentCaptor.forClass(Handler.class);
+    verify(response).closeHandler(closeHandler.capture());
+    vertx.setTimer(
+        500,
+        id -> {
+          verify(response).write(any(Buffer.class));
+          closeHandler.getValue().handle(null);
+        });
+  }
+}
@@ -0,0 +1,239 @@
+package iudx.aaa.server.apiserver;
+
+import static iudx.aaa.server.apiserver.util.Constants.CLIENT_BLOOM_FILTER_REFRESH_MS;
+import static iudx.aaa.server.apiserver.util.Constants.CLIENT_ID;
+import static iudx.aaa.server.apiserver.util.Constants.CLIENT_SECRET;
+import static iudx.aaa.server.apiserver.util.Constants.OBTAINED_USER_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.vertx.core.Handler;
+import io.vertx.core.MultiMap;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.pgclient.PgPool;
+import iudx.aaa.server.apiserver.util.ClientAuthentication;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+/** Unit tests for the caches of client authentication. */
+public class ClientAuthenticationTest {
+
+  private static final String CLIENT = UUID.randomUUID().toString();
+  private static final String USER_ID = UUID.randomUUID().toString();
+  private static final String SECRET = "secret";
+  private static final String NEW_SECRET = "new-secret";
+
+  private Queue<Promise<Object>> lookups;
+  private ClientAuthentication clientAuth;
+
+  @BeforeEach
+  void setUp() {
+    lookups = new ArrayDeque<Promise<Object>>();
+    clientAuth = new ClientAuthentication(null, pool(lookups), new JsonObject());
+  }
+
+  @Test
+  @DisplayName("Validated credentials are served from the cache")
+  void cacheHit() {
+    RoutingContext first = request(SECRET);
+    clientAuth.handle(first);
+    complete(SECRET);
+    verify(first).put(OBTAINED_USER_ID, USER_ID);
+
+    RoutingContext second = request(SECRET);
+    clientAuth.handle(second);
+    verify(second).put(OBTAINED_USER_ID, USER_ID);
+    verify(second).next();
+    assertEquals(0, lookups.size());
+  }
+
+  @Test
+  @DisplayName("A secret that does not match the cached hash is checked against the DB")
+  void cacheMismatch() {
+    clientAuth.handle(request(SECRET));
+    complete(SECRET);
+
+    RoutingContext wrong = request("wrong");
+    clientAuth.handle(wrong);
+    assertEquals(1, lookups.size());
+    complete(SECRET);
+    verify(wrong).fail(any(Throwable.class));
+    verify(wrong, never()).put(OBTAINED_USER_ID, USER_ID);
+  }
+
+  @Test
+  @DisplayName("A reset secret is evicted and the old secret is rejected")
+  void reset() {
+    clientAuth.handle(request(SECRET));
+    complete(SECRET);
+
+    clientAuth.invalidate(CLIENT);
+    RoutingContext old = request(SECRET);
+    clientAuth.handle(old);
+    assertEquals(1, lookups.size());
+    complete(NEW_SECRET);
+    verify(old).fail(any(Throwable.class));
+  }
+
+  @Test
+  @DisplayName("A lookup in progress when the secret is reset does not cache the old secret")
+  void resetDuringLookup() {
+    RoutingContext first = request(SECRET);
+    clientAuth.handle(first);
+    clientAuth.invalidate(CLIENT);
+    /* The lookup read the secret from before the reset */
+    complete(SECRET);
+    verify(first).put(OBTAINED_USER_ID, USER_ID);
+
+    RoutingContext old = request(SECRET);
+    clientAuth.handle(old);
+    assertEquals(1, lookups.size());
+    complete(NEW_SECRET);
+    verify(old).fail(any(Throwable.class));
+  }
+
+  @Test
+  @DisplayName("Unknown client IDs are rejected without a DB lookup until they are created")
+  void negativeCache() {
+    RoutingContext first = request(SECRET);
+    clientAuth.handle(first);
+    lookups.remove().complete(new JsonObject());
+    verify(first).fail(any(Throwable.class));
+
+    RoutingContext second = request(SECRET);
+    clientAuth.handle(second);
+    assertEquals(0, lookups.size());
+    verify(second).fail(any(Throwable.class));
+
+    clientAuth.addKnownClient(CLIENT);
+    RoutingContext created = request(SECRET);
+    clientAuth.handle(created);
+    complete(SECRET);
+    verify(created).put(OBTAINED_USER_ID, USER_ID);
+  }
+
+  @Test
+  @DisplayName("Client IDs missing from the Bloom filter are looked up instead of being rejected")
+  void bloomFilter() {
+    Queue<Promise<Object>> primary = new ArrayDeque<Promise<Object>>();
+    Queue<Promise<Object>> replica = new ArrayDeque<Promise<Object>>();
+    Vertx vertx = mock(Vertx.class);
+    clientAuth =
+        new ClientAuthentication(
+            vertx,
+            pool(primary),
+            pool(replica),
+            new JsonObject().put(CLIENT_BLOOM_FILTER_REFRESH_MS, 60000));
+    /* The filter is built from the replica */
+    replica.remove().complete(List.of(CLIENT));
+
+    RoutingContext known = request(SECRET);
+    clientAuth.handle(known);
+    complete(primary, SECRET);
+    verify(known).put(OBTAINED_USER_ID, USER_ID);
+
+    /* Created on another node after the filter was built */
+    String created = UUID.randomUUID().toString();
+    RoutingContext first = request(created, SECRET);
+    clientAuth.handle(first);
+    complete(primary, SECRET);
+    verify(first).put(OBTAINED_USER_ID, USER_ID);
+
+    /* Rebuilt while a client is created, which is kept in the new filter */
+    ArgumentCaptor<Handler<Long>> rebuild = ArgumentCaptor.forClass(Handler.class);
+    verify(vertx).setPeriodic(eq(60000L), rebuild.capture());
+    rebuild.getValue().handle(1L);
+    String createdDuringRebuild = UUID.randomUUID().toString();
+    clientAuth.addKnownClient(createdDuringRebuild);
+    replica.remove().complete(List.of(CLIENT, created));
+
+    clientAuth.handle(request(createdDuringRebuild, SECRET));
+    clientAuth.handle(request(created, NEW_SECRET));
+    assertEquals(2, primary.size());
+    assertEquals(0, replica.size());
+  }
+
+  @Test
+  @DisplayName("The old secret is rejected after a reset even if the replica is behind")
+  void resetWithReplicaLag() {
+    Queue<Promise<Object>> primary = new ArrayDeque<Promise<Object>>();
+    Queue<Promise<Object>> replica = new ArrayDeque<Promise<Object>>();
+    clientAuth = new ClientAuthentication(null, pool(primary), pool(replica), new JsonObject());
+    clientAuth.handle(request(SECRET));
+    complete(primary, SECRET);
+
+    /* The replica would still return the old secret, but credentials are not read from it */
+    clientAuth.invalidate(CLIENT);
+    RoutingContext old = request(SECRET);
+    clientAuth.handle(old);
+    assertEquals(0, replica.size());
+    complete(primary, NEW_SECRET);
+    verify(old).fail(any(Throwable.class));
+    verify(old, never()).put(OBTAINED_USER_ID, USER_ID);
+
+    /* Nor is the old secret cached */
+    RoutingContext again = request(SECRET);
+    clientAuth.handle(again);
+    assertEquals(1, primary.size());
+  }
+
+  private void complete(String dbSecret) {
+    complete(lookups, dbSecret);
+  }
+
+  private static void complete(Queue<Promise<Object>> lookups, String dbSecret) {
+    lookups
+        .remove()
+        .complete(
+            new JsonObject()
+                .put("client_secret", DigestUtils.sha512Hex(dbSecret))
+                .put("user_id", USER_ID));
+  }
+
+  /* A pool whose lookups are completed by the test */
+  private static PgPool pool(Queue<Promise<Object>> lookups) {
+    PgPool pool = mock(PgPool.class);
+    when(pool.withConnection(any()))
+        .thenAnswer(
+            inv -> {
+              Promise<Object> lookup = Promise.promise();
+              lookups.add(lookup);
+              return lookup.future();
+            });
+    return pool;
+  }
+
+  static RoutingContext request(String clientId, String secret) {
+    RoutingContext ctx = mock(RoutingContext.class);
+    HttpServerRequest req = mock(HttpServerRequest.class);
+    MultiMap headers = MultiMap.caseInsensitiveMultiMap().add(CLIENT_ID, clientId);
+    if (secret != null) {
+      headers.add(CLIENT_SECRET, secret);
+    }
+    when(ctx.request()).thenReturn(req);
+    when(req.headers()).thenReturn(headers);
+    when(ctx.put(anyString(), any())).thenReturn(ctx);
+    return ctx;
+  }
+
+  private static RoutingContext request(String secret) {
+    return request(CLIENT, secret);
+  }
+}
@@ -0,0 +1,171 @@
+package iudx.aaa.server.apiserver;
+
+import static iudx.aaa.server.apiserver.util.Constants.ERR_DEADLINE_EXCEEDED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.aaa.server.apiserver.util.Deadline;
+import iudx.aaa.server.apiserver.util.DependencyMetrics;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for request deadlines. */
+@ExtendWith({VertxExtension.class})
+public class DeadlineTest {
+
+  private static final String ADDRESS = "iudx.aaa.test.deadline";
+
+  @BeforeAll
+  static void addRegistry() {
+    Metrics.addRegistry(new SimpleMeterRegistry());
+  }
+
+  @Test
+  @DisplayName("Requests on the event bus carry the deadline and are dropped after it")
+  void eventBus(Vertx vertx, VertxTestContext testContext) {
+    Deadline.install(vertx);
+    AtomicInteger handled = new AtomicInteger();
+    vertx
+        .eventBus()
+        .<String>consumer(
+            ADDRESS,
+            msg -> {
+              handled.incrementAndGet();
+              msg.reply(Deadline.remainingMs());
+            });
+
+    onRequestContext(
+        vertx,
+        () -> {
+          Deadline.start(200);
+          vertx
+              .eventBus()
+              .<Long>request(ADDRESS, "first")
+              .onComplete(
+                  testContext.succeeding(
+                      reply -> {
+                        testContext.verify(
+                            () -> {
+                              assertTrue(reply.body() > 0 && reply.body() <= 200);
+                              assertEquals(1, handled.get());
+                            });
+                        vertx.setTimer(
+                            250,
+                            id ->
+                                vertx
+                                    .eventBus()
+                                    .request(ADDRESS, "late")
+                                    .onComplete(
+                                        testContext.failing(
+                                            err ->
+                                                testContext.verify(
+                                                    () -> {
+                                                      assertEquals(
+                                                          ERR_DEADLINE_EXCEEDED, err.getMessage());
+                                                      assertEquals(1, handled.get());
+                                                      testContext.completeNow();
+                                                    }))));
+                      }));
+        });
+  }
+
+  @Test
+  @DisplayName("Web client requests time out at the deadline")
+  void webClient(Vertx vertx, VertxTestContext testContext) {
+    vertx
+        .createHttpServer()
+        .requestHandler(
+            req -> {
+              if (req.path().equals("/slow")) {
+                vertx.setTimer(2000, id -> req.response().end());
+              } else {
+                req.response().end();
+              }
+            })
+        .listen(0)
+        .onComplete(
+            testContext.succeeding(
+                server -> {
+                  WebClient client =
+                      WebClient.create(
+                          vertx,
+                          new WebClientOptions()
+                              .setDefaultHost("localhost")
+                              .setDefaultPort(server.actualPort()));
+                  DependencyMetrics.instrument(client, DependencyMetrics.CATALOGUE, 1);
+
+                  /* Warm up the client, so that only the deadline is timed */
+                  client
+                      .get("/fast")
+                      .send()
+                      .onComplete(
+                          testContext.succeeding(
+                              warm ->
+                                  onRequestContext(
+                                      vertx,
+                                      () -> {
+                                        Deadline.start(200);
+                                        long start = System.nanoTime();
+                                        client
+                                            .get("/slow")
+                                            .send()
+                                            .onComplete(
+                                                testContext.failing(
+                                                    err ->
+                                                        testContext.verify(
+                                                            () -> {
+                                                              assertTrue(
+                                                                  err instanceof TimeoutException);
+                                                              assertTrue(
+                                                                  System.nanoTime() - start
+                                                                      < 1_000_000_000);
+                                                              testContext.completeNow();
+                                                            })));
+                                      })));
+                }));
+  }
+
+  @Test
+  @DisplayName("Detached calls are not given the deadline, which is kept for the request")
+  void detach(Vertx vertx, VertxTestContext testContext) {
+    Deadline.install(vertx);
+    vertx.eventBus().<String>consumer(ADDRESS, msg -> msg.reply(Deadline.remainingMs()));
+
+    onRequestContext(
+        vertx,
+        () -> {
+          Deadline.start(200);
+          Deadline.detach(
+              () ->
+                  vertx
+                      .eventBus()
+                      .<Long>request(ADDRESS, "audit")
+                      .onComplete(
+                          testContext.succeeding(
+                              reply ->
+                                  testContext.verify(
+                                      () -> {
+                                        assertEquals(Deadline.NONE, reply.body());
+                                        testContext.completeNow();
+                                      }))));
+          assertTrue(Deadline.remainingMs() <= 200);
+        });
+  }
+
+  /* Run on a duplicated context, like the handling of an HTTP request */
+  private static void onRequestContext(Vertx vertx, Runnable action) {
+    ((ContextInternal) vertx.getOrCreateContext()).duplicate().runOnContext(v -> action.run());
+  }
+}
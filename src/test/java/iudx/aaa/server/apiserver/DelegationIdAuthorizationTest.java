@@ -0,0 +1,157 @@
+package iudx.aaa.server.apiserver;
+
+import static iudx.aaa.server.apiserver.util.Constants.DELEGATION_INFO;
+import static iudx.aaa.server.apiserver.util.Constants.HEADER_DELEGATION_ID;
+import static iudx.aaa.server.apiserver.util.Constants.USER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.vertx.core.MultiMap;
+import io.vertx.core.Promise;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowIterator;
+import io.vertx.sqlclient.RowSet;
+import iudx.aaa.server.apiserver.User.UserBuilder;
+import iudx.aaa.server.apiserver.util.DelegationIdAuthorization;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for the caches of delegation ID authorization. */
+public class DelegationIdAuthorizationTest {
+
+  private static final UUID DELEGATION_ID = UUID.randomUUID();
+  private static final User DELEGATE =
+      new UserBuilder()
+          .userId(UUID.randomUUID())
+          .name("Dele", "Gate")
+          .roles(List.of(Roles.DELEGATE))
+          .build();
+
+  private Queue<Promise<RowSet<Row>>> lookups;
+  private DelegationIdAuthorization delegationAuth;
+
+  @BeforeEach
+  void setUp() {
+    PgPool pool = mock(PgPool.class);
+    lookups = new ArrayDeque<Promise<RowSet<Row>>>();
+    when(pool.withConnection(any()))
+        .thenAnswer(
+            inv -> {
+              Promise<RowSet<Row>> lookup = Promise.promise();
+              lookups.add(lookup);
+              return lookup.future();
+            });
+    delegationAuth = new DelegationIdAuthorization(pool, new JsonObject());
+  }
+
+  @Test
+  @DisplayName("Valid delegations are served from the cache")
+  void cacheHit() {
+    RoutingContext first = request();
+    delegationAuth.handle(first);
+    lookups.remove().complete(delegation());
+    verify(first).put(eq(DELEGATION_INFO), any(DelegationInformation.class));
+
+    RoutingContext second = request();
+    delegationAuth.handle(second);
+    verify(second).put(eq(DELEGATION_INFO), any(DelegationInformation.class));
+    assertEquals(0, lookups.size());
+  }
+
+  @Test
+  @DisplayName("A deleted delegation is evicted and looked up again")
+  void revocation() {
+    delegationAuth.handle(request());
+    lookups.remove().complete(delegation());
+
+    delegationAuth.invalidate(DELEGATION_ID);
+    RoutingContext revoked = request();
+    delegationAuth.handle(revoked);
+    assertEquals(1, lookups.size());
+    lookups.remove().complete(noDelegation());
+    verify(revoked).fail(any(Throwable.class));
+  }
+
+  @Test
+  @DisplayName("A lookup in progress when the delegation is deleted does not cache it")
+  void revocationDuringLookup() {
+    RoutingContext first = request();
+    delegationAuth.handle(first);
+    delegationAuth.invalidate(DELEGATION_ID);
+    /* The lookup read the delegation from before it was deleted */
+    lookups.remove().complete(delegation());
+    verify(first).put(eq(DELEGATION_INFO), any(DelegationInformation.class));
+
+    RoutingContext revoked = request();
+    delegationAuth.handle(revoked);
+    assertEquals(1, lookups.size());
+    lookups.remove().complete(noDelegation());
+    verify(revoked).fail(any(Throwable.class));
+  }
+
+  @Test
+  @DisplayName("A lookup in progress when role statuses change does not cache its result")
+  void roleChangeDuringLookup() {
+    delegationAuth.handle(request());
+    delegationAuth.invalidateAll();
+    /* The lookup read the role status from before the change */
+    lookups.remove().complete(noDelegation());
+
+    RoutingContext approved = request();
+    delegationAuth.handle(approved);
+    assertEquals(1, lookups.size());
+    lookups.remove().complete(delegation());
+    verify(approved).put(eq(DELEGATION_INFO), any(DelegationInformation.class));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static RowSet<Row> delegation() {
+    Row row = mock(Row.class);
+    when(row.toJson())
+        .thenReturn(
+            new JsonObject()
+                .put("delegationId", DELEGATION_ID.toString())
+                .put("delegatorUserId", UUID.randomUUID().toString())
+                .put("delegatedRole", Roles.PROVIDER.toString())
+                .put("delegatedRsUrl", "rs.iudx.io"));
+    RowIterator<Row> iterator = mock(RowIterator.class);
+    when(iterator.next()).thenReturn(row);
+    RowSet<Row> rows = mock(RowSet.class);
+    when(rows.rowCount()).thenReturn(1);
+    when(rows.iterator()).thenReturn(iterator);
+    return rows;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static RowSet<Row> noDelegation() {
+    RowSet<Row> rows = mock(RowSet.class);
+    when(rows.rowCount()).thenReturn(0);
+    return rows;
+  }
+
+  private static RoutingContext request() {
+    RoutingContext ctx = mock(RoutingContext.class);
+    HttpServerRequest req = mock(HttpServerRequest.class);
+    MultiMap headers =
+        MultiMap.caseInsensitiveMultiMap().add(HEADER_DELEGATION_ID, DELEGATION_ID.toString());
+    when(ctx.request()).thenReturn(req);
+    when(req.headers()).thenReturn(headers);
+    when(ctx.get(USER)).thenReturn(DELEGATE);
+    when(ctx.put(anyString(), any())).thenReturn(ctx);
+    return ctx;
+  }
+}
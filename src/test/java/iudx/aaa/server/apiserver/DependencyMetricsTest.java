@@ -0,0 +1,115 @@
+package iudx.aaa.server.apiserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.predicate.ResponsePredicate;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.aaa.server.apiserver.util.DependencyMetrics;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for outbound dependency metrics. */
+@ExtendWith({VertxExtension.class})
+public class DependencyMetricsTest {
+
+  @BeforeAll
+  static void addRegistry() {
+    Metrics.addRegistry(new SimpleMeterRegistry());
+  }
+
+  @Test
+  @DisplayName("Web client calls are timed by path, host and outcome")
+  void webClientCalls(Vertx vertx, VertxTestContext testContext) {
+    Router router = Router.router(vertx);
+    router.get("/ok").handler(ctx -> ctx.response().end());
+    router.get("/broken").handler(ctx -> ctx.response().setStatusCode(503).end());
+
+    WebClient client = WebClient.create(vertx);
+    DependencyMetrics.instrument(client, DependencyMetrics.CATALOGUE, 5);
+
+    vertx
+        .createHttpServer()
+        .requestHandler(router)
+        .listen(0)
+        .compose(
+            server ->
+                client
+                    .get(server.actualPort(), "localhost", "/ok?id=1")
+                    .send()
+                    .compose(
+                        res ->
+                            client
+                                .get(server.actualPort(), "localhost", "/broken")
+                                .expect(ResponsePredicate.SC_OK)
+                                .send())
+                    .recover(err -> Future.succeededFuture()))
+        .onComplete(
+            testContext.succeeding(
+                res ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(1, timer(DependencyMetrics.CATALOGUE, "/ok", "success"));
+                          assertEquals(
+                              1, timer(DependencyMetrics.CATALOGUE, "/broken", "server_error"));
+
+                          Gauge inFlight =
+                              Metrics.globalRegistry
+                                  .find(DependencyMetrics.METRIC_INFLIGHT)
+                                  .tags("dependency", DependencyMetrics.CATALOGUE)
+                                  .tags("target", "localhost")
+                                  .gauge();
+                          assertNotNull(inFlight);
+                          assertEquals(0, inFlight.value());
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Timed calls that time out are recorded as timeouts")
+  void timedCalls(VertxTestContext testContext) {
+    DependencyMetrics.time(
+            DependencyMetrics.KEYCLOAK,
+            "userinfo",
+            DependencyMetrics.host("https://keycloak.example.com/auth"),
+            () -> Future.failedFuture(new TimeoutException("no response")))
+        .onComplete(
+            testContext.failing(
+                err ->
+                    testContext.verify(
+                        () -> {
+                          Timer timer =
+                              Metrics.globalRegistry
+                                  .find(DependencyMetrics.METRIC_REQUESTS)
+                                  .tags("dependency", DependencyMetrics.KEYCLOAK)
+                                  .tags("target", "keycloak.example.com")
+                                  .tags("outcome", "timeout")
+                                  .timer();
+                          assertNotNull(timer);
+                          assertEquals(1, timer.count());
+                          testContext.completeNow();
+                        })));
+  }
+
+  private static long timer(String dependency, String operation, String outcome) {
+    Timer timer =
+        Metrics.globalRegistry
+            .find(DependencyMetrics.METRIC_REQUESTS)
+            .tags("dependency", dependency, "operation", operation, "outcome", outcome)
+            .timer();
+    assertNotNull(timer);
+    return timer.count();
+  }
+}
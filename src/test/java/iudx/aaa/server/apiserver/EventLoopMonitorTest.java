@@ -0,0 +1,83 @@
+package iudx.aaa.server.apiserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonObject;
+import iudx.aaa.server.apiserver.util.EventLoopMonitor;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for event loop monitoring. */
+public class EventLoopMonitorTest {
+
+  @BeforeAll
+  static void addRegistry() {
+    Metrics.addRegistry(new SimpleMeterRegistry());
+  }
+
+  @Test
+  @DisplayName("A blocked event loop is counted against its handler and its stack is captured")
+  void blockedLoop() throws Exception {
+    Vertx vertx =
+        Vertx.vertx(
+            new VertxOptions()
+                .setEventLoopPoolSize(1)
+                .setBlockedThreadCheckInterval(50)
+                .setMaxEventLoopExecuteTime(100)
+                .setMaxEventLoopExecuteTimeUnit(TimeUnit.MILLISECONDS));
+    EventLoopMonitor monitor =
+        EventLoopMonitor.start(
+            vertx,
+            new JsonObject()
+                .put(EventLoopMonitor.PROBE_INTERVAL_MS, 50)
+                .put(EventLoopMonitor.SAMPLE_INTERVAL_MS, 10));
+
+    CountDownLatch blocked = new CountDownLatch(1);
+    vertx.runOnContext(v -> blockEventLoop(blocked));
+    assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+    Counter counter =
+        Metrics.globalRegistry
+            .find(EventLoopMonitor.METRIC_BLOCKED)
+            .tag("handler", "EventLoopMonitorTest.blockEventLoop")
+            .counter();
+    assertNotNull(counter);
+    assertTrue(counter.count() >= 1);
+
+    double lag =
+        Metrics.globalRegistry
+            .find(EventLoopMonitor.METRIC_LAG)
+            .timeGauge()
+            .value(TimeUnit.MILLISECONDS);
+    assertTrue(lag >= 100);
+
+    JsonObject stacks = monitor.stacks();
+    assertFalse(stacks.getJsonArray("blocked").isEmpty());
+    assertEquals(
+        "EventLoopMonitorTest.blockEventLoop",
+        stacks.getJsonArray("blocked").getJsonObject(0).getString("handler"));
+    assertEquals(1, stacks.getJsonArray("eventLoops").size());
+
+    vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+  }
+
+  private static void blockEventLoop(CountDownLatch blocked) {
+    try {
+      Thread.sleep(500);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    blocked.countDown();
+  }
+}
@@ -0,0 +1,71 @@
+package iudx.aaa.server.apiserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import iudx.aaa.server.apiserver.util.DependencyMetrics;
+import iudx.aaa.server.apiserver.util.FlightEvents;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Unit tests for flight recorder events. */
+public class FlightEventsTest {
+
+  @BeforeAll
+  static void addRegistry() {
+    Metrics.addRegistry(new SimpleMeterRegistry());
+  }
+
+  @Test
+  @DisplayName("Token issuance and dependency calls are recorded while a recording runs")
+  void eventsRecorded(@TempDir Path dir) throws Exception {
+    Path file = dir.resolve("events.jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(FlightEvents.TOKEN_ISSUANCE);
+      recording.enable(FlightEvents.DEPENDENCY_CALL);
+      recording.start();
+
+      FlightEvents.tokenIssuance(Roles.CONSUMER, ItemType.RESOURCE, res -> {})
+          .handle(Future.succeededFuture(new JsonObject().put("type", "urn:dx:as:Success")));
+      DependencyMetrics.time(
+          DependencyMetrics.KEYCLOAK, "admin_get_user", "keycloak", () -> Future.succeededFuture());
+
+      recording.stop();
+      recording.dump(file);
+    }
+
+    List<RecordedEvent> events =
+        RecordingFile.readAllEvents(file).stream()
+            .filter(event -> event.getEventType().getName().startsWith("iudx.aaa."))
+            .collect(Collectors.toList());
+    assertEquals(2, events.size());
+
+    RecordedEvent issuance = event(events, FlightEvents.TOKEN_ISSUANCE);
+    assertEquals("CONSUMER", issuance.getString("role"));
+    assertEquals("RESOURCE", issuance.getString("itemType"));
+    assertEquals("urn:dx:as:Success", issuance.getString("outcome"));
+
+    RecordedEvent call = event(events, FlightEvents.DEPENDENCY_CALL);
+    assertEquals(DependencyMetrics.KEYCLOAK, call.getString("dependency"));
+    assertEquals("admin_get_user", call.getString("operation"));
+    assertEquals(DependencyMetrics.SUCCESS, call.getString("outcome"));
+  }
+
+  private static RecordedEvent event(List<RecordedEvent> events, String name) {
+    return events.stream()
+        .filter(event -> name.equals(event.getEventType().getName()))
+        .findFirst()
+        .orElseThrow();
+  }
+}
@@ -0,0 +1,240 @@
+package iudx.aaa.server.apiserver;
+
+import static iudx.aaa.server.apiserver.util.Constants.ERR_DEADLINE_EXCEEDED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.serviceproxy.ServiceException;
+import iudx.aaa.server.apiserver.User.UserBuilder;
+import iudx.aaa.server.apiserver.util.Deadline;
+import iudx.aaa.server.apiserver.util.LocalServiceRegistry;
+import iudx.aaa.server.auditing.AuditingService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for routing service calls to local implementations. */
+@ExtendWith({VertxExtension.class})
+public class LocalServiceRegistryTest {
+
+  private static final String ADDRESS = "iudx.aaa.test.service";
+
+  /* Holds on to result handlers, so that calls stay in progress until completed */
+  private static class StubService implements AuditingService {
+    private final List<Handler<AsyncResult<JsonObject>>> pending =
+        new ArrayList<Handler<AsyncResult<JsonObject>>>();
+    private final List<JsonObject> requests = new ArrayList<JsonObject>();
+
+    @Override
+    public AuditingService executeWriteQuery(
+        JsonObject request, Handler<AsyncResult<JsonObject>> handler) {
+      requests.add(request);
+      pending.add(handler);
+      return this;
+    }
+
+    @Override
+    public AuditingService executeReadQuery(
+        JsonObject request, Handler<AsyncResult<JsonObject>> handler) {
+      return executeWriteQuery(request, handler);
+    }
+
+    void completeAll() {
+      pending.forEach(handler -> handler.handle(Future.succeededFuture(new JsonObject())));
+      pending.clear();
+    }
+  }
+
+  /* A service taking a data object, as the services with generated proxies do */
+  public interface EchoService {
+    void echo(User user, Handler<AsyncResult<User>> handler);
+  }
+
+  private static User echo(EchoService service, User user) throws Throwable {
+    CompletableFuture<User> result = new CompletableFuture<User>();
+    service.echo(
+        user,
+        res -> {
+          if (res.succeeded()) {
+            result.complete(res.result());
+          } else {
+            result.completeExceptionally(res.cause());
+          }
+        });
+    try {
+      return result.get(5, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      throw e.getCause();
+    }
+  }
+
+  /* Wait for the calls dispatched to a context to be made */
+  private static void drain(Context context) throws Exception {
+    CompletableFuture<Void> drained = new CompletableFuture<Void>();
+    context.runOnContext(v -> drained.complete(null));
+    drained.get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  @DisplayName("Calls go to the local service until it is overloaded or unregistered")
+  void routing(Vertx vertx) throws Exception {
+    LocalServiceRegistry.enable(vertx, 2);
+    StubService local = new StubService();
+    StubService remote = new StubService();
+
+    AuditingService service =
+        LocalServiceRegistry.lookup(vertx, AuditingService.class, ADDRESS, (v, a, o) -> remote);
+
+    /* Not deployed locally yet */
+    service.executeWriteQuery(new JsonObject(), res -> {});
+    assertEquals(1, remote.requests.size());
+
+    Context serviceContext = vertx.getOrCreateContext();
+    LocalServiceRegistry.register(vertx, ADDRESS, local);
+    JsonObject request = new JsonObject().put("key", "value");
+    assertSame(service, service.executeWriteQuery(request, res -> {}));
+    service.executeReadQuery(new JsonObject(), res -> {});
+    drain(serviceContext);
+    assertEquals(2, local.requests.size());
+    assertEquals(request, local.requests.get(0));
+    assertTrue(request != local.requests.get(0));
+
+    /* Two calls in progress, so the next is sent to another node */
+    service.executeWriteQuery(new JsonObject(), res -> {});
+    drain(serviceContext);
+    assertEquals(2, local.requests.size());
+    assertEquals(2, remote.requests.size());
+
+    local.completeAll();
+    service.executeWriteQuery(new JsonObject(), res -> {});
+    drain(serviceContext);
+    assertEquals(3, local.requests.size());
+
+    LocalServiceRegistry.unregister(vertx, ADDRESS, local);
+    service.executeWriteQuery(new JsonObject(), res -> {});
+    assertEquals(3, remote.requests.size());
+  }
+
+  @Test
+  @DisplayName("Local calls are made on the context of the service and handled on the caller's")
+  void serviceContext(Vertx vertx, VertxTestContext testContext) {
+    LocalServiceRegistry.enable(vertx, 10);
+    ContextInternal serviceContext = (ContextInternal) vertx.getOrCreateContext();
+    ContextInternal callerContext = (ContextInternal) vertx.getOrCreateContext();
+    User user = new UserBuilder().userId(UUID.randomUUID()).name("Local", "User").build();
+
+    EchoService local =
+        (echoed, handler) -> {
+          testContext.verify(
+              () -> {
+                assertSame(serviceContext, ((ContextInternal) Vertx.currentContext()).unwrap());
+                /* Copied as a data object, as the proxy would */
+                assertEquals(user.toJson(), echoed.toJson());
+                assertNotSame(user, echoed);
+              });
+          handler.handle(Future.succeededFuture(echoed));
+        };
+    serviceContext.runOnContext(v -> LocalServiceRegistry.register(vertx, ADDRESS, local));
+    EchoService service =
+        LocalServiceRegistry.lookup(vertx, EchoService.class, ADDRESS, (v, a, o) -> null);
+
+    callerContext.runOnContext(
+        v ->
+            service.echo(
+                user,
+                testContext.succeeding(
+                    echoed ->
+                        testContext.verify(
+                            () -> {
+                              assertSame(
+                                  callerContext,
+                                  ((ContextInternal) Vertx.currentContext()).unwrap());
+                              assertEquals(user.getUserId(), echoed.getUserId());
+                              LocalServiceRegistry.unregister(vertx, ADDRESS, local);
+                              testContext.completeNow();
+                            }))));
+  }
+
+  @Test
+  @DisplayName("Failed local calls fail with the same exceptions as calls through the proxy")
+  void failureType(Vertx vertx) throws Exception {
+    LocalServiceRegistry.enable(vertx, 10);
+    EchoService service =
+        LocalServiceRegistry.lookup(vertx, EchoService.class, ADDRESS, (v, a, o) -> null);
+    User user = new UserBuilder().userId(UUID.randomUUID()).build();
+
+    EchoService failing = (echoed, handler) -> handler.handle(Future.failedFuture("failed"));
+    LocalServiceRegistry.register(vertx, ADDRESS, failing);
+    ServiceException failed = assertThrows(ServiceException.class, () -> echo(service, user));
+    assertEquals(-1, failed.failureCode());
+    assertEquals("failed", failed.getMessage());
+    LocalServiceRegistry.unregister(vertx, ADDRESS, failing);
+
+    EchoService throwing =
+        (echoed, handler) -> {
+          throw new IllegalStateException("thrown");
+        };
+    LocalServiceRegistry.register(vertx, ADDRESS, throwing);
+    ServiceException thrown = assertThrows(ServiceException.class, () -> echo(service, user));
+    assertEquals(500, thrown.failureCode());
+    assertEquals("thrown", thrown.getMessage());
+    LocalServiceRegistry.unregister(vertx, ADDRESS, throwing);
+
+    ServiceException serviceException = new ServiceException(400, "bad request");
+    EchoService rejecting =
+        (echoed, handler) -> handler.handle(Future.failedFuture(serviceException));
+    LocalServiceRegistry.register(vertx, ADDRESS, rejecting);
+    assertSame(serviceException, assertThrows(ServiceException.class, () -> echo(service, user)));
+    LocalServiceRegistry.unregister(vertx, ADDRESS, rejecting);
+  }
+
+  @Test
+  @DisplayName("Calls fail at the deadline of the request and are not made after it")
+  void deadline(Vertx vertx, VertxTestContext testContext) {
+    StubService remote = new StubService();
+    AuditingService service =
+        LocalServiceRegistry.lookup(vertx, AuditingService.class, ADDRESS, (v, a, o) -> remote);
+    List<AsyncResult<JsonObject>> results = new ArrayList<AsyncResult<JsonObject>>();
+
+    ((ContextInternal) vertx.getOrCreateContext())
+        .duplicate()
+        .runOnContext(
+            v -> {
+              Deadline.start(100);
+              service.executeWriteQuery(
+                  new JsonObject(),
+                  res -> {
+                    results.add(res);
+                    /* After the deadline, so not made */
+                    service.executeWriteQuery(new JsonObject(), results::add);
+                    remote.completeAll();
+                    testContext.verify(
+                        () -> {
+                          assertEquals(1, remote.requests.size());
+                          assertEquals(2, results.size());
+                          assertEquals(ERR_DEADLINE_EXCEEDED, results.get(0).cause().getMessage());
+                          assertEquals(ERR_DEADLINE_EXCEEDED, results.get(1).cause().getMessage());
+                          testContext.completeNow();
+                        });
+                  });
+            });
+  }
+}
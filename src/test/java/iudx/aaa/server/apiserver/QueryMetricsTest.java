@@ -0,0 +1,99 @@
+package iudx.aaa.server.apiserver;
+
+import static iudx.aaa.server.apiserver.util.Constants.SQL_GET_ALL_CLIENT_IDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.sqlclient.PreparedQuery;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+import iudx.aaa.server.apiserver.util.Deadline;
+import iudx.aaa.server.apiserver.util.QueryMetrics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for named query metrics. */
+@ExtendWith({VertxExtension.class})
+public class QueryMetricsTest {
+
+  @BeforeAll
+  static void addRegistry() {
+    Metrics.addRegistry(new SimpleMeterRegistry());
+  }
+
+  @Test
+  @DisplayName("Query execution and rows are recorded under the query name")
+  @SuppressWarnings("unchecked")
+  void queriesRecorded(VertxTestContext testContext) {
+    RowSet<Row> rows = mock(RowSet.class);
+    when(rows.rowCount()).thenReturn(3);
+    PreparedQuery<RowSet<Row>> query = mock(PreparedQuery.class);
+    when(query.execute(any(Tuple.class))).thenReturn(Future.succeededFuture(rows));
+    SqlConnection conn = mock(SqlConnection.class);
+    when(conn.preparedQuery(SQL_GET_ALL_CLIENT_IDS)).thenReturn(query);
+
+    QueryMetrics.query(conn, "SQL_GET_ALL_CLIENT_IDS", SQL_GET_ALL_CLIENT_IDS, Tuple.tuple())
+        .onComplete(
+            testContext.succeeding(
+                res ->
+                    testContext.verify(
+                        () -> {
+                          Timer execute =
+                              Metrics.globalRegistry
+                                  .find("aaa.db.query")
+                                  .tags("query", "SQL_GET_ALL_CLIENT_IDS", "outcome", "success")
+                                  .timer();
+                          assertNotNull(execute);
+                          assertEquals(1, execute.count());
+
+                          DistributionSummary rowCount =
+                              Metrics.globalRegistry
+                                  .find("aaa.db.query.rows")
+                                  .tags("query", "SQL_GET_ALL_CLIENT_IDS")
+                                  .summary();
+                          assertNotNull(rowCount);
+                          assertEquals(3, rowCount.totalAmount());
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Queries are not run after the deadline of the request")
+  void notRunAfterDeadline(Vertx vertx, VertxTestContext testContext) {
+    SqlConnection conn = mock(SqlConnection.class);
+
+    ((ContextInternal) vertx.getOrCreateContext())
+        .duplicate()
+        .runOnContext(
+            v -> {
+              Deadline.start(0);
+              QueryMetrics.query(conn, "SQL_GET_ALL_CLIENT_IDS", SQL_GET_ALL_CLIENT_IDS)
+                  .onComplete(
+                      testContext.failing(
+                          err ->
+                              testContext.verify(
+                                  () -> {
+                                    verify(conn, never()).preparedQuery(any());
+                                    testContext.completeNow();
+                                  })));
+            });
+  }
+}
@@ -0,0 +1,330 @@
+package iudx.aaa.server.apiserver;
+
+import static iudx.aaa.server.apiserver.util.Constants.SQL_GET_ADMIN_ROLE;
+import static iudx.aaa.server.apiserver.util.Constants.SQL_GET_DELEGATE_ROLE;
+import static iudx.aaa.server.apiserver.util.Constants.SQL_GET_DELEGATION_BY_USER_AND_DELEG_ID;
+import static iudx.aaa.server.apiserver.util.Constants.SQL_GET_DETAILS_BY_CLIENT_ID;
+import static iudx.aaa.server.apiserver.util.Constants.SQL_GET_PROVIDER_CONSUMER_ROLES;
+import static iudx.aaa.server.apiserver.util.Constants.SQL_GET_TRUSTEE_ROLE;
+import static iudx.aaa.server.policy.Constants.CHECK_EXISTING_DELEGATIONS;
+import static iudx.aaa.server.policy.Constants.GET_DELEGATIONS_BY_ID;
+import static iudx.aaa.server.policy.Constants.GET_ROLE_IDS_BY_ROLE_AND_RS;
+import static iudx.aaa.server.policy.Constants.SQL_GET_DELEG_USER_IDS_BY_DELEGATION_INFO;
+import static iudx.aaa.server.registration.Constants.SQL_CHECK_CLIENT_ID_EXISTS;
+import static iudx.aaa.server.registration.Constants.SQL_CHECK_DEFAULT_CLIENT_EXISTS;
+import static iudx.aaa.server.registration.Constants.SQL_CHECK_PENDING_REJECTED_PROVIDER_ROLES;
+import static iudx.aaa.server.registration.Constants.SQL_CHECK_USER_HAS_PROV_CONS_ROLE_FOR_RS;
+import static iudx.aaa.server.registration.Constants.SQL_GET_CLIENTS_FORMATTED;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+import iudx.aaa.server.apiserver.User.UserBuilder;
+import iudx.aaa.server.configuration.Configuration;
+import iudx.aaa.server.registration.Utils;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * Query plan regression tests for queries run on hot paths. Each query is run with
+ * <em>EXPLAIN</em> with sequential scans disabled for the transaction - if the planner still picks
+ * a sequential scan, there is no usable index for the query.
+ */
+@ExtendWith({VertxExtension.class})
+public class QueryPlanTest {
+  private static Logger LOGGER = LogManager.getLogger(QueryPlanTest.class);
+
+  private static Configuration config;
+
+  /* Database Properties */
+  private static String databaseIP;
+  private static int databasePort;
+  private static String databaseName;
+  private static String databaseSchema;
+  private static String databaseUserName;
+  private static String databasePassword;
+  private static int poolSize;
+  private static PgPool pool;
+  private static PoolOptions poolOptions;
+  private static PgConnectOptions connectOptions;
+
+  private static Vertx vertxObj;
+  private static Utils utils;
+
+  private static final String DUMMY_SERVER =
+      "dummy" + RandomStringUtils.randomAlphabetic(5).toLowerCase() + ".iudx.io";
+  private static final String DUMMY_APD =
+      "apd" + RandomStringUtils.randomAlphabetic(5).toLowerCase() + ".iudx.io";
+
+  private static final UUID DELEGATION_ID = UUID.randomUUID();
+
+  private static User adminUser =
+      new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
+
+  private static User providerUser =
+      new UserBuilder()
+          .userId(UUID.randomUUID())
+          .name("aa", "bb")
+          .roles(List.of(Roles.PROVIDER))
+          .rolesToRsMapping(Map.of(Roles.PROVIDER.toString(), new JsonArray().add(DUMMY_SERVER)))
+          .build();
+
+  private static User delegateUser =
+      new UserBuilder()
+          .userId(UUID.randomUUID())
+          .name("aa", "bb")
+          .roles(List.of(Roles.DELEGATE))
+          .rolesToRsMapping(Map.of(Roles.DELEGATE.toString(), new JsonArray().add(DUMMY_SERVER)))
+          .build();
+
+  private static final String SQL_DISABLE_SEQSCAN = "SET LOCAL enable_seqscan = off";
+
+  @BeforeAll
+  @DisplayName("Deploying Verticle")
+  static void startVertx(Vertx vertx, VertxTestContext testContext) {
+    config = new Configuration();
+    vertxObj = vertx;
+    JsonObject dbConfig = config.configLoader(0, vertx);
+
+    databaseIP = dbConfig.getString("databaseIP");
+    databasePort = Integer.parseInt(dbConfig.getString("databasePort"));
+    databaseName = dbConfig.getString("databaseName");
+    databaseSchema = dbConfig.getString("databaseSchema");
+    databaseUserName = dbConfig.getString("databaseUserName");
+    databasePassword = dbConfig.getString("databasePassword");
+    poolSize = Integer.parseInt(dbConfig.getString("poolSize"));
+
+    /* Set Connection Object and schema */
+    if (connectOptions == null) {
+      Map<String, String> schemaProp = Map.of("search_path", databaseSchema);
+
+      connectOptions =
+          new PgConnectOptions()
+              .setPort(databasePort)
+              .setHost(databaseIP)
+              .setDatabase(databaseName)
+              .setUser(databaseUserName)
+              .setPassword(databasePassword)
+              .setProperties(schemaProp);
+    }
+
+    // Pool options
+    if (poolOptions == null) {
+      poolOptions = new PoolOptions().setMaxSize(poolSize);
+    }
+
+    // Create the client pool
+    pool = PgPool.pool(vertx, connectOptions, poolOptions);
+
+    utils = new Utils(pool);
+
+    Future<Void> create =
+        utils
+            .createFakeResourceServer(DUMMY_SERVER, adminUser)
+            .compose(res -> utils.createFakeUser(providerUser, false, false))
+            .compose(res -> utils.createClientCreds(providerUser))
+            .compose(res -> utils.createFakeApd(DUMMY_APD, adminUser, ApdStatus.ACTIVE))
+            .compose(
+                res ->
+                    utils.createFakeDelegation(
+                        DELEGATION_ID,
+                        providerUser,
+                        delegateUser,
+                        DUMMY_SERVER,
+                        Roles.PROVIDER,
+                        DelegationStatus.ACTIVE));
+
+    create
+        .onSuccess(r -> testContext.completeNow())
+        .onFailure(err -> testContext.failNow(err.getMessage()));
+  }
+
+  @AfterAll
+  public static void finish(VertxTestContext testContext) {
+    LOGGER.info("Finishing....");
+    utils
+        .deleteFakeApd()
+        .compose(res -> utils.deleteFakeDelegation())
+        .compose(res -> utils.deleteFakeResourceServer())
+        .compose(res -> utils.deleteFakeUser())
+        .onComplete(
+            x -> {
+              if (x.failed()) {
+                LOGGER.warn(x.cause().getMessage());
+              }
+              vertxObj.close(testContext.succeeding(response -> testContext.completeNow()));
+            });
+  }
+
+  /**
+   * Run EXPLAIN on the query with sequential scans disabled and fail the test if the plan still
+   * contains a sequential scan.
+   *
+   * @param query the query to be checked
+   * @param tuple the query parameters
+   * @param testContext the test context
+   */
+  private void assertNoSeqScan(String query, Tuple tuple, VertxTestContext testContext) {
+    Collector<Row, ?, String> planCollector =
+        Collectors.mapping(row -> row.getString(0), Collectors.joining("\n"));
+
+    pool.withTransaction(
+            conn ->
+                conn.query(SQL_DISABLE_SEQSCAN)
+                    .execute()
+                    .compose(
+                        res ->
+                            conn.preparedQuery("EXPLAIN " + query)
+                                .collecting(planCollector)
+                                .execute(tuple))
+                    .map(res -> res.value()))
+        .onComplete(
+            testContext.succeeding(
+                plan ->
+                    testContext.verify(
+                        () -> {
+                          LOGGER.debug(plan);
+                          assertFalse(plan.contains("Seq Scan"), plan);
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Get provider/consumer roles uses index")
+  void providerConsumerRoles(VertxTestContext testContext) {
+    assertNoSeqScan(
+        SQL_GET_PROVIDER_CONSUMER_ROLES, Tuple.of(providerUser.getUserId()), testContext);
+  }
+
+  @Test
+  @DisplayName("Get delegate role uses index")
+  void delegateRole(VertxTestContext testContext) {
+    assertNoSeqScan(SQL_GET_DELEGATE_ROLE, Tuple.of(delegateUser.getUserId()), testContext);
+  }
+
+  @Test
+  @DisplayName("Get admin role uses index")
+  void adminRole(VertxTestContext testContext) {
+    assertNoSeqScan(SQL_GET_ADMIN_ROLE, Tuple.of(adminUser.getUserId()), testContext);
+  }
+
+  @Test
+  @DisplayName("Get trustee role uses index")
+  void trusteeRole(VertxTestContext testContext) {
+    assertNoSeqScan(SQL_GET_TRUSTEE_ROLE, Tuple.of(adminUser.getUserId()), testContext);
+  }
+
+  @Test
+  @DisplayName("Get client details by client ID uses index")
+  void clientDetails(VertxTestContext testContext) {
+    UUID clientId = UUID.fromString(utils.getDetails(providerUser).clientId);
+    assertNoSeqScan(SQL_GET_DETAILS_BY_CLIENT_ID, Tuple.of(clientId), testContext);
+  }
+
+  @Test
+  @DisplayName("Get delegation by user and delegation ID uses index")
+  void delegationByUserAndId(VertxTestContext testContext) {
+    assertNoSeqScan(
+        SQL_GET_DELEGATION_BY_USER_AND_DELEG_ID,
+        Tuple.of(DELEGATION_ID, delegateUser.getUserId()),
+        testContext);
+  }
+
+  @Test
+  @DisplayName("Get formatted clients uses index")
+  void clientsFormatted(VertxTestContext testContext) {
+    assertNoSeqScan(SQL_GET_CLIENTS_FORMATTED, Tuple.of(providerUser.getUserId()), testContext);
+  }
+
+  @Test
+  @DisplayName("Check client ID exists uses index")
+  void clientIdExists(VertxTestContext testContext) {
+    UUID clientId = UUID.fromString(utils.getDetails(providerUser).clientId);
+    assertNoSeqScan(
+        SQL_CHECK_CLIENT_ID_EXISTS, Tuple.of(clientId, providerUser.getUserId()), testContext);
+  }
+
+  @Test
+  @DisplayName("Check default client exists uses index")
+  void defaultClientExists(VertxTestContext testContext) {
+    assertNoSeqScan(
+        SQL_CHECK_DEFAULT_CLIENT_EXISTS, Tuple.of(providerUser.getUserId()), testContext);
+  }
+
+  @Test
+  @DisplayName("Check user has provider/consumer role for RS uses index")
+  void userHasRoleForRs(VertxTestContext testContext) {
+    assertNoSeqScan(
+        SQL_CHECK_USER_HAS_PROV_CONS_ROLE_FOR_RS,
+        Tuple.of(providerUser.getUserId(), Roles.PROVIDER, DUMMY_SERVER),
+        testContext);
+  }
+
+  @Test
+  @DisplayName("Check pending/rejected provider roles uses index")
+  void pendingRejectedProviderRoles(VertxTestContext testContext) {
+    assertNoSeqScan(
+        SQL_CHECK_PENDING_REJECTED_PROVIDER_ROLES,
+        Tuple.of(new UUID[] {UUID.randomUUID()}, providerUser.getUserId()),
+        testContext);
+  }
+
+  @Test
+  @DisplayName("Get delegations by ID uses index")
+  void delegationsById(VertxTestContext testContext) {
+    assertNoSeqScan(
+        GET_DELEGATIONS_BY_ID,
+        Tuple.of(providerUser.getUserId()).addArrayOfUUID(new UUID[] {DELEGATION_ID}),
+        testContext);
+  }
+
+  @Test
+  @DisplayName("Get role IDs by role and RS uses index")
+  void roleIdsByRoleAndRs(VertxTestContext testContext) {
+    assertNoSeqScan(
+        GET_ROLE_IDS_BY_ROLE_AND_RS,
+        Tuple.of(providerUser.getUserId())
+            .addArrayOfString(new String[] {Roles.PROVIDER.toString()})
+            .addArrayOfString(new String[] {DUMMY_SERVER}),
+        testContext);
+  }
+
+  @Test
+  @DisplayName("Check existing delegations uses index")
+  void existingDelegations(VertxTestContext testContext) {
+    UUID roleId = utils.getDetails(providerUser).getRoleId(Roles.PROVIDER, DUMMY_SERVER);
+    assertNoSeqScan(
+        CHECK_EXISTING_DELEGATIONS,
+        Tuple.of(delegateUser.getUserId(), roleId, DelegationStatus.ACTIVE),
+        testContext);
+  }
+
+  @Test
+  @DisplayName("Get delegate user IDs by delegation info uses index")
+  void delegateUserIds(VertxTestContext testContext) {
+    assertNoSeqScan(
+        SQL_GET_DELEG_USER_IDS_BY_DELEGATION_INFO,
+        Tuple.of(providerUser.getUserId(), Roles.PROVIDER, DUMMY_SERVER),
+        testContext);
+  }
+}
@@ -0,0 +1,188 @@
+package iudx.aaa.server.apiserver;
+
+import static iudx.aaa.server.apiserver.util.Constants.CREATE_TOKEN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.aaa.server.apiserver.util.RateLimitHandler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for rate limits. */
+@ExtendWith({VertxExtension.class})
+public class RateLimitHandlerTest {
+
+  private static final String TOKEN_PATH = "/auth/v1/token";
+  private static final String CLIENT_A = "a8e3c6a4-6a2e-4d57-9c0a-1f3b5c7d9e01";
+  private static final String CLIENT_B = "b8e3c6a4-6a2e-4d57-9c0a-1f3b5c7d9e02";
+  private static final String LOCALHOST = "127.0.0.1";
+  private static final String OTHER_HOST = "127.0.0.2";
+
+  @BeforeAll
+  static void addRegistry() {
+    Metrics.addRegistry(new SimpleMeterRegistry());
+  }
+
+  @Test
+  @DisplayName("A client over its limit gets 429 while other clients are admitted")
+  void limitPerClient(Vertx vertx, VertxTestContext testContext) {
+    start(vertx)
+        .compose(
+            client ->
+                client
+                    .post(TOKEN_PATH)
+                    .putHeader("clientId", CLIENT_A)
+                    .send()
+                    .compose(
+                        first -> {
+                          assertEquals(200, first.statusCode());
+                          assertEquals("2", first.getHeader(RateLimitHandler.HEADER_LIMIT));
+                          assertEquals("1", first.getHeader(RateLimitHandler.HEADER_REMAINING));
+                          return client.post(TOKEN_PATH).putHeader("clientId", CLIENT_A).send();
+                        })
+                    .compose(
+                        second -> {
+                          assertEquals(200, second.statusCode());
+                          return client.post(TOKEN_PATH).putHeader("clientId", CLIENT_A).send();
+                        })
+                    .compose(
+                        limited -> {
+                          assertEquals(429, limited.statusCode());
+                          assertEquals("0", limited.getHeader(RateLimitHandler.HEADER_REMAINING));
+                          assertFalse(limited.getHeader("Retry-After").equals("0"));
+                          assertEquals(
+                              "urn:dx:as:TooManyRequests",
+                              limited.bodyAsJsonObject().getString("type"));
+                          return client.post(TOKEN_PATH).putHeader("clientId", CLIENT_B).send();
+                        }))
+        .onComplete(
+            testContext.succeeding(
+                other ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(200, other.statusCode());
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Requests with the client ID of a limited client from other addresses are admitted")
+  void limitPerSource(Vertx vertx, VertxTestContext testContext) {
+    listen(vertx)
+        .compose(
+            port -> {
+              WebClient client = client(vertx, port, LOCALHOST);
+              WebClient other = client(vertx, port, OTHER_HOST);
+              return client
+                  .post(TOKEN_PATH)
+                  .putHeader("clientId", CLIENT_A)
+                  .send()
+                  .compose(first -> client.post(TOKEN_PATH).putHeader("clientId", CLIENT_A).send())
+                  .compose(second -> client.post(TOKEN_PATH).putHeader("clientId", CLIENT_A).send())
+                  .compose(
+                      limited -> {
+                        assertEquals(429, limited.statusCode());
+                        return other.post(TOKEN_PATH).putHeader("clientId", CLIENT_A).send();
+                      });
+            })
+        .onComplete(
+            testContext.succeeding(
+                other ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(200, other.statusCode());
+                          assertEquals("1", other.getHeader(RateLimitHandler.HEADER_REMAINING));
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Usage published by another node is taken from the buckets of this node")
+  void reconcileUsage(Vertx vertx, VertxTestContext testContext) {
+    start(vertx)
+        .compose(
+            client ->
+                client
+                    .post(TOKEN_PATH)
+                    .putHeader("clientId", CLIENT_A)
+                    .send()
+                    .compose(
+                        first -> {
+                          assertEquals(200, first.statusCode());
+                          String key = CREATE_TOKEN + " client:" + LOCALHOST + '/' + CLIENT_A;
+                          vertx
+                              .eventBus()
+                              .publish(
+                                  RateLimitHandler.USAGE_ADDRESS,
+                                  new JsonObject()
+                                      .put("node", "other-node")
+                                      .put("usage", new JsonObject().put(key, 1)));
+                          return client.post(TOKEN_PATH).putHeader("clientId", CLIENT_A).send();
+                        })
+                    .compose(
+                        limited -> {
+                          assertEquals(429, limited.statusCode());
+                          /* Requests without a client ID or user ID are not limited */
+                          return client.post(TOKEN_PATH).send();
+                        }))
+        .onComplete(
+            testContext.succeeding(
+                anonymous ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(200, anonymous.statusCode());
+                          assertNull(anonymous.getHeader(RateLimitHandler.HEADER_LIMIT));
+                          testContext.completeNow();
+                        })));
+  }
+
+  private static Future<WebClient> start(Vertx vertx) {
+    return listen(vertx).map(port -> client(vertx, port, LOCALHOST));
+  }
+
+  /* A client connecting from a source address, all of 127.0.0.0/8 being local */
+  private static WebClient client(Vertx vertx, int port, String localAddress) {
+    WebClientOptions options =
+        new WebClientOptions().setDefaultHost(LOCALHOST).setDefaultPort(port);
+    options.setLocalAddress(localAddress);
+    return WebClient.create(vertx, options);
+  }
+
+  private static Future<Integer> listen(Vertx vertx) {
+    JsonObject config =
+        new JsonObject()
+            .put(
+                RateLimitHandler.OPERATIONS,
+                new JsonObject()
+                    .put(
+                        CREATE_TOKEN,
+                        new JsonObject()
+                            .put(RateLimitHandler.CAPACITY, 2)
+                            .put(RateLimitHandler.REFILL_PER_SECOND, 0.01)));
+
+    Router router = Router.router(vertx);
+    router
+        .post(TOKEN_PATH)
+        .setName(CREATE_TOKEN)
+        .handler(new RateLimitHandler(vertx, config))
+        .handler(ctx -> ctx.response().end());
+    return vertx
+        .createHttpServer()
+        .requestHandler(router)
+        .listen(0)
+        .map(server -> server.actualPort());
+  }
+}
@@ -0,0 +1,91 @@
+package iudx.aaa.server.apiserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.aaa.server.apiserver.util.RouteMetricsHandler;
+import iudx.aaa.server.apiserver.util.Urn;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for per-operation request latency metrics. */
+@ExtendWith({VertxExtension.class})
+public class RouteMetricsHandlerTest {
+
+  @BeforeAll
+  static void addRegistry() {
+    Metrics.addRegistry(new SimpleMeterRegistry());
+  }
+
+  @Test
+  @DisplayName("Requests are timed by operation, status and URN type")
+  void timedByOperation(Vertx vertx, VertxTestContext testContext) {
+    Router router = Router.router(vertx);
+    router.route().handler(new RouteMetricsHandler(new JsonObject()));
+    router
+        .get("/op")
+        .setName("get-test-op")
+        .handler(
+            ctx -> {
+              RouteMetricsHandler.setUrnType(ctx, Urn.URN_SUCCESS.toString());
+              ctx.response().end();
+            });
+
+    HttpClient client = vertx.createHttpClient();
+    vertx
+        .createHttpServer()
+        .requestHandler(router)
+        .listen(0)
+        .compose(server -> get(client, server.actualPort(), "/op").map(server))
+        .compose(server -> get(client, server.actualPort(), "/missing"))
+        .onComplete(
+            testContext.succeeding(
+                res ->
+                    testContext.verify(
+                        () -> {
+                          Timer op =
+                              Metrics.globalRegistry
+                                  .find(RouteMetricsHandler.METRIC_NAME)
+                                  .tags(
+                                      "operation",
+                                      "get-test-op",
+                                      "status",
+                                      "200",
+                                      "urn",
+                                      Urn.URN_SUCCESS.toString())
+                                  .timer();
+                          assertNotNull(op);
+                          assertEquals(1, op.count());
+
+                          Timer unmatched =
+                              Metrics.globalRegistry
+                                  .find(RouteMetricsHandler.METRIC_NAME)
+                                  .tags("operation", "unmatched", "status", "404", "urn", "none")
+                                  .timer();
+                          assertNotNull(unmatched);
+                          assertEquals(1, unmatched.count());
+                          testContext.completeNow();
+                        })));
+  }
+
+  private static Future<HttpClientResponse> get(HttpClient client, int port, String uri) {
+    return client
+        .request(HttpMethod.GET, port, "localhost", uri)
+        .compose(req -> req.send())
+        .compose(resp -> resp.body().map(resp));
+  }
+}
@@ -0,0 +1,150 @@
+package iudx.aaa.server.apiserver;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.impl.codecs.JsonObjectMessageCodec;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.aaa.server.apiserver.User.UserBuilder;
+import iudx.aaa.server.apiserver.util.ServiceMessageCodec;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the binary codec of service calls with the JSON system codec the event bus otherwise
+ * uses for them. Each benchmark encodes a message to the wire and decodes it back, as a call to
+ * another node of the cluster does: the arguments of a createToken call, read back as the data
+ * objects the service is called with, and the token it replies with. Run with
+ *
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=iudx.aaa.server.apiserver.ServiceMessageCodecBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceMessageCodecBenchmark {
+
+  /* Consumers have roles on every resource server, so the mapping grows with the servers */
+  private static final int RESOURCE_SERVERS = 20;
+
+  private final JsonObjectMessageCodec jsonCodec = new JsonObjectMessageCodec();
+  private final ServiceMessageCodec binaryCodec = ServiceMessageCodec.INSTANCE;
+
+  private JsonObject createTokenCall;
+  private JsonObject createTokenReply;
+
+  @Setup
+  public void setup() {
+    JsonArray servers =
+        IntStream.range(0, RESOURCE_SERVERS)
+            .mapToObj(i -> "rs" + i + ".iudx.io")
+            .collect(Collectors.collectingAndThen(Collectors.toList(), JsonArray::new));
+
+    User user =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("Test", "User")
+            .roles(List.of(Roles.CONSUMER, Roles.PROVIDER, Roles.DELEGATE))
+            .rolesToRsMapping(
+                Map.of(
+                    Roles.CONSUMER.toString(), servers,
+                    Roles.PROVIDER.toString(), new JsonArray().add("rs0.iudx.io"),
+                    Roles.DELEGATE.toString(), new JsonArray().add("rs1.iudx.io")))
+            .build();
+
+    RequestToken requestToken =
+        new RequestToken(
+            new JsonObject()
+                .put("role", "consumer")
+                .put("itemType", "resource")
+                .put("itemId", UUID.randomUUID().toString())
+                .put("context", new JsonObject()));
+
+    DelegationInformation delegationInfo =
+        new DelegationInformation(
+            UUID.randomUUID(), UUID.randomUUID(), Roles.PROVIDER, "rs0.iudx.io");
+
+    /* As the service proxy sends it */
+    createTokenCall =
+        new JsonObject()
+            .put("requestToken", requestToken.toJson())
+            .put("delegationInfo", delegationInfo.toJson())
+            .put("user", user.toJson());
+
+    createTokenReply =
+        new JsonObject()
+            .put("type", "urn:dx:as:Success")
+            .put("title", "Token created")
+            .put(
+                "results",
+                new JsonObject()
+                    .put("accessToken", "eyJ0eXAiOiJKV1QiLCJhbGciOiJFUzI1NiJ9." + "a".repeat(600))
+                    .put("expiry", 1700000000L)
+                    .put("server", "rs0.iudx.io"));
+  }
+
+  private static Object[] createTokenArgs(JsonObject call) {
+    return new Object[] {
+      new RequestToken(call.getJsonObject("requestToken")),
+      new DelegationInformation(call.getJsonObject("delegationInfo")),
+      new User(call.getJsonObject("user"))
+    };
+  }
+
+  @Benchmark
+  public Object[] jsonCall() {
+    Buffer buffer = Buffer.buffer();
+    jsonCodec.encodeToWire(buffer, createTokenCall);
+    return createTokenArgs(jsonCodec.decodeFromWire(0, buffer));
+  }
+
+  @Benchmark
+  public Object[] binaryCall() {
+    Buffer buffer = Buffer.buffer();
+    binaryCodec.encodeToWire(buffer, createTokenCall);
+    return createTokenArgs(binaryCodec.decodeFromWire(0, buffer));
+  }
+
+  @Benchmark
+  public JsonObject jsonReply() {
+    Buffer buffer = Buffer.buffer();
+    jsonCodec.encodeToWire(buffer, createTokenReply);
+    return jsonCodec.decodeFromWire(0, buffer);
+  }
+
+  @Benchmark
+  public JsonObject binaryReply() {
+    Buffer buffer = Buffer.buffer();
+    binaryCodec.encodeToWire(buffer, createTokenReply);
+    return binaryCodec.decodeFromWire(0, buffer);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder()
+                .include(ServiceMessageCodecBenchmark.class.getSimpleName())
+                .build())
+        .run();
+  }
+}
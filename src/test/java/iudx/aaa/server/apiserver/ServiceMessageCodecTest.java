@@ -0,0 +1,174 @@
+package iudx.aaa.server.apiserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.impl.MessageImpl;
+import io.vertx.core.eventbus.impl.codecs.JsonObjectMessageCodec;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.aaa.server.apiserver.User.UserBuilder;
+import iudx.aaa.server.apiserver.util.LocalServiceRegistry;
+import iudx.aaa.server.apiserver.util.ServiceMessageCodec;
+import iudx.aaa.server.auditing.AuditingService;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for the binary message codec of service calls. */
+@ExtendWith({VertxExtension.class})
+public class ServiceMessageCodecTest {
+
+  private static final String ADDRESS = "iudx.aaa.test.service";
+
+  private static JsonObject roundTrip(JsonObject json) {
+    Buffer buffer = Buffer.buffer().appendString("header");
+    ServiceMessageCodec.INSTANCE.encodeToWire(buffer, json);
+    return ServiceMessageCodec.INSTANCE.decodeFromWire("header".length(), buffer);
+  }
+
+  private static JsonObject createTokenCall() {
+    User user =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.CONSUMER, Roles.PROVIDER))
+            .rolesToRsMapping(
+                Map.of(
+                    Roles.CONSUMER.toString(), new JsonArray().add("rs.iudx.io"),
+                    Roles.PROVIDER.toString(), new JsonArray().add("rs.iudx.io")))
+            .build();
+    RequestToken requestToken =
+        new RequestToken(
+            new JsonObject()
+                .put("role", "consumer")
+                .put("itemType", "resource")
+                .put("itemId", UUID.randomUUID().toString())
+                .put("context", new JsonObject()));
+    DelegationInformation delegationInfo =
+        new DelegationInformation(
+            UUID.randomUUID(), UUID.randomUUID(), Roles.PROVIDER, "rs.iudx.io");
+
+    return new JsonObject()
+        .put("requestToken", requestToken.toJson())
+        .put("delegationInfo", delegationInfo.toJson())
+        .put("user", user.toJson());
+  }
+
+  @Test
+  @DisplayName("Values decode as they would from the JSON encoding")
+  void values() {
+    JsonObject json =
+        new JsonObject()
+            .put("string", "text")
+            .put("uuid", UUID.randomUUID().toString())
+            .put("upperUuid", UUID.randomUUID().toString().toUpperCase())
+            .put("notUuid", "aaaaaaaa-bbbb-cccc-dddd-eeeeeeeeeeeg")
+            .put("unicode", "नमस्ते")
+            .put("int", 42)
+            .put("long", Long.MAX_VALUE)
+            .put("double", 1.5)
+            .put("true", true)
+            .put("false", false)
+            .putNull("null")
+            .put("instant", Instant.now())
+            .put("binary", new byte[] {1, 2, 3})
+            .put("enum", Roles.CONSUMER)
+            .put("decimal", new BigDecimal("12.25"))
+            .put("map", Map.of("key", List.of(1, "two")))
+            .put(
+                "nested",
+                new JsonObject()
+                    .put("array", new JsonArray().add(new JsonObject()).add(new JsonArray()))
+                    .put("empty", new JsonObject()));
+
+    assertEquals(new JsonObject(json.encode()), roundTrip(json));
+  }
+
+  @Test
+  @DisplayName("Service calls are smaller than their JSON encoding")
+  void smallerThanJson() {
+    JsonObject call = createTokenCall();
+
+    Buffer binary = Buffer.buffer();
+    ServiceMessageCodec.INSTANCE.encodeToWire(binary, call);
+    Buffer json = Buffer.buffer();
+    new JsonObjectMessageCodec().encodeToWire(json, call);
+
+    assertEquals(call, roundTrip(call));
+    assertTrue(binary.length() < json.length());
+  }
+
+  @Test
+  @DisplayName("An unknown version is not decoded")
+  void unknownVersion() {
+    Buffer buffer = Buffer.buffer();
+    ServiceMessageCodec.INSTANCE.encodeToWire(buffer, new JsonObject());
+    buffer.setByte(Integer.BYTES, (byte) 99);
+
+    assertThrows(
+        IllegalStateException.class, () -> ServiceMessageCodec.INSTANCE.decodeFromWire(0, buffer));
+  }
+
+  @Test
+  @DisplayName("Proxy calls and the replies of bound services are sent with the codec")
+  void proxyCalls(Vertx vertx, VertxTestContext testContext) {
+    List<String> codecs = new CopyOnWriteArrayList<String>();
+    vertx
+        .eventBus()
+        .addOutboundInterceptor(
+            ctx -> {
+              codecs.add(((MessageImpl<?, ?>) ctx.message()).codec().name());
+              ctx.next();
+            });
+
+    AuditingService echo =
+        new AuditingService() {
+          @Override
+          public AuditingService executeWriteQuery(
+              JsonObject request, Handler<AsyncResult<JsonObject>> handler) {
+            handler.handle(Future.succeededFuture(request.copy().put("written", true)));
+            return this;
+          }
+
+          @Override
+          public AuditingService executeReadQuery(
+              JsonObject request, Handler<AsyncResult<JsonObject>> handler) {
+            return executeWriteQuery(request, handler);
+          }
+        };
+    ServiceMessageCodec.binder(vertx).setAddress(ADDRESS).register(AuditingService.class, echo);
+
+    AuditingService service =
+        LocalServiceRegistry.lookup(
+            vertx, AuditingService.class, ADDRESS, AuditingService::createProxy);
+    String userId = UUID.randomUUID().toString();
+
+    service.executeWriteQuery(
+        new JsonObject().put("userId", userId),
+        testContext.succeeding(
+            res ->
+                testContext.verify(
+                    () -> {
+                      assertEquals(
+                          new JsonObject().put("userId", userId).put("written", true), res);
+                      assertEquals(
+                          List.of(ServiceMessageCodec.NAME, ServiceMessageCodec.NAME), codecs);
+                      testContext.completeNow();
+                    })));
+  }
+}
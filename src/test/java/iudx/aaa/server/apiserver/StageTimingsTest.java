@@ -0,0 +1,76 @@
+package iudx.aaa.server.apiserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.aaa.server.apiserver.util.StageTimings;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for token issuance stage timings. */
+@ExtendWith({VertxExtension.class})
+public class StageTimingsTest {
+
+  @BeforeAll
+  static void addRegistry() {
+    Metrics.addRegistry(new SimpleMeterRegistry());
+  }
+
+  @Test
+  @DisplayName("Stages are recorded per request and in the stage timer")
+  void stagesRecorded(VertxTestContext testContext) {
+    JsonObject timings = new JsonObject();
+
+    String jwt = StageTimings.timeSync(StageTimings.JWT_SIGN, timings, () -> "jwt");
+    assertEquals("jwt", jwt);
+
+    StageTimings.time(
+            StageTimings.CATALOGUE, timings, () -> Future.<String>failedFuture("no such item"))
+        .onComplete(
+            testContext.failing(
+                err ->
+                    testContext.verify(
+                        () -> {
+                          assertTrue(timings.containsKey(StageTimings.JWT_SIGN));
+                          assertTrue(timings.containsKey(StageTimings.CATALOGUE));
+
+                          Timer timer =
+                              Metrics.globalRegistry
+                                  .find(StageTimings.METRIC_NAME)
+                                  .tags("stage", StageTimings.CATALOGUE)
+                                  .timer();
+                          assertNotNull(timer);
+                          assertEquals(1, timer.count());
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Timings are taken out of a service result and formatted as Server-Timing")
+  void takeAndFormat() {
+    JsonObject result =
+        new JsonObject()
+            .put("status", "success")
+            .put(
+                StageTimings.STAGE_TIMINGS,
+                new JsonObject().put(StageTimings.CATALOGUE, 1.5).put(StageTimings.APD, 20.25));
+
+    JsonObject timings = StageTimings.take(result);
+    assertFalse(result.containsKey(StageTimings.STAGE_TIMINGS));
+    assertEquals("catalogue;dur=1.5, apd;dur=20.25", StageTimings.serverTimingHeader(timings));
+
+    assertTrue(StageTimings.take(result).isEmpty());
+    assertTrue(StageTimings.take(null).isEmpty());
+  }
+}
@@ -0,0 +1,71 @@
+package iudx.aaa.server.apiserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.junit5.VertxTestContext;
+import iudx.aaa.server.apiserver.util.Tracing;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Unit tests for tracing. */
+public class TracingTest {
+
+  @Test
+  @DisplayName("A request and the calls made for it are in one trace")
+  void requestTraced(@TempDir Path dir) throws Throwable {
+    Path file = dir.resolve("spans.json");
+    JsonObject config =
+        new JsonObject()
+            .put(
+                Tracing.TRACING_OPTIONS,
+                new JsonObject()
+                    .put(Tracing.EXPORTER, Tracing.EXPORTER_FILE)
+                    .put(Tracing.FILE, file.toString()));
+    Vertx vertx = Vertx.vertx(new VertxOptions().setTracingOptions(Tracing.options(config)));
+    WebClient client = WebClient.create(vertx);
+    VertxTestContext testContext = new VertxTestContext();
+
+    Router router = Router.router(vertx);
+    router.get("/inner").handler(ctx -> ctx.response().end());
+    router
+        .get("/outer")
+        .handler(
+            ctx ->
+                client
+                    .get(ctx.request().localAddress().port(), "localhost", "/inner")
+                    .send()
+                    .onComplete(res -> ctx.response().end()));
+
+    vertx
+        .createHttpServer()
+        .requestHandler(router)
+        .listen(0)
+        .compose(
+            server ->
+                WebClient.create(vertx).get(server.actualPort(), "localhost", "/outer").send())
+        .onComplete(testContext.succeedingThenComplete());
+
+    assertTrue(testContext.awaitCompletion(10, TimeUnit.SECONDS));
+    vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    Tracing.shutdown();
+
+    List<JsonObject> spans =
+        Files.readAllLines(file).stream().map(JsonObject::new).collect(Collectors.toList());
+    assertEquals(3, spans.size());
+    assertEquals(1, spans.stream().map(span -> span.getString("traceId")).distinct().count());
+    assertEquals(2, spans.stream().filter(span -> "SERVER".equals(span.getString("kind"))).count());
+    assertEquals(1, spans.stream().filter(span -> "CLIENT".equals(span.getString("kind"))).count());
+  }
+}
@@ -0,0 +1,80 @@
+package iudx.aaa.server.apiserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.aaa.server.apiserver.User.UserBuilder;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for the User data object. */
+public class UserTest {
+
+  private static User consumer() {
+    return new UserBuilder()
+        .userId(UUID.randomUUID())
+        .name("aa", "bb")
+        .roles(List.of(Roles.CONSUMER))
+        .rolesToRsMapping(
+            Map.of(Roles.CONSUMER.toString(), new JsonArray().add("rs.iudx.io").add("rs.two.io")))
+        .build();
+  }
+
+  @Test
+  @DisplayName("JSON form is unchanged and can be read back")
+  void jsonRoundTrip() {
+    User user = consumer();
+    JsonObject json = user.toJson();
+
+    assertEquals(new JsonArray().add("CONSUMER"), json.getJsonArray("roles"));
+    assertEquals(
+        new JsonArray().add("rs.iudx.io").add("rs.two.io"),
+        json.getJsonObject("rolesToRsMapping").getJsonArray("consumer"));
+    assertEquals(new JsonArray().add("consumer"), user.toJsonResponse().getJsonArray("roles"));
+    assertEquals(json, new User(json).toJson());
+  }
+
+  @Test
+  @DisplayName("Role to resource server lookups")
+  void lookups() {
+    User user = consumer();
+
+    assertTrue(user.hasRoleForResServer(Roles.CONSUMER, "rs.two.io"));
+    assertFalse(user.hasRoleForResServer(Roles.CONSUMER, "rs.other.io"));
+    assertFalse(user.hasRoleForResServer(Roles.PROVIDER, "rs.iudx.io"));
+    assertTrue(user.getResServersForRole(Roles.ADMIN).isEmpty());
+  }
+
+  @Test
+  @DisplayName("User cannot be modified and copies share resource server URLs")
+  void immutable() {
+    User user = consumer();
+
+    assertThrows(UnsupportedOperationException.class, () -> user.getRoles().add(Roles.ADMIN));
+    assertThrows(
+        UnsupportedOperationException.class,
+        () -> user.getResServersForRole(Roles.CONSUMER).add("rs.other.io"));
+
+    User copy = new UserBuilder(user).roles(List.of(Roles.CONSUMER, Roles.DELEGATE)).build();
+    assertEquals(List.of(Roles.CONSUMER), user.getRoles());
+    assertEquals(
+        user.getResServersForRole(Roles.CONSUMER), copy.getResServersForRole(Roles.CONSUMER));
+
+    String url = new String("rs.iudx.io");
+    User other =
+        new UserBuilder()
+            .rolesToRsMapping(Map.of(Roles.PROVIDER.toString(), new JsonArray().add(url)))
+            .build();
+    String interned =
+        user.getResServersForRole(Roles.CONSUMER).stream().filter(url::equals).findFirst().get();
+    assertSame(interned, other.getResServersForRole(Roles.PROVIDER).iterator().next());
+  }
+}
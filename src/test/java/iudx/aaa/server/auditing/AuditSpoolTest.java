@@ -0,0 +1,283 @@
+package iudx.aaa.server.auditing;
+
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_DEAD_LETTER_FILE;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_DIRECTORY;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_FSYNC;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_FULL;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_INSTANCE_PREFIX;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_MAX_BYTES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.pgclient.PgException;
+import io.vertx.sqlclient.Tuple;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Unit tests for the local audit spool. */
+@ExtendWith({VertxExtension.class})
+public class AuditSpoolTest {
+
+  @BeforeAll
+  static void addRegistry() {
+    Metrics.addRegistry(new SimpleMeterRegistry());
+  }
+
+  private static List<Tuple> records(int count) {
+    return IntStream.range(0, count)
+        .mapToObj(
+            i ->
+                Tuple.of(
+                    UUID.randomUUID().toString(),
+                    "{\"title\":\"policy read\"}",
+                    "/post",
+                    "POST",
+                    System.currentTimeMillis(),
+                    UUID.randomUUID().toString()))
+        .collect(Collectors.toList());
+  }
+
+  private static AuditSpool spool(Vertx vertx, Path dir, long maxBytes) {
+    JsonObject config =
+        new JsonObject()
+            .put(SPOOL_DIRECTORY, dir.toString())
+            .put(SPOOL_MAX_BYTES, maxBytes)
+            .put(SPOOL_FSYNC, "always");
+    return new AuditSpool(vertx, config);
+  }
+
+  @Test
+  @DisplayName("Spooled records are kept until replayed and segments are deleted after replay")
+  void replayAfterFailure(Vertx vertx, VertxTestContext testContext, @TempDir Path dir) {
+    AuditSpool spool = spool(vertx, dir, 1024 * 1024);
+    List<Tuple> spooled = records(5);
+    List<Tuple> replayed = new ArrayList<Tuple>();
+
+    spool
+        .open()
+        .compose(res -> spool.append(spooled))
+        .compose(res -> spool.replay(batch -> Future.failedFuture("DB down")).otherwiseEmpty())
+        .compose(
+            res -> {
+              assertFalse(spool.isEmpty());
+              return spool.replay(
+                  batch -> {
+                    replayed.addAll(batch);
+                    return Future.succeededFuture();
+                  });
+            })
+        .onComplete(
+            testContext.succeeding(
+                res ->
+                    testContext.verify(
+                        () -> {
+                          assertTrue(spool.isEmpty());
+                          assertEquals(spooled.size(), replayed.size());
+                          for (int i = 0; i < spooled.size(); i++) {
+                            assertEquals(
+                                spooled.get(i).deepToString(), replayed.get(i).deepToString());
+                          }
+                          try (var files = Files.list(dir.resolve(SPOOL_INSTANCE_PREFIX + 0))) {
+                            assertEquals(
+                                0, files.filter(f -> f.toString().endsWith(".spool")).count());
+                          }
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Records are dropped when the spool is full")
+  void spoolFull(Vertx vertx, VertxTestContext testContext, @TempDir Path dir) {
+    AuditSpool spool = spool(vertx, dir, 100);
+
+    spool
+        .open()
+        .compose(res -> spool.append(records(5)))
+        .onComplete(
+            testContext.failing(
+                err ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(SPOOL_FULL, err.getMessage());
+                          assertTrue(spool.isEmpty());
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Segments left by a previous run are replayed")
+  void reopen(Vertx vertx, VertxTestContext testContext, @TempDir Path dir) {
+    AuditSpool first = spool(vertx, dir, 1024 * 1024);
+    List<Tuple> replayed = new ArrayList<Tuple>();
+
+    first
+        .open()
+        .compose(res -> first.append(records(3)))
+        .compose(
+            res -> {
+              AuditSpool second = spool(vertx, dir, 1024 * 1024);
+              return first
+                  .close()
+                  .compose(closed -> second.open())
+                  .compose(
+                      opened -> {
+                        assertFalse(second.isEmpty());
+                        return second.replay(
+                            batch -> {
+                              replayed.addAll(batch);
+                              return Future.succeededFuture();
+                            });
+                      });
+            })
+        .onComplete(
+            testContext.succeeding(
+                res ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(3, replayed.size());
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Records rejected by the database are dead-lettered and do not block replay")
+  void deadLetter(Vertx vertx, VertxTestContext testContext, @TempDir Path dir) {
+    AuditSpool spool = spool(vertx, dir, 1024 * 1024);
+    List<Tuple> spooled = records(5);
+    String poison = spooled.get(2).getString(0);
+    List<Tuple> replayed = new ArrayList<Tuple>();
+
+    spool
+        .open()
+        .compose(res -> spool.append(spooled))
+        .compose(
+            res ->
+                spool.replay(
+                    batch -> {
+                      if (batch.stream().anyMatch(record -> poison.equals(record.getString(0)))) {
+                        return Future.failedFuture(
+                            new PgException("value too long", "ERROR", "22001", null));
+                      }
+                      replayed.addAll(batch);
+                      return Future.succeededFuture();
+                    }))
+        .onComplete(
+            testContext.succeeding(
+                res ->
+                    testContext.verify(
+                        () -> {
+                          assertTrue(spool.isEmpty());
+                          assertEquals(4, replayed.size());
+                          List<String> deadLetters =
+                              Files.readAllLines(
+                                  dir.resolve(SPOOL_INSTANCE_PREFIX + 0)
+                                      .resolve(SPOOL_DEAD_LETTER_FILE));
+                          assertEquals(1, deadLetters.size());
+                          assertTrue(deadLetters.get(0).contains(poison));
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Spools report their size separately and remove their meters when closed")
+  void meters(Vertx vertx, VertxTestContext testContext, @TempDir Path dir) {
+    AuditSpool first = spool(vertx, dir, 1024 * 1024);
+    AuditSpool second = spool(vertx, dir, 1024 * 1024);
+    Path firstDir = dir.resolve(SPOOL_INSTANCE_PREFIX + 0);
+    Path secondDir = dir.resolve(SPOOL_INSTANCE_PREFIX + 1);
+
+    first
+        .open()
+        .compose(res -> second.open())
+        .compose(res -> first.append(records(2)))
+        .compose(res -> second.append(records(3)))
+        .onComplete(
+            testContext.succeeding(
+                res ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(spooledBytes(firstDir), spoolBytesGauge(firstDir));
+                          assertEquals(spooledBytes(secondDir), spoolBytesGauge(secondDir));
+                          assertTrue(spooledBytes(firstDir) < spooledBytes(secondDir));
+                        })))
+        .compose(res -> first.close())
+        .compose(res -> second.close())
+        .onComplete(
+            testContext.succeeding(
+                res ->
+                    testContext.verify(
+                        () -> {
+                          assertNull(
+                              Metrics.globalRegistry
+                                  .find("aaa.audit.spool.bytes")
+                                  .tag("spool", firstDir.toString())
+                                  .gauge());
+                          testContext.completeNow();
+                        })));
+  }
+
+  private static double spoolBytesGauge(Path spoolDir) {
+    return Metrics.globalRegistry
+        .get("aaa.audit.spool.bytes")
+        .tag("spool", spoolDir.toString())
+        .gauge()
+        .value();
+  }
+
+  private static long spooledBytes(Path spoolDir) throws IOException {
+    try (var files = Files.list(spoolDir)) {
+      return files
+          .filter(f -> f.toString().endsWith(".spool"))
+          .mapToLong(f -> f.toFile().length())
+          .sum();
+    }
+  }
+
+  @Test
+  @DisplayName("Spools sharing a directory use separate subdirectories")
+  void sharedDirectory(Vertx vertx, VertxTestContext testContext, @TempDir Path dir) {
+    AuditSpool first = spool(vertx, dir, 1024 * 1024);
+    AuditSpool second = spool(vertx, dir, 1024 * 1024);
+
+    first
+        .open()
+        .compose(res -> second.open())
+        .compose(res -> first.append(records(2)))
+        .compose(res -> second.append(records(3)))
+        .compose(res -> first.close())
+        .compose(res -> second.close())
+        .onComplete(
+            testContext.succeeding(
+                res ->
+                    testContext.verify(
+                        () -> {
+                          for (int i = 0; i < 2; i++) {
+                            try (var files = Files.list(dir.resolve(SPOOL_INSTANCE_PREFIX + i))) {
+                              assertEquals(
+                                  1, files.filter(f -> f.toString().endsWith(".spool")).count());
+                            }
+                          }
+                          testContext.completeNow();
+                        })));
+  }
+}
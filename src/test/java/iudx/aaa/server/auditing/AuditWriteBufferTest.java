@@ -0,0 +1,236 @@
+package iudx.aaa.server.auditing;
+
+import static iudx.aaa.server.auditing.util.Constants.BUFFER_FULL;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_DIRECTORY;
+import static iudx.aaa.server.auditing.util.Constants.SPOOL_INSTANCE_PREFIX;
+import static iudx.aaa.server.auditing.util.Constants.WRITE_QUERY_COLUMN_COUNT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.pgclient.PgException;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PreparedQuery;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+import iudx.aaa.server.apiserver.util.Deadline;
+import iudx.aaa.server.auditing.util.QueryBuilder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Unit tests for the batched writing of audit records. */
+@ExtendWith({VertxExtension.class})
+public class AuditWriteBufferTest {
+
+  private static final String TABLE = "auditing_table";
+  private static final long NEVER_MS = 3_600_000;
+
+  /* Queries written by the mocked pool, with their bind parameters */
+  private final List<String> queries = new CopyOnWriteArrayList<String>();
+  private final List<Tuple> params = new CopyOnWriteArrayList<Tuple>();
+  /* Time left until the deadline of the context each query was made on */
+  private final List<Long> deadlines = new CopyOnWriteArrayList<Long>();
+
+  private static List<Tuple> records(int count) {
+    return IntStream.range(0, count)
+        .mapToObj(
+            i ->
+                Tuple.of(
+                    UUID.randomUUID().toString(),
+                    "{\"title\":\"policy read\"}",
+                    "/post",
+                    "POST",
+                    System.currentTimeMillis(),
+                    UUID.randomUUID().toString()))
+        .collect(Collectors.toList());
+  }
+
+  @SuppressWarnings("unchecked")
+  private PgPool pool() {
+    SqlConnection conn = mock(SqlConnection.class);
+    when(conn.preparedQuery(anyString()))
+        .thenAnswer(
+            inv -> {
+              String query = inv.getArgument(0);
+              PreparedQuery<RowSet<Row>> prepared = mock(PreparedQuery.class);
+              when(prepared.execute(any(Tuple.class)))
+                  .thenAnswer(
+                      exec -> {
+                        queries.add(query);
+                        params.add(exec.getArgument(0));
+                        deadlines.add(Deadline.remainingMs());
+                        return Future.succeededFuture(mock(RowSet.class));
+                      });
+              return prepared;
+            });
+
+    PgPool pool = mock(PgPool.class);
+    when(pool.withConnection(any()))
+        .thenAnswer(inv -> ((Function<SqlConnection, Future<?>>) inv.getArgument(0)).apply(conn));
+    return pool;
+  }
+
+  @Test
+  @DisplayName("Batch query has a row of placeholders for each record")
+  void batchWritingQuery() {
+    assertEquals(
+        "INSERT INTO auditing_table (id,body,endpoint,method,time,userid) VALUES ($1,$2,$3,$4,$5,$6)",
+        QueryBuilder.buildBatchWritingQuery(TABLE, 1));
+
+    String query = QueryBuilder.buildBatchWritingQuery(TABLE, 3);
+    assertTrue(
+        query.endsWith(
+            "VALUES ($1,$2,$3,$4,$5,$6),($7,$8,$9,$10,$11,$12),($13,$14,$15,$16,$17,$18)"));
+  }
+
+  @Test
+  @DisplayName("A full batch is written at once in a single insert")
+  void flushOnBatchSize(Vertx vertx, VertxTestContext testContext) {
+    AuditWriteBuffer buffer = new AuditWriteBuffer(vertx, pool(), TABLE, 3, 10, NEVER_MS);
+    List<Tuple> records = records(4);
+
+    List<Future<Void>> written = records.stream().map(buffer::add).collect(Collectors.toList());
+
+    Future.all(written.subList(0, 3))
+        .onComplete(
+            testContext.succeeding(
+                res ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(1, queries.size());
+                          assertEquals(
+                              QueryBuilder.buildBatchWritingQuery(TABLE, 3), queries.get(0));
+                          assertEquals(3 * WRITE_QUERY_COLUMN_COUNT, params.get(0).size());
+                          assertEquals(records.get(2).getString(0), params.get(0).getString(12));
+                          assertFalse(written.get(3).isComplete());
+                          buffer.close();
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("A batch filled by a request is not written under the deadline of the request")
+  void flushWithoutDeadline(Vertx vertx, VertxTestContext testContext) {
+    AuditWriteBuffer buffer = new AuditWriteBuffer(vertx, pool(), TABLE, 2, 10, NEVER_MS);
+    List<Tuple> records = records(2);
+
+    ((ContextInternal) vertx.getOrCreateContext())
+        .duplicate()
+        .runOnContext(
+            v -> {
+              Deadline.start(60_000);
+              Future.all(buffer.add(records.get(0)), buffer.add(records.get(1)))
+                  .onComplete(
+                      testContext.succeeding(
+                          res ->
+                              testContext.verify(
+                                  () -> {
+                                    assertEquals(List.of(Deadline.NONE), deadlines);
+                                    buffer.close();
+                                    testContext.completeNow();
+                                  })));
+            });
+  }
+
+  @Test
+  @DisplayName("Records are written when the flush interval elapses")
+  void flushOnInterval(Vertx vertx, VertxTestContext testContext) {
+    AuditWriteBuffer buffer = new AuditWriteBuffer(vertx, pool(), TABLE, 100, 1000, 50);
+    List<Future<Void>> written = records(2).stream().map(buffer::add).collect(Collectors.toList());
+    assertEquals(0, queries.size());
+
+    Future.all(written)
+        .onComplete(
+            testContext.succeeding(
+                res ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(1, queries.size());
+                          assertEquals(
+                              QueryBuilder.buildBatchWritingQuery(TABLE, 2), queries.get(0));
+                          buffer.close();
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Closing waits for the batches being written before closing the spool")
+  @SuppressWarnings("unchecked")
+  void closeWaitsForWrites(Vertx vertx, VertxTestContext testContext, @TempDir Path dir) {
+    Promise<RowSet<Row>> insert = Promise.promise();
+    PreparedQuery<RowSet<Row>> prepared = mock(PreparedQuery.class);
+    when(prepared.execute(any(Tuple.class))).thenReturn(insert.future());
+    SqlConnection conn = mock(SqlConnection.class);
+    when(conn.preparedQuery(anyString())).thenReturn(prepared);
+    PgPool pool = mock(PgPool.class);
+    when(pool.withConnection(any()))
+        .thenAnswer(inv -> ((Function<SqlConnection, Future<?>>) inv.getArgument(0)).apply(conn));
+
+    AuditWriteBuffer buffer = new AuditWriteBuffer(vertx, pool, TABLE, 10, 100, NEVER_MS);
+    AuditSpool spool = new AuditSpool(vertx, new JsonObject().put(SPOOL_DIRECTORY, dir.toString()));
+
+    spool
+        .open()
+        .compose(
+            opened -> {
+              buffer.setSpool(spool);
+              Future<Void> written = buffer.add(records(1).get(0));
+              Future<Void> closed = buffer.close();
+              /* The database goes away during shutdown, the batch is spooled */
+              insert.fail(new PgException("connection lost", "FATAL", "08006", "detail"));
+              return closed.compose(res -> written);
+            })
+        .onComplete(
+            testContext.succeeding(
+                res ->
+                    testContext.verify(
+                        () -> {
+                          assertFalse(spool.isEmpty());
+                          try (var files = Files.list(dir.resolve(SPOOL_INSTANCE_PREFIX + 0))) {
+                            assertEquals(
+                                1, files.filter(f -> f.toString().endsWith(".spool")).count());
+                          }
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Records are dropped when the buffer is full")
+  void bufferFull(Vertx vertx) {
+    AuditWriteBuffer buffer = new AuditWriteBuffer(vertx, pool(), TABLE, 10, 2, NEVER_MS);
+    List<Tuple> records = records(3);
+
+    buffer.add(records.get(0));
+    buffer.add(records.get(1));
+    Future<Void> dropped = buffer.add(records.get(2));
+
+    assertTrue(dropped.failed());
+    assertEquals(BUFFER_FULL, dropped.cause().getMessage());
+    assertEquals(0, queries.size());
+    buffer.close();
+    assertEquals(1, queries.size());
+  }
+}
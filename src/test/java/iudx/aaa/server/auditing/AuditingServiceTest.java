@@ -2,27 +2,42 @@ package iudx.aaa.server.auditing;
 
 import static iudx.aaa.server.auditing.util.Constants.API;
 import static iudx.aaa.server.auditing.util.Constants.BODY;
+import static iudx.aaa.server.auditing.util.Constants.CURSOR;
 import static iudx.aaa.server.auditing.util.Constants.DATA_NOT_FOUND;
 import static iudx.aaa.server.auditing.util.Constants.DETAIL;
 import static iudx.aaa.server.auditing.util.Constants.END_TIME;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_ADDRESS;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_EVENT;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_EVENT_DATA;
+import static iudx.aaa.server.auditing.util.Constants.EXPORT_EVENT_END;
+import static iudx.aaa.server.auditing.util.Constants.INVALID_CURSOR;
 import static iudx.aaa.server.auditing.util.Constants.INVALID_DATE_TIME;
+import static iudx.aaa.server.auditing.util.Constants.INVALID_LIMIT;
 import static iudx.aaa.server.auditing.util.Constants.INVALID_TIME;
+import static iudx.aaa.server.auditing.util.Constants.LIMIT;
 import static iudx.aaa.server.auditing.util.Constants.METHOD;
 import static iudx.aaa.server.auditing.util.Constants.MISSING_END_TIME;
 import static iudx.aaa.server.auditing.util.Constants.MISSING_START_TIME;
+import static iudx.aaa.server.auditing.util.Constants.NEXT_CURSOR;
 import static iudx.aaa.server.auditing.util.Constants.START_TIME;
+import static iudx.aaa.server.auditing.util.Constants.STREAM_ADDRESS;
 import static iudx.aaa.server.auditing.util.Constants.USERID_NOT_FOUND;
 import static iudx.aaa.server.auditing.util.Constants.USER_ID;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
 import iudx.aaa.server.configuration.Configuration;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -296,4 +311,120 @@ public class AuditingServiceTest {
                       vertxTestContext.completeNow();
                     })));
   }
+
+  @Test
+  @DisplayName("Failure-Testing read query for limit larger than page size")
+  void ReadForInvalidLimit(VertxTestContext vertxTestContext) {
+    JsonObject jsonObject = readRequest();
+    jsonObject.put(LIMIT, Integer.MAX_VALUE);
+
+    auditingService.executeReadQuery(
+        jsonObject,
+        vertxTestContext.failing(
+            response ->
+                vertxTestContext.verify(
+                    () -> {
+                      assertEquals(
+                          INVALID_LIMIT, new JsonObject(response.getMessage()).getString(DETAIL));
+                      vertxTestContext.completeNow();
+                    })));
+  }
+
+  @Test
+  @DisplayName("Failure-Testing read query for invalid cursor")
+  void ReadForInvalidCursor(VertxTestContext vertxTestContext) {
+    JsonObject jsonObject = readRequest();
+    jsonObject.put(CURSOR, "not-a-cursor");
+
+    auditingService.executeReadQuery(
+        jsonObject,
+        vertxTestContext.failing(
+            response ->
+                vertxTestContext.verify(
+                    () -> {
+                      assertEquals(
+                          INVALID_CURSOR, new JsonObject(response.getMessage()).getString(DETAIL));
+                      vertxTestContext.completeNow();
+                    })));
+  }
+
+  @Test
+  @DisplayName("Success-Testing paginated read returns next cursor for a full page")
+  void readPaginated(VertxTestContext vertxTestContext) {
+    Promise<JsonObject> first = Promise.promise();
+    Promise<JsonObject> second = Promise.promise();
+    auditingService.executeWriteQuery(writeRequest(), first);
+    auditingService.executeWriteQuery(writeRequest(), second);
+
+    Future.all(first.future(), second.future())
+        .compose(
+            written -> {
+              Promise<JsonObject> page = Promise.promise();
+              auditingService.executeReadQuery(readRequest().put(LIMIT, 1), page);
+              return page.future();
+            })
+        .compose(
+            page -> {
+              assertEquals(1, page.getJsonArray("results").size());
+              assertTrue(page.containsKey(NEXT_CURSOR));
+              Promise<JsonObject> next = Promise.promise();
+              auditingService.executeReadQuery(
+                  readRequest().put(LIMIT, 1).put(CURSOR, page.getString(NEXT_CURSOR)), next);
+              return next.future();
+            })
+        .onComplete(
+            vertxTestContext.succeeding(
+                next ->
+                    vertxTestContext.verify(
+                        () -> {
+                          assertEquals(1, next.getJsonArray("results").size());
+                          vertxTestContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Success-Testing export streams records as NDJSON chunks")
+  void exportData(VertxTestContext vertxTestContext) {
+    Promise<JsonObject> first = Promise.promise();
+    Promise<JsonObject> second = Promise.promise();
+    auditingService.executeWriteQuery(writeRequest(), first);
+    auditingService.executeWriteQuery(writeRequest(), second);
+
+    AuditExporter exporter =
+        new AuditExporter(
+            vertxObj, ((AuditingServiceImpl) auditingService).pool, databaseTableName, 1);
+    String exportAddress = EXPORT_ADDRESS + "." + UUID.randomUUID();
+    String streamAddress = exportAddress + ".stream";
+    vertxObj.eventBus().consumer(exportAddress, exporter);
+
+    List<String> lines = new ArrayList<String>();
+    vertxObj
+        .eventBus()
+        .<Buffer>consumer(
+            streamAddress,
+            msg -> {
+              String event = msg.headers().get(EXPORT_EVENT);
+              if (EXPORT_EVENT_DATA.equals(event)) {
+                lines.addAll(List.of(msg.body().toString().split("\n")));
+                msg.reply(null);
+              } else {
+                vertxTestContext.verify(
+                    () -> {
+                      assertEquals(EXPORT_EVENT_END, event);
+                      assertTrue(lines.size() >= 2);
+                      lines.forEach(
+                          line -> assertEquals("/userId", new JsonObject(line).getString(USER_ID)));
+                      vertxTestContext.completeNow();
+                    });
+              }
+            });
+
+    Future.all(first.future(), second.future())
+        .compose(
+            written ->
+                vertxObj
+                    .eventBus()
+                    .request(exportAddress, readRequest().put(STREAM_ADDRESS, streamAddress)))
+        .onFailure(vertxTestContext::failNow);
+  }
 }
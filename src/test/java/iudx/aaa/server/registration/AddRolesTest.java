@@ -274,14 +274,18 @@ public class AddRolesTest {
       "Test success for adding provider + consumer roles for one server, when already has those roles with another server")
   void addRolesForServerWhenAlreadyHasForAnotherServer(VertxTestContext testContext) {
 
-    User user = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-    user.setRoles(List.of(Roles.CONSUMER, Roles.PROVIDER));
-    user.setRolesToRsMapping(
-        Map.of(
-            Roles.CONSUMER.toString(),
-            new JsonArray().add(DUMMY_SERVER_ONE),
-            Roles.PROVIDER.toString(),
-            new JsonArray().add(DUMMY_SERVER_ONE)));
+    User user =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.CONSUMER, Roles.PROVIDER))
+            .rolesToRsMapping(
+                Map.of(
+                    Roles.CONSUMER.toString(),
+                    new JsonArray().add(DUMMY_SERVER_ONE),
+                    Roles.PROVIDER.toString(),
+                    new JsonArray().add(DUMMY_SERVER_ONE)))
+            .build();
 
     utils
         .createFakeUser(user, false, false)
@@ -421,14 +425,18 @@ public class AddRolesTest {
 
     // if we set the user object in this way, it means that the user has the provider and consumer
     // roles for DUMMY_SERVER
-    User user = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-    user.setRoles(List.of(Roles.CONSUMER, Roles.PROVIDER));
-    user.setRolesToRsMapping(
-        Map.of(
-            Roles.CONSUMER.toString(),
-            new JsonArray().add(DUMMY_SERVER_ONE),
-            Roles.PROVIDER.toString(),
-            new JsonArray().add(DUMMY_SERVER_ONE)));
+    User user =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.CONSUMER, Roles.PROVIDER))
+            .rolesToRsMapping(
+                Map.of(
+                    Roles.CONSUMER.toString(),
+                    new JsonArray().add(DUMMY_SERVER_ONE),
+                    Roles.PROVIDER.toString(),
+                    new JsonArray().add(DUMMY_SERVER_ONE)))
+            .build();
 
     Checkpoint failsConsumer = testContext.checkpoint();
     Checkpoint failsProvider = testContext.checkpoint();
@@ -554,10 +562,13 @@ public class AddRolesTest {
       "Test success for multiple roles and multiple RS for existing user (like an admin) with client creds")
   void multipleRolesAndRs(VertxTestContext testContext) {
 
-    User user = new UserBuilder().userId(UUID.randomUUID()).name("aa", "bb").build();
-
-    user.setRoles(List.of(Roles.ADMIN));
-    user.setRolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(DUMMY_SERVER_ONE)));
+    User user =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("aa", "bb")
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(DUMMY_SERVER_ONE)))
+            .build();
 
     utils
         .createFakeUser(user, false, false)
@@ -174,9 +174,12 @@ public class ListUserRolesTest {
   @DisplayName("Test keycloak failure")
   void keycloakFailed(VertxTestContext testContext) {
 
-    User user = new UserBuilder().userId(UUID.randomUUID()).build();
-    user.setRoles(List.of(Roles.CONSUMER));
-    user.setRolesToRsMapping(Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User user =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .roles(List.of(Roles.CONSUMER))
+            .rolesToRsMapping(Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     utils
         .createFakeUser(user, true, true)
@@ -200,9 +203,12 @@ public class ListUserRolesTest {
   @DisplayName("Test email not on keycloak - should never happen")
   void userEmailFail(VertxTestContext testContext) {
 
-    User user = new UserBuilder().userId(UUID.randomUUID()).build();
-    user.setRoles(List.of(Roles.CONSUMER));
-    user.setRolesToRsMapping(Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User user =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .roles(List.of(Roles.CONSUMER))
+            .rolesToRsMapping(Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     utils
         .createFakeUser(user, true, true)
@@ -312,10 +312,11 @@ public class TokenServiceTest {
   @DisplayName("Create Token - Delegate must supply delegate info - Fail")
   void createTokenDelegateNeedsDelegInfo(VertxTestContext testContext) {
 
-    User consumerUser = new User(normalUser.toJson());
-    consumerUser.setRoles(List.of(Roles.DELEGATE));
-    consumerUser.setRolesToRsMapping(
-        Map.of(Roles.DELEGATE.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User consumerUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.DELEGATE))
+            .rolesToRsMapping(Map.of(Roles.DELEGATE.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject jsonReq =
         new JsonObject()
@@ -346,10 +347,11 @@ public class TokenServiceTest {
   @DisplayName("Create Token - User does not have the requested role - Fail")
   void createTokenUserNotHaveRequestedRole(VertxTestContext testContext) {
 
-    User consumerUser = new User(normalUser.toJson());
-    consumerUser.setRoles(List.of(Roles.CONSUMER));
-    consumerUser.setRolesToRsMapping(
-        Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User consumerUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.CONSUMER))
+            .rolesToRsMapping(Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject jsonReq =
         new JsonObject()
@@ -382,16 +384,18 @@ public class TokenServiceTest {
 
     List<Roles> roles = List.of(Roles.ADMIN, Roles.COS_ADMIN, Roles.PROVIDER, Roles.CONSUMER);
 
-    User user = new User(normalUser.toJson());
-    user.setRoles(roles);
-    user.setRolesToRsMapping(
-        Map.of(
-            Roles.CONSUMER.toString(),
-            new JsonArray().add("some-rs.url"),
-            Roles.PROVIDER.toString(),
-            new JsonArray().add("some-rs.url"),
-            Roles.ADMIN.toString(),
-            new JsonArray().add("some-rs.url")));
+    User user =
+        new UserBuilder(normalUser)
+            .roles(roles)
+            .rolesToRsMapping(
+                Map.of(
+                    Roles.CONSUMER.toString(),
+                    new JsonArray().add("some-rs.url"),
+                    Roles.PROVIDER.toString(),
+                    new JsonArray().add("some-rs.url"),
+                    Roles.ADMIN.toString(),
+                    new JsonArray().add("some-rs.url")))
+            .build();
 
     Map<Roles, Checkpoint> checks =
         roles.stream().collect(Collectors.toMap(role -> role, role -> testContext.checkpoint()));
@@ -421,10 +425,11 @@ public class TokenServiceTest {
                           })));
         });
 
-    User delegateUser = new User(normalUser.toJson());
-    delegateUser.setRoles(List.of(Roles.DELEGATE));
-    delegateUser.setRolesToRsMapping(
-        Map.of(Roles.DELEGATE.toString(), new JsonArray().add("some-rs.url")));
+    User delegateUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.DELEGATE))
+            .rolesToRsMapping(Map.of(Roles.DELEGATE.toString(), new JsonArray().add("some-rs.url")))
+            .build();
 
     DelegationInformation delegConsInfo =
         new DelegationInformation(
@@ -461,10 +466,11 @@ public class TokenServiceTest {
   @DisplayName("Consumer getting Resource token - Success")
   void createTokenConsResItemSuccess(VertxTestContext testContext) {
 
-    User consumerUser = new User(normalUser.toJson());
-    consumerUser.setRoles(List.of(Roles.CONSUMER));
-    consumerUser.setRolesToRsMapping(
-        Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User consumerUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.CONSUMER))
+            .rolesToRsMapping(Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject jsonReq =
         new JsonObject()
@@ -510,10 +516,11 @@ public class TokenServiceTest {
   @DisplayName("Provider getting Resource token - Success")
   void createTokenProvResItemSuccess(VertxTestContext testContext) {
 
-    User providerUser = new User(normalUser.toJson());
-    providerUser.setRoles(List.of(Roles.PROVIDER));
-    providerUser.setRolesToRsMapping(
-        Map.of(Roles.PROVIDER.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User providerUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.PROVIDER))
+            .rolesToRsMapping(Map.of(Roles.PROVIDER.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject jsonReq =
         new JsonObject()
@@ -559,10 +566,11 @@ public class TokenServiceTest {
   @DisplayName("Delegate getting Resource token as consumer delegate - Success")
   void createTokenConsDelegateResourceSuccess(VertxTestContext testContext) {
 
-    User delegateUser = new User(normalUser.toJson());
-    delegateUser.setRoles(List.of(Roles.DELEGATE));
-    delegateUser.setRolesToRsMapping(
-        Map.of(Roles.DELEGATE.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User delegateUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.DELEGATE))
+            .rolesToRsMapping(Map.of(Roles.DELEGATE.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject delegJsonReq =
         new JsonObject()
@@ -619,10 +627,11 @@ public class TokenServiceTest {
   @DisplayName("Delegate getting Resource token as provider delegate - Success")
   void createTokenProvDelegateResourceSuccess(VertxTestContext testContext) {
 
-    User delegateUser = new User(normalUser.toJson());
-    delegateUser.setRoles(List.of(Roles.DELEGATE));
-    delegateUser.setRolesToRsMapping(
-        Map.of(Roles.DELEGATE.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User delegateUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.DELEGATE))
+            .rolesToRsMapping(Map.of(Roles.DELEGATE.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject delegJsonReq =
         new JsonObject()
@@ -681,16 +690,18 @@ public class TokenServiceTest {
 
     List<Roles> roles = List.of(Roles.ADMIN, Roles.PROVIDER, Roles.CONSUMER);
 
-    User user = new User(normalUser.toJson());
-    user.setRoles(roles);
-    user.setRolesToRsMapping(
-        Map.of(
-            Roles.CONSUMER.toString(),
-            new JsonArray().add("some-rs.url"),
-            Roles.PROVIDER.toString(),
-            new JsonArray().add("some-rs.url"),
-            Roles.ADMIN.toString(),
-            new JsonArray().add("some-rs.url")));
+    User user =
+        new UserBuilder(normalUser)
+            .roles(roles)
+            .rolesToRsMapping(
+                Map.of(
+                    Roles.CONSUMER.toString(),
+                    new JsonArray().add("some-rs.url"),
+                    Roles.PROVIDER.toString(),
+                    new JsonArray().add("some-rs.url"),
+                    Roles.ADMIN.toString(),
+                    new JsonArray().add("some-rs.url")))
+            .build();
 
     Map<Roles, Checkpoint> checks =
         roles.stream().collect(Collectors.toMap(role -> role, role -> testContext.checkpoint()));
@@ -722,10 +733,11 @@ public class TokenServiceTest {
                           })));
         });
 
-    User delegateUser = new User(normalUser.toJson());
-    delegateUser.setRoles(List.of(Roles.DELEGATE));
-    delegateUser.setRolesToRsMapping(
-        Map.of(Roles.DELEGATE.toString(), new JsonArray().add("some-rs.url")));
+    User delegateUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.DELEGATE))
+            .rolesToRsMapping(Map.of(Roles.DELEGATE.toString(), new JsonArray().add("some-rs.url")))
+            .build();
 
     DelegationInformation delegConsInfo =
         new DelegationInformation(
@@ -761,8 +773,7 @@ public class TokenServiceTest {
   @DisplayName("Create Token - Request for COS token invalid COS URL")
   void createTokenCosTokenFailsInvalidCosUrl(VertxTestContext testContext) {
 
-    User cosAdminUser = new User(normalUser.toJson());
-    cosAdminUser.setRoles(List.of(Roles.COS_ADMIN));
+    User cosAdminUser = new UserBuilder(normalUser).roles(List.of(Roles.COS_ADMIN)).build();
 
     JsonObject jsonReq =
         new JsonObject()
@@ -791,8 +802,7 @@ public class TokenServiceTest {
   @DisplayName("COS Admin getting COS token - Success")
   void createTokenCosTokenSuccess(VertxTestContext testContext) {
 
-    User cosAdminUser = new User(normalUser.toJson());
-    cosAdminUser.setRoles(List.of(Roles.COS_ADMIN));
+    User cosAdminUser = new UserBuilder(normalUser).roles(List.of(Roles.COS_ADMIN)).build();
 
     JsonObject jsonReq =
         new JsonObject()
@@ -828,10 +838,11 @@ public class TokenServiceTest {
   @DisplayName("Consumer getting APD token for a resource item - Success")
   void getApdTokenConsumerSuccess(VertxTestContext testContext) {
 
-    User consumerUser = new User(normalUser.toJson());
-    consumerUser.setRoles(List.of(Roles.CONSUMER));
-    consumerUser.setRolesToRsMapping(
-        Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User consumerUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.CONSUMER))
+            .rolesToRsMapping(Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject jsonReq =
         new JsonObject()
@@ -876,8 +887,7 @@ public class TokenServiceTest {
   @DisplayName("COS Admin cannot get Resource Server token")
   void createTokenCosAdminResServFail(VertxTestContext testContext) {
 
-    User cosAdminUser = new User(normalUser.toJson());
-    cosAdminUser.setRoles(List.of(Roles.COS_ADMIN));
+    User cosAdminUser = new UserBuilder(normalUser).roles(List.of(Roles.COS_ADMIN)).build();
 
     JsonObject jsonReq =
         new JsonObject()
@@ -906,10 +916,11 @@ public class TokenServiceTest {
   @DisplayName("Consumer getting Resource Server token - Success")
   void createTokenConsumerResServSuccess(VertxTestContext testContext) {
 
-    User consumerUser = new User(normalUser.toJson());
-    consumerUser.setRoles(List.of(Roles.CONSUMER));
-    consumerUser.setRolesToRsMapping(
-        Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User consumerUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.CONSUMER))
+            .rolesToRsMapping(Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject jsonReq =
         new JsonObject()
@@ -945,10 +956,11 @@ public class TokenServiceTest {
   @DisplayName("Provider getting Resource Server token - Success")
   void createTokenProviderResServSuccess(VertxTestContext testContext) {
 
-    User providerUser = new User(normalUser.toJson());
-    providerUser.setRoles(List.of(Roles.PROVIDER));
-    providerUser.setRolesToRsMapping(
-        Map.of(Roles.PROVIDER.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User providerUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.PROVIDER))
+            .rolesToRsMapping(Map.of(Roles.PROVIDER.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject jsonReq =
         new JsonObject()
@@ -984,10 +996,11 @@ public class TokenServiceTest {
   @DisplayName("Admin getting Resource Server token - Success")
   void createTokenAdminResServSuccess(VertxTestContext testContext) {
 
-    User adminUser = new User(normalUser.toJson());
-    adminUser.setRoles(List.of(Roles.ADMIN));
-    adminUser.setRolesToRsMapping(
-        Map.of(Roles.ADMIN.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User adminUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.ADMIN))
+            .rolesToRsMapping(Map.of(Roles.ADMIN.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject jsonReq =
         new JsonObject()
@@ -1022,10 +1035,11 @@ public class TokenServiceTest {
   @DisplayName("Delegate getting Resource Server token - Success")
   void createTokenDelegateResServSuccess(VertxTestContext testContext) {
 
-    User delegateUser = new User(normalUser.toJson());
-    delegateUser.setRoles(List.of(Roles.DELEGATE));
-    delegateUser.setRolesToRsMapping(
-        Map.of(Roles.DELEGATE.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User delegateUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.DELEGATE))
+            .rolesToRsMapping(Map.of(Roles.DELEGATE.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject delegJsonReq =
         new JsonObject()
@@ -1106,16 +1120,18 @@ public class TokenServiceTest {
 
     List<Roles> rolesToTest = List.of(Roles.PROVIDER, Roles.CONSUMER, Roles.ADMIN);
 
-    User user = new User(normalUser.toJson());
-    user.setRoles(rolesToTest);
-    user.setRolesToRsMapping(
-        Map.of(
-            Roles.CONSUMER.toString(),
-            new JsonArray().add(DUMMY_SERVER),
-            Roles.PROVIDER.toString(),
-            new JsonArray().add(DUMMY_SERVER),
-            Roles.ADMIN.toString(),
-            new JsonArray().add(DUMMY_SERVER)));
+    User user =
+        new UserBuilder(normalUser)
+            .roles(rolesToTest)
+            .rolesToRsMapping(
+                Map.of(
+                    Roles.CONSUMER.toString(),
+                    new JsonArray().add(DUMMY_SERVER),
+                    Roles.PROVIDER.toString(),
+                    new JsonArray().add(DUMMY_SERVER),
+                    Roles.ADMIN.toString(),
+                    new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     Map<Roles, Checkpoint> checks =
         rolesToTest.stream()
@@ -1153,16 +1169,18 @@ public class TokenServiceTest {
 
     List<Roles> rolesToTest = List.of(Roles.PROVIDER, Roles.CONSUMER, Roles.ADMIN);
 
-    User user = new User(normalUser.toJson());
-    user.setRoles(rolesToTest);
-    user.setRolesToRsMapping(
-        Map.of(
-            Roles.CONSUMER.toString(),
-            new JsonArray().add("some-rs.url"),
-            Roles.PROVIDER.toString(),
-            new JsonArray().add("some-rs.url"),
-            Roles.ADMIN.toString(),
-            new JsonArray().add("some-rs.url")));
+    User user =
+        new UserBuilder(normalUser)
+            .roles(rolesToTest)
+            .rolesToRsMapping(
+                Map.of(
+                    Roles.CONSUMER.toString(),
+                    new JsonArray().add("some-rs.url"),
+                    Roles.PROVIDER.toString(),
+                    new JsonArray().add("some-rs.url"),
+                    Roles.ADMIN.toString(),
+                    new JsonArray().add("some-rs.url")))
+            .build();
 
     Map<Roles, Checkpoint> checks =
         rolesToTest.stream()
@@ -1206,10 +1224,14 @@ public class TokenServiceTest {
     // delegationId)
     // is for `delegatedRsUrl`
     String delegatedRsUrl = "some-rs.url";
-    User delegateUser = new User(normalUser.toJson());
-    delegateUser.setRoles(List.of(Roles.DELEGATE));
-    delegateUser.setRolesToRsMapping(
-        Map.of(Roles.DELEGATE.toString(), new JsonArray().add(DUMMY_SERVER).add(delegatedRsUrl)));
+    User delegateUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.DELEGATE))
+            .rolesToRsMapping(
+                Map.of(
+                    Roles.DELEGATE.toString(),
+                    new JsonArray().add(DUMMY_SERVER).add(delegatedRsUrl)))
+            .build();
 
     JsonObject delegJsonReq =
         new JsonObject()
@@ -1271,10 +1293,11 @@ public class TokenServiceTest {
   @DisplayName("Delegate cannot get Resource Server token if RS does not exist")
   void createTokenDelegateRsNotExist(VertxTestContext testContext) {
 
-    User delegateUser = new User(normalUser.toJson());
-    delegateUser.setRoles(List.of(Roles.DELEGATE));
-    delegateUser.setRolesToRsMapping(
-        Map.of(Roles.DELEGATE.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User delegateUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.DELEGATE))
+            .rolesToRsMapping(Map.of(Roles.DELEGATE.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject delegJsonReq =
         new JsonObject()
@@ -1336,10 +1359,11 @@ public class TokenServiceTest {
   @DisplayName("createToken invalid policy [Fail]")
   void createTokenFailedInvalidPolicy(VertxTestContext testContext) {
 
-    User consumerUser = new User(normalUser.toJson());
-    consumerUser.setRoles(List.of(Roles.CONSUMER));
-    consumerUser.setRolesToRsMapping(
-        Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User consumerUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.CONSUMER))
+            .rolesToRsMapping(Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject jsonReq =
         new JsonObject()
@@ -1365,10 +1389,11 @@ public class TokenServiceTest {
   @Test
   @DisplayName("revokeToken [Success - revoke for RS]")
   void revokeTokenSuccessRs(VertxTestContext testContext) {
-    User consumerUser = new User(normalUser.toJson());
-    consumerUser.setRoles(List.of(Roles.CONSUMER));
-    consumerUser.setRolesToRsMapping(
-        Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User consumerUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.CONSUMER))
+            .rolesToRsMapping(Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject request = new JsonObject().put(RS_URL, DUMMY_SERVER);
 
@@ -1388,10 +1413,11 @@ public class TokenServiceTest {
   @Test
   @DisplayName("revokeToken [Success - revoke for RS]")
   void revokeTokenSuccessApd(VertxTestContext testContext) {
-    User consumerUser = new User(normalUser.toJson());
-    consumerUser.setRoles(List.of(Roles.CONSUMER));
-    consumerUser.setRolesToRsMapping(
-        Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User consumerUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.CONSUMER))
+            .rolesToRsMapping(Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject request = new JsonObject().put(RS_URL, DUMMY_ACTIVE_APD);
 
@@ -1412,10 +1438,11 @@ public class TokenServiceTest {
   @DisplayName("revokeToken [Failed-01 Failure in RS]")
   void revokeTokenFailed01(VertxTestContext testContext) {
 
-    User consumerUser = new User(normalUser.toJson());
-    consumerUser.setRoles(List.of(Roles.CONSUMER));
-    consumerUser.setRolesToRsMapping(
-        Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User consumerUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.CONSUMER))
+            .rolesToRsMapping(Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject request = new JsonObject().put(RS_URL, DUMMY_SERVER);
     mockHttpWebClient.setResponse("invalid");
@@ -1457,10 +1484,11 @@ public class TokenServiceTest {
   @Test
   @DisplayName("revokeToken [Failed-04 invalidUrl]")
   void revokeTokenFailed04(VertxTestContext testContext) {
-    User consumerUser = new User(normalUser.toJson());
-    consumerUser.setRoles(List.of(Roles.CONSUMER));
-    consumerUser.setRolesToRsMapping(
-        Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User consumerUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.CONSUMER))
+            .rolesToRsMapping(Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject request =
         new JsonObject().put(RS_URL, RandomStringUtils.randomAlphabetic(10) + ".com");
@@ -1481,10 +1509,11 @@ public class TokenServiceTest {
   @Test
   @DisplayName("revokeToken [Failed-04 invalidUrl]")
   void revokeTokenFailedApdInactive(VertxTestContext testContext) {
-    User consumerUser = new User(normalUser.toJson());
-    consumerUser.setRoles(List.of(Roles.CONSUMER));
-    consumerUser.setRolesToRsMapping(
-        Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User consumerUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.CONSUMER))
+            .rolesToRsMapping(Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject request = new JsonObject().put(RS_URL, DUMMY_INACTIVE_APD);
 
@@ -1504,10 +1533,11 @@ public class TokenServiceTest {
   @Test
   @DisplayName("revokeToken [Failed-05 authUrl]")
   void revokeTokenFailed05(VertxTestContext testContext) {
-    User consumerUser = new User(normalUser.toJson());
-    consumerUser.setRoles(List.of(Roles.CONSUMER));
-    consumerUser.setRolesToRsMapping(
-        Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
+    User consumerUser =
+        new UserBuilder(normalUser)
+            .roles(List.of(Roles.CONSUMER))
+            .rolesToRsMapping(Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)))
+            .build();
 
     JsonObject request = new JsonObject().put(RS_URL, DUMMY_COS_URL);
 